@@ -1,6 +1,11 @@
 package uk.ac.ebi.pride.utilities.ols.web.service.client;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import uk.ac.ebi.pride.utilities.ols.web.service.config.AbstractOLSWsConfig;
@@ -10,12 +15,25 @@ import uk.ac.ebi.pride.utilities.ols.web.service.model.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 
 /**
  * This class allows to query the Ontology Lockup service to retrirve information about
  * CVTerms.
  *
+ * Requests are sent through a pluggable {@link ClientHttpRequestFactory}.  By default this is an
+ * {@link HttpComponentsClientHttpRequestFactory} backed by a {@link PoolingHttpClientConnectionManager}, which keeps at
+ * most the configured number of persistent connections to OLS open and uses the connect and read timeouts of the
+ * config.  Call {@link #shutdown()} once the client is no longer needed to close these connections.
+ *
+ * The list of ontologies is cached, and refreshed from OLS once it is older than the ontology refresh interval.
+ *
  * @author ypriverol
  */
 public class OLSClient implements Client {
@@ -23,18 +41,33 @@ public class OLSClient implements Client {
     private  RestTemplate restTemplate;
     private  AbstractOLSWsConfig config;
 
-    private String queryField;
-    private String fieldList;
-    private int searchPageSize;
-    private int searchPageNum;
+    // defaults for searches made without their own SearchOptions
+    private volatile String queryField;
+    private volatile String fieldList;
+    private volatile int searchPageSize;
+    private volatile int searchPageNum;
+
+    // cached list of ontologies, and when it was loaded
+    private volatile List<Ontology> ontologies;
+    private volatile long ontologiesLoadedTime;
+    private volatile long ontologyRefreshInterval = Constants.ONTOLOGY_REFRESH_INTERVAL;
+
+    // the pooled request factory created by this client, if one was not supplied
+    private HttpComponentsClientHttpRequestFactory ownedRequestFactory;
 
-    private static int TIME_OUT = 5000;
+    // runs asynchronous searches, created on first use unless set
+    private ExecutorService asyncExecutor;
+    private boolean ownsAsyncExecutor;
 
     private static final String DEFAULT_QUERY_FIELD = new QueryFields.QueryFieldBuilder()
             .setLabel()
             .setSynonym()
             .build()
             .toString();
+    private static final String IRI_QUERY_FIELD = new QueryFields.QueryFieldBuilder()
+            .setIri()
+            .build()
+            .toString();
     private static final String DEFAULT_FIELD_LIST = new FieldList.FieldListBuilder()
             .setLabel()
             .setIri()
@@ -92,6 +125,22 @@ public class OLSClient implements Client {
         this.fieldList = fieldList;
     }
 
+    /**
+     * Returns the options used by searches that are not given their own, built from the current page number, page size
+     * and query field of this client.  Searches given their own options are unaffected by changes to these settings,
+     * so should be preferred when this client is shared between threads.
+     *
+     * @return the default search options of this client
+     */
+    // Zooma
+    public SearchOptions getSearchOptions() {
+        return new SearchOptions.SearchOptionsBuilder()
+                .setPageNum(getSearchPageNum())
+                .setPageSize(getSearchPageSize())
+                .setQueryField(getQueryField())
+                .build();
+    }
+
     org.slf4j.Logger logger = LoggerFactory.getLogger(OLSClient.class);
 
 
@@ -101,13 +150,43 @@ public class OLSClient implements Client {
      * @param config configuration to use.
      */
     public OLSClient(AbstractOLSWsConfig config) {
+        this(config, createRequestFactory(config));
+        this.ownedRequestFactory = (HttpComponentsClientHttpRequestFactory) restTemplate.getRequestFactory();
+    }
+
+    /**
+     * Creates a client that sends requests through the given request factory
+     *
+     * @param config configuration to use.
+     * @param requestFactory the factory creating HTTP requests to OLS
+     */
+    public OLSClient(AbstractOLSWsConfig config, ClientHttpRequestFactory requestFactory) {
         this.config = config;
-        this.restTemplate = new RestTemplate();
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = new RestTemplate(requestFactory);
         this.searchPageSize = Constants.SEARCH_PAGE_SIZE;
         this.searchPageNum = -1;
     }
 
+    private static ClientHttpRequestFactory createRequestFactory(AbstractOLSWsConfig config) {
+        // every request goes to the same OLS host, so the whole pool is available to that route
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(config.getConnectTimeout())
+                .setConnectTimeout(config.getConnectTimeout())
+                .setSocketTimeout(config.getReadTimeout())
+                .build();
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(
+                HttpClients.custom()
+                        .setConnectionManager(connectionManager)
+                        .setDefaultRequestConfig(requestConfig)
+                        .build());
+        requestFactory.setConnectTimeout(config.getConnectTimeout());
+        requestFactory.setReadTimeout(config.getReadTimeout());
+        return requestFactory;
+    }
+
     public RestTemplate getRestTemplate() {
         return restTemplate;
     }
@@ -124,6 +203,69 @@ public class OLSClient implements Client {
         this.config = config;
     }
 
+    public long getOntologyRefreshInterval() {
+        return ontologyRefreshInterval;
+    }
+
+    /**
+     * Sets how long the list of ontologies is cached for before it is reloaded from OLS
+     *
+     * @param ontologyRefreshInterval the refresh interval in milliseconds, or zero or less to never cache
+     */
+    public void setOntologyRefreshInterval(long ontologyRefreshInterval) {
+        this.ontologyRefreshInterval = ontologyRefreshInterval;
+    }
+
+    /**
+     * Sets the executor that runs asynchronous searches.  The caller remains responsible for shutting it down.
+     *
+     * @param asyncExecutor the executor to run asynchronous searches
+     */
+    public synchronized void setAsyncExecutor(ExecutorService asyncExecutor) {
+        shutdownAsyncExecutor();
+        this.asyncExecutor = asyncExecutor;
+        this.ownsAsyncExecutor = false;
+    }
+
+    private synchronized ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            asyncExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger(1);
+
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ols-client-" + threadCount.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            ownsAsyncExecutor = true;
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * Shuts down the executor of asynchronous searches and closes pooled connections to OLS, if this client created
+     * them
+     */
+    public synchronized void shutdown() {
+        shutdownAsyncExecutor();
+        if (ownedRequestFactory != null) {
+            try {
+                ownedRequestFactory.destroy();
+            } catch (Exception e) {
+                logger.warn("Failed to close connections to OLS", e);
+            }
+            ownedRequestFactory = null;
+        }
+    }
+
+    private void shutdownAsyncExecutor() {
+        if (asyncExecutor != null && ownsAsyncExecutor) {
+            asyncExecutor.shutdownNow();
+            asyncExecutor = null;
+        }
+    }
+
 
     /**
      * This function returns the current ontologies in OLS.
@@ -133,6 +275,21 @@ public class OLSClient implements Client {
      */
     // Zooma
     public List<Ontology> getOntologies() throws RestClientException {
+        List<Ontology> cached = this.ontologies;
+        if (cached == null || System.currentTimeMillis() - ontologiesLoadedTime > ontologyRefreshInterval) {
+            synchronized (this) {
+                cached = this.ontologies;
+                if (cached == null || System.currentTimeMillis() - ontologiesLoadedTime > ontologyRefreshInterval) {
+                    cached = Collections.unmodifiableList(loadOntologies());
+                    this.ontologies = cached;
+                    this.ontologiesLoadedTime = System.currentTimeMillis();
+                }
+            }
+        }
+        return new ArrayList<>(cached);
+    }
+
+    private List<Ontology> loadOntologies() throws RestClientException {
         OntologyQuery currentOntologyQuery = getOntologyQuery(0);
         List<Ontology> ontologies = new ArrayList<>();
         ontologies.addAll(Arrays.asList(currentOntologyQuery.getOntolgoies()));
@@ -171,12 +328,22 @@ public class OLSClient implements Client {
 
     // Zooma
     public List<Term> getTermsByName(String partialName, String ontologyID, boolean reverseKeyOrder) {
-        return getTermsByName(partialName, ontologyID, reverseKeyOrder, null);
+        return getTermsByName(partialName, ontologyID, reverseKeyOrder, null, getSearchOptions());
+    }
+
+    // Zooma
+    public List<Term> getTermsByName(String partialName, String ontologyID, boolean reverseKeyOrder, SearchOptions options) {
+        return getTermsByName(partialName, ontologyID, reverseKeyOrder, null, options);
     }
 
     // Zooma
     public List<Term> getTermsByNameFromParent(String partialName, String ontologyID, boolean reverseKeyOrder, String childrenOf) {
-        return  getTermsByName(partialName, ontologyID, reverseKeyOrder, childrenOf);
+        return  getTermsByName(partialName, ontologyID, reverseKeyOrder, childrenOf, getSearchOptions());
+    }
+
+    // Zooma
+    public List<Term> getTermsByNameFromParent(String partialName, String ontologyID, boolean reverseKeyOrder, String childrenOf, SearchOptions options) {
+        return  getTermsByName(partialName, ontologyID, reverseKeyOrder, childrenOf, options);
     }
 
     /**
@@ -186,16 +353,17 @@ public class OLSClient implements Client {
      * @param partialName     Substring to lookup in the name term
      * @param ontologyID the ontology ID.
      * @param reverseKeyOrder sort the hash in a reverse order
+     * @param options the paging and query field options of this search
      * @return list of Terms.
      */
 
     // Zooma
-    private List<Term> getTermsByName(String partialName, String ontologyID, boolean reverseKeyOrder, String childrenOf) {
+    private List<Term> getTermsByName(String partialName, String ontologyID, boolean reverseKeyOrder, String childrenOf, SearchOptions options) {
         List<Term> resultTerms;
         if (partialName == null || partialName.isEmpty())
             return Collections.emptyList();
 
-        resultTerms = searchByPartialTerm(partialName, ontologyID, childrenOf);
+        resultTerms = searchByPartialTerm(partialName, ontologyID, childrenOf, options);
 
         if (reverseKeyOrder) {
             Set<Term> newMap = new TreeSet<>(Collections.reverseOrder());
@@ -216,46 +384,135 @@ public class OLSClient implements Client {
      */
     // Zooma
     public List<Term> getExactTermsByNameFromParent(String exactName, String ontologyId, String childrenOf) {
-        return  getExactTermsByName(exactName, ontologyId, childrenOf);
+        return  getExactTermsByName(exactName, ontologyId, childrenOf, getSearchOptions());
+    }
+
+    // Zooma
+    public List<Term> getExactTermsByNameFromParent(String exactName, String ontologyId, String childrenOf, SearchOptions options) {
+        return  getExactTermsByName(exactName, ontologyId, childrenOf, options);
     }
 
     // Zooma
     public List<Term> getExactTermsByName(String exactName, String ontologyId) {
-        return getExactTermsByName(exactName, ontologyId, null);
+        return getExactTermsByName(exactName, ontologyId, null, getSearchOptions());
+    }
+
+    // Zooma
+    public List<Term> getExactTermsByName(String exactName, String ontologyId, SearchOptions options) {
+        return getExactTermsByName(exactName, ontologyId, null, options);
     }
 
     // Zooma
-    private List<Term> getExactTermsByName(String exactName, String ontologyId, String childrenOf) {
+    private List<Term> getExactTermsByName(String exactName, String ontologyId, String childrenOf, SearchOptions options) {
 
         if (exactName == null || exactName.isEmpty()){
             return null;
         }
 
-        return  searchByExactTerm(exactName, ontologyId, childrenOf);
+        return  searchByExactTerm(exactName, ontologyId, childrenOf, options);
 
     }
 
 
     // Zooma
     public List<Term> getExactTermsByIriString(String iri) {
-        String customQueryField = new QueryFields.QueryFieldBuilder()
-                .setIri()
-                .build()
-                .toString();
-        this.setQueryField(customQueryField);
-        List<Term> terms = getExactTermsByName(iri, null);
-        //restore olsClient search to it's default query field and field list
-        this.setQueryField(DEFAULT_QUERY_FIELD);
-        return terms;
+        return getExactTermsByIriString(iri, getSearchOptions());
+    }
+
+    // Zooma
+    public List<Term> getExactTermsByIriString(String iri, SearchOptions options) {
+        SearchOptions iriOptions = new SearchOptions.SearchOptionsBuilder()
+                .setPageNum(options.getPageNum())
+                .setPageSize(options.getPageSize())
+                .setQueryField(IRI_QUERY_FIELD)
+                .build();
+        return getExactTermsByName(iri, null, null, iriOptions);
     }
 
 
-    private List<Term> searchByPartialTerm(String partialName, String ontology, String childrenOf) throws RestClientException {
-        return searchByTerm(partialName, ontology, false, childrenOf, false);
+    /**
+     * Searches for exact term matches without blocking the calling thread.  Cancelling the returned future does not
+     * interrupt a request already sent to OLS, which remains bounded by the read timeout.
+     *
+     * @param exactName the term we are looking for
+     * @param ontologyId the ontology to search, or null or empty to search every ontology
+     * @param options the paging and query field options of this search
+     * @return a future list of the terms found
+     */
+    // Zooma
+    public CompletableFuture<List<Term>> getExactTermsByNameAsync(final String exactName, final String ontologyId, final SearchOptions options) {
+        return supplyAsync(new Supplier<List<Term>>() {
+            @Override public List<Term> get() {
+                return getExactTermsByName(exactName, ontologyId, null, options);
+            }
+        });
     }
 
-    private List<Term> searchByExactTerm(String exactName, String ontologyId, String childrenOf) throws RestClientException {
-        return searchByTerm(exactName, ontologyId, true, childrenOf, false);
+    /**
+     * Searches for exact term matches that belong to a specific parent without blocking the calling thread
+     *
+     * @param exactName the term we are looking for
+     * @param ontologyId the ontology to search, or null or empty to search every ontology
+     * @param childrenOf a list of IRI for the terms that you want to search under, comma separated
+     * @param options the paging and query field options of this search
+     * @return a future list of the terms found
+     */
+    // Zooma
+    public CompletableFuture<List<Term>> getExactTermsByNameFromParentAsync(final String exactName, final String ontologyId, final String childrenOf, final SearchOptions options) {
+        return supplyAsync(new Supplier<List<Term>>() {
+            @Override public List<Term> get() {
+                return getExactTermsByName(exactName, ontologyId, childrenOf, options);
+            }
+        });
+    }
+
+    /**
+     * Searches for partial term matches without blocking the calling thread
+     *
+     * @param partialName Substring to lookup in the name term
+     * @param ontologyID the ontology to search, or null or empty to search every ontology
+     * @param reverseKeyOrder sort the results in a reverse order
+     * @param options the paging and query field options of this search
+     * @return a future list of the terms found
+     */
+    // Zooma
+    public CompletableFuture<List<Term>> getTermsByNameAsync(final String partialName, final String ontologyID, final boolean reverseKeyOrder, final SearchOptions options) {
+        return supplyAsync(new Supplier<List<Term>>() {
+            @Override public List<Term> get() {
+                return getTermsByName(partialName, ontologyID, reverseKeyOrder, null, options);
+            }
+        });
+    }
+
+    /**
+     * Searches for partial term matches that belong to a specific parent without blocking the calling thread
+     *
+     * @param partialName Substring to lookup in the name term
+     * @param ontologyID the ontology to search, or null or empty to search every ontology
+     * @param reverseKeyOrder sort the results in a reverse order
+     * @param childrenOf a list of IRI for the terms that you want to search under, comma separated
+     * @param options the paging and query field options of this search
+     * @return a future list of the terms found
+     */
+    // Zooma
+    public CompletableFuture<List<Term>> getTermsByNameFromParentAsync(final String partialName, final String ontologyID, final boolean reverseKeyOrder, final String childrenOf, final SearchOptions options) {
+        return supplyAsync(new Supplier<List<Term>>() {
+            @Override public List<Term> get() {
+                return getTermsByName(partialName, ontologyID, reverseKeyOrder, childrenOf, options);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, getAsyncExecutor());
+    }
+
+    private List<Term> searchByPartialTerm(String partialName, String ontology, String childrenOf, SearchOptions options) throws RestClientException {
+        return searchByTerm(partialName, ontology, false, childrenOf, false, options);
+    }
+
+    private List<Term> searchByExactTerm(String exactName, String ontologyId, String childrenOf, SearchOptions options) throws RestClientException {
+        return searchByTerm(exactName, ontologyId, true, childrenOf, false, options);
     }
 
     /**
@@ -267,21 +524,23 @@ public class OLSClient implements Client {
      * @param childrenOf will restrict a search to children of a given term.
      *                   Supply a list of IRI for the terms that you want to search under, comma separated
      * @param obsolete  true if you want to look into obsolete terms
+     * @param options the paging and query field options of this search
      * @return a list of Terms found
      * @throws RestClientException Rest Exception
      */
-    private List<Term> searchByTerm(String termToSearch, String ontology, boolean exact, String childrenOf, boolean obsolete) throws RestClientException {
+    private List<Term> searchByTerm(String termToSearch, String ontology, boolean exact, String childrenOf, boolean obsolete, SearchOptions options) throws RestClientException {
         List<Term> termResults = new ArrayList<>();
         List<SearchResult> terms = new ArrayList<>();
 
-        int pageSize = getSearchPageSize();
+        int pageSize = options.getPageSize();
         if(pageSize <= 0){
             pageSize = Constants.SEARCH_PAGE_SIZE;
         }
+        String queryField = options.getQueryField() != null ? options.getQueryField() : getQueryField();
 
-        SearchQuery currentTermQuery = getSearchQuery(0, termToSearch, ontology, exact, childrenOf, obsolete, pageSize);
+        SearchQuery currentTermQuery = getSearchQuery(0, termToSearch, ontology, exact, childrenOf, obsolete, pageSize, queryField);
 
-        int pageNum = getSearchPageNum();
+        int pageNum = options.getPageNum();
         if (pageNum < 0){
             pageNum = new Integer(currentTermQuery.getResponse().getNumFound() / pageSize);
         }
@@ -292,7 +551,7 @@ public class OLSClient implements Client {
                 int start = 0;
                 for(int i = 0; i < pageNum; i++){
                     start = start + pageSize;
-                    SearchQuery termQuery = getSearchQuery(start, termToSearch, ontology, exact, childrenOf, obsolete, pageSize);
+                    SearchQuery termQuery = getSearchQuery(start, termToSearch, ontology, exact, childrenOf, obsolete, pageSize, queryField);
                     if (termQuery != null && termQuery.getResponse() != null && termQuery.getResponse().getSearchResults() != null){
                         if(termQuery.getResponse().getSearchResults().length == 0) {
                             break;
@@ -438,10 +697,14 @@ public class OLSClient implements Client {
      * @throws RestClientException RestClient Exception
      */
     public SearchQuery getSearchQuery(int page, String name, String ontology, boolean exactMatch, String childrenOf, boolean obsolete, int size) throws RestClientException {
+        return getSearchQuery(page, name, ontology, exactMatch, childrenOf, obsolete, size, this.getQueryField());
+    }
+
+    private SearchQuery getSearchQuery(int page, String name, String ontology, boolean exactMatch, String childrenOf, boolean obsolete, int size, String queryField) throws RestClientException {
         String query;
 
         query = String.format("q=%s&" +
-                        this.getQueryField()
+                        queryField
                         + "&rows=%s&start=%s&"
                         + this.getFieldList() ,
                 name, size, page);
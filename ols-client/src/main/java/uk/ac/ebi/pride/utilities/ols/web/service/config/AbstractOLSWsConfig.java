@@ -1,5 +1,6 @@
 package uk.ac.ebi.pride.utilities.ols.web.service.config;
 
+import uk.ac.ebi.pride.utilities.ols.web.service.utils.Constants;
 
 /**
  * @author ypriverol
@@ -10,6 +11,13 @@ public abstract class AbstractOLSWsConfig {
     private String hostName;
     private String protocol;
 
+    // milliseconds to wait for a connection to OLS, and for a response once connected
+    private int connectTimeout = Constants.CONNECT_TIMEOUT;
+    private int readTimeout = Constants.READ_TIMEOUT;
+
+    // the most connections to OLS kept open at once
+    private int maxConnections = Constants.MAX_CONNECTIONS;
+
     public AbstractOLSWsConfig(String protocol, String hostName) {
         this.hostName = hostName;
         this.protocol = protocol;
@@ -24,4 +32,28 @@ public abstract class AbstractOLSWsConfig {
         return protocol;
     }
 
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
 }
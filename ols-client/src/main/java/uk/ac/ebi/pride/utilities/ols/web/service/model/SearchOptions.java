@@ -0,0 +1,81 @@
+package uk.ac.ebi.pride.utilities.ols.web.service.model;
+
+/**
+ * The paging and query field options of a single search.
+ * <p/>
+ * Options are immutable, and are passed with each search, so that one client can safely run searches with different
+ * options from several threads at once.
+ *
+ * @date 18/10/26
+ */
+public class SearchOptions {
+
+    private final int pageNum;
+    private final int pageSize;
+    private final String queryField;
+
+    private SearchOptions(int pageNum, int pageSize, String queryField) {
+        this.pageNum = pageNum;
+        this.pageSize = pageSize;
+        this.queryField = queryField;
+    }
+
+    /**
+     * @return the number of pages to retrieve after the first, or a negative number to retrieve every page
+     */
+    public int getPageNum() {
+        return pageNum;
+    }
+
+    /**
+     * @return the number of results in each page, or zero or less for the default page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the "queryFields" parameter to search, or null for the client's query field
+     */
+    public String getQueryField() {
+        return queryField;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOptions{" +
+                "pageNum=" + pageNum +
+                ", pageSize=" + pageSize +
+                ", queryField='" + queryField + '\'' +
+                '}';
+    }
+
+    public static class SearchOptionsBuilder {
+
+        private int pageNum = -1;
+        private int pageSize;
+        private String queryField;
+
+        public SearchOptionsBuilder() {
+        }
+
+        public SearchOptions build(){
+            return new SearchOptions(pageNum, pageSize, queryField);
+        }
+
+        public SearchOptionsBuilder setPageNum(int pageNum) {
+            this.pageNum = pageNum;
+            return this;
+        }
+
+        public SearchOptionsBuilder setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public SearchOptionsBuilder setQueryField(String queryField) {
+            this.queryField = queryField;
+            return this;
+        }
+    }
+}
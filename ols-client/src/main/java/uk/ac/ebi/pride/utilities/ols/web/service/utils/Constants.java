@@ -12,4 +12,8 @@ public class Constants {
     public static final String OLS_PROTOCOL = "https";
     public static final String OLS_SERVER = "www.ebi.ac.uk/ols/";
     public static final String OLS_SERVER_DEV = "wwwdev.ebi.ac.uk/ols/";
+    public static final int CONNECT_TIMEOUT = 5000;
+    public static final int READ_TIMEOUT = 30000;
+    public static final int MAX_CONNECTIONS = 20;
+    public static final long ONTOLOGY_REFRESH_INTERVAL = 60 * 60 * 1000;
 }
@@ -55,6 +55,15 @@ public interface AnnotationDAO extends ZoomaDAO<Annotation> {
      */
     Collection<Annotation> readBySemanticTag(URI semanticTagURI);
 
+    /**
+     * Retrieves a collection of annotations from a zooma datasource, limited to those which were obtained from the
+     * annotation source with the given URI.
+     *
+     * @param sourceURI the URI of the source the required annotations were obtained from
+     * @return the collection of annotations obtained from this source
+     */
+    Collection<Annotation> readBySource(URI sourceURI);
+
     /**
      * Inserts the supplied annotations into the zooma datasource.  The provided annotations must all be new
      * annotations that zooma has not seen before.  If an identifiable with the same URI as the supplied one already
@@ -29,6 +29,16 @@ public interface PropertyDAO extends ZoomaDAO<Property> {
      */
     List<String> readTypes(int size, int start);
 
+    /**
+     * Retrieves the properties with any of the given URIs from a zooma datasource.  Implementations should fetch them
+     * together rather than one at a time where possible.  URIs that do not identify a property are ignored, and no
+     * ordering of the results is assumed.
+     *
+     * @param uris the identifiers of the properties to retrieve
+     * @return the properties found
+     */
+    Collection<Property> readByURIs(Collection<URI> uris);
+
     /**
      * Retrieves a property type from a zooma datasource given the properties URI.
      *
@@ -0,0 +1,23 @@
+package uk.ac.ebi.fgpt.zooma.datasource;
+
+import uk.ac.ebi.fgpt.zooma.model.Identifiable;
+
+/**
+ * A data access object that can stream every object in its datasource, in a single pass, through a {@link
+ * ZoomaCursor}.  Implement this alongside {@link ZoomaDAO} when the underlying datasource can produce results
+ * incrementally, so that loading does not need to {@link ZoomaDAO#count()} the datasource first or retrieve it in pages
+ * with {@link ZoomaDAO#read(int, int)}, which for many datasources gets slower the further into the results each page
+ * starts.
+ *
+ * @param <I> the type of identifiable this DAO can stream
+ * @date 18/10/26
+ */
+public interface StreamingDAO<I extends Identifiable> extends ZoomaDAO<I> {
+    /**
+     * Opens a cursor over all objects in this datasource, returning the same objects as {@link #read()}.  No ordering
+     * is assumed.  The caller is responsible for closing the returned cursor.
+     *
+     * @return a cursor over all objects in this datasource
+     */
+    ZoomaCursor<I> openCursor();
+}
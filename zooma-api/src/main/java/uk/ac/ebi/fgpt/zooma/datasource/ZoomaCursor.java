@@ -0,0 +1,22 @@
+package uk.ac.ebi.fgpt.zooma.datasource;
+
+import java.util.Iterator;
+
+/**
+ * A forward-only iterator over the objects read from a ZOOMA datasource.  Cursors allow objects to be retrieved one at a
+ * time, as the datasource produces them, rather than materialising a complete collection or a page of results in
+ * memory.
+ * <p/>
+ * Cursors usually hold resources open in the underlying datasource (for example, an open query or connection), so
+ * clients should always close a cursor once they are finished with it, whether or not it has been exhausted.
+ *
+ * @param <I> the type of object this cursor returns
+ * @date 18/10/26
+ */
+public interface ZoomaCursor<I> extends Iterator<I>, AutoCloseable {
+    /**
+     * Releases any resources held by this cursor in the underlying datasource.  Closing a cursor that is already closed
+     * has no effect.
+     */
+    @Override void close();
+}
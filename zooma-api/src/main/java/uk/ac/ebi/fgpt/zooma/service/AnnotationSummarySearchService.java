@@ -37,6 +37,37 @@ public interface AnnotationSummarySearchService {
      */
     Collection<AnnotationSummary> search(String propertyType, String propertyValuePattern, URI[] sources, URI[] ontologySources);
 
+    /**
+     * Retrieves a collection of annotation summaries that describe annotations about the given property value, as long
+     * as they have been asserted in one of the required supplied sources.  At most <code>limit</code> of the best
+     * matching summaries are returned, so implementations may avoid retrieving summaries that would never be used.
+     *
+     * @param propertyValuePattern the property value to fetch annotation summaries for
+     * @param sources              the URI of the datasources that AnnotationSummaries should be present in
+     * @param limit                the maximum number of summaries to return, or -1 for no limit
+     * @return a collection of annotation summaries about the property with a value matching the given one
+     */
+    Collection<AnnotationSummary> search(String propertyValuePattern, URI[] sources, URI[] ontologySources, int limit);
+
+    /**
+     * Retrieves a collection of annotation summaries that describe annotations about the given property value and type,
+     * as long as they have been asserted in one of the required supplied sources.  At most <code>limit</code> of the
+     * best matching summaries are returned, so implementations may avoid retrieving summaries that would never be
+     * used.
+     *
+     * @param propertyType         the property type to fetch annotation summaries for
+     * @param propertyValuePattern the property value to fetch annotation summaries for
+     * @param sources              the URI of the datasources that AnnotationSummaries should be present in
+     * @param limit                the maximum number of summaries to return, or -1 for no limit
+     * @return a collection of annotation summaries about the property with a value matching the given one and matching
+     * type
+     */
+    Collection<AnnotationSummary> search(String propertyType,
+                                         String propertyValuePattern,
+                                         URI[] sources,
+                                         URI[] ontologySources,
+                                         int limit);
+
     /**
      * Retrieves a collection of annotation summaries that describe annotations about the given property value, as long
      * as they have been asserted in one of the supplied sources
@@ -105,4 +136,39 @@ public interface AnnotationSummarySearchService {
                                                            String propertyValuePattern,
                                                            List<URI> preferredSources,
                                                            URI[] requiredSources, URI[] ontologySources);
+
+    /**
+     * Retrieves a collection of annotation summaries that describe annotations about the given property value, using
+     * the list of supplied sources as a ranking order, as long as they have been asserted in one of the required
+     * sources.  At most <code>limit</code> of the best matching summaries are returned.
+     *
+     * @param propertyValuePattern the property value to fetch annotation summaries for
+     * @param preferredSources     the preferred order of AnnotationSummary datasources
+     * @param requiredSources      the URI of the datasources that AnnotationSummaries should be present in
+     * @param limit                the maximum number of summaries to return, or -1 for no limit
+     * @return a collection of annotation summaries about the property with a value matching the given one
+     */
+    Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
+                                                           List<URI> preferredSources,
+                                                           URI[] requiredSources,
+                                                           URI[] ontologySources,
+                                                           int limit);
+
+    /**
+     * Retrieves a collection of annotation summaries that describe annotations about the given property value and type,
+     * using the list of supplied sources as a ranking order, as long as they have been asserted in one of the required
+     * sources.  At most <code>limit</code> of the best matching summaries are returned.
+     *
+     * @param propertyValuePattern the property value to fetch annotation summaries for
+     * @param preferredSources     the preferred order of AnnotationSummary datasources
+     * @param requiredSources      the URI of the datasources that AnnotationSummaries should be present in
+     * @param limit                the maximum number of summaries to return, or -1 for no limit
+     * @return a collection of annotation summaries about the property with a value matching the given one
+     */
+    Collection<AnnotationSummary> searchByPreferredSources(String propertyType,
+                                                           String propertyValuePattern,
+                                                           List<URI> preferredSources,
+                                                           URI[] requiredSources,
+                                                           URI[] ontologySources,
+                                                           int limit);
 }
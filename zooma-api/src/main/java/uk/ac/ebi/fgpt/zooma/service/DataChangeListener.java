@@ -0,0 +1,16 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+/**
+ * A listener that is notified whenever the data that ZOOMA services search over has changed, for example because a
+ * search service has started searching a newly committed index.  Anything that caches the results of searches should
+ * implement this interface, so that stale results are discarded once new data becomes visible.
+ *
+ * @date 18/10/26
+ */
+public interface DataChangeListener {
+    /**
+     * Called once new data is visible to searches.  Implementations should return quickly, as this may be called on
+     * the thread that made the new data visible.
+     */
+    void dataChanged();
+}
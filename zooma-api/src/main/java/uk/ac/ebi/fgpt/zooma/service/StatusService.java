@@ -1,5 +1,8 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
+import java.net.URI;
+import java.util.Collection;
+
 /**
  * A ZOOMA service that indicates the status of backend services.  This is used to indicate whether ZOOMA is ready to
  * serve requests, or force a reinitialization of backend infrastructure to ZOOMA.
@@ -34,4 +37,24 @@ public interface StatusService {
      * @return a string that can indicate
      */
     String reinitialize();
+
+    /**
+     * Updates ZOOMA for changes to the annotations obtained from a single datasource, without rerunning the full
+     * startup procedure.  All existing data from the source with the given URI should be replaced with the data
+     * currently available from that source, so this can also be used to remove a datasource that no longer contains
+     * any annotations.
+     *
+     * @param sourceURI the URI of the annotation source that has changed
+     * @return a string that can indicate the result of the update
+     */
+    String updateDatasource(URI sourceURI);
+
+    /**
+     * Updates ZOOMA for changes to the annotations with the given URIs, without rerunning the full startup procedure.
+     * Annotations that no longer exist should be removed.
+     *
+     * @param annotationURIs the URIs of annotations that have been created, updated or deleted
+     * @return a string that can indicate the result of the update
+     */
+    String updateAnnotations(Collection<URI> annotationURIs);
 }
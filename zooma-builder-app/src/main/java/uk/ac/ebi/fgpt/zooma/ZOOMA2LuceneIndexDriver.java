@@ -1,34 +1,91 @@
 package uk.ac.ebi.fgpt.zooma;
 
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import uk.ac.ebi.fgpt.zooma.env.ZoomaEnv;
 import uk.ac.ebi.fgpt.zooma.env.ZoomaHome;
+import uk.ac.ebi.fgpt.zooma.service.IndexBuildStatistics;
 import uk.ac.ebi.fgpt.zooma.service.StatusService;
+import uk.ac.ebi.fgpt.zooma.service.ZoomaLuceneIndexer;
 import uk.ac.ebi.fgpt.zooma.util.ProgressLogger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
-import java.nio.file.Path;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * A command line client for ZOOMA 2 that generates lucene indices that are required by the webapp.  You can use this
  * client to pre-generate indices prior to webapp start up.
+ * <p/>
+ * If any datasources or annotation URIs are supplied, existing indices are updated incrementally for just these
+ * datasources or annotations instead of being rebuilt.  Once a full build completes, the throughput of each phase of
+ * the build is reported.
  *
  * @author Tony Burdett
  * @date 28/02/13
  */
 public class ZOOMA2LuceneIndexDriver extends ZOOMA2BackingUpDriver {
     public static void main(String[] args) {
-        if (args.length > 0) {
-            System.err.println("This application does not take any arguments; configuration can be updated in " +
-                                       "$ZOOMA_HOME/config/zooma.properties");
+        Options options = bindOptions();
+        CommandLine cl;
+        try {
+            CommandLineParser parser = new GnuParser();
+            cl = parser.parse(options, args);
+        }
+        catch (ParseException e) {
+            System.err.println("Failed to read supplied arguments (" + e.getMessage() + ")");
+            new HelpFormatter().printHelp("zooma-index", options, true);
+            System.exit(4);
+            return;
+        }
+
+        if (cl.hasOption("h")) {
+            new HelpFormatter().printHelp("zooma-index", options, true);
+        }
+        else if (cl.hasOption("s") || cl.hasOption("a")) {
+            try {
+                Collection<URI> sourceURIs = new ArrayList<>();
+                if (cl.hasOption("s")) {
+                    for (String source : cl.getOptionValues("s")) {
+                        sourceURIs.add(URI.create(source));
+                    }
+                }
+                Collection<URI> annotationURIs = new ArrayList<>();
+                if (cl.hasOption("a")) {
+                    File annotationsFile = new File(cl.getOptionValue("a"));
+                    for (String line : Files.readAllLines(annotationsFile.toPath(), StandardCharsets.UTF_8)) {
+                        if (!line.trim().isEmpty()) {
+                            annotationURIs.add(URI.create(line.trim()));
+                        }
+                    }
+                }
+
+                ZOOMA2LuceneIndexDriver driver = new ZOOMA2LuceneIndexDriver();
+                driver.updateIndices(sourceURIs, annotationURIs);
+                System.out.println("ZOOMA indices updated successfully.");
+            }
+            catch (IOException | IllegalStateException e) {
+                System.err.println("ZOOMA did not complete successfully: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
         }
         else {
             try {
                 final ZOOMA2LuceneIndexDriver driver = new ZOOMA2LuceneIndexDriver();
+                driver.setParallelBuild(cl.hasOption("p"));
                 driver.createOutputDirectory();
 
                 ProgressLogger progress = new ProgressLogger(System.out, "Building ZOOMA indices...", 15) {
@@ -52,6 +109,7 @@ public class ZOOMA2LuceneIndexDriver extends ZOOMA2BackingUpDriver {
                     }
                 }
                 progress.ping();
+                driver.reportThroughput(System.out);
                 System.out.println("ZOOMA indices completed successfully.");
             }
             catch (IOException e) {
@@ -62,9 +120,52 @@ public class ZOOMA2LuceneIndexDriver extends ZOOMA2BackingUpDriver {
         }
     }
 
+    private static Options bindOptions() {
+        Options options = new Options();
+
+        // help
+        Option helpOption = new Option("h", "help", false, "Print the help");
+        options.addOption(helpOption);
+
+        Option sourceOption = new Option(
+                "s",
+                "source",
+                true,
+                "Source - the URI of a datasource whose annotations have changed.  " +
+                        "Existing indices are updated for this datasource only, instead of being rebuilt.  " +
+                        "Can be supplied more than once.");
+        sourceOption.setArgName("uri");
+        sourceOption.setArgs(Option.UNLIMITED_VALUES);
+        sourceOption.setRequired(false);
+        options.addOption(sourceOption);
+
+        Option annotationsOption = new Option(
+                "a",
+                "annotations",
+                true,
+                "Annotations - file listing the URIs of annotations that have been created, updated or deleted, " +
+                        "one per line.  Existing indices are updated for these annotations only, " +
+                        "instead of being rebuilt.");
+        annotationsOption.setArgName("file");
+        annotationsOption.setRequired(false);
+        options.addOption(annotationsOption);
+
+        Option parallelOption = new Option(
+                "p",
+                "parallel",
+                false,
+                "Parallel - build the annotation summary, property and count indices concurrently.");
+        parallelOption.setRequired(false);
+        options.addOption(parallelOption);
+
+        return options;
+    }
+
     private StatusService zoomaStatusService;
+    private ZoomaLuceneIndexer luceneIndexer;
     private File luceneHome;
 
+    private boolean parallelBuild = false;
     private boolean started = false;
 
     public ZOOMA2LuceneIndexDriver() {
@@ -72,6 +173,10 @@ public class ZOOMA2LuceneIndexDriver extends ZOOMA2BackingUpDriver {
         ZoomaHome.checkInstall();
     }
 
+    public void setParallelBuild(boolean parallelBuild) {
+        this.parallelBuild = parallelBuild;
+    }
+
     public void createOutputDirectory() throws IOException {
         luceneHome = FileSystems.getDefault().getPath(System.getProperty("zooma.data.dir"), "index", "lucene").toFile();
         if (luceneHome.exists()) {
@@ -94,6 +199,10 @@ public class ZOOMA2LuceneIndexDriver extends ZOOMA2BackingUpDriver {
                 "file:${zooma.home}/config/spring/zooma-lucene.xml",
                 "file:${zooma.home}/config/spring/zooma-service.xml");
         zoomaStatusService = ctx.getBean("statusService", StatusService.class);
+        luceneIndexer = ctx.getBean("luceneIndexer", ZoomaLuceneIndexer.class);
+        if (parallelBuild) {
+            luceneIndexer.setParallelBuild(true);
+        }
 
         if (zoomaStatusService != null) {
             zoomaStatusService.reinitialize();
@@ -104,4 +213,36 @@ public class ZOOMA2LuceneIndexDriver extends ZOOMA2BackingUpDriver {
     public boolean isComplete() {
         return zoomaStatusService != null && started && zoomaStatusService.checkStatus() && luceneHome.exists();
     }
+
+    public void reportThroughput(PrintStream out) {
+        if (luceneIndexer != null) {
+            out.println("Index build throughput:");
+            for (IndexBuildStatistics.Phase phase : luceneIndexer.getBuildStatistics().getPhases()) {
+                out.println("\t" + phase);
+            }
+        }
+    }
+
+    public void updateIndices(Collection<URI> sourceURIs, Collection<URI> annotationURIs) throws IOException {
+        // load spring config to obtain the lucene indexer, without rebuilding
+        ClassPathXmlApplicationContext ctx = new ClassPathXmlApplicationContext(
+                "file:${zooma.home}/config/spring/zooma-dao.xml",
+                "file:${zooma.home}/config/spring/zooma-build.xml",
+                "file:${zooma.home}/config/spring/zooma-lucene.xml",
+                "file:${zooma.home}/config/spring/zooma-service.xml");
+        try {
+            ZoomaLuceneIndexer indexer = ctx.getBean("luceneIndexer", ZoomaLuceneIndexer.class);
+            for (URI sourceURI : sourceURIs) {
+                System.out.println("Updating ZOOMA indices for datasource <" + sourceURI + ">...");
+                indexer.updateDatasourceIndices(sourceURI);
+            }
+            if (!annotationURIs.isEmpty()) {
+                System.out.println("Updating ZOOMA indices for " + annotationURIs.size() + " annotations...");
+                indexer.updateAnnotationIndices(annotationURIs);
+            }
+        }
+        finally {
+            ctx.close();
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package uk.ac.ebi.fgpt.zooma.search;
+
+import uk.ac.ebi.fgpt.zooma.model.AnnotationPrediction;
+import uk.ac.ebi.fgpt.zooma.model.Property;
+
+import java.util.List;
+
+/**
+ * Receives the results of a batch annotation request made with {@link ZOOMASearchClient}, as each result arrives.
+ * Exactly one of these methods is called for every property in the batch, in the order that ZOOMA completes searches.
+ *
+ * @date 18/10/26
+ */
+public interface AnnotationBatchListener {
+    /**
+     * Called when the search for a property completes
+     *
+     * @param property    the property that was searched for
+     * @param predictions the predicted annotations for this property, which may be empty
+     */
+    void annotated(Property property, List<AnnotationPrediction> predictions);
+
+    /**
+     * Called when the search for a property failed or timed out
+     *
+     * @param property the property that was searched for
+     * @param message  a description of the failure
+     */
+    void failed(Property property, String message);
+}
@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.ebi.fgpt.zooma.exception.SearchException;
 import uk.ac.ebi.fgpt.zooma.model.Annotation;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationBatchRequest;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationPrediction;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationProvenance;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationSource;
@@ -25,10 +26,15 @@ import uk.ac.ebi.fgpt.zooma.model.Study;
 import uk.ac.ebi.fgpt.zooma.model.TypedProperty;
 import uk.ac.ebi.fgpt.zooma.util.URIUtils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -54,6 +60,7 @@ public class ZOOMASearchClient {
 
     private final String zoomaServicesBase;
     private final String zoomaAnnotateServiceBase;
+    private final String zoomaAnnotateBatchServiceBase;
 
     private final String zoomaPropertyValueArgument;
     private final String zoomaPropertyTypeArgument;
@@ -81,6 +88,7 @@ public class ZOOMASearchClient {
 
         this.zoomaServicesBase = zoomaBase + "services/";
         this.zoomaAnnotateServiceBase = zoomaServicesBase + "annotate?";
+        this.zoomaAnnotateBatchServiceBase = zoomaServicesBase + "annotate/batch";
 
         this.zoomaPropertyValueArgument = "propertyValue=";
         this.zoomaPropertyTypeArgument = "propertyType=";
@@ -136,31 +144,8 @@ public class ZOOMASearchClient {
                     URLEncoder.encode(((TypedProperty) property).getPropertyType(), "UTF-8")
                     : searchUrl;
             if (!requiredSources.isEmpty() || !preferredSources.isEmpty()) {
-                StringBuilder filters = new StringBuilder();
-                filters.append(zoomaArgumentSeparator).append(zoomaFilterArgument);
-                if (!requiredSources.isEmpty()) {
-                    filters.append(zoomaRequiredParam).append(zoomaFilterParamStart);
-                    Iterator<String> requiredIt = requiredSources.iterator();
-                    while (requiredIt.hasNext()) {
-                        filters.append(requiredIt.next());
-                        if (requiredIt.hasNext()) {
-                            filters.append(zoomaFilterParamSeparator);
-                        }
-                    }
-                    filters.append(zoomaFilterParamEnd);
-                }
-                if (!preferredSources.isEmpty()) {
-                    filters.append(zoomaPreferredParam).append(zoomaFilterParamStart);
-                    Iterator<String> preferredIt = preferredSources.iterator();
-                    while (preferredIt.hasNext()) {
-                        filters.append(preferredIt.next());
-                        if (preferredIt.hasNext()) {
-                            filters.append(zoomaFilterParamSeparator);
-                        }
-                    }
-                    filters.append(zoomaFilterParamEnd);
-                }
-                searchUrl = searchUrl.concat(filters.toString());
+                searchUrl = searchUrl + zoomaArgumentSeparator + zoomaFilterArgument +
+                        createFilter(requiredSources, preferredSources);
             }
             URL queryURL = new URL(searchUrl);
             getLog().trace("Sending query [" + queryURL + "]...");
@@ -176,6 +161,89 @@ public class ZOOMASearchClient {
         }
     }
 
+    public void annotate(List<Property> properties, AnnotationBatchListener listener) {
+        annotate(properties, Collections.<String>emptyList(), Collections.<String>emptyList(), listener);
+    }
+
+    /**
+     * Annotates a batch of properties with a single request to ZOOMA.  Results are passed to the supplied listener as
+     * they arrive, so results for properties that are quick to annotate can be handled whilst others are still being
+     * searched for.
+     * <p/>
+     * Every property is reported to the listener exactly once: if the request fails part way through, properties
+     * without results are reported as failed.
+     *
+     * @param properties       the properties to annotate
+     * @param requiredSources  the list of sources which are required in making an annotation prediction
+     * @param preferredSources the list of sources, in order of preference, to predict an annotation from
+     * @param listener         the listener that receives the result for each property
+     */
+    public void annotate(List<Property> properties,
+                         List<String> requiredSources,
+                         List<String> preferredSources,
+                         AnnotationBatchListener listener) {
+        boolean[] reported = new boolean[properties.size()];
+        try {
+            AnnotationBatchRequest request = new AnnotationBatchRequest();
+            request.setFilter(createFilter(requiredSources, preferredSources));
+            for (Property property : properties) {
+                String propertyType = property instanceof TypedProperty
+                        ? ((TypedProperty) property).getPropertyType()
+                        : null;
+                request.getItems().add(new AnnotationBatchRequest.Item(propertyType, property.getPropertyValue()));
+            }
+
+            URL batchURL = new URL(zoomaAnnotateBatchServiceBase);
+            getLog().trace("Sending batch of " + properties.size() + " properties to [" + batchURL + "]...");
+            HttpURLConnection connection = (HttpURLConnection) batchURL.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+
+            ObjectMapper mapper = new ObjectMapper();
+            try (OutputStream out = connection.getOutputStream()) {
+                mapper.writeValue(out, request);
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("ZOOMA responded with HTTP " + connection.getResponseCode() + " " +
+                                              connection.getResponseMessage());
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                                                                                   StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    JsonNode resultNode = mapper.readTree(line);
+                    int index = resultNode.get("index").asInt();
+                    reported[index] = true;
+                    if (resultNode.get("status").asText().equals("OK")) {
+                        List<AnnotationPrediction> predictions =
+                                mapper.convertValue(resultNode.get("predictions"),
+                                                    new TypeReference<List<SimpleAnnotationPrediction>>() {});
+                        listener.annotated(properties.get(index), predictions);
+                    }
+                    else {
+                        listener.failed(properties.get(index), resultNode.get("message").asText());
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            getLog().error("Failed to query ZOOMA for a batch of " + properties.size() + " properties " +
+                                   "(" + e.getMessage() + ")");
+        }
+
+        for (int i = 0; i < reported.length; i++) {
+            if (!reported[i]) {
+                listener.failed(properties.get(i), "No result was returned for property " +
+                        "'" + properties.get(i).getPropertyValue() + "'");
+            }
+        }
+    }
+
     public Annotation getAnnotation(URI annotationURI) {
         try {
             String shortname = lookupShortname(annotationURI);
@@ -311,6 +379,33 @@ public class ZOOMASearchClient {
         return labelMap.get("synonyms");
     }
 
+    private String createFilter(List<String> requiredSources, List<String> preferredSources) {
+        StringBuilder filters = new StringBuilder();
+        if (!requiredSources.isEmpty()) {
+            filters.append(zoomaRequiredParam).append(zoomaFilterParamStart);
+            Iterator<String> requiredIt = requiredSources.iterator();
+            while (requiredIt.hasNext()) {
+                filters.append(requiredIt.next());
+                if (requiredIt.hasNext()) {
+                    filters.append(zoomaFilterParamSeparator);
+                }
+            }
+            filters.append(zoomaFilterParamEnd);
+        }
+        if (!preferredSources.isEmpty()) {
+            filters.append(zoomaPreferredParam).append(zoomaFilterParamStart);
+            Iterator<String> preferredIt = preferredSources.iterator();
+            while (preferredIt.hasNext()) {
+                filters.append(preferredIt.next());
+                if (preferredIt.hasNext()) {
+                    filters.append(zoomaFilterParamSeparator);
+                }
+            }
+            filters.append(zoomaFilterParamEnd);
+        }
+        return filters.toString();
+    }
+
     private String lookupShortname(URI uri) {
         // try to recover URI
         String shortname;
@@ -0,0 +1,151 @@
+package uk.ac.ebi.fgpt.zooma.search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationPrediction;
+import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.model.SimpleTypedProperty;
+import uk.ac.ebi.fgpt.zooma.model.SimpleUntypedProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestZOOMASearchClient {
+    private HttpServer server;
+    private ZOOMASearchClient client;
+
+    private List<Property> properties;
+    private String requestBody;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+        client = new ZOOMASearchClient(new URL("http://localhost:" + server.getAddress().getPort() + "/zooma"));
+        properties = Arrays.<Property>asList(new SimpleUntypedProperty("liver"),
+                                             new SimpleTypedProperty("organism part", "heart"),
+                                             new SimpleUntypedProperty("kidney"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testResultsAreStreamedToListener() {
+        final CountDownLatch firstResultReceived = new CountDownLatch(1);
+        final boolean[] streamed = new boolean[1];
+        serveBatch(new ResultWriter() {
+            @Override public void writeResults(OutputStream out) throws IOException, InterruptedException {
+                writeLine(out, "{\"index\":1,\"status\":\"OK\",\"message\":null,\"predictions\":[]}");
+                // the client should see the first result whilst the rest are still being searched for
+                streamed[0] = firstResultReceived.await(5, TimeUnit.SECONDS);
+                writeLine(out, "{\"index\":0,\"status\":\"TIMEOUT\",\"message\":\"Search took too long\"," +
+                        "\"predictions\":[]}");
+                writeLine(out, "{\"index\":2,\"status\":\"ERROR\",\"message\":\"Search failed\"," +
+                        "\"predictions\":[]}");
+            }
+        });
+
+        RecordingListener listener = new RecordingListener(firstResultReceived);
+        client.annotate(properties, listener);
+
+        assertTrue(streamed[0], "The first result was not passed to the listener until the response was complete");
+        assertEquals(Arrays.asList("annotated heart (0 predictions)",
+                                   "failed liver (Search took too long)",
+                                   "failed kidney (Search failed)"),
+                     listener.events);
+        assertTrue(requestBody.contains("\"organism part\""), "Property types should be sent to ZOOMA");
+    }
+
+    @Test
+    public void testPropertiesWithoutResultsAreReportedAsFailed() {
+        serveBatch(new ResultWriter() {
+            @Override public void writeResults(OutputStream out) throws IOException {
+                writeLine(out, "{\"index\":2,\"status\":\"OK\",\"message\":null,\"predictions\":[]}");
+            }
+        });
+
+        RecordingListener listener = new RecordingListener(new CountDownLatch(1));
+        client.annotate(properties, listener);
+
+        assertEquals(3, listener.events.size(), "Every property should be reported exactly once");
+        assertEquals("annotated kidney (0 predictions)", listener.events.get(0));
+        assertTrue(listener.events.get(1).startsWith("failed liver (No result was returned"));
+        assertTrue(listener.events.get(2).startsWith("failed heart (No result was returned"));
+    }
+
+    private void serveBatch(final ResultWriter resultWriter) {
+        server.createContext("/zooma/v2/api/services/annotate/batch", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                requestBody = read(exchange.getRequestBody());
+                exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+                // a length of 0 sends a chunked response, so each line is sent as soon as it is flushed
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    resultWriter.writeResults(out);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private interface ResultWriter {
+        void writeResults(OutputStream out) throws IOException, InterruptedException;
+    }
+
+    private static class RecordingListener implements AnnotationBatchListener {
+        private final CountDownLatch firstResultReceived;
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        private RecordingListener(CountDownLatch firstResultReceived) {
+            this.firstResultReceived = firstResultReceived;
+        }
+
+        @Override public void annotated(Property property, List<AnnotationPrediction> predictions) {
+            events.add("annotated " + property.getPropertyValue() + " (" + predictions.size() + " predictions)");
+            firstResultReceived.countDown();
+        }
+
+        @Override public void failed(Property property, String message) {
+            events.add("failed " + property.getPropertyValue() + " (" + message + ")");
+            firstResultReceived.countDown();
+        }
+    }
+}
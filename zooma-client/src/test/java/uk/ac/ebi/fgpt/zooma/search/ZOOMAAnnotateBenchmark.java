@@ -0,0 +1,131 @@
+package uk.ac.ebi.fgpt.zooma.search;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the latency of the ZOOMA annotate endpoint under concurrent load, reporting throughput and the 50th, 90th
+ * and 99th percentile latencies.  Run it against servers configured with different index storage (see
+ * <code>zooma.lucene.storage.*</code>) to compare them.
+ * <p/>
+ * Usage: <code>ZOOMAAnnotateBenchmark zoomaURL propertiesFile [threads] [requestsPerThread]</code>, where the
+ * properties file has one property per line, either as a value alone or as a type and value separated by a tab.  Every
+ * property is requested once before timing starts, so that each storage is measured with a warm cache.
+ *
+ * @date 18/10/26
+ */
+public class ZOOMAAnnotateBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ZOOMAAnnotateBenchmark zoomaURL propertiesFile [threads] [requestsPerThread]");
+            System.exit(1);
+        }
+        String annotateBase = args[0] + "/v2/api/services/annotate?";
+        final List<String> queries = readQueries(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        final int requestsPerThread = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+
+        final List<URL> urls = new ArrayList<>();
+        for (String query : queries) {
+            urls.add(new URL(annotateBase + query));
+        }
+
+        System.out.println("Warming up with " + urls.size() + " properties...");
+        for (URL url : urls) {
+            request(url);
+        }
+
+        System.out.println("Running " + threads + " threads, " + requestsPerThread + " requests each...");
+        final long[] latencies = new long[threads * requestsPerThread];
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override public void run() {
+                    try {
+                        for (int i = 0; i < requestsPerThread; i++) {
+                            // each thread works through the properties from a different offset
+                            URL url = urls.get((thread * 31 + i) % urls.size());
+                            long requestStart = System.nanoTime();
+                            if (!request(url)) {
+                                errors.incrementAndGet();
+                            }
+                            latencies[thread * requestsPerThread + i] = System.nanoTime() - requestStart;
+                        }
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }, "benchmark-" + t).start();
+        }
+        done.await();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.println("Requests:   " + latencies.length + " (" + errors.get() + " failed)");
+        System.out.println("Throughput: " + String.format("%.1f", latencies.length / elapsedSeconds) + " requests/s");
+        System.out.println("p50:        " + percentile(latencies, 50) + "ms");
+        System.out.println("p90:        " + percentile(latencies, 90) + "ms");
+        System.out.println("p99:        " + percentile(latencies, 99) + "ms");
+        System.out.println("max:        " + latencies[latencies.length - 1] / 1000000 + "ms");
+    }
+
+    private static List<String> readQueries(String file) throws IOException {
+        List<String> queries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                String query = "propertyValue=" + URLEncoder.encode(fields[fields.length - 1].trim(), "UTF-8");
+                if (fields.length > 1) {
+                    query += "&propertyType=" + URLEncoder.encode(fields[0].trim(), "UTF-8");
+                }
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    private static boolean request(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try (InputStream in = connection.getResponseCode() < 400
+                    ? connection.getInputStream()
+                    : connection.getErrorStream()) {
+                // read the whole response, so that the connection can be reused
+                byte[] buffer = new byte[8192];
+                while (in != null && in.read(buffer) != -1) {
+                    // discard
+                }
+            }
+            return connection.getResponseCode() < 400;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long percentile(long[] sortedLatencies, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1000000;
+    }
+}
@@ -1,5 +1,6 @@
 package uk.ac.ebi.fgpt.zooma.access;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.CharMatcher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -7,37 +8,40 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchAdmissionController;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchAdmissionController.Lane;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchTask;
 import uk.ac.ebi.fgpt.zooma.exception.QueryCreationException;
 import uk.ac.ebi.fgpt.zooma.exception.SearchException;
 import uk.ac.ebi.fgpt.zooma.exception.SearchResourcesUnavailableException;
 import uk.ac.ebi.fgpt.zooma.exception.SearchTimeoutException;
 import uk.ac.ebi.fgpt.zooma.model.*;
 import uk.ac.ebi.fgpt.zooma.util.AnnotationPredictionBuilder;
+import uk.ac.ebi.fgpt.zooma.util.AnnotationPredictionCache;
 import uk.ac.ebi.fgpt.zooma.util.ZoomaUtils;
 
 import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * Entry point for the ZOOMA application with the most commonly used functionality incorporated.  You can use this class
@@ -62,7 +66,24 @@ public class Zooma extends SourceFilteredEndpoint {
     // max time zooma will allow queries to run for - includes Lucene query, retrieval and queueing time
     private final float searchTimeout;
 
-    private final ExecutorService executorService;
+    // fraction of the search timeout available to search services; the rest is reserved for building predictions
+    private final float searchBudgetFraction;
+
+    // max number of annotation summaries retrieved and scored for each select or annotate request (-1 for no limit)
+    private final int searchLimit;
+
+    // max number of searches from a single batch request that may be queued or running at once
+    private final int batchConcurrency;
+
+    // admits interactive and batch searches onto the search threads, shedding load when overloaded
+    private final SearchAdmissionController admissionController;
+
+    // optional cache of annotate results, shared by identical concurrent requests
+    private AnnotationPredictionCache annotationPredictionCache;
+
+    private final ObjectMapper batchResultMapper = new ObjectMapper();
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
 
     @Autowired
     public Zooma(ZoomaProperties zoomaProperties,
@@ -77,42 +98,44 @@ public class Zooma extends SourceFilteredEndpoint {
         this.searchTimeout = Float.parseFloat(configuration.getProperty("zooma.search.timeout")) * 1000;
         this.olsTopScore = Float.parseFloat(configuration.getProperty("zooma.search.ols.cutoff.score"));
         this.olsTermLocation = configuration.getProperty("ols.term.location");
+        this.searchLimit = Integer.parseInt(configuration.getProperty("zooma.search.limit", "-1"));
+        this.searchBudgetFraction = Float.parseFloat(configuration.getProperty("zooma.search.budget.fraction", "0.8"));
 
         int concurrency = Integer.parseInt(configuration.getProperty("zooma.search.concurrent.threads"));
         int queueSize = Integer.parseInt(configuration.getProperty("zooma.search.max.queue"));
-        final AtomicInteger atomicInteger = new AtomicInteger(1);
+        this.batchConcurrency = Integer.parseInt(configuration.getProperty("zooma.search.batch.concurrency",
+                                                                           Integer.toString(concurrency)));
+
+        this.admissionController = new SearchAdmissionController("request-processing-thread", concurrency, queueSize);
+        admissionController.setTargetLatency((long) (searchTimeout / 2));
+        // interactive searches that cannot start within half the timeout are unlikely to finish in time, so shed them
+        admissionController.setMaxQueueTime(Lane.INTERACTIVE, (long) (searchTimeout / 2));
+        admissionController.setMaxQueueTime(Lane.BULK, (long) searchTimeout);
+        admissionController.setConfigurationProperties(configuration);
+    }
 
-        BlockingQueue<Runnable> workQueue;
-        if (queueSize == -1) {
-            workQueue = new LinkedBlockingDeque<>();
-        }
-        else if (queueSize == 0) {
-            workQueue = new SynchronousQueue<>();
-        }
-        else {
-            workQueue = new ArrayBlockingQueue<>(queueSize);
-        }
-
-        this.executorService =
-                new ThreadPoolExecutor(
-                        concurrency,
-                        concurrency,
-                        0L,
-                        TimeUnit.MILLISECONDS,
-                        workQueue,
-                        new ThreadFactory() {
-                            @Override public Thread newThread(Runnable r) {
-                                return new Thread(r, "request-processing-thread-" + atomicInteger.getAndIncrement());
-                            }
-                        },
-                        new RejectedExecutionHandler() {
-                            @Override
-                            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                                getLog().warn("Request rejected - " +
-                                                      "queued requests: " + executor.getQueue().size() + "; " +
-                                                      "completed requests: " + executor.getCompletedTaskCount());
-                            }
-                        });
+    public SearchAdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    public AnnotationPredictionCache getAnnotationPredictionCache() {
+        return annotationPredictionCache;
+    }
+
+    @Autowired(required = false)
+    public void setAnnotationPredictionCache(AnnotationPredictionCache annotationPredictionCache) {
+        this.annotationPredictionCache = annotationPredictionCache;
+    }
+
+    /**
+     * Returns statistics describing the load on the annotate search threads, including the current concurrency limit
+     * and, for interactive and batch searches, the number queued, running, rejected and shed
+     *
+     * @return a map of statistic names to values
+     */
+    @RequestMapping(value = "/check-status/admission", method = RequestMethod.GET)
+    public @ResponseBody Map<String, Object> admissionStatusEndpoint() {
+        return admissionController.getStatistics();
     }
 
     @RequestMapping(value = "/suggest", method = RequestMethod.GET)
@@ -204,18 +227,18 @@ public class Zooma extends SourceFilteredEndpoint {
     }
 
     public List<AnnotationSummary> select(String propertyValue, URI[] sources, URI[] ontologySources) {
-        return extractAnnotationSummaryList(zoomaAnnotationSummaries.queryAndScore(propertyValue, sources, ontologySources));
+        return extractAnnotationSummaryList(zoomaAnnotationSummaries.queryAndScore(propertyValue, sources, ontologySources, searchLimit));
     }
 
     public List<AnnotationSummary> select(String propertyValue, String propertyType, URI[] sources, URI[] ontologySources) {
-        return extractAnnotationSummaryList(zoomaAnnotationSummaries.queryAndScore(propertyValue, propertyType, sources, ontologySources));
+        return extractAnnotationSummaryList(zoomaAnnotationSummaries.queryAndScore(propertyValue, propertyType, sources, ontologySources, searchLimit));
     }
 
     public List<AnnotationSummary> selectFromSources(String propertyValue, URI[] requiredSources, URI[] ontologySources) {
         return extractAnnotationSummaryList(zoomaAnnotationSummaries.queryAndScore(propertyValue,
                                                                                    "",
                                                                                    Collections.<URI>emptyList(),
-                                                                                   requiredSources, ontologySources));
+                                                                                   requiredSources, ontologySources, searchLimit));
     }
 
     public List<AnnotationSummary> selectFromSources(String propertyValue,
@@ -224,7 +247,7 @@ public class Zooma extends SourceFilteredEndpoint {
         return extractAnnotationSummaryList(zoomaAnnotationSummaries.queryAndScore(propertyValue,
                                                                                    propertyType,
                                                                                    Collections.<URI>emptyList(),
-                                                                                   requiredSources, ontologySources));
+                                                                                   requiredSources, ontologySources, searchLimit));
     }
 
 //    @RequestMapping(value = "/search", method = RequestMethod.GET)
@@ -283,72 +306,434 @@ public class Zooma extends SourceFilteredEndpoint {
         }
     }
 
-    public List<AnnotationPrediction> annotate(final String propertyValue, final URI[] sources, final URI[] ontologySources) {
-        Future<List<AnnotationPrediction>> f = executorService.submit(
-                new Callable<List<AnnotationPrediction>>() {
-                    @Override
-                    public List<AnnotationPrediction> call() throws Exception {
-                        Map<AnnotationSummary, Float> summaries = zoomaAnnotationSummaries.queryAndScore(propertyValue, sources, ontologySources);
-                        return createPredictions(propertyValue, null, summaries);
-                    }
-                }
-        );
+    public List<AnnotationPrediction> annotate(String propertyValue, URI[] sources, URI[] ontologySources) {
+        return annotate(propertyValue,
+                        null,
+                        true,
+                        Collections.<URI>emptyList(),
+                        sources,
+                        ontologySources);
+    }
+
+    public List<AnnotationPrediction> annotate(String propertyValue,
+                                               String propertyType,
+                                               URI[] sources,
+                                               URI[] ontologySources) {
+        return annotate(propertyValue,
+                        propertyType,
+                        true,
+                        Collections.<URI>emptyList(),
+                        sources,
+                        ontologySources);
+    }
 
+    public List<AnnotationPrediction> annotate(String propertyValue,
+                                               List<URI> preferredSources,
+                                               URI[] requiredSources,
+                                               URI[] ontologySources) {
+        return annotate(propertyValue,
+                        null,
+                        false,
+                        preferredSources,
+                        requiredSources,
+                        ontologySources);
+    }
+
+    public List<AnnotationPrediction> annotate(String propertyValue,
+                                               String propertyType,
+                                               List<URI> preferredSources,
+                                               URI[] requiredSources,
+                                               URI[] ontologySources) {
+        return annotate(propertyValue,
+                        propertyType,
+                        false,
+                        preferredSources,
+                        requiredSources,
+                        ontologySources);
+    }
+
+    private List<AnnotationPrediction> annotate(String propertyValue,
+                                                String propertyType,
+                                                boolean unrestricted,
+                                                List<URI> preferredSources,
+                                                URI[] requiredSources,
+                                                URI[] ontologySources) {
+        Callable<List<AnnotationPrediction>> search = createSearch(propertyValue,
+                                                                   propertyType,
+                                                                   unrestricted,
+                                                                   preferredSources,
+                                                                   requiredSources,
+                                                                   ontologySources);
+        Future<List<AnnotationPrediction>> f;
+        if (annotationPredictionCache != null) {
+            String key = createSearchKey(propertyValue,
+                                         propertyType,
+                                         unrestricted,
+                                         preferredSources,
+                                         requiredSources,
+                                         ontologySources);
+            f = annotationPredictionCache.get(key, search, admissionController.getExecutor(Lane.INTERACTIVE));
+        }
+        else {
+            SearchTask<List<AnnotationPrediction>> task = new SearchTask<>(search);
+            admissionController.execute(task, Lane.INTERACTIVE);
+            f = task;
+        }
         return waitForResults(f, propertyValue);
     }
 
-    public List<AnnotationPrediction> annotate(final String propertyValue, final String propertyType, final URI[] sources, final URI[] ontologySources) {
-        Future<List<AnnotationPrediction>> f = executorService.submit(
-                new Callable<List<AnnotationPrediction>>() {
-                    @Override
-                    public List<AnnotationPrediction> call() throws Exception {
-                        Map<AnnotationSummary, Float> summaries = zoomaAnnotationSummaries.queryAndScore(propertyValue,
-                                                                                                         propertyType, sources, ontologySources);
-                        return createPredictions(propertyValue, propertyType, summaries);
+    /**
+     * Annotates a batch of properties, all using the same filter, and streams the results back as newline delimited
+     * JSON (one {@link AnnotationBatchResult} per line) in the order that searches complete.  Identical properties
+     * are only searched once, and every item in the batch gets a result line even if its search fails or times out.
+     * Searches go through the annotation prediction cache, so they share cached predictions and in-flight searches
+     * with single annotation requests.
+     *
+     * @param request  the properties to annotate and the filter to use
+     * @param response the response to write results to
+     * @throws IOException if results could not be written to the response
+     */
+    @RequestMapping(value = "/annotate/batch", method = RequestMethod.POST)
+    public void batchAnnotationEndpoint(@RequestBody AnnotationBatchRequest request,
+                                        HttpServletResponse response) throws IOException {
+        String filter = request.getFilter() == null ? "" : request.getFilter();
+        SearchType searchType = validateFilterArguments(filter);
+        URI[] requiredSources = new URI[0];
+        URI[] ontologySources = parseOntologySourcesFromFilter(filter);
+        List<URI> preferredSources = Collections.emptyList();
+        switch (searchType) {
+            case REQUIRED_ONLY:
+                requiredSources = parseRequiredSourcesFromFilter(filter);
+                break;
+            case REQUIRED_AND_PREFERRED:
+                requiredSources = parseRequiredSourcesFromFilter(filter);
+            case PREFERRED_ONLY:
+                preferredSources = parsePreferredSourcesFromFilter(filter);
+                break;
+            case UNRESTRICTED:
+            default:
+                break;
+        }
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        annotateBatch(request.getItems(),
+                      searchType == SearchType.UNRESTRICTED,
+                      preferredSources,
+                      requiredSources,
+                      ontologySources,
+                      response.getOutputStream());
+    }
+
+    private void annotateBatch(List<AnnotationBatchRequest.Item> items,
+                               boolean unrestricted,
+                               List<URI> preferredSources,
+                               URI[] requiredSources,
+                               URI[] ontologySources,
+                               OutputStream out) throws IOException {
+        // group identical properties, so each distinct property is only searched once
+        Map<String, BatchQuery> queries = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            AnnotationBatchRequest.Item item = items.get(i);
+            String propertyType = item.getPropertyType() == null
+                    ? null
+                    : normalizeWhitespace(item.getPropertyType());
+            String propertyValue = item.getPropertyValue() == null
+                    ? ""
+                    : normalizeWhitespace(removeProblematicCharacters(item.getPropertyValue()));
+            String key = propertyType == null ? "\u0000" + propertyValue : propertyType + "\u0001" + propertyValue;
+            BatchQuery query = queries.get(key);
+            if (query == null) {
+                query = new BatchQuery(propertyType, propertyValue);
+                queries.put(key, query);
+            }
+            query.indices.add(i);
+        }
+        getLog().debug("Batch of " + items.size() + " properties contains " + queries.size() + " distinct searches");
+
+        // submit searches a few at a time, so that one batch cannot fill the search queue
+        BlockingQueue<BatchQuery> completed = new LinkedBlockingQueue<>();
+        Map<BatchQuery, Future<List<AnnotationPrediction>>> inFlight = new LinkedHashMap<>();
+        Iterator<BatchQuery> pending = queries.values().iterator();
+        BatchQuery rejected = null;
+        try {
+            while (rejected != null || pending.hasNext() || !inFlight.isEmpty()) {
+                while ((rejected != null || pending.hasNext()) && inFlight.size() < batchConcurrency) {
+                    BatchQuery query = rejected != null ? rejected : pending.next();
+                    rejected = null;
+                    if (query.propertyValue.isEmpty()) {
+                        writeBatchResults(out, items, query, AnnotationBatchResult.Status.ERROR,
+                                          "No property value was supplied", null);
+                        continue;
+                    }
+                    query.deadline = System.currentTimeMillis() + (long) searchTimeout;
+                    Future<List<AnnotationPrediction>> f;
+                    try {
+                        f = submitBatchSearch(query,
+                                              unrestricted,
+                                              preferredSources,
+                                              requiredSources,
+                                              ontologySources,
+                                              completed);
                     }
+                    catch (RejectedExecutionException e) {
+                        if (inFlight.isEmpty()) {
+                            writeBatchResults(out, items, query, AnnotationBatchResult.Status.REJECTED,
+                                              e.getMessage(), null);
+                        }
+                        else {
+                            // back off until one of this batch's searches completes, then try again
+                            rejected = query;
+                            break;
+                        }
+                        continue;
+                    }
+                    inFlight.put(query, f);
+                }
+                if (inFlight.isEmpty()) {
+                    continue;
                 }
-        );
 
-        return waitForResults(f, propertyValue);
-    }
+                // searches are submitted in order, so the first in flight is the next to run out of time
+                Map.Entry<BatchQuery, Future<List<AnnotationPrediction>>> oldest =
+                        inFlight.entrySet().iterator().next();
+                long remaining = oldest.getKey().deadline - System.currentTimeMillis();
+                BatchQuery query = completed.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                if (query == null) {
+                    if (!oldest.getValue().cancel(true)) {
+                        getLog().warn("Failed cancelling thread for search with propertyValue = " +
+                                              oldest.getKey().propertyValue);
+                    }
+                    inFlight.remove(oldest.getKey());
+                    writeBatchResults(out, items, oldest.getKey(), AnnotationBatchResult.Status.TIMEOUT,
+                                      "Search for '" + oldest.getKey().propertyValue + "' took too long", null);
+                    continue;
+                }
 
-    public List<AnnotationPrediction> annotate(final String propertyValue,
-                                               final List<URI> preferredSources,
-                                               final URI[] requiredSources, final URI[] ontologySources) {
-        Future<List<AnnotationPrediction>> f = executorService.submit(
-                new Callable<List<AnnotationPrediction>>() {
-                    @Override
-                    public List<AnnotationPrediction> call() throws Exception {
-                        Map<AnnotationSummary, Float> summaries = zoomaAnnotationSummaries.queryAndScore(propertyValue,
-                                                                                                         "",
-                                                                                                         preferredSources,
-                                                                                                         requiredSources, ontologySources);
-                        return createPredictions(propertyValue, null, summaries);
+                Future<List<AnnotationPrediction>> f = inFlight.remove(query);
+                if (f == null) {
+                    // a search that was cancelled after timing out, and has already been reported
+                    continue;
+                }
+                try {
+                    writeBatchResults(out, items, query, AnnotationBatchResult.Status.OK, null, f.get());
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof RejectedExecutionException) {
+                        // shed by the admission controller after queueing for too long
+                        writeBatchResults(out, items, query, AnnotationBatchResult.Status.REJECTED,
+                                          e.getCause().getMessage(), null);
+                    }
+                    else {
+                        getLog().debug("Search for '" + query.propertyValue + "' in batch failed", e.getCause());
+                        writeBatchResults(out, items, query, AnnotationBatchResult.Status.ERROR,
+                                          "Failed to complete a search for '" + query.propertyValue + "' " +
+                                                  "(" + e.getCause().getMessage() + ")", null);
                     }
                 }
-        );
-        return waitForResults(f, propertyValue);
+                catch (CancellationException e) {
+                    writeBatchResults(out, items, query, AnnotationBatchResult.Status.ERROR,
+                                      "Search for '" + query.propertyValue + "' was cancelled", null);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            getLog().warn("Interrupted whilst waiting for a batch of searches to complete");
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            // if the client has gone away or we were interrupted, don't leave searches running
+            for (Future<List<AnnotationPrediction>> f : inFlight.values()) {
+                f.cancel(true);
+            }
+        }
     }
 
-    public List<AnnotationPrediction> annotate(final String propertyValue,
-                                               final String propertyType,
-                                               final List<URI> preferredSources,
-                                               final URI[] requiredSources, final URI[] ontologySources) {
+    /**
+     * Submits the search for a query in a batch, sharing the result with identical searches through the annotation
+     * prediction cache if there is one.  The query is added to the completed queue once its result is available.
+     */
+    private Future<List<AnnotationPrediction>> submitBatchSearch(final BatchQuery query,
+                                                                 boolean unrestricted,
+                                                                 List<URI> preferredSources,
+                                                                 URI[] requiredSources,
+                                                                 URI[] ontologySources,
+                                                                 final BlockingQueue<BatchQuery> completed) {
+        Callable<List<AnnotationPrediction>> search = createSearch(query.propertyValue,
+                                                                   query.propertyType,
+                                                                   unrestricted,
+                                                                   preferredSources,
+                                                                   requiredSources,
+                                                                   ontologySources);
+        final Runnable completionListener = new Runnable() {
+            @Override public void run() {
+                completed.add(query);
+            }
+        };
+        if (annotationPredictionCache != null) {
+            String key = createSearchKey(query.propertyValue,
+                                         query.propertyType,
+                                         unrestricted,
+                                         preferredSources,
+                                         requiredSources,
+                                         ontologySources);
+            return annotationPredictionCache.get(key,
+                                                 search,
+                                                 admissionController.getExecutor(Lane.BULK),
+                                                 completionListener);
+        }
+        else {
+            SearchTask<List<AnnotationPrediction>> task = new SearchTask<List<AnnotationPrediction>>(search) {
+                @Override protected void done() {
+                    completionListener.run();
+                }
+            };
+            admissionController.execute(task, Lane.BULK);
+            return task;
+        }
+    }
 
-        Future<List<AnnotationPrediction>> f = executorService.submit(
-                new Callable<List<AnnotationPrediction>>() {
-                    @Override
-                    public List<AnnotationPrediction> call() throws Exception {
-                        Map<AnnotationSummary, Float> summaries = zoomaAnnotationSummaries.queryAndScore(propertyValue,
-                                                                                                         propertyType,
-                                                                                                         preferredSources,
-                                                                                                         requiredSources, ontologySources);
+    private AnnotationPredictionCache.PredictionSearch createSearch(final String propertyValue,
+                                                                    final String propertyType,
+                                                                    final boolean unrestricted,
+                                                                    final List<URI> preferredSources,
+                                                                    final URI[] requiredSources,
+                                                                    final URI[] ontologySources) {
+        // deadlines run from submission, so time spent queueing counts against them
+        long submitted = System.currentTimeMillis();
+        final SearchDeadline requestDeadline = SearchDeadline.at(submitted + (long) searchTimeout);
+        final SearchDeadline searchDeadline =
+                SearchDeadline.at(submitted + (long) (searchTimeout * searchBudgetFraction));
+        return new AnnotationPredictionCache.PredictionSearch() {
+            @Override
+            public boolean isComplete() {
+                // search services mark the deadline whenever they return early with partial results
+                return !searchDeadline.isTruncated() && !requestDeadline.isTruncated();
+            }
 
-                        return createPredictions(propertyValue, propertyType, summaries);
-                    }
+            @Override
+            public List<AnnotationPrediction> call() throws Exception {
+                if (requestDeadline.hasPassed()) {
+                    throw new SearchTimeoutException("Search for '" + propertyValue + "' was abandoned, " +
+                                                             "it was queued for longer than " + searchTimeout + "ms");
                 }
-        );
-        return waitForResults(f, propertyValue);
+
+                // search services return the best results they can find within the search budget...
+                Map<AnnotationSummary, Float> summaries;
+                SearchDeadline previous = searchDeadline.attach();
+                try {
+                    summaries = querySummaries(propertyValue,
+                                               propertyType,
+                                               unrestricted,
+                                               preferredSources,
+                                               requiredSources,
+                                               ontologySources);
+                }
+                finally {
+                    SearchDeadline.restore(previous);
+                }
+
+                // ...and the rest of the request timeout is left to build predictions from them
+                previous = requestDeadline.attach();
+                try {
+                    return createPredictions(propertyValue, propertyType, summaries);
+                }
+                finally {
+                    SearchDeadline.restore(previous);
+                }
+            }
+        };
+    }
+
+    private Map<AnnotationSummary, Float> querySummaries(String propertyValue,
+                                                         String propertyType,
+                                                         boolean unrestricted,
+                                                         List<URI> preferredSources,
+                                                         URI[] requiredSources,
+                                                         URI[] ontologySources) {
+        if (unrestricted) {
+            return propertyType == null
+                    ? zoomaAnnotationSummaries.queryAndScore(propertyValue,
+                                                             requiredSources,
+                                                             ontologySources,
+                                                             searchLimit)
+                    : zoomaAnnotationSummaries.queryAndScore(propertyValue,
+                                                             propertyType,
+                                                             requiredSources,
+                                                             ontologySources,
+                                                             searchLimit);
+        }
+        else {
+            return zoomaAnnotationSummaries.queryAndScore(propertyValue,
+                                                          propertyType == null ? "" : propertyType,
+                                                          preferredSources,
+                                                          requiredSources,
+                                                          ontologySources,
+                                                          searchLimit);
+        }
+    }
+
+    private void writeBatchResults(OutputStream out,
+                                   List<AnnotationBatchRequest.Item> items,
+                                   BatchQuery query,
+                                   AnnotationBatchResult.Status status,
+                                   String message,
+                                   List<AnnotationPrediction> predictions) throws IOException {
+        for (int index : query.indices) {
+            AnnotationBatchRequest.Item item = items.get(index);
+            AnnotationBatchResult result = new AnnotationBatchResult(
+                    index,
+                    item.getPropertyType(),
+                    item.getPropertyValue(),
+                    status,
+                    message,
+                    predictions == null ? Collections.<AnnotationPrediction>emptyList() : predictions);
+            // write bytes rather than to the stream, as the mapper would close the stream after each result
+            out.write(batchResultMapper.writeValueAsBytes(result));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Creates a key describing an annotate search, so that equivalent searches share the same cached result.  Property
+     * values and types are compared after normalising whitespace, and the order of required and ontology sources is
+     * ignored, but the order of preferred sources is significant.
+     */
+    private static String createSearchKey(String propertyValue,
+                                          String propertyType,
+                                          boolean unrestricted,
+                                          List<URI> preferredSources,
+                                          URI[] requiredSources,
+                                          URI[] ontologySources) {
+        StringBuilder key = new StringBuilder();
+        key.append(unrestricted ? "unrestricted" : "preferred").append('\u0000');
+        key.append(normalizeWhitespace(propertyValue)).append('\u0000');
+        key.append(propertyType == null ? "\u0001" : normalizeWhitespace(propertyType)).append('\u0000');
+        if (preferredSources != null) {
+            for (URI source : preferredSources) {
+                key.append(source).append(' ');
+            }
+        }
+        key.append('\u0000');
+        appendSortedSources(key, requiredSources);
+        key.append('\u0000');
+        appendSortedSources(key, ontologySources);
+        return key.toString();
+    }
+
+    private static void appendSortedSources(StringBuilder key, URI[] sources) {
+        if (sources != null) {
+            URI[] sorted = Arrays.copyOf(sources, sources.length);
+            Arrays.sort(sorted);
+            for (URI source : sorted) {
+                key.append(source).append(' ');
+            }
+        }
+    }
+
+    private static String normalizeWhitespace(String str) {
+        return WHITESPACE.matcher(str.trim()).replaceAll(" ");
     }
 
     /**
@@ -378,6 +763,10 @@ public class Zooma extends SourceFilteredEndpoint {
             else if (e.getCause() instanceof QueryCreationException){
                 throw (QueryCreationException) e.getCause();
             }
+            else if (e.getCause() instanceof RejectedExecutionException) {
+                // shed after queueing for too long, so this is reported as overload rather than as a timeout
+                throw (RejectedExecutionException) e.getCause();
+            }
             else {
                 throw new SearchException("Failed to complete a search for '" + propertyValue + "' " +
                                                   "(" + e.getMessage() + ")", e);
@@ -398,13 +787,11 @@ public class Zooma extends SourceFilteredEndpoint {
     }
 
     private List<String> extractPropertyValueStrings(Collection<Property> properties) {
-        List<String> result = new ArrayList<>();
+        Set<String> result = new LinkedHashSet<>();
         for (Property p : properties) {
-            if (!result.contains(p.getPropertyValue())) {
-                result.add(p.getPropertyValue());
-            }
+            result.add(p.getPropertyValue());
         }
-        return result;
+        return new ArrayList<>(result);
     }
 
     private List<AnnotationSummary> extractAnnotationSummaryList(
@@ -501,6 +888,11 @@ public class Zooma extends SourceFilteredEndpoint {
         Map<URI, Annotation> tagsToAnnotations = new HashMap<>();
 
         for (AnnotationSummary annotationSummary : goodSummaries) {
+            // nobody is waiting for predictions once the request has timed out, so stop reading annotations
+            if (SearchDeadline.isExceeded()) {
+                throw new SearchTimeoutException("Abandoned reading annotations for " + goodSummaries.size() + " " +
+                                                         "annotation summaries, the search has timed out");
+            }
             if (annotationSummary.getAnnotationURIs() != null) {
 
                 if (!annotationSummary.getAnnotationURIs().isEmpty()) {
@@ -633,6 +1025,21 @@ public class Zooma extends SourceFilteredEndpoint {
     }
 
 
+    /**
+     * A distinct property searched on behalf of one or more items in a batch
+     */
+    private static class BatchQuery {
+        private final String propertyType;
+        private final String propertyValue;
+        private final List<Integer> indices = new ArrayList<>();
+        private long deadline;
+
+        private BatchQuery(String propertyType, String propertyValue) {
+            this.propertyType = propertyType;
+            this.propertyValue = propertyValue;
+        }
+    }
+
     @ExceptionHandler(SearchTimeoutException.class)
     @ResponseStatus(HttpStatus.REQUEST_TIMEOUT)
     @ResponseBody String handleSearchTimeoutException(SearchTimeoutException e) {
@@ -694,7 +1101,7 @@ public class Zooma extends SourceFilteredEndpoint {
     }
 
     @PreDestroy public void destroy() throws Exception {
-        List<Runnable> runnables = executorService.shutdownNow();
+        List<Runnable> runnables = admissionController.shutdownNow();
         if (runnables.size() > 0) {
             getLog().warn("Zooma shutdown attempted with " + runnables.size() + " search jobs still executing");
         }
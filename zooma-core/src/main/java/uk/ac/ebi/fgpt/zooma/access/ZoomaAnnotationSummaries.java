@@ -20,8 +20,10 @@ import uk.ac.ebi.fgpt.zooma.util.Sorter;
 import java.net.URI;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 /**
  * Search ZOOMA for all the unique combinations of mapping between the given property values (and optional types) and
@@ -52,6 +54,9 @@ public class ZoomaAnnotationSummaries {
 
     private InferredAnnotationSummaryCache inferredAnnotationSummaryCache = new InferredAnnotationSummaryCache();
 
+    // limited searches fetch this many times more candidates than the limit, so they can be ranked by final score
+    private int searchLimitMargin = 5;
+
     @Autowired
     public ZoomaAnnotationSummaries(
             AnnotationSummaryService annotationSummaryService,
@@ -86,6 +91,30 @@ public class ZoomaAnnotationSummaries {
         return annotationSummaryScorer;
     }
 
+    @Autowired(required = false)
+    public void setConfigurationProperties(@Qualifier("configurationProperties") Properties configuration) {
+        if (configuration.containsKey("zooma.search.limit.margin")) {
+            setSearchLimitMargin(Integer.parseInt(configuration.getProperty("zooma.search.limit.margin")));
+        }
+    }
+
+    public int getSearchLimitMargin() {
+        return searchLimitMargin;
+    }
+
+    /**
+     * Sets the number of candidate annotation summaries fetched for limited searches, as a multiple of the limit.
+     * Candidates are retrieved by lucene score, but only the best <code>limit</code> candidates by final score are
+     * returned, so the margin allows for candidates whose quality or source ranking lifts them above better lucene
+     * matches.
+     *
+     * @param searchLimitMargin the multiple of the limit to fetch, at least 1
+     */
+    public void setSearchLimitMargin(int searchLimitMargin) {
+        Assert.isTrue(searchLimitMargin >= 1, "Search limit margin must be at least 1");
+        this.searchLimitMargin = searchLimitMargin;
+    }
+
     public Collection<AnnotationSummary> fetch() {
         return fetch(100, 0, null);
     }
@@ -129,6 +158,26 @@ public class ZoomaAnnotationSummaries {
         return queryAndScore(query, sources, ontologySources, false);
     }
 
+    /**
+     * Searches for annotation summaries matching the given query, and returns at most <code>limit</code> of the best
+     * scoring matches.  The limit is applied after scoring, to candidates fetched with a margin (see {@link
+     * #setSearchLimitMargin(int)}).
+     *
+     * @param query           the property value to search for
+     * @param sources         the datasources annotation summaries should be present in
+     * @param ontologySources the ontologies that should be searched if there are no matching annotation summaries
+     * @param limit           the maximum number of annotation summaries to return, or -1 for no limit
+     * @return the matching annotation summaries, mapped to their score
+     */
+    public Map<AnnotationSummary, Float> queryAndScore(String query,
+                                                       URI[] sources,
+                                                       URI[] ontologySources,
+                                                       int limit) {
+        Collection<AnnotationSummary> annotations =
+                getAnnotationSummarySearchService().search(query, sources, ontologySources, getCandidateLimit(limit));
+        return limitScores(getAnnotationSummaryScorer().score(annotations, query), limit);
+    }
+
     public Map<AnnotationSummary, Float> queryAndScore(String query, URI[] sources, URI[] ontologySources, boolean prefixed) {
         Collection<AnnotationSummary> annotations = prefixed
                 ? getAnnotationSummarySearchService().searchByPrefix(query, sources, ontologySources)
@@ -140,6 +189,33 @@ public class ZoomaAnnotationSummaries {
         return queryAndScore(query, type, sources, ontologySources, false);
     }
 
+    /**
+     * Searches for annotation summaries matching the given query and type, and returns at most <code>limit</code> of the
+     * best scoring matches.  The limit is applied after scoring, to candidates fetched with a margin (see {@link
+     * #setSearchLimitMargin(int)}).
+     *
+     * @param query           the property value to search for
+     * @param type            the property type to search for, or an empty string to search without a type
+     * @param sources         the datasources annotation summaries should be present in
+     * @param ontologySources the ontologies that should be searched if there are no matching annotation summaries
+     * @param limit           the maximum number of annotation summaries to return, or -1 for no limit
+     * @return the matching annotation summaries, mapped to their score
+     */
+    public Map<AnnotationSummary, Float> queryAndScore(String query,
+                                                       String type,
+                                                       URI[] sources,
+                                                       URI[] ontologySources,
+                                                       int limit) {
+        if (type.isEmpty()) {
+            return queryAndScore(query, sources, ontologySources, limit);
+        }
+        else {
+            Collection<AnnotationSummary> annotations = getAnnotationSummarySearchService().search(
+                    type, query, sources, ontologySources, getCandidateLimit(limit));
+            return limitScores(getAnnotationSummaryScorer().score(annotations, query, type), limit);
+        }
+    }
+
     public Map<AnnotationSummary, Float> queryAndScore(String query, String type, URI[] sources, URI[] ontologySources, boolean prefixed) {
         if (type.isEmpty()) {
             Collection<AnnotationSummary> annotations = prefixed
@@ -159,20 +235,46 @@ public class ZoomaAnnotationSummaries {
                                                        String type,
                                                        List<URI> preferredSources,
                                                        URI[] requiredSources, URI[] ontologySources) {
+        return queryAndScore(query, type, preferredSources, requiredSources, ontologySources, -1);
+    }
+
+    /**
+     * Searches for annotation summaries matching the given query and type, ranking preferred sources first, and returns
+     * at most <code>limit</code> of the best scoring matches.  The limit is applied after scoring and source ranking,
+     * to candidates fetched with a margin (see {@link #setSearchLimitMargin(int)}).
+     *
+     * @param query            the property value to search for
+     * @param type             the property type to search for, or an empty string to search without a type
+     * @param preferredSources the preferred order of datasources
+     * @param requiredSources  the datasources annotation summaries should be present in
+     * @param ontologySources  the ontologies that should be searched if there are no matching annotation summaries
+     * @param limit            the maximum number of annotation summaries to return, or -1 for no limit
+     * @return the matching annotation summaries, mapped to their score
+     */
+    public Map<AnnotationSummary, Float> queryAndScore(String query,
+                                                       String type,
+                                                       List<URI> preferredSources,
+                                                       URI[] requiredSources,
+                                                       URI[] ontologySources,
+                                                       int limit) {
         if (type.isEmpty()) {
             Collection<AnnotationSummary> annotations =
                     getAnnotationSummarySearchService().searchByPreferredSources(query,
                                                                                  preferredSources,
-                                                                                 requiredSources, ontologySources);
-            return getAnnotationSummaryScorer().score(annotations, query);
+                                                                                 requiredSources,
+                                                                                 ontologySources,
+                                                                                 getCandidateLimit(limit));
+            return limitScores(getAnnotationSummaryScorer().score(annotations, query), limit);
         }
         else {
             Collection<AnnotationSummary> annotations =
                     getAnnotationSummarySearchService().searchByPreferredSources(type,
                                                                                  query,
                                                                                  preferredSources,
-                                                                                 requiredSources, ontologySources);
-            return getAnnotationSummaryScorer().score(annotations, query, type);
+                                                                                 requiredSources,
+                                                                                 ontologySources,
+                                                                                 getCandidateLimit(limit));
+            return limitScores(getAnnotationSummaryScorer().score(annotations, query, type), limit);
         }
     }
 
@@ -187,4 +289,23 @@ public class ZoomaAnnotationSummaries {
                 getAnnotationSummarySearchService().searchBySemanticTags(semanticTags);
         return getAnnotationSummaryScorer().score(annotations);
     }
+
+    private int getCandidateLimit(int limit) {
+        return limit < 0 ? -1 : (int) Math.min(Integer.MAX_VALUE, (long) limit * searchLimitMargin);
+    }
+
+    /**
+     * Reduces the scored annotation summaries to the best <code>limit</code> by score, in descending score order
+     */
+    private Map<AnnotationSummary, Float> limitScores(Map<AnnotationSummary, Float> scores, int limit) {
+        if (limit < 0 || scores.size() <= limit) {
+            return scores;
+        }
+        Map<AnnotationSummary, Float> limitedScores = new LinkedHashMap<>();
+        List<AnnotationSummary> ranked = getAnnotationSummarySorter().sort(scores);
+        for (AnnotationSummary annotationSummary : getAnnotationSummaryLimiter().limit(ranked, limit)) {
+            limitedScores.put(annotationSummary, scores.get(annotationSummary));
+        }
+        return limitedScores;
+    }
 }
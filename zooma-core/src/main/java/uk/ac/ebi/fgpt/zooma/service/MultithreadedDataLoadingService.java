@@ -5,9 +5,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import uk.ac.ebi.fgpt.zooma.concurrent.StreamingWorkloadScheduler;
 import uk.ac.ebi.fgpt.zooma.concurrent.WorkloadScheduler;
 import uk.ac.ebi.fgpt.zooma.concurrent.ZoomaThreadFactory;
 import uk.ac.ebi.fgpt.zooma.datasource.SemanticallyEnrichedDAO;
+import uk.ac.ebi.fgpt.zooma.datasource.StreamingDAO;
 import uk.ac.ebi.fgpt.zooma.datasource.ZoomaDAO;
 import uk.ac.ebi.fgpt.zooma.io.ZoomaLoader;
 import uk.ac.ebi.fgpt.zooma.model.Identifiable;
@@ -39,6 +41,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * loading, and 32 worker threads available for blocks of data within each datasource (giving a maximum load of 128
  * threads).
  * <p>
+ * Datasources that implement {@link StreamingDAO} are read in a single pass through a cursor, instead of being counted
+ * and then read in blocks.  Blocks of data items are handed to the loader threads as soon as they have been read, and
+ * reading pauses whenever <code>maxPendingBlocks</code> blocks are already waiting to be loaded, so reading never runs
+ * ahead of loading and the cost of reading does not grow with the position of each block in the datasource.  By
+ * default, one block may be pending for each loader thread.
+ * <p>
  * Note that, unlike all other services in ZOOMA, this service is enabled for Spring autowiring on {@link
  * #setZoomaDAOs(java.util.Collection)}.  This means it is possible to automatically discover declared DAOs from
  * anywhere on the classpath, providing the minimal spring config is supplied in the jar file
@@ -65,6 +73,7 @@ public class MultithreadedDataLoadingService<T extends Identifiable> implements
 
     private int maxCount;
     private int blockSize = 100_000;
+    private int maxPendingBlocks;
 
     private Logger log = LoggerFactory.getLogger(getClass());
 
@@ -83,6 +92,8 @@ public class MultithreadedDataLoadingService<T extends Identifiable> implements
         this.loadExecutor = Executors.newFixedThreadPool(numberOfLoaderThreads,
                                                          new ZoomaThreadFactory("ZOOMA-Loader"));
 
+        this.maxPendingBlocks = numberOfLoaderThreads;
+
         this.receiptService = new InMemoryReceiptService();
     }
 
@@ -115,6 +126,14 @@ public class MultithreadedDataLoadingService<T extends Identifiable> implements
         this.blockSize = blockSize;
     }
 
+    public int getMaxPendingBlocks() {
+        return maxPendingBlocks;
+    }
+
+    public void setMaxPendingBlocks(int maxPendingBlocks) {
+        this.maxPendingBlocks = maxPendingBlocks;
+    }
+
     public void shutdown() {
         getLog().info("Shutting down " + getClass().getSimpleName() + "...");
         daoExecutor.shutdown();
@@ -220,6 +239,10 @@ public class MultithreadedDataLoadingService<T extends Identifiable> implements
         getLog().info("Retrieving data items from " + datasource.getDatasourceName() + " using " +
                               datasource.getClass().getSimpleName());
 
+        if (datasource instanceof StreamingDAO) {
+            return loadStreaming((StreamingDAO<T>) datasource);
+        }
+
         Receipt receipt;
         try {
             final WorkloadScheduler scheduler;
@@ -337,6 +360,77 @@ public class MultithreadedDataLoadingService<T extends Identifiable> implements
         return receipt;
     }
 
+    /**
+     * Loads all available data from a datasource that can stream its data items, reading them in a single pass and
+     * loading each block as soon as it has been read.
+     *
+     * @param datasource the datasource to load from
+     * @return a receipt for this load
+     */
+    private Receipt loadStreaming(final StreamingDAO<T> datasource) {
+        Receipt receipt;
+        try {
+            getLog().debug("Scheduling streaming workload for " + datasource.getDatasourceName() + ".  " +
+                                   "Loading will take place in blocks of " + getBlockSize() + " data items, " +
+                                   "with at most " + getMaxPendingBlocks() + " blocks pending.");
+
+            // get the security context
+            final SecurityContext ctx = SecurityContextHolder.getContext();
+
+            final StreamingWorkloadScheduler<T> scheduler =
+                    new StreamingWorkloadScheduler<T>(loadExecutor,
+                                                      datasource.openCursor(),
+                                                      getBlockSize(),
+                                                      getMaxPendingBlocks(),
+                                                      getMaxCount(),
+                                                      datasource.getDatasourceName()) {
+                        @Override
+                        protected void executeTask(int batchNumber, List<T> items) throws Exception {
+                            try {
+                                // set security context
+                                SecurityContextHolder.setContext(ctx);
+
+                                getLog().debug(
+                                        "Loading data items for " + datasource.getDatasourceName() + ", " +
+                                                "block " + batchNumber + ", " +
+                                                "executing in " + Thread.currentThread().getName()
+                                );
+                                getZoomaLoader().load(datasource.getDatasourceName(), items);
+
+                                // also, if the DAO is semantically enriched, load supplementary data once
+                                if (batchNumber == 1 && datasource instanceof SemanticallyEnrichedDAO) {
+                                    InputStream rdfIn =
+                                            ((SemanticallyEnrichedDAO) datasource).getSupplementaryRDFStream();
+                                    getZoomaLoader().loadSupplementaryData(datasource.getDatasourceName(), rdfIn);
+                                }
+                            }
+                            finally {
+                                // clear security context
+                                SecurityContextHolder.clearContext();
+                            }
+                        }
+                    };
+
+            // create a receipt
+            receipt = new StreamingWorkloadReceipt(datasource.getDatasourceName(),
+                                                   LoadType.LOAD_DATASOURCE,
+                                                   scheduler);
+            receiptService.registerReceipt(receipt);
+
+            // start up the scheduler
+            scheduler.start();
+        }
+        catch (Exception e) {
+            // failed to schedule this load task, add a failed receipt
+            getLog().error("Scheduling of loading tasks for " + datasource.getDatasourceName() +
+                                   " failed (" + e.getMessage() + ")");
+            receipt = new SchedulingFailedReceipt(datasource.getDatasourceName(), LoadType.LOAD_DATASOURCE, e);
+            receiptService.registerReceipt(receipt);
+        }
+
+        return receipt;
+    }
+
     @Override
     public Receipt load(final Collection<T> dataItems) {
         return load(dataItems, Integer.toString(dataItems.hashCode()));
@@ -559,6 +653,24 @@ public class MultithreadedDataLoadingService<T extends Identifiable> implements
         }
     }
 
+    private class StreamingWorkloadReceipt extends AbstractReceipt {
+        // this receipt should track streamed work
+        private final StreamingWorkloadScheduler<T> scheduler;
+
+        private StreamingWorkloadReceipt(String datasourceName,
+                                         LoadType loadType,
+                                         StreamingWorkloadScheduler<T> scheduler) {
+            super(datasourceName, loadType);
+            this.scheduler = scheduler;
+        }
+
+        @Override public void waitUntilCompletion() throws InterruptedException {
+            scheduler.waitUntilComplete();
+            getLog().debug("Streaming " + getDatasourceName() + " workload is complete " +
+                                   "(" + scheduler.getItemsRead() + " data items), completed receipt ID = " + getID());
+        }
+    }
+
     private class CompositingReceipt extends AbstractReceipt {
         private final boolean rethrowExceptions;
         private final List<Receipt> receipts;
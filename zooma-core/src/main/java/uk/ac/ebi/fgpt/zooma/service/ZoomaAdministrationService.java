@@ -7,6 +7,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import uk.ac.ebi.fgpt.zooma.service.OntologyService;
 import uk.ac.ebi.fgpt.zooma.service.StatusService;
+import uk.ac.ebi.fgpt.zooma.util.AnnotationPredictionCache;
 import uk.ac.ebi.fgpt.zooma.util.PropertiesMapAdapter;
 import uk.ac.ebi.fgpt.zooma.util.URIUtils;
 
@@ -28,6 +29,7 @@ public class ZoomaAdministrationService {
     private OntologyService ontologyService;
     private StatusService statusService;
     private PropertiesMapAdapter propertiesMapAdapter;
+    private AnnotationPredictionCache annotationPredictionCache;
 
     private Logger log = LoggerFactory.getLogger(getClass());
 
@@ -56,16 +58,47 @@ public class ZoomaAdministrationService {
         return propertiesMapAdapter;
     }
 
+    public AnnotationPredictionCache getAnnotationPredictionCache() {
+        return annotationPredictionCache;
+    }
+
+    @Autowired(required = false)
+    public void setAnnotationPredictionCache(AnnotationPredictionCache annotationPredictionCache) {
+        this.annotationPredictionCache = annotationPredictionCache;
+    }
+
     @RequestMapping(value = "/check-status", method = RequestMethod.GET)
     public @ResponseBody boolean checkStatus() {
         return getStatusService().checkStatus();
     }
 
+    @RequestMapping(value = "/check-status/annotation-cache", method = RequestMethod.GET)
+    public @ResponseBody Map<String, Object> checkAnnotationCacheStatus() {
+        if (getAnnotationPredictionCache() == null) {
+            return Collections.<String, Object>singletonMap("enabled", false);
+        }
+        return getAnnotationPredictionCache().getStatistics();
+    }
+
     @RequestMapping(value = "/reinitialize", method = RequestMethod.GET)
     public @ResponseBody String reinitialize() {
         return getStatusService().reinitialize();
     }
 
+    @RequestMapping(value = "/update/datasource", method = RequestMethod.POST)
+    public @ResponseBody String updateDatasource(@RequestParam(value = "source") String sourceURI) {
+        return getStatusService().updateDatasource(URI.create(sourceURI));
+    }
+
+    @RequestMapping(value = "/update/annotations", method = RequestMethod.POST)
+    public @ResponseBody String updateAnnotations(@RequestBody Collection<String> annotationURIs) {
+        Collection<URI> uris = new ArrayList<>();
+        for (String annotationURI : annotationURIs) {
+            uris.add(URI.create(annotationURI));
+        }
+        return getStatusService().updateAnnotations(uris);
+    }
+
     @RequestMapping(value = "/labels/{shortURI}", method = RequestMethod.GET)
     public @ResponseBody Map<String, Set<String>> getLabels(@PathVariable String shortURI) {
         URI uri = URIUtils.getURI(shortURI);
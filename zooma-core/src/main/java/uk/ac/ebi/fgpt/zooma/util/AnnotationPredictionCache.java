@@ -0,0 +1,421 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchTask;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationPrediction;
+import uk.ac.ebi.fgpt.zooma.service.DataChangeListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A bounded cache of annotation predictions, keyed by a normalised description of the search that produced them.
+ * <p/>
+ * Searches are cached from the moment they are submitted, so concurrent requests for the same search share a single
+ * computation rather than each running their own.  A shared search is only cancelled once every request waiting for it
+ * has given up.  Searches that fail or are cancelled are never cached, and neither are searches that report themselves
+ * incomplete (see {@link PredictionSearch}): these results are still returned to every request waiting for them, but
+ * the next request runs the search again.
+ * <p/>
+ * Completed searches are evicted, least recently used first, once either the number of cached searches exceeds
+ * <code>zooma.search.cache.size</code> or the total number of cached predictions exceeds
+ * <code>zooma.search.cache.weight</code>, and expire <code>zooma.search.cache.ttl</code> seconds after completing.  The
+ * whole cache is cleared whenever {@link #dataChanged()} signals that new data is visible to searches.  Setting the
+ * cache size to 0 disables caching.
+ *
+ * @date 18/10/26
+ */
+public class AnnotationPredictionCache implements DataChangeListener {
+    private int maxEntries = 10000; // Default 10,000 cached searches
+    private long maxWeight = 500000; // Default 500,000 cached predictions
+    private long timeToLive = 3600000; // Default 1 hour before cached searches expire
+
+    // access ordered, so iteration starts from the least recently used search
+    private final LinkedHashMap<String, CachedSearch> searches = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    private long hits = 0;
+    private long collapsedRequests = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+    private long invalidations = 0;
+    private long incompleteSearches = 0;
+    private long savedTime = 0;
+
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    protected Logger getLog() {
+        return log;
+    }
+
+    public void setConfigurationProperties(Properties configuration) {
+        if (configuration.containsKey("zooma.search.cache.size")) {
+            setMaxEntries(Integer.parseInt(configuration.getProperty("zooma.search.cache.size")));
+        }
+        if (configuration.containsKey("zooma.search.cache.weight")) {
+            setMaxWeight(Long.parseLong(configuration.getProperty("zooma.search.cache.weight")));
+        }
+        if (configuration.containsKey("zooma.search.cache.ttl")) {
+            setTimeToLive(Long.parseLong(configuration.getProperty("zooma.search.cache.ttl")));
+        }
+    }
+
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        evict();
+    }
+
+    public synchronized long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Sets the maximum total weight of the cached searches, where the weight of a search is the number of predictions
+     * it returned (or 1, if it returned none)
+     *
+     * @param maxWeight the maximum number of predictions to cache
+     */
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    /**
+     * @return the time, in seconds, after which a completed search expires
+     */
+    public synchronized long getTimeToLive() {
+        return TimeUnit.MILLISECONDS.toSeconds(timeToLive);
+    }
+
+    /**
+     * Sets the time after which a completed search expires and must be run again.  A time of 0 or less means that
+     * searches never expire, and are only evicted by size or when data changes.
+     *
+     * @param timeToLive the time, in seconds, to keep completed searches for
+     */
+    public synchronized void setTimeToLive(long timeToLive) {
+        this.timeToLive = TimeUnit.SECONDS.toMillis(timeToLive);
+    }
+
+    public synchronized boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the result of the search with the given key.  If this search is cached, or is already running for
+     * another request, the existing result is returned; otherwise the supplied search is submitted to the given
+     * executor and cached.
+     * <p/>
+     * Cancelling the returned future abandons the search for this request only; the search itself is cancelled once
+     * no other request is waiting for it.
+     *
+     * @param key      a key that identifies the search, normalised so that equivalent searches share the same key
+     * @param search   the search to run if no result is cached for this key
+     * @param executor the executor to run the search on
+     * @return a future holding the predictions for this search
+     * @throws RejectedExecutionException if the search had to be run but the executor would not accept it
+     */
+    public Future<List<AnnotationPrediction>> get(String key,
+                                                  Callable<List<AnnotationPrediction>> search,
+                                                  Executor executor) {
+        return get(key, search, executor, null);
+    }
+
+    /**
+     * Returns the result of the search with the given key, as {@link #get(String, Callable, Executor)} does, and
+     * notifies the given listener once this result is available.  The listener is called once the search completes,
+     * fails or is cancelled (immediately, if the result is already cached), on the thread that finished the search.
+     * It is not called if the executor rejects the search.
+     *
+     * @param key                the key that identifies the search
+     * @param search             the search to run if no result is cached for this key
+     * @param executor           the executor to run the search on
+     * @param completionListener called once the result of this search is available, or null for no notification
+     * @return a future holding the predictions for this search
+     * @throws RejectedExecutionException if the search had to be run but the executor would not accept it
+     */
+    public Future<List<AnnotationPrediction>> get(String key,
+                                                  Callable<List<AnnotationPrediction>> search,
+                                                  Executor executor,
+                                                  final Runnable completionListener) {
+        CachedSearch cachedSearch;
+        SearchRequest request;
+        boolean isNewSearch = false;
+        synchronized (this) {
+            cachedSearch = searches.get(key);
+            if (cachedSearch != null && cachedSearch.isExpired(System.currentTimeMillis())) {
+                remove(cachedSearch);
+                expirations++;
+                cachedSearch = null;
+            }
+
+            if (cachedSearch != null) {
+                if (cachedSearch.isDone()) {
+                    hits++;
+                    savedTime += cachedSearch.searchTime;
+                }
+                else {
+                    collapsedRequests++;
+                }
+                request = new SearchRequest(cachedSearch);
+            }
+            else {
+                misses++;
+                if (!isEnabled()) {
+                    SearchTask<List<AnnotationPrediction>> task = new SearchTask<List<AnnotationPrediction>>(search) {
+                        @Override protected void done() {
+                            if (completionListener != null) {
+                                completionListener.run();
+                            }
+                        }
+                    };
+                    executor.execute(task);
+                    return task;
+                }
+                cachedSearch = new CachedSearch(key, search);
+                searches.put(key, cachedSearch);
+                request = new SearchRequest(cachedSearch);
+                isNewSearch = true;
+            }
+        }
+
+        if (isNewSearch) {
+            try {
+                executor.execute(cachedSearch);
+            }
+            catch (RejectedExecutionException e) {
+                request.cancel(false);
+                throw e;
+            }
+        }
+        if (completionListener != null) {
+            addCompletionListener(cachedSearch, completionListener);
+        }
+        return request;
+    }
+
+    /**
+     * Discards every cached search, so that subsequent requests search the new data.  Searches already running will
+     * still complete for the requests waiting on them, but their results are not cached.
+     */
+    @Override public synchronized void dataChanged() {
+        getLog().debug("Data has changed, discarding " + searches.size() + " cached searches");
+        searches.clear();
+        weight = 0;
+        invalidations++;
+    }
+
+    /**
+     * Returns statistics describing the effectiveness of this cache.  The hit ratio includes requests that were
+     * collapsed into a search already running for another request, and the saved time is the total time that the
+     * searches served from the cache originally took.
+     *
+     * @return a map of statistic names to values
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        long requests = hits + collapsedRequests + misses;
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", isEnabled());
+        statistics.put("size", searches.size());
+        statistics.put("weight", weight);
+        statistics.put("requests", requests);
+        statistics.put("hits", hits);
+        statistics.put("collapsedRequests", collapsedRequests);
+        statistics.put("misses", misses);
+        statistics.put("hitRatio", requests == 0 ? 0f : (float) (hits + collapsedRequests) / requests);
+        statistics.put("evictions", evictions);
+        statistics.put("expirations", expirations);
+        statistics.put("invalidations", invalidations);
+        statistics.put("incompleteSearches", incompleteSearches);
+        statistics.put("savedTimeMillis", savedTime);
+        return statistics;
+    }
+
+    private synchronized void searchCompleted(CachedSearch cachedSearch) {
+        if (searches.get(cachedSearch.key) != cachedSearch) {
+            // discarded whilst running, because data changed
+            return;
+        }
+
+        int predictionCount;
+        try {
+            predictionCount = cachedSearch.get().size();
+        }
+        catch (CancellationException | ExecutionException | InterruptedException e) {
+            searches.remove(cachedSearch.key);
+            return;
+        }
+        if (!cachedSearch.isComplete()) {
+            // results returned at the deadline are still handed to waiting requests, but must not be reused
+            getLog().debug("Search '" + cachedSearch.key + "' returned incomplete results, not caching them");
+            searches.remove(cachedSearch.key);
+            incompleteSearches++;
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        cachedSearch.searchTime = now - cachedSearch.startTime;
+        cachedSearch.completionTime = now;
+        cachedSearch.weight = Math.max(1, predictionCount);
+        weight += cachedSearch.weight;
+        evict();
+    }
+
+    private void addCompletionListener(CachedSearch cachedSearch, Runnable completionListener) {
+        synchronized (this) {
+            if (!cachedSearch.isDone()) {
+                cachedSearch.completionListeners.add(completionListener);
+                return;
+            }
+        }
+        completionListener.run();
+    }
+
+    private synchronized List<Runnable> takeCompletionListeners(CachedSearch cachedSearch) {
+        if (cachedSearch.completionListeners.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Runnable> completionListeners = new ArrayList<>(cachedSearch.completionListeners);
+        cachedSearch.completionListeners.clear();
+        return completionListeners;
+    }
+
+    private synchronized void abandon(CachedSearch cachedSearch, boolean mayInterruptIfRunning) {
+        cachedSearch.requestCount--;
+        if (cachedSearch.requestCount == 0 && !cachedSearch.isDone()) {
+            getLog().debug("Cancelling abandoned search '" + cachedSearch.key + "'");
+            // cancelling removes the search from the cache once it is done
+            cachedSearch.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    private void evict() {
+        Iterator<CachedSearch> it = searches.values().iterator();
+        while ((searches.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+            CachedSearch cachedSearch = it.next();
+            // running searches have no weight yet, and must stay cached for requests collapsed into them
+            if (cachedSearch.isDone()) {
+                it.remove();
+                weight -= cachedSearch.weight;
+                evictions++;
+            }
+        }
+    }
+
+    private void remove(CachedSearch cachedSearch) {
+        searches.remove(cachedSearch.key);
+        weight -= cachedSearch.weight;
+    }
+
+    private class CachedSearch extends SearchTask<List<AnnotationPrediction>> {
+        private final String key;
+        private final Callable<List<AnnotationPrediction>> search;
+
+        // guarded by the cache
+        private final List<Runnable> completionListeners = new ArrayList<>();
+        private int requestCount = 0;
+        private long startTime;
+        private long searchTime;
+        private long completionTime;
+        private int weight = 0;
+
+        private CachedSearch(String key, Callable<List<AnnotationPrediction>> search) {
+            super(search);
+            this.key = key;
+            this.search = search;
+            this.startTime = System.currentTimeMillis();
+        }
+
+        private boolean isComplete() {
+            return !(search instanceof PredictionSearch) || ((PredictionSearch) search).isComplete();
+        }
+
+        private boolean isExpired(long now) {
+            return isDone() && timeToLive > 0 && now - completionTime > timeToLive;
+        }
+
+        @Override protected void done() {
+            searchCompleted(this);
+            // notify listeners outside the lock, as they may call back into the cache
+            for (Runnable completionListener : takeCompletionListeners(this)) {
+                completionListener.run();
+            }
+        }
+    }
+
+    /**
+     * A search that can report whether the predictions it returned are complete.  Searches that stop early, for
+     * example because their deadline passed, return the best predictions they found so far, but these are not cached.
+     */
+    public interface PredictionSearch extends Callable<List<AnnotationPrediction>> {
+        /**
+         * @return true if the predictions returned by this search are complete, and so may be cached
+         */
+        boolean isComplete();
+    }
+
+    private class SearchRequest implements Future<List<AnnotationPrediction>> {
+        private final CachedSearch cachedSearch;
+        private volatile boolean abandoned = false;
+
+        private SearchRequest(CachedSearch cachedSearch) {
+            this.cachedSearch = cachedSearch;
+            synchronized (AnnotationPredictionCache.this) {
+                cachedSearch.requestCount++;
+            }
+        }
+
+        @Override public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (AnnotationPredictionCache.this) {
+                if (abandoned || cachedSearch.isDone()) {
+                    return false;
+                }
+                abandoned = true;
+                abandon(cachedSearch, mayInterruptIfRunning);
+                return true;
+            }
+        }
+
+        @Override public boolean isCancelled() {
+            return abandoned || cachedSearch.isCancelled();
+        }
+
+        @Override public boolean isDone() {
+            return abandoned || cachedSearch.isDone();
+        }
+
+        @Override public List<AnnotationPrediction> get() throws InterruptedException, ExecutionException {
+            if (abandoned) {
+                throw new CancellationException();
+            }
+            return cachedSearch.get();
+        }
+
+        @Override public List<AnnotationPrediction> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (abandoned) {
+                throw new CancellationException();
+            }
+            return cachedSearch.get(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package uk.ac.ebi.fgpt.zooma.access;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
+import uk.ac.ebi.fgpt.zooma.service.AnnotationSummarySearchService;
+import uk.ac.ebi.fgpt.zooma.service.AnnotationSummaryService;
+import uk.ac.ebi.fgpt.zooma.util.BasicLimiter;
+import uk.ac.ebi.fgpt.zooma.util.Scorer;
+import uk.ac.ebi.fgpt.zooma.util.ScoreBasedSorter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestZoomaAnnotationSummaries {
+    private ZoomaAnnotationSummaries annotationSummaries;
+    private AnnotationSummarySearchService searchService;
+
+    private URI[] sources = new URI[0];
+    private URI[] ontologySources = new URI[0];
+
+    private AnnotationSummary lowQuality;
+    private AnnotationSummary mediumQuality;
+    private AnnotationSummary highQuality;
+
+    @SuppressWarnings("unchecked") @BeforeEach
+    public void setUp() {
+        lowQuality = mock(AnnotationSummary.class);
+        mediumQuality = mock(AnnotationSummary.class);
+        highQuality = mock(AnnotationSummary.class);
+
+        // lucene ranks the low quality summary best, but it scores worst once quality is taken into account
+        List<AnnotationSummary> luceneOrder = Arrays.asList(lowQuality, mediumQuality, highQuality);
+        Map<AnnotationSummary, Float> scores = new HashMap<>();
+        scores.put(lowQuality, 20f);
+        scores.put(mediumQuality, 50f);
+        scores.put(highQuality, 90f);
+
+        searchService = mock(AnnotationSummarySearchService.class);
+        when(searchService.search("liver", sources, ontologySources, 10)).thenReturn(luceneOrder);
+        Scorer<AnnotationSummary> scorer = mock(Scorer.class);
+        when(scorer.score(luceneOrder, "liver")).thenReturn(scores);
+
+        annotationSummaries = new ZoomaAnnotationSummaries(mock(AnnotationSummaryService.class),
+                                                           searchService,
+                                                           new ScoreBasedSorter<AnnotationSummary>(),
+                                                           new BasicLimiter<AnnotationSummary>(),
+                                                           scorer);
+    }
+
+    @Test
+    public void testLimitIsAppliedAfterScoring() {
+        Map<AnnotationSummary, Float> results = annotationSummaries.queryAndScore("liver", sources, ontologySources, 2);
+
+        // candidates are fetched with the default margin of 5 times the limit
+        verify(searchService).search("liver", sources, ontologySources, 10);
+        assertEquals(Arrays.asList(highQuality, mediumQuality), new ArrayList<>(results.keySet()));
+        assertEquals(90f, results.get(highQuality), 0.001f);
+    }
+}
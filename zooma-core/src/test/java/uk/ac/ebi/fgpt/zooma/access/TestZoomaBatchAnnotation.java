@@ -0,0 +1,262 @@
+package uk.ac.ebi.fgpt.zooma.access;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.mock.web.MockHttpServletResponse;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationBatchRequest;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
+import uk.ac.ebi.fgpt.zooma.service.AnnotationSummarySearchService;
+import uk.ac.ebi.fgpt.zooma.service.AnnotationSummaryService;
+import uk.ac.ebi.fgpt.zooma.util.AnnotationPredictionCache;
+import uk.ac.ebi.fgpt.zooma.util.Limiter;
+import uk.ac.ebi.fgpt.zooma.util.Scorer;
+import uk.ac.ebi.fgpt.zooma.util.Sorter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TestZoomaBatchAnnotation {
+    private Zooma zooma;
+    private CountingAnnotationSummaries annotationSummaries;
+
+    @BeforeEach
+    public void setUp() {
+        zooma = createZooma(8, new Properties());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        zooma.getAdmissionController().shutdownNow();
+    }
+
+    @Test
+    public void testIdenticalPropertiesAreSearchedOnce() throws IOException {
+        Map<Integer, JsonNode> results = annotateBatch(item(null, "liver"),
+                                                       item(null, "  liver "),
+                                                       item("organism part", "liver"),
+                                                       item(null, "heart"));
+
+        assertEquals(4, results.size(), "Every item should have a result line");
+        for (JsonNode result : results.values()) {
+            assertEquals("OK", result.get("status").asText());
+        }
+        assertEquals(1, annotationSummaries.getSearchCount("liver"));
+        assertEquals(1, annotationSummaries.getSearchCount("organism part/liver"));
+        assertEquals(1, annotationSummaries.getSearchCount("heart"));
+    }
+
+    @Test
+    public void testFailedAndSlowSearchesAreReported() throws IOException {
+        Map<Integer, JsonNode> results = annotateBatch(item(null, "broken"),
+                                                       item(null, "slow search"),
+                                                       item(null, "heart"));
+
+        assertEquals("ERROR", results.get(0).get("status").asText());
+        assertTrue(results.get(0).get("message").asText().contains("index unavailable"));
+        assertEquals("TIMEOUT", results.get(1).get("status").asText());
+        assertEquals("OK", results.get(2).get("status").asText());
+    }
+
+    @Test
+    public void testSearchesInFlightAreBounded() throws IOException {
+        AnnotationBatchRequest.Item[] items = new AnnotationBatchRequest.Item[10];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = item(null, "tissue " + i);
+        }
+        Map<Integer, JsonNode> results = annotateBatch(items);
+
+        assertEquals(10, results.size());
+        assertTrue(annotationSummaries.getMaxConcurrentSearches() <= 2,
+                   annotationSummaries.getMaxConcurrentSearches() + " searches from one batch ran at once");
+    }
+
+    @Test
+    public void testBatchSearchesShareCachedPredictions() throws IOException {
+        AnnotationPredictionCache cache = new AnnotationPredictionCache();
+        zooma.setAnnotationPredictionCache(cache);
+
+        annotateBatch(item(null, "liver"));
+        Map<Integer, JsonNode> results = annotateBatch(item(null, "liver"));
+
+        assertEquals("OK", results.get(0).get("status").asText());
+        assertEquals(1, annotationSummaries.getSearchCount("liver"));
+        assertEquals(1L, cache.getStatistics().get("hits"));
+    }
+
+    @Test
+    public void testShedSearchesAreRejected() throws Exception {
+        zooma = createSheddingZooma();
+
+        // the only search thread is busy, so the next search queues for longer than allowed and is shed
+        Thread busy = startBusySearch();
+        assertThrows(RejectedExecutionException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                zooma.annotate("liver", new URI[0], new URI[0]);
+            }
+        });
+        busy.join();
+        assertEquals(0, annotationSummaries.getSearchCount("liver"));
+    }
+
+    @Test
+    public void testShedBatchSearchesAreReportedAsRejected() throws Exception {
+        zooma = createSheddingZooma();
+
+        Map<Integer, JsonNode> results = annotateBatch(item(null, "busy"), item(null, "liver"));
+        assertEquals("OK", results.get(0).get("status").asText());
+        assertEquals("REJECTED", results.get(1).get("status").asText());
+        assertEquals(0, annotationSummaries.getSearchCount("liver"));
+    }
+
+    private Zooma createSheddingZooma() {
+        zooma.getAdmissionController().shutdownNow();
+        Properties configuration = new Properties();
+        configuration.setProperty("zooma.search.timeout", "2");
+        configuration.setProperty("zooma.search.admission.queue.time.interactive", "0.1");
+        configuration.setProperty("zooma.search.admission.queue.time.bulk", "0.1");
+        return createZooma(1, configuration);
+    }
+
+    private Thread startBusySearch() throws InterruptedException {
+        Thread busy = new Thread(new Runnable() {
+            @Override public void run() {
+                zooma.annotate("busy", new URI[0], new URI[0]);
+            }
+        });
+        busy.start();
+        while (annotationSummaries.getSearchCount("busy") == 0) {
+            Thread.sleep(10);
+        }
+        return busy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Zooma createZooma(int threads, Properties configuration) {
+        configuration.setProperty("zooma.search.significance.score", "80");
+        configuration.setProperty("zooma.search.cutoff.score", "0.9");
+        if (!configuration.containsKey("zooma.search.timeout")) {
+            configuration.setProperty("zooma.search.timeout", "0.5");
+        }
+        configuration.setProperty("zooma.search.ols.cutoff.score", "0.8");
+        configuration.setProperty("ols.term.location", "http://www.ebi.ac.uk/ols/ontologies/efo/terms?iri=");
+        configuration.setProperty("zooma.search.concurrent.threads", Integer.toString(threads));
+        configuration.setProperty("zooma.search.max.queue", "100");
+        configuration.setProperty("zooma.search.batch.concurrency", "2");
+
+        annotationSummaries = new CountingAnnotationSummaries(mock(AnnotationSummaryService.class),
+                                                              mock(AnnotationSummarySearchService.class),
+                                                              mock(Sorter.class),
+                                                              mock(Limiter.class),
+                                                              mock(Scorer.class));
+        return new Zooma(null, null, annotationSummaries, configuration);
+    }
+
+    private Map<Integer, JsonNode> annotateBatch(AnnotationBatchRequest.Item... items) throws IOException {
+        AnnotationBatchRequest request = new AnnotationBatchRequest();
+        Collections.addAll(request.getItems(), items);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        zooma.batchAnnotationEndpoint(request, response);
+
+        Map<Integer, JsonNode> results = new HashMap<>();
+        ObjectMapper mapper = new ObjectMapper();
+        for (String line : response.getContentAsString().split("\n")) {
+            if (!line.isEmpty()) {
+                JsonNode result = mapper.readTree(line);
+                results.put(result.get("index").asInt(), result);
+            }
+        }
+        return results;
+    }
+
+    private AnnotationBatchRequest.Item item(String propertyType, String propertyValue) {
+        return new AnnotationBatchRequest.Item(propertyType, propertyValue);
+    }
+
+    /**
+     * Finds no annotation summaries for any property, but records how often each property is searched for and how
+     * many searches run at once.  Searches for 'broken' fail, searches for 'slow search' never finish in time, and
+     * searches for 'busy' take half a second.
+     */
+    private static class CountingAnnotationSummaries extends ZoomaAnnotationSummaries {
+        private final ConcurrentMap<String, AtomicInteger> searchCounts = new ConcurrentHashMap<>();
+        private final AtomicInteger concurrentSearches = new AtomicInteger();
+        private final AtomicInteger maxConcurrentSearches = new AtomicInteger();
+
+        private CountingAnnotationSummaries(AnnotationSummaryService annotationSummaryService,
+                                            AnnotationSummarySearchService annotationSummarySearchService,
+                                            Sorter<AnnotationSummary> annotationSummarySorter,
+                                            Limiter<AnnotationSummary> annotationSummaryLimiter,
+                                            Scorer<AnnotationSummary> annotationSummaryScorer) {
+            super(annotationSummaryService,
+                  annotationSummarySearchService,
+                  annotationSummarySorter,
+                  annotationSummaryLimiter,
+                  annotationSummaryScorer);
+        }
+
+        public int getSearchCount(String search) {
+            AtomicInteger count = searchCounts.get(search);
+            return count == null ? 0 : count.get();
+        }
+
+        public int getMaxConcurrentSearches() {
+            return maxConcurrentSearches.get();
+        }
+
+        @Override public Map<AnnotationSummary, Float> queryAndScore(String query,
+                                                                     URI[] sources,
+                                                                     URI[] ontologySources,
+                                                                     int limit) {
+            return search(query);
+        }
+
+        @Override public Map<AnnotationSummary, Float> queryAndScore(String query,
+                                                                     String type,
+                                                                     URI[] sources,
+                                                                     URI[] ontologySources,
+                                                                     int limit) {
+            return search(type + "/" + query);
+        }
+
+        private Map<AnnotationSummary, Float> search(String search) {
+            searchCounts.putIfAbsent(search, new AtomicInteger());
+            searchCounts.get(search).incrementAndGet();
+            int running = concurrentSearches.incrementAndGet();
+            synchronized (maxConcurrentSearches) {
+                if (running > maxConcurrentSearches.get()) {
+                    maxConcurrentSearches.set(running);
+                }
+            }
+            try {
+                if (search.equals("broken")) {
+                    throw new IllegalStateException("index unavailable");
+                }
+                Thread.sleep(search.equals("slow search") ? 10000 : search.equals("busy") ? 500 : 20);
+                return Collections.emptyMap();
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException("Search for '" + search + "' was interrupted", e);
+            }
+            finally {
+                concurrentSearches.decrementAndGet();
+            }
+        }
+    }
+}
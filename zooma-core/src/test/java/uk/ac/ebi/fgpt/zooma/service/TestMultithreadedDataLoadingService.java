@@ -0,0 +1,170 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.fgpt.zooma.datasource.StreamingDAO;
+import uk.ac.ebi.fgpt.zooma.datasource.ZoomaCursor;
+import uk.ac.ebi.fgpt.zooma.io.ZoomaLoader;
+import uk.ac.ebi.fgpt.zooma.model.Identifiable;
+import uk.ac.ebi.fgpt.zooma.model.Update;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMultithreadedDataLoadingService {
+    private MultithreadedDataLoadingService<Item> dataLoadingService;
+    private List<Integer> loaded;
+    private List<Integer> blockSizes;
+
+    @BeforeEach
+    public void setUp() {
+        loaded = Collections.synchronizedList(new ArrayList<Integer>());
+        blockSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        dataLoadingService = new MultithreadedDataLoadingService<>(1, 4);
+        dataLoadingService.setBlockSize(10);
+        dataLoadingService.setZoomaLoader(new ZoomaLoader<Item>() {
+            @Override public void load(String datasourceName, Collection<Item> zoomaObjects) {
+                blockSizes.add(zoomaObjects.size());
+                for (Item item : zoomaObjects) {
+                    loaded.add(item.number);
+                }
+            }
+
+            @Override public void load(Item zoomaObject) {
+                throw new UnsupportedOperationException("Items should be loaded in blocks");
+            }
+
+            @Override public void loadSupplementaryData(String datasourceName, InputStream rdfInputStream) {
+                throw new UnsupportedOperationException("Test datasource is not semantically enriched");
+            }
+
+            @Override public void update(Collection<Item> zoomaObject, Update<Item> update) {
+                throw new UnsupportedOperationException("Items should not be updated");
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataLoadingService.shutdown();
+    }
+
+    @Test
+    public void testStreamingDatasourcesAreLoadedThroughCursor() throws InterruptedException {
+        StreamingItemDAO datasource = new StreamingItemDAO(25);
+        dataLoadingService.load(datasource).waitUntilCompletion();
+
+        assertEquals(25, loaded.size());
+        Collections.sort(blockSizes);
+        assertEquals(Arrays.asList(5, 10, 10), blockSizes);
+        assertTrue(datasource.cursor.closed, "Cursor should be closed once loading is complete");
+    }
+
+    @Test
+    public void testStreamingStopsAtMaxCount() throws InterruptedException {
+        dataLoadingService.setMaxCount(15);
+        StreamingItemDAO datasource = new StreamingItemDAO(100);
+        dataLoadingService.load(datasource).waitUntilCompletion();
+
+        assertEquals(15, loaded.size());
+        assertEquals(15, datasource.cursor.read);
+        assertTrue(datasource.cursor.closed);
+    }
+
+    private static class Item implements Identifiable {
+        private final int number;
+
+        private Item(int number) {
+            this.number = number;
+        }
+
+        @Override public URI getURI() {
+            return URI.create("http://www.ebi.ac.uk/zooma/test/" + number);
+        }
+    }
+
+    /**
+     * A datasource that can only be read through a cursor, so that loading fails if it is counted or read in pages
+     */
+    private static class StreamingItemDAO implements StreamingDAO<Item> {
+        private final int size;
+        private ItemCursor cursor;
+
+        private StreamingItemDAO(int size) {
+            this.size = size;
+        }
+
+        @Override public ZoomaCursor<Item> openCursor() {
+            cursor = new ItemCursor(size);
+            return cursor;
+        }
+
+        @Override public String getDatasourceName() {
+            return "test.streaming";
+        }
+
+        @Override public int count() {
+            throw new UnsupportedOperationException("Streaming datasources should not be counted");
+        }
+
+        @Override public void create(Item identifiable) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public Collection<Item> read() {
+            throw new UnsupportedOperationException("Streaming datasources should be read through a cursor");
+        }
+
+        @Override public List<Item> read(int size, int start) {
+            throw new UnsupportedOperationException("Streaming datasources should be read through a cursor");
+        }
+
+        @Override public Item read(URI uri) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void update(Item object) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void delete(Item object) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class ItemCursor implements ZoomaCursor<Item> {
+        private final int size;
+        private volatile int read = 0;
+        private volatile boolean closed = false;
+
+        private ItemCursor(int size) {
+            this.size = size;
+        }
+
+        @Override public boolean hasNext() {
+            return read < size;
+        }
+
+        @Override public Item next() {
+            return new Item(++read);
+        }
+
+        @Override public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationPrediction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TestAnnotationPredictionCache {
+    private AnnotationPredictionCache cache;
+    private List<Runnable> submitted;
+    private Executor executor;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new AnnotationPredictionCache();
+        submitted = new ArrayList<>();
+        executor = new Executor() {
+            @Override public void execute(Runnable command) {
+                submitted.add(command);
+            }
+        };
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneSearch() throws Exception {
+        AtomicInteger searchCount = new AtomicInteger();
+        Future<List<AnnotationPrediction>> first = cache.get("liver", createSearch(2, searchCount), executor);
+        Future<List<AnnotationPrediction>> second = cache.get("liver", createSearch(2, searchCount), executor);
+        assertEquals(1, submitted.size());
+
+        runSubmitted();
+        assertSame(first.get(), second.get());
+        assertEquals(1, searchCount.get());
+
+        Future<List<AnnotationPrediction>> third = cache.get("liver", createSearch(2, searchCount), executor);
+        assertTrue(third.isDone());
+        assertSame(first.get(), third.get());
+        assertTrue(submitted.isEmpty());
+
+        Map<String, Object> statistics = cache.getStatistics();
+        assertEquals(1L, statistics.get("hits"));
+        assertEquals(1L, statistics.get("collapsedRequests"));
+        assertEquals(1L, statistics.get("misses"));
+        assertEquals(2f / 3f, (Float) statistics.get("hitRatio"), 0.001f);
+    }
+
+    @Test
+    public void testSearchIsOnlyCancelledOnceAbandonedByAllRequests() {
+        final Future<List<AnnotationPrediction>> first = cache.get("liver", createSearch(1, null), executor);
+        Future<List<AnnotationPrediction>> second = cache.get("liver", createSearch(1, null), executor);
+
+        assertTrue(first.cancel(true));
+        assertTrue(first.isCancelled());
+        assertFalse(second.isDone());
+
+        assertTrue(second.cancel(true));
+        assertThrows(CancellationException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                first.get();
+            }
+        });
+        assertEquals(0, cache.getStatistics().get("size"));
+    }
+
+    @Test
+    public void testCompletionListenerIsNotifiedWhenResultIsAvailable() {
+        final AtomicInteger notifications = new AtomicInteger();
+        Runnable completionListener = new Runnable() {
+            @Override public void run() {
+                notifications.incrementAndGet();
+            }
+        };
+        cache.get("liver", createSearch(1, null), executor, completionListener);
+        cache.get("liver", createSearch(1, null), executor, completionListener);
+        assertEquals(0, notifications.get());
+
+        runSubmitted();
+        assertEquals(2, notifications.get());
+
+        // cached results are already available, so the listener is notified at once
+        cache.get("liver", createSearch(1, null), executor, completionListener);
+        assertEquals(3, notifications.get());
+    }
+
+    @Test
+    public void testFailedSearchesAreNotCached() {
+        final Future<List<AnnotationPrediction>> failed = cache.get("liver", new Callable<List<AnnotationPrediction>>() {
+            @Override public List<AnnotationPrediction> call() throws Exception {
+                throw new IllegalStateException("index unavailable");
+            }
+        }, executor);
+        runSubmitted();
+        assertThrows(ExecutionException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                failed.get();
+            }
+        });
+
+        cache.get("liver", createSearch(1, null), executor);
+        assertEquals(1, submitted.size());
+    }
+
+    @Test
+    public void testIncompleteSearchesAreNotCached() throws Exception {
+        final Callable<List<AnnotationPrediction>> complete = createSearch(2, null);
+        AnnotationPredictionCache.PredictionSearch truncated = new AnnotationPredictionCache.PredictionSearch() {
+            @Override public boolean isComplete() {
+                return false;
+            }
+
+            @Override public List<AnnotationPrediction> call() throws Exception {
+                return complete.call();
+            }
+        };
+        Future<List<AnnotationPrediction>> first = cache.get("liver", truncated, executor);
+        Future<List<AnnotationPrediction>> second = cache.get("liver", truncated, executor);
+        runSubmitted();
+
+        // partial results still go to every request waiting for them...
+        assertEquals(2, first.get().size());
+        assertSame(first.get(), second.get());
+        assertEquals(0, cache.getStatistics().get("size"));
+        assertEquals(1L, cache.getStatistics().get("incompleteSearches"));
+
+        // ...but the next request searches again
+        cache.get("liver", createSearch(2, null), executor);
+        assertEquals(1, submitted.size());
+    }
+
+    @Test
+    public void testEvictionByWeight() throws Exception {
+        cache.setMaxWeight(5);
+        cache.get("liver", createSearch(3, null), executor);
+        cache.get("lung", createSearch(1, null), executor);
+        runSubmitted();
+
+        // reading liver makes lung the least recently used search
+        cache.get("liver", createSearch(3, null), executor);
+        cache.get("heart", createSearch(2, null), executor);
+        runSubmitted();
+
+        assertEquals(2, cache.getStatistics().get("size"));
+        assertEquals(5L, cache.getStatistics().get("weight"));
+        assertEquals(1L, cache.getStatistics().get("evictions"));
+        cache.get("liver", createSearch(3, null), executor);
+        assertTrue(submitted.isEmpty());
+        cache.get("lung", createSearch(1, null), executor);
+        assertEquals(1, submitted.size());
+    }
+
+    @Test
+    public void testDataChangedDiscardsResults() throws Exception {
+        Future<List<AnnotationPrediction>> running = cache.get("liver", createSearch(1, null), executor);
+        cache.get("lung", createSearch(1, null), executor);
+        submitted.remove(0).run();
+
+        cache.dataChanged();
+        runSubmitted();
+        assertEquals(1, running.get().size());
+        assertEquals(0, cache.getStatistics().get("size"));
+
+        cache.get("liver", createSearch(1, null), executor);
+        cache.get("lung", createSearch(1, null), executor);
+        assertEquals(2, submitted.size());
+        assertEquals(1L, cache.getStatistics().get("invalidations"));
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysSearches() {
+        cache.setMaxEntries(0);
+        cache.get("liver", createSearch(1, null), executor);
+        runSubmitted();
+        cache.get("liver", createSearch(1, null), executor);
+        assertEquals(1, submitted.size());
+        assertEquals(0, cache.getStatistics().get("size"));
+    }
+
+    private Callable<List<AnnotationPrediction>> createSearch(final int predictionCount, final AtomicInteger counter) {
+        return new Callable<List<AnnotationPrediction>>() {
+            @Override public List<AnnotationPrediction> call() throws Exception {
+                if (counter != null) {
+                    counter.incrementAndGet();
+                }
+                List<AnnotationPrediction> predictions = new ArrayList<>();
+                for (int i = 0; i < predictionCount; i++) {
+                    predictions.add(mock(AnnotationPrediction.class));
+                }
+                return Collections.unmodifiableList(predictions);
+            }
+        };
+    }
+
+    private void runSubmitted() {
+        while (!submitted.isEmpty()) {
+            submitted.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Admits searches onto a fixed pool of search threads, limiting how many searches run at once and shedding load once
+ * searches start to queue for too long.
+ * <p/>
+ * The number of searches allowed to run concurrently adapts to observed latency.  It grows by roughly one each time a
+ * full limit's worth of searches completes within the target latency, and is cut by the backoff ratio whenever a search
+ * takes longer (additive increase, multiplicative decrease).  It never exceeds the number of search threads, or falls
+ * below the minimum concurrency.
+ * <p/>
+ * Searches are submitted to one of two {@link Lane}s.  Interactive searches are always dispatched ahead of bulk
+ * searches, and bulk searches may only occupy a share of the concurrency limit, so that bulk mapping cannot starve
+ * interactive requests.  Each lane has its own queue, and a search is rejected with a {@link
+ * RejectedExecutionException} if its queue is full, or if the oldest search in the queue has already waited for longer
+ * than the lane's maximum queue time (as a new search would only wait longer still).  Searches that nevertheless wait
+ * past this time are shed instead of being run, so long as they were submitted as a {@link Future}.  A shed {@link
+ * SearchTask} fails with a {@link SearchShedException}, and any other future is cancelled.
+ *
+ * @date 18/10/26
+ */
+public class SearchAdmissionController {
+    public enum Lane {
+        INTERACTIVE,
+        BULK
+    }
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+
+    private int minConcurrency = 1;
+    private long targetLatency = 1000; // Default 1 second
+    private float backoffRatio = 0.9f;
+    private float bulkShare = 0.75f;
+
+    // guarded by this
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private double concurrencyLimit;
+    private int running = 0;
+    private long lastDecrease = 0;
+    private long decreases = 0;
+    private boolean shutdown = false;
+
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    protected Logger getLog() {
+        return log;
+    }
+
+    /**
+     * Creates a new admission controller.  Search threads are started when the first search is submitted.
+     *
+     * @param name           the name of this controller, used to name its search threads
+     * @param maxConcurrency the number of search threads, and so the most searches that may ever run at once
+     * @param queueCapacity  the most searches that may wait in each lane, or -1 for no limit
+     */
+    public SearchAdmissionController(String name, int maxConcurrency, int queueCapacity) {
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = queueCapacity;
+        this.concurrencyLimit = maxConcurrency;
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneState());
+        }
+    }
+
+    /**
+     * Configures this controller from the <code>zooma.search.admission.*</code> properties.  Times are given in
+     * seconds, and any property that is absent leaves the current setting unchanged.
+     *
+     * @param configuration the ZOOMA configuration properties
+     */
+    public void setConfigurationProperties(Properties configuration) {
+        if (configuration.containsKey("zooma.search.admission.min.threads")) {
+            setMinConcurrency(Integer.parseInt(configuration.getProperty("zooma.search.admission.min.threads")));
+        }
+        if (configuration.containsKey("zooma.search.admission.target.latency")) {
+            setTargetLatency(parseMillis(configuration.getProperty("zooma.search.admission.target.latency")));
+        }
+        if (configuration.containsKey("zooma.search.admission.backoff")) {
+            setBackoffRatio(Float.parseFloat(configuration.getProperty("zooma.search.admission.backoff")));
+        }
+        if (configuration.containsKey("zooma.search.admission.bulk.share")) {
+            setBulkShare(Float.parseFloat(configuration.getProperty("zooma.search.admission.bulk.share")));
+        }
+        if (configuration.containsKey("zooma.search.admission.queue.time.interactive")) {
+            setMaxQueueTime(Lane.INTERACTIVE,
+                            parseMillis(configuration.getProperty("zooma.search.admission.queue.time.interactive")));
+        }
+        if (configuration.containsKey("zooma.search.admission.queue.time.bulk")) {
+            setMaxQueueTime(Lane.BULK,
+                            parseMillis(configuration.getProperty("zooma.search.admission.queue.time.bulk")));
+        }
+    }
+
+    public synchronized int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public synchronized void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = Math.max(1, Math.min(minConcurrency, maxConcurrency));
+        this.concurrencyLimit = Math.max(this.minConcurrency, concurrencyLimit);
+    }
+
+    public synchronized long getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * Sets the time within which searches are expected to complete.  Whenever a search takes longer than this, the
+     * concurrency limit is reduced.
+     *
+     * @param targetLatency the target latency, in milliseconds
+     */
+    public synchronized void setTargetLatency(long targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    public synchronized float getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Sets the ratio by which the concurrency limit is multiplied whenever a search exceeds the target latency
+     *
+     * @param backoffRatio a ratio between 0 and 1
+     */
+    public synchronized void setBackoffRatio(float backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1 (was " + backoffRatio + ")");
+        }
+        this.backoffRatio = backoffRatio;
+    }
+
+    public synchronized float getBulkShare() {
+        return bulkShare;
+    }
+
+    /**
+     * Sets the share of the concurrency limit that bulk searches may occupy.  At least one bulk search may always run.
+     *
+     * @param bulkShare a share between 0 and 1
+     */
+    public synchronized void setBulkShare(float bulkShare) {
+        if (bulkShare <= 0 || bulkShare > 1) {
+            throw new IllegalArgumentException("Bulk share must be greater than 0 and at most 1 " +
+                                                       "(was " + bulkShare + ")");
+        }
+        this.bulkShare = bulkShare;
+    }
+
+    public synchronized long getMaxQueueTime(Lane lane) {
+        return lanes.get(lane).maxQueueTime;
+    }
+
+    /**
+     * Sets the longest time that searches in the given lane may wait before they are shed
+     *
+     * @param lane         the lane to set the queue time for
+     * @param maxQueueTime the maximum queue time, in milliseconds, or 0 to let searches wait indefinitely
+     */
+    public synchronized void setMaxQueueTime(Lane lane, long maxQueueTime) {
+        lanes.get(lane).maxQueueTime = maxQueueTime;
+    }
+
+    public synchronized int getConcurrencyLimit() {
+        return Math.max(minConcurrency, (int) concurrencyLimit);
+    }
+
+    /**
+     * Returns an executor that submits tasks to the given lane of this controller
+     *
+     * @param lane the lane to submit tasks to
+     * @return an executor for this lane
+     */
+    public Executor getExecutor(final Lane lane) {
+        return new Executor() {
+            @Override public void execute(Runnable command) {
+                SearchAdmissionController.this.execute(command, lane);
+            }
+        };
+    }
+
+    /**
+     * Submits a search to the given lane.  Searches should be submitted as a {@link SearchTask}, so that they fail
+     * with a {@link SearchShedException} if they are shed after queueing for too long.  Other futures are cancelled
+     * when shed.
+     *
+     * @param task the search to run
+     * @param lane the lane to submit the search to
+     * @throws RejectedExecutionException if the lane is overloaded, or this controller has been shut down
+     */
+    public synchronized void execute(Runnable task, Lane lane) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Search rejected - " + name + " has been shut down");
+        }
+        if (workers.isEmpty()) {
+            startWorkers();
+        }
+
+        LaneState state = lanes.get(lane);
+        state.submitted++;
+        long now = System.currentTimeMillis();
+        String reason = null;
+        if (queueCapacity >= 0 && state.queue.size() >= queueCapacity + getIdleSlots(lane)) {
+            reason = "the " + lane.name().toLowerCase() + " search queue is full";
+        }
+        else if (state.isExpired(state.queue.peek(), now)) {
+            reason = "queued " + lane.name().toLowerCase() + " searches have waited for " +
+                    "longer than " + state.maxQueueTime + "ms";
+        }
+        if (reason != null) {
+            state.rejected++;
+            getLog().warn("Search rejected - " + reason + "; " +
+                                  "queued searches: " + state.queue.size() + "; " +
+                                  "running searches: " + running + "; " +
+                                  "concurrency limit: " + getConcurrencyLimit());
+            throw new RejectedExecutionException("Search rejected - " + reason);
+        }
+
+        state.queue.add(new QueuedTask(task, lane, now));
+        notifyAll();
+    }
+
+    /**
+     * Returns statistics describing the load on this controller, overall and for each lane
+     *
+     * @return a map of statistic names to values
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("threads", maxConcurrency);
+        statistics.put("concurrencyLimit", getConcurrencyLimit());
+        statistics.put("running", running);
+        statistics.put("limitDecreases", decreases);
+        for (Lane lane : Lane.values()) {
+            LaneState state = lanes.get(lane);
+            Map<String, Object> laneStatistics = new LinkedHashMap<>();
+            laneStatistics.put("queued", state.queue.size());
+            laneStatistics.put("running", state.running);
+            laneStatistics.put("submitted", state.submitted);
+            laneStatistics.put("completed", state.completed);
+            laneStatistics.put("rejected", state.rejected);
+            laneStatistics.put("shed", state.shed);
+            laneStatistics.put("meanQueueTimeMillis",
+                               state.dispatched == 0 ? 0 : state.totalQueueTime / state.dispatched);
+            laneStatistics.put("meanLatencyMillis",
+                               state.completed == 0 ? 0 : state.totalLatency / state.completed);
+            statistics.put(lane.name().toLowerCase(), laneStatistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Stops all search threads, interrupting any running searches
+     *
+     * @return the searches that were queued, and will now never run
+     */
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> queued = new ArrayList<>();
+        for (LaneState state : lanes.values()) {
+            for (QueuedTask task : state.queue) {
+                queued.add(task.task);
+            }
+            state.queue.clear();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        notifyAll();
+        return queued;
+    }
+
+    private void startWorkers() {
+        for (int i = 1; i <= maxConcurrency; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override public void run() {
+                    work();
+                }
+            }, name + "-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            QueuedTask task = null;
+            List<QueuedTask> expired = new ArrayList<>();
+            synchronized (this) {
+                try {
+                    while (task == null && expired.isEmpty()) {
+                        if (shutdown) {
+                            return;
+                        }
+                        task = dispatch(expired);
+                        if (task == null && expired.isEmpty()) {
+                            wait();
+                        }
+                    }
+                }
+                catch (InterruptedException e) {
+                    // interrupts left over from cancelled searches are ignored, unless we are shutting down
+                    continue;
+                }
+            }
+
+            // cancel outside the lock, as cancelling completes the search and may call back into its submitter
+            for (QueuedTask shed : expired) {
+                String reason = "Search shed after queueing for longer than " +
+                        lanes.get(shed.lane).maxQueueTime + "ms";
+                getLog().debug(reason);
+                if (shed.task instanceof SearchTask) {
+                    ((SearchTask<?>) shed.task).shed(new SearchShedException(reason));
+                }
+                else {
+                    ((Future<?>) shed.task).cancel(false);
+                }
+            }
+
+            if (task != null) {
+                // clear any interrupt left over from a search cancelled whilst running on this thread
+                Thread.interrupted();
+                long started = System.currentTimeMillis();
+                try {
+                    task.task.run();
+                }
+                catch (RuntimeException e) {
+                    getLog().error("Search failed with an unexpected exception", e);
+                }
+                finally {
+                    completed(task, started, System.currentTimeMillis());
+                }
+            }
+        }
+    }
+
+    private QueuedTask dispatch(List<QueuedTask> expired) {
+        if (running >= getConcurrencyLimit()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        QueuedTask task = poll(lanes.get(Lane.INTERACTIVE), expired, now);
+        if (task == null && lanes.get(Lane.BULK).running < getBulkLimit()) {
+            task = poll(lanes.get(Lane.BULK), expired, now);
+        }
+        if (task != null) {
+            LaneState state = lanes.get(task.lane);
+            running++;
+            state.running++;
+            state.dispatched++;
+            state.totalQueueTime += now - task.submitted;
+        }
+        return task;
+    }
+
+    private QueuedTask poll(LaneState state, List<QueuedTask> expired, long now) {
+        QueuedTask task;
+        while ((task = state.queue.poll()) != null) {
+            if (state.isExpired(task, now) && task.task instanceof Future) {
+                state.shed++;
+                expired.add(task);
+            }
+            else {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void completed(QueuedTask task, long started, long finished) {
+        LaneState state = lanes.get(task.lane);
+        running--;
+        state.running--;
+        state.completed++;
+        long latency = finished - started;
+        state.totalLatency += latency;
+
+        if (latency > targetLatency) {
+            // searches that started before the last decrease were already running at the higher limit
+            if (started >= lastDecrease && concurrencyLimit > minConcurrency) {
+                concurrencyLimit = Math.max(minConcurrency, concurrencyLimit * backoffRatio);
+                lastDecrease = finished;
+                decreases++;
+                getLog().debug("Search took " + latency + "ms, " +
+                                       "reduced concurrency limit to " + getConcurrencyLimit());
+            }
+        }
+        else if (concurrencyLimit < maxConcurrency) {
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+        }
+        notifyAll();
+    }
+
+    private int getBulkLimit() {
+        return Math.max(1, (int) (getConcurrencyLimit() * bulkShare));
+    }
+
+    private int getIdleSlots(Lane lane) {
+        int idle = lane == Lane.BULK
+                ? Math.min(getBulkLimit() - lanes.get(Lane.BULK).running, getConcurrencyLimit() - running)
+                : getConcurrencyLimit() - running;
+        return Math.max(0, idle);
+    }
+
+    private static long parseMillis(String seconds) {
+        return (long) (Float.parseFloat(seconds) * 1000);
+    }
+
+    private static class QueuedTask {
+        private final Runnable task;
+        private final Lane lane;
+        private final long submitted;
+
+        private QueuedTask(Runnable task, Lane lane, long submitted) {
+            this.task = task;
+            this.lane = lane;
+            this.submitted = submitted;
+        }
+    }
+
+    private static class LaneState {
+        private final ArrayDeque<QueuedTask> queue = new ArrayDeque<>();
+        private long maxQueueTime = 0;
+
+        private int running = 0;
+        private long submitted = 0;
+        private long dispatched = 0;
+        private long completed = 0;
+        private long rejected = 0;
+        private long shed = 0;
+        private long totalQueueTime = 0;
+        private long totalLatency = 0;
+
+        private boolean isExpired(QueuedTask task, long now) {
+            return task != null && maxQueueTime > 0 && now - task.submitted > maxQueueTime;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a cascade of searches, where each search is only wanted if every search before it found nothing, and returns
+ * the results of the first search that found something.
+ * <p/>
+ * By default the searches run one after another, so a search that misses at every stage takes as long as all the
+ * stages together.  Once hedging is enabled, later stages are started speculatively on background threads while the
+ * earlier stages are still running: stage <i>n</i> is started <code>n</code> hedge delays after the cascade begins,
+ * or straight away if the first stage of this cascade has recently missed at least as often as the miss threshold.
+ * Results are still taken strictly in priority order, so a hedged cascade returns exactly what the serial cascade
+ * would, and every stage still running once a result has been chosen is cancelled.  A miss at every stage then takes
+ * roughly as long as the slowest stage.
+ * <p/>
+ * The first stage always runs on the calling thread, and a stage that has not yet started on a background thread by
+ * the time its result is needed is run on the calling thread instead, so a cascade never waits for a free background
+ * thread.  Background stages share the {@link SearchDeadline} of the calling thread, and once this deadline passes the
+ * cascade gives up and returns no results.
+ *
+ * @date 18/10/26
+ */
+public class SearchCascade {
+    private final String name;
+    private final int threadCount;
+
+    private boolean hedged = false;
+    private long hedgeDelay = 20; // Default 20 milliseconds between starting each stage
+    private float missThreshold = 0.8f;
+    private float missRateDecay = 0.05f;
+
+    // guarded by this
+    private final Map<String, CascadeState> cascades = new HashMap<>();
+    private ScheduledThreadPoolExecutor executor;
+
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    protected Logger getLog() {
+        return log;
+    }
+
+    /**
+     * Creates a new search cascade.  Background threads are started when the first hedged stage is scheduled.
+     *
+     * @param name        the name of this cascade, used to name its background threads
+     * @param threadCount the number of background threads used to run hedged stages
+     */
+    public SearchCascade(String name, int threadCount) {
+        this.name = name;
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Configures this cascade from the <code>zooma.search.cascade.*</code> properties.  Times are given in seconds,
+     * and any property that is absent leaves the current setting unchanged.
+     *
+     * @param configuration the ZOOMA configuration properties
+     */
+    public void setConfigurationProperties(Properties configuration) {
+        if (configuration.containsKey("zooma.search.cascade.hedged")) {
+            setHedged(Boolean.parseBoolean(configuration.getProperty("zooma.search.cascade.hedged")));
+        }
+        if (configuration.containsKey("zooma.search.cascade.hedge.delay")) {
+            setHedgeDelay((long) (Float.parseFloat(configuration.getProperty("zooma.search.cascade.hedge.delay")) *
+                    1000));
+        }
+        if (configuration.containsKey("zooma.search.cascade.miss.threshold")) {
+            setMissThreshold(Float.parseFloat(configuration.getProperty("zooma.search.cascade.miss.threshold")));
+        }
+    }
+
+    public synchronized boolean isHedged() {
+        return hedged;
+    }
+
+    /**
+     * Sets whether later stages may be started before earlier stages have missed.  If false, stages run one after
+     * another on the calling thread.
+     *
+     * @param hedged true to start later stages speculatively
+     */
+    public synchronized void setHedged(boolean hedged) {
+        this.hedged = hedged;
+    }
+
+    public synchronized long getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    /**
+     * Sets the time to wait before starting each successive stage of a hedged cascade
+     *
+     * @param hedgeDelay the hedge delay, in milliseconds
+     */
+    public synchronized void setHedgeDelay(long hedgeDelay) {
+        this.hedgeDelay = Math.max(0, hedgeDelay);
+    }
+
+    public synchronized float getMissThreshold() {
+        return missThreshold;
+    }
+
+    /**
+     * Sets the rate at which the first stage of a cascade must miss for the cascade to be predicted to miss, so that
+     * the later stages are started immediately rather than after the hedge delay.  A threshold above 1 disables this
+     * prediction.
+     *
+     * @param missThreshold the fraction of recent searches that missed, between 0 and 1
+     */
+    public synchronized void setMissThreshold(float missThreshold) {
+        this.missThreshold = missThreshold;
+    }
+
+    /**
+     * Runs the given stages in priority order, returning the results of the first stage that finds something, or the
+     * (empty) results of the last stage if none does.
+     *
+     * @param cascade the name of the cascade being run, used to predict whether its first stage will miss
+     * @param stages  the searches to run, in priority order
+     * @param <T>     the type of result found by each search
+     * @return the results of the first stage that found something, or an empty collection
+     */
+    public <T> Collection<T> execute(String cascade, List<Callable<Collection<T>>> stages) {
+        if (stages.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        long[] delays = scheduleStages(cascade, stages.size());
+        if (delays == null) {
+            return executeSerially(cascade, stages);
+        }
+        else {
+            return executeHedged(cascade, stages, delays);
+        }
+    }
+
+    /**
+     * @return statistics describing how often the first stage of each cascade has missed, and how often later stages
+     * were started speculatively
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("hedged", hedged);
+        statistics.put("hedgeDelayMillis", hedgeDelay);
+        for (Map.Entry<String, CascadeState> entry : cascades.entrySet()) {
+            CascadeState state = entry.getValue();
+            Map<String, Object> cascadeStatistics = new LinkedHashMap<>();
+            cascadeStatistics.put("searches", state.searches);
+            cascadeStatistics.put("missRate", state.missRate);
+            cascadeStatistics.put("predictedMisses", state.predictedMisses);
+            cascadeStatistics.put("hedgedStages", state.hedgedStages);
+            cascadeStatistics.put("cancelledStages", state.cancelledStages);
+            statistics.put(entry.getKey(), cascadeStatistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Stops all background threads, cancelling any hedged stages that are still running
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> Collection<T> executeSerially(String cascade, List<Callable<Collection<T>>> stages) {
+        Collection<T> results = new ArrayList<>();
+        for (int i = 0; i < stages.size(); i++) {
+            results = call(stages.get(i));
+            if (i == 0) {
+                recordFirstStage(cascade, results);
+            }
+            if (results != null && !results.isEmpty()) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    private <T> Collection<T> executeHedged(String cascade, List<Callable<Collection<T>>> stages, long[] delays) {
+        final SearchDeadline deadline = SearchDeadline.current();
+        List<FutureTask<Collection<T>>> tasks = new ArrayList<>();
+        List<ScheduledFuture<?>> schedules = new ArrayList<>();
+        try {
+            for (int i = 1; i < stages.size(); i++) {
+                FutureTask<Collection<T>> task = new FutureTask<>(withDeadline(stages.get(i), deadline));
+                tasks.add(task);
+                try {
+                    schedules.add(getExecutor().schedule(task, delays[i], TimeUnit.MILLISECONDS));
+                }
+                catch (RejectedExecutionException e) {
+                    // shutting down, so the task will be run on this thread if it is needed
+                    getLog().debug("Could not schedule stage " + i + " of cascade '" + cascade + "'", e);
+                }
+            }
+
+            Collection<T> results = call(stages.get(0));
+            recordFirstStage(cascade, results);
+            for (FutureTask<Collection<T>> task : tasks) {
+                if (results != null && !results.isEmpty()) {
+                    break;
+                }
+                // runs the task here, unless a background thread has already started it
+                task.run();
+                if (deadline == null) {
+                    results = task.get();
+                }
+                else {
+                    results = task.get(deadline.getRemaining(), TimeUnit.MILLISECONDS);
+                }
+            }
+            return results;
+        }
+        catch (TimeoutException e) {
+            getLog().debug("Search deadline passed before cascade '" + cascade + "' found any results");
+            SearchDeadline.markTruncated();
+            return new ArrayList<>();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            SearchDeadline.markTruncated();
+            return new ArrayList<>();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Stage of cascade '" + cascade + "' failed", e.getCause());
+        }
+        finally {
+            // cancel every stage that was started (or scheduled) but whose results are no longer needed
+            for (ScheduledFuture<?> schedule : schedules) {
+                schedule.cancel(false);
+            }
+            int cancelled = 0;
+            for (FutureTask<Collection<T>> task : tasks) {
+                if (task.cancel(true)) {
+                    cancelled++;
+                }
+            }
+            recordCancelled(cascade, cancelled);
+        }
+    }
+
+    /**
+     * Decides when each stage of the named cascade should be started
+     *
+     * @return the delay, in milliseconds, before starting each stage, or null if the stages should run serially
+     */
+    private synchronized long[] scheduleStages(String cascade, int stageCount) {
+        if (!hedged || stageCount < 2 || executor != null && executor.isShutdown()) {
+            return null;
+        }
+        CascadeState state = getState(cascade);
+        boolean predictedMiss = state.missRate >= missThreshold;
+        if (predictedMiss) {
+            state.predictedMisses++;
+        }
+        long[] delays = new long[stageCount];
+        for (int i = 1; i < stageCount; i++) {
+            delays[i] = predictedMiss ? 0 : i * hedgeDelay;
+        }
+        state.hedgedStages += stageCount - 1;
+        return delays;
+    }
+
+    private synchronized void recordFirstStage(String cascade, Collection<?> results) {
+        CascadeState state = getState(cascade);
+        float miss = results == null || results.isEmpty() ? 1 : 0;
+        state.missRate += (miss - state.missRate) * missRateDecay;
+        state.searches++;
+    }
+
+    private synchronized void recordCancelled(String cascade, int cancelled) {
+        getState(cascade).cancelledStages += cancelled;
+    }
+
+    private CascadeState getState(String cascade) {
+        CascadeState state = cascades.get(cascade);
+        if (state == null) {
+            state = new CascadeState();
+            cascades.put(cascade, state);
+        }
+        return state;
+    }
+
+    private synchronized ScheduledThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(threadCount, new ZoomaThreadFactory(name));
+            executor.setRemoveOnCancelPolicy(true);
+        }
+        return executor;
+    }
+
+    private static <T> Collection<T> call(Callable<Collection<T>> stage) {
+        try {
+            return stage.call();
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Search stage failed", e);
+        }
+    }
+
+    private static <T> Callable<Collection<T>> withDeadline(final Callable<Collection<T>> stage,
+                                                            final SearchDeadline deadline) {
+        if (deadline == null) {
+            return stage;
+        }
+        return new Callable<Collection<T>>() {
+            @Override public Collection<T> call() throws Exception {
+                SearchDeadline previous = deadline.attach();
+                try {
+                    return stage.call();
+                }
+                finally {
+                    SearchDeadline.restore(previous);
+                }
+            }
+        };
+    }
+
+    private static class CascadeState {
+        // exponentially weighted, starting from the assumption that searches hit
+        private float missRate = 0;
+        private long searches = 0;
+        private long predictedMisses = 0;
+        private long hedgedStages = 0;
+        private long cancelledStages = 0;
+    }
+}
@@ -0,0 +1,142 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+/**
+ * The time by which a search must be complete.  A deadline is attached to the thread running a search, so that every
+ * layer of the search stack (lucene queries, string expansion, OLS lookups) can bound its own work by the time remaining
+ * for the request as a whole, without this budget being passed through every service method.
+ * <p/>
+ * Layers that collect results incrementally should check {@link #isExceeded()} as they go, and return the best
+ * results found so far once the deadline has passed.  A deadline also counts as exceeded once the thread running the
+ * search has been interrupted, so that searches abandoned by their caller stop promptly.  Layers that stop early like
+ * this must also call {@link #markTruncated()}, so that the owner of the deadline knows the results are incomplete and
+ * does not cache them.
+ * <p/>
+ * Deadlines are not inherited by other threads; work handed to an executor must attach the deadline itself.
+ *
+ * @date 18/10/26
+ */
+public final class SearchDeadline {
+    private static final ThreadLocal<SearchDeadline> currentDeadline = new ThreadLocal<>();
+
+    private final long expiry;
+    private volatile boolean truncated = false;
+
+    private SearchDeadline(long expiry) {
+        this.expiry = expiry;
+    }
+
+    /**
+     * Creates a deadline the given number of milliseconds from now
+     *
+     * @param budget the time, in milliseconds, allowed for the search
+     * @return a deadline that is not yet attached to any thread
+     */
+    public static SearchDeadline after(long budget) {
+        return new SearchDeadline(System.currentTimeMillis() + budget);
+    }
+
+    /**
+     * Creates a deadline at the given time
+     *
+     * @param expiry the time, in milliseconds since the epoch, by which the search must be complete
+     * @return a deadline that is not yet attached to any thread
+     */
+    public static SearchDeadline at(long expiry) {
+        return new SearchDeadline(expiry);
+    }
+
+    /**
+     * @return the deadline attached to the current thread, or null if searches on this thread are unbounded
+     */
+    public static SearchDeadline current() {
+        return currentDeadline.get();
+    }
+
+    /**
+     * Returns true if the current thread has been interrupted, or the deadline attached to it (if any) has passed
+     *
+     * @return true if searches on the current thread should stop and return whatever they have found so far
+     */
+    public static boolean isExceeded() {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        SearchDeadline deadline = currentDeadline.get();
+        return deadline != null && deadline.hasPassed();
+    }
+
+    /**
+     * Returns the time left before the deadline attached to the current thread, capped at the given limit.  If no
+     * deadline is attached, the limit is returned unchanged.
+     *
+     * @param limit the most time, in milliseconds, that the caller would otherwise allow
+     * @return the smaller of the limit and the time remaining, which is 0 once the deadline has passed
+     */
+    public static long remaining(long limit) {
+        SearchDeadline deadline = currentDeadline.get();
+        return deadline == null ? limit : Math.min(limit, deadline.getRemaining());
+    }
+
+    /**
+     * Records that a search on the current thread returned incomplete results, because it stopped early when the
+     * deadline passed or the thread was interrupted.  Has no effect if no deadline is attached.
+     */
+    public static void markTruncated() {
+        SearchDeadline deadline = currentDeadline.get();
+        if (deadline != null) {
+            deadline.truncated = true;
+        }
+    }
+
+    /**
+     * Attaches this deadline to the current thread.  The returned deadline should be restored, in a finally block, once
+     * the search is complete.
+     *
+     * @return the deadline previously attached to the current thread, or null if there was none
+     */
+    public SearchDeadline attach() {
+        SearchDeadline previous = currentDeadline.get();
+        currentDeadline.set(this);
+        return previous;
+    }
+
+    /**
+     * Restores the deadline that was attached to the current thread before a call to {@link #attach()}
+     *
+     * @param previous the deadline returned by {@link #attach()}, which may be null
+     */
+    public static void restore(SearchDeadline previous) {
+        if (previous == null) {
+            currentDeadline.remove();
+        }
+        else {
+            currentDeadline.set(previous);
+        }
+    }
+
+    public long getExpiry() {
+        return expiry;
+    }
+
+    /**
+     * @return the time, in milliseconds, until this deadline, or 0 if it has passed
+     */
+    public long getRemaining() {
+        return Math.max(0, expiry - System.currentTimeMillis());
+    }
+
+    public boolean hasPassed() {
+        return System.currentTimeMillis() >= expiry;
+    }
+
+    /**
+     * @return true if any search run under this deadline, on any thread, returned incomplete results
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override public String toString() {
+        return "SearchDeadline{expiry=" + expiry + ", remaining=" + getRemaining() + "ms, truncated=" + truncated + "}";
+    }
+}
@@ -0,0 +1,16 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown by a {@link SearchTask} that was accepted by a {@link SearchAdmissionController}, but then shed because it
+ * queued for longer than its lane allows.  Like a search rejected on submission, this means ZOOMA is overloaded rather
+ * than that the search itself took too long.
+ *
+ * @date 18/10/26
+ */
+public class SearchShedException extends RejectedExecutionException {
+    public SearchShedException(String message) {
+        super(message);
+    }
+}
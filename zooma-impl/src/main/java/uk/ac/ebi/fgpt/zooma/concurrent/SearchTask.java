@@ -0,0 +1,21 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A search submitted to a {@link SearchAdmissionController}.  If the search is shed after queueing for too long, it
+ * fails with a {@link SearchShedException} instead of being cancelled, so that callers can tell an overloaded server
+ * apart from a search that was cancelled or timed out.
+ *
+ * @date 18/10/26
+ */
+public class SearchTask<V> extends FutureTask<V> {
+    public SearchTask(Callable<V> search) {
+        super(search);
+    }
+
+    void shed(SearchShedException e) {
+        setException(e);
+    }
+}
@@ -0,0 +1,229 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.fgpt.zooma.datasource.ZoomaCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A workload scheduler for workloads whose size is not known in advance.  Items are read from a {@link ZoomaCursor} by
+ * a single reader thread, collected into batches, and each batch is handed to the supplied executor as a separate task.
+ * <p/>
+ * Reading and processing form a bounded producer/consumer pipeline: at most <code>maxPendingBatches</code> batches may
+ * have been read but not yet processed at any one time, and the reader blocks until a batch completes once this limit
+ * is reached.  This means memory use is bounded by the size and number of pending batches however large the workload
+ * is, and the cursor is never read faster than the executor can process items.
+ * <p/>
+ * As with {@link WorkloadScheduler}, failed tasks are recorded and reported once the workload is complete, but do not
+ * stop subsequent batches being processed.  If the cursor itself fails, no further batches are read and the exception
+ * is rethrown from {@link #waitUntilComplete()} once any scheduled batches have finished.
+ *
+ * @param <T> the type of item being processed
+ * @date 18/10/26
+ */
+public abstract class StreamingWorkloadScheduler<T> {
+    private static int readerThreadCount = 1;
+
+    private final String workloadName;
+
+    private final ExecutorService executorService;
+    private final ZoomaCursor<T> cursor;
+    private final int batchSize;
+    private final int maxItems;
+    private final Semaphore pendingBatches;
+
+    private int itemsRead = 0;
+    private int scheduledBatches = 0;
+    private int completedBatches = 0;
+    private final List<String> failureReasons = new ArrayList<>();
+
+    private boolean isReadComplete = false;
+    private boolean isComplete = false;
+    private RuntimeException abortiveException = null;
+
+    private Logger log = LoggerFactory.getLogger(StreamingWorkloadScheduler.class);
+
+    /**
+     * Creates a new scheduler that will process every item read from the given cursor
+     *
+     * @param executorService   the executor to process batches with
+     * @param cursor            the cursor to read items from, which is closed once reading is complete
+     * @param batchSize         the number of items to process in each task
+     * @param maxPendingBatches the maximum number of batches that may be waiting for or undergoing processing
+     * @param maxItems          the maximum number of items to read, or 0 to read every item from the cursor
+     * @param workloadName      a name for this workload, used in logging and to name the reader thread
+     */
+    public StreamingWorkloadScheduler(ExecutorService executorService,
+                                      ZoomaCursor<T> cursor,
+                                      int batchSize,
+                                      int maxPendingBatches,
+                                      int maxItems,
+                                      String workloadName) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1 (was " + batchSize + ")");
+        }
+        if (maxPendingBatches < 1) {
+            throw new IllegalArgumentException(
+                    "At least 1 batch must be allowed to be pending (was " + maxPendingBatches + ")");
+        }
+        this.executorService = executorService;
+        this.cursor = cursor;
+        this.batchSize = batchSize;
+        this.maxItems = maxItems;
+        this.pendingBatches = new Semaphore(maxPendingBatches);
+
+        this.workloadName = workloadName;
+    }
+
+    protected Logger getLog() {
+        return log;
+    }
+
+    public void start() {
+        new Thread(new Runnable() {
+            @Override public void run() {
+                readBatches();
+            }
+        }, workloadName + "-Reader-" + readerThreadCount++).start();
+    }
+
+    public synchronized void waitUntilComplete() throws InterruptedException {
+        while (!isComplete) {
+            wait();
+        }
+
+        // if reading failed, throw the exception here
+        if (abortiveException != null) {
+            throw abortiveException;
+        }
+    }
+
+    /**
+     * @return the number of items read from the cursor so far
+     */
+    public synchronized int getItemsRead() {
+        return itemsRead;
+    }
+
+    private void readBatches() {
+        try {
+            int batchNumber = 1;
+            List<T> batch = new ArrayList<>();
+            while ((maxItems <= 0 || getItemsRead() < maxItems) && cursor.hasNext()) {
+                batch.add(cursor.next());
+                synchronized (this) {
+                    itemsRead++;
+                }
+                if (batch.size() == batchSize) {
+                    scheduleTask(batchNumber++, batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                scheduleTask(batchNumber, batch);
+            }
+            getLog().debug("Reading items for " + workloadName + " is complete, " + getItemsRead() + " items read");
+        }
+        catch (InterruptedException e) {
+            abort(new RuntimeException("Interrupted whilst waiting to schedule the next batch of " + workloadName, e));
+        }
+        catch (RuntimeException e) {
+            abort(e);
+        }
+        finally {
+            try {
+                cursor.close();
+            }
+            catch (RuntimeException e) {
+                getLog().warn("Failed to close cursor for " + workloadName + " (" + e.getMessage() + ")");
+            }
+            synchronized (this) {
+                isReadComplete = true;
+                checkCompletion();
+            }
+        }
+    }
+
+    private void scheduleTask(final int batchNumber, final List<T> batch) throws InterruptedException {
+        // wait until there is room for another batch - this is the only back-pressure on the reader
+        if (!pendingBatches.tryAcquire()) {
+            getLog().trace("Reached maximum number of pending batches for " + workloadName + ", " +
+                                   "waiting for a batch to complete...");
+            pendingBatches.acquire();
+        }
+        synchronized (this) {
+            scheduledBatches++;
+        }
+        getLog().debug("Scheduling batch " + batchNumber + " (" + batch.size() + " items) for " + workloadName);
+        try {
+            executorService.execute(new Runnable() {
+                @Override public void run() {
+                    try {
+                        getLog().debug("Executing batch " + batchNumber + " for " + workloadName);
+                        executeTask(batchNumber, batch);
+                        recordCompletion(batchNumber, null);
+                    }
+                    catch (Exception e) {
+                        getLog().error("Batch " + batchNumber + " failed for " + workloadName);
+                        getLog().debug(workloadName + ", batch " + batchNumber + " exception stack trace follows:", e);
+                        recordCompletion(batchNumber, e);
+                    }
+                    finally {
+                        pendingBatches.release();
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            pendingBatches.release();
+            getLog().error("Batch " + batchNumber + " for " + workloadName + " could not be scheduled");
+            recordCompletion(batchNumber, e);
+        }
+    }
+
+    private synchronized void recordCompletion(int batchNumber, Exception failure) {
+        completedBatches++;
+        if (failure != null) {
+            failureReasons.add("Batch " + batchNumber + ": " + failure.getMessage());
+        }
+        checkCompletion();
+    }
+
+    private synchronized void abort(RuntimeException e) {
+        getLog().error("Reading items for " + workloadName + " failed, no further batches will be scheduled", e);
+        abortiveException = e;
+    }
+
+    private synchronized void checkCompletion() {
+        if (isReadComplete && completedBatches == scheduledBatches && !isComplete) {
+            isComplete = true;
+            notifyAll();
+            getLog().debug("Processing of " + scheduledBatches + " batches for " + workloadName + " is complete");
+            if (!failureReasons.isEmpty()) {
+                StringBuilder errorMessage = new StringBuilder();
+                errorMessage.append("Loading data failed for ")
+                        .append(failureReasons.size())
+                        .append(" tasks.  The following problems were reported:\n")
+                        .append("\tWorkload - ").append(workloadName).append(":\n");
+                for (String reason : failureReasons) {
+                    errorMessage.append("\t\t* ").append(reason).append("\n");
+                }
+                getLog().error(errorMessage.toString());
+            }
+        }
+    }
+
+    /**
+     * Processes a single batch of items read from the cursor
+     *
+     * @param batchNumber the number of this batch, starting from 1
+     * @param batch       the items in this batch
+     * @throws Exception if processing this batch failed
+     */
+    protected abstract void executeTask(int batchNumber, List<T> batch) throws Exception;
+}
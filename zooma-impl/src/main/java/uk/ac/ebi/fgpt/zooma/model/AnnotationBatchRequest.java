@@ -0,0 +1,71 @@
+package uk.ac.ebi.fgpt.zooma.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A request to annotate many property values at once.  Every item in a batch is annotated using the same filter, which
+ * takes the same form as the filter argument of a single annotation request (for example,
+ * <code>required:[gwas]preferred:[atlas]</code>).
+ * <p/>
+ * Results of a batch are returned as a series of {@link AnnotationBatchResult}s, one for each item.
+ *
+ * @date 18/10/26
+ */
+public class AnnotationBatchRequest {
+    private String filter;
+    private List<Item> items;
+
+    public AnnotationBatchRequest() {
+        this.filter = "";
+        this.items = new ArrayList<>();
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+
+    /**
+     * A single property to annotate.  The property type is optional.
+     */
+    public static class Item {
+        private String propertyType;
+        private String propertyValue;
+
+        public Item() {
+        }
+
+        public Item(String propertyType, String propertyValue) {
+            this.propertyType = propertyType;
+            this.propertyValue = propertyValue;
+        }
+
+        public String getPropertyType() {
+            return propertyType;
+        }
+
+        public void setPropertyType(String propertyType) {
+            this.propertyType = propertyType;
+        }
+
+        public String getPropertyValue() {
+            return propertyValue;
+        }
+
+        public void setPropertyValue(String propertyValue) {
+            this.propertyValue = propertyValue;
+        }
+    }
+}
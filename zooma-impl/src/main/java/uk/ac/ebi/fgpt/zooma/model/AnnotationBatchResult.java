@@ -0,0 +1,96 @@
+package uk.ac.ebi.fgpt.zooma.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of annotating one item of an {@link AnnotationBatchRequest}.  Results are returned in the order searches
+ * complete, so each result carries the index of the item it belongs to.
+ * <p/>
+ * A result with an {@link Status#OK} status holds the predictions for this item, which may be empty if nothing could
+ * be predicted.  Any other status means this item could not be annotated, and the message describes why.
+ *
+ * @date 18/10/26
+ */
+public class AnnotationBatchResult {
+    private int index;
+    private String propertyType;
+    private String propertyValue;
+    private Status status;
+    private String message;
+    private List<AnnotationPrediction> predictions;
+
+    public AnnotationBatchResult() {
+        this.predictions = Collections.emptyList();
+    }
+
+    public AnnotationBatchResult(int index,
+                                 String propertyType,
+                                 String propertyValue,
+                                 Status status,
+                                 String message,
+                                 List<AnnotationPrediction> predictions) {
+        this.index = index;
+        this.propertyType = propertyType;
+        this.propertyValue = propertyValue;
+        this.status = status;
+        this.message = message;
+        this.predictions = predictions;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getPropertyType() {
+        return propertyType;
+    }
+
+    public void setPropertyType(String propertyType) {
+        this.propertyType = propertyType;
+    }
+
+    public String getPropertyValue() {
+        return propertyValue;
+    }
+
+    public void setPropertyValue(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public List<AnnotationPrediction> getPredictions() {
+        return predictions;
+    }
+
+    public void setPredictions(List<AnnotationPrediction> predictions) {
+        this.predictions = predictions;
+    }
+
+    public enum Status {
+        OK,
+        TIMEOUT,
+        // the server was too busy to search for this item, and it may be retried later
+        REJECTED,
+        ERROR
+    }
+}
@@ -1,6 +1,7 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
 import uk.ac.ebi.fgpt.zooma.Initializable;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchCascade;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
 
 import java.net.URI;
@@ -10,6 +11,10 @@ import java.util.List;
 /**
  * An abstract decorator of an {@link AnnotationSummarySearchService}.  You should subclass this decorator to create
  * different decorations that add functionality to annotation summary searches.
+ * <p>
+ * Decorators that fall back to further searches when a search finds nothing should run these searches through their
+ * {@link SearchCascade}.  By default this runs each search in turn, but a shared cascade can be supplied that starts
+ * the fallback searches speculatively.
  *
  * @author Tony Burdett
  * @date 02/08/13
@@ -19,10 +24,20 @@ public abstract class AnnotationSummarySearchServiceDecorator extends Initializa
         implements AnnotationSummarySearchService {
     private final AnnotationSummarySearchService _annotatationSummarySearchService;
 
+    private SearchCascade searchCascade = new SearchCascade("search-cascade", 1);
+
     public AnnotationSummarySearchServiceDecorator(AnnotationSummarySearchService annotationSummarySearchService) {
         this._annotatationSummarySearchService = annotationSummarySearchService;
     }
 
+    public SearchCascade getSearchCascade() {
+        return searchCascade;
+    }
+
+    public void setSearchCascade(SearchCascade searchCascade) {
+        this.searchCascade = searchCascade;
+    }
+
     @Override public Collection<AnnotationSummary> search(String propertyValuePattern, URI[] sources, URI[] ontologySources) {
         return _annotatationSummarySearchService.search(propertyValuePattern, sources, ontologySources);
     }
@@ -33,6 +48,25 @@ public abstract class AnnotationSummarySearchServiceDecorator extends Initializa
         return _annotatationSummarySearchService.search(propertyType, propertyValuePattern, sources, ontologySources);
     }
 
+    @Override public Collection<AnnotationSummary> search(String propertyValuePattern,
+                                                          URI[] sources,
+                                                          URI[] ontologySources,
+                                                          int limit) {
+        return _annotatationSummarySearchService.search(propertyValuePattern, sources, ontologySources, limit);
+    }
+
+    @Override public Collection<AnnotationSummary> search(String propertyType,
+                                                          String propertyValuePattern,
+                                                          URI[] sources,
+                                                          URI[] ontologySources,
+                                                          int limit) {
+        return _annotatationSummarySearchService.search(propertyType,
+                                                        propertyValuePattern,
+                                                        sources,
+                                                        ontologySources,
+                                                        limit);
+    }
+
     @Override
     public Collection<AnnotationSummary> searchByPrefix(String propertyValuePrefix, URI[] sources, URI[] ontologySources) {
         return _annotatationSummarySearchService.searchByPrefix(propertyValuePrefix, sources, ontologySources);
@@ -69,6 +103,32 @@ public abstract class AnnotationSummarySearchServiceDecorator extends Initializa
                                                                           requiredSources, ontologySources);
     }
 
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
+                                                                            List<URI> preferredSources,
+                                                                            URI[] requiredSources,
+                                                                            URI[] ontologySources,
+                                                                            int limit) {
+        return _annotatationSummarySearchService.searchByPreferredSources(propertyValuePattern,
+                                                                          preferredSources,
+                                                                          requiredSources,
+                                                                          ontologySources,
+                                                                          limit);
+    }
+
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyType,
+                                                                            String propertyValuePattern,
+                                                                            List<URI> preferredSources,
+                                                                            URI[] requiredSources,
+                                                                            URI[] ontologySources,
+                                                                            int limit) {
+        return _annotatationSummarySearchService.searchByPreferredSources(propertyType,
+                                                                          propertyValuePattern,
+                                                                          preferredSources,
+                                                                          requiredSources,
+                                                                          ontologySources,
+                                                                          limit);
+    }
+
     @Override protected void doInitialization() throws Exception {
         // do nothing by default
     }
@@ -4,6 +4,7 @@ import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * An {@link AnnotationSummarySearchServiceDecorator} that extends the functionality of an {@link
@@ -17,6 +18,9 @@ import java.util.*;
  * <p>
  * This service returns aggregated {@link AnnotationSummary} objects that represent an inferred mapping between the
  * searched property and the list of semantic tags obtained from one or more ZOOMA searches.
+ * <p>
+ * The typed and untyped searches are run as a {@link uk.ac.ebi.fgpt.zooma.concurrent.SearchCascade}, so the untyped
+ * search may be started before the typed search has finished if hedging is enabled.
  *
  * Created by olgavrou on 19/05/2016.
  */
@@ -28,44 +32,83 @@ public class NoTypeAnnotationSummarySearchService extends AnnotationSummarySearc
 
     @Override
     public Collection<AnnotationSummary> search(String propertyValuePattern, final URI[] sources, final URI[] ontologySources) {
-        Collection<AnnotationSummary> annotationSummaries = NoTypeAnnotationSummarySearchService.super.search(propertyValuePattern, sources, ontologySources);
-       //no propertyType given, nothing more to do
-        return annotationSummaries;
+        return search(propertyValuePattern, sources, ontologySources, -1);
     }
 
     @Override
     public Collection<AnnotationSummary> search(final String propertyType,
                                                 final String propertyValuePattern,
                                                 final URI[] sources, final URI[] ontologySources) {
-        Collection<AnnotationSummary> annotationSummaries = NoTypeAnnotationSummarySearchService.super.search(propertyType, propertyValuePattern, sources, ontologySources);
-        if (annotationSummaries == null || annotationSummaries.isEmpty()){
-            //search without the type
-            return NoTypeAnnotationSummarySearchService.super.search(propertyValuePattern, sources, ontologySources);
-        }
-        return annotationSummaries;
+        return search(propertyType, propertyValuePattern, sources, ontologySources, -1);
     }
 
     @Override
     public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources) {
-        Collection<AnnotationSummary> annotationSummaries = NoTypeAnnotationSummarySearchService.super.searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources);
-        //no propertyType given, nothing more to do
-        return annotationSummaries;
+        return searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, -1);
     }
 
     @Override
     public Collection<AnnotationSummary> searchByPreferredSources(String propertyType, String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources) {
-        Collection<AnnotationSummary> annotationSummaries = NoTypeAnnotationSummarySearchService.super.searchByPreferredSources(propertyType,
-                propertyValuePattern,
-                preferredSources,
-                requiredSources,
-                ontologySources);
-        if (annotationSummaries == null || annotationSummaries.isEmpty()){
-            //search without the type
-            return NoTypeAnnotationSummarySearchService.super.searchByPreferredSources(propertyValuePattern,
-                    preferredSources,
-                    requiredSources,
-                    ontologySources);
-        }
+        return searchByPreferredSources(propertyType, propertyValuePattern, preferredSources, requiredSources, ontologySources, -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(String propertyValuePattern, final URI[] sources, final URI[] ontologySources, int limit) {
+        Collection<AnnotationSummary> annotationSummaries = NoTypeAnnotationSummarySearchService.super.search(propertyValuePattern, sources, ontologySources, limit);
+       //no propertyType given, nothing more to do
         return annotationSummaries;
     }
+
+    @Override
+    public Collection<AnnotationSummary> search(final String propertyType,
+                                                final String propertyValuePattern,
+                                                final URI[] sources, final URI[] ontologySources,
+                                                final int limit) {
+        List<Callable<Collection<AnnotationSummary>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                return NoTypeAnnotationSummarySearchService.super.search(propertyType, propertyValuePattern, sources, ontologySources, limit);
+            }
+        });
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                //search without the type
+                return NoTypeAnnotationSummarySearchService.super.search(propertyValuePattern, sources, ontologySources, limit);
+            }
+        });
+        return getSearchCascade().execute("no-type", stages);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources, int limit) {
+        Collection<AnnotationSummary> annotationSummaries = NoTypeAnnotationSummarySearchService.super.searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, limit);
+        //no propertyType given, nothing more to do
+        return annotationSummaries;
+    }
+
+    @Override
+    public Collection<AnnotationSummary> searchByPreferredSources(final String propertyType, final String propertyValuePattern, final List<URI> preferredSources, final URI[] requiredSources, final URI[] ontologySources, final int limit) {
+        List<Callable<Collection<AnnotationSummary>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                return NoTypeAnnotationSummarySearchService.super.searchByPreferredSources(propertyType,
+                        propertyValuePattern,
+                        preferredSources,
+                        requiredSources,
+                        ontologySources,
+                        limit);
+            }
+        });
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                //search without the type
+                return NoTypeAnnotationSummarySearchService.super.searchByPreferredSources(propertyValuePattern,
+                        preferredSources,
+                        requiredSources,
+                        ontologySources,
+                        limit);
+            }
+        });
+        return getSearchCascade().execute("no-type", stages);
+    }
 }
@@ -5,6 +5,7 @@ import uk.ac.ebi.fgpt.zooma.util.ZoomaUtils;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * An {@link AnnotationSummarySearchServiceDecorator} that extends the functionality of an {@link
@@ -17,6 +18,9 @@ import java.util.*;
  * <p>
  * This service returns aggregated {@link AnnotationSummary} objects that represent an inferred mapping between the
  * searched property and the list of semantic tags obtained from one or more ZOOMA searches.
+ * <p>
+ * The two searches are run as a {@link uk.ac.ebi.fgpt.zooma.concurrent.SearchCascade}, so the (usually much slower)
+ * second search may be started before the first has finished if hedging is enabled.
  *
  * Created by olgavrou on 19/05/2016.
  */
@@ -38,59 +42,112 @@ public class OntologyAnnotationSummarySearchService extends AnnotationSummarySea
 
     @Override
     public Collection<AnnotationSummary> search(String propertyValuePattern, final URI[] sources, final URI[] ontologySources) {
-            Collection<AnnotationSummary> annotationSummaries = OntologyAnnotationSummarySearchService.super.search(propertyValuePattern, sources, ontologySources);
-            if (annotationSummaries == null || annotationSummaries.isEmpty()){
-                //If nothing returned from the first search, try the second search service provided
-                if (ZoomaUtils.shouldSearch(ontologySources)) {
-                    return annotationSummarySearchService.search(propertyValuePattern, sources, ontologySources);
-                }
-            }
-            return annotationSummaries;
+        return search(propertyValuePattern, sources, ontologySources, -1);
     }
 
     @Override
     public Collection<AnnotationSummary> search(final String propertyType,
                                                 final String propertyValuePattern,
                                                 final URI[] sources, final URI[] ontologySources) {
-            Collection<AnnotationSummary> annotationSummaries = OntologyAnnotationSummarySearchService.super.search(propertyType, propertyValuePattern, sources, ontologySources);
-            if (annotationSummaries == null || annotationSummaries.isEmpty()){
-                //If nothing returned from the first search, try the second search service provided
-                if (ZoomaUtils.shouldSearch(ontologySources)) {
-                    return annotationSummarySearchService.search(propertyType, propertyValuePattern, sources, ontologySources);
+        return search(propertyType, propertyValuePattern, sources, ontologySources, -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources) {
+        return searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> searchByPreferredSources(String propertyType, String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources) {
+        return searchByPreferredSources(propertyType, propertyValuePattern, preferredSources, requiredSources, ontologySources, -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(final String propertyValuePattern, final URI[] sources, final URI[] ontologySources, final int limit) {
+        List<Callable<Collection<AnnotationSummary>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                return OntologyAnnotationSummarySearchService.super.search(propertyValuePattern, sources, ontologySources, limit);
+            }
+        });
+        //If nothing returned from the first search, try the second search service provided
+        if (ZoomaUtils.shouldSearch(ontologySources)) {
+            stages.add(new Callable<Collection<AnnotationSummary>>() {
+                @Override public Collection<AnnotationSummary> call() {
+                    return annotationSummarySearchService.search(propertyValuePattern, sources, ontologySources, limit);
                 }
+            });
+        }
+        return getSearchCascade().execute("ontology", stages);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(final String propertyType,
+                                                final String propertyValuePattern,
+                                                final URI[] sources, final URI[] ontologySources,
+                                                final int limit) {
+        List<Callable<Collection<AnnotationSummary>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                return OntologyAnnotationSummarySearchService.super.search(propertyType, propertyValuePattern, sources, ontologySources, limit);
             }
-            return annotationSummaries;
+        });
+        //If nothing returned from the first search, try the second search service provided
+        if (ZoomaUtils.shouldSearch(ontologySources)) {
+            stages.add(new Callable<Collection<AnnotationSummary>>() {
+                @Override public Collection<AnnotationSummary> call() {
+                    return annotationSummarySearchService.search(propertyType, propertyValuePattern, sources, ontologySources, limit);
+                }
+            });
+        }
+        return getSearchCascade().execute("ontology", stages);
     }
 
     @Override
-    public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources) {
-        Collection<AnnotationSummary> annotationSummaries = OntologyAnnotationSummarySearchService.super.searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources);
-        if (annotationSummaries == null || annotationSummaries.isEmpty()){
-            //If nothing returned from the first search, try the second search service provided
-            if (ZoomaUtils.shouldSearch(ontologySources)) {
-                return annotationSummarySearchService.searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources);
+    public Collection<AnnotationSummary> searchByPreferredSources(final String propertyValuePattern, final List<URI> preferredSources, final URI[] requiredSources, final URI[] ontologySources, final int limit) {
+        List<Callable<Collection<AnnotationSummary>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                return OntologyAnnotationSummarySearchService.super.searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, limit);
             }
+        });
+        //If nothing returned from the first search, try the second search service provided
+        if (ZoomaUtils.shouldSearch(ontologySources)) {
+            stages.add(new Callable<Collection<AnnotationSummary>>() {
+                @Override public Collection<AnnotationSummary> call() {
+                    return annotationSummarySearchService.searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, limit);
+                }
+            });
         }
-        return annotationSummaries;
+        return getSearchCascade().execute("ontology", stages);
     }
 
     @Override
-    public Collection<AnnotationSummary> searchByPreferredSources(String propertyType, String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources) {
-        Collection<AnnotationSummary> annotationSummaries = OntologyAnnotationSummarySearchService.super.searchByPreferredSources(propertyType,
-                propertyValuePattern,
-                preferredSources,
-                requiredSources,
-                ontologySources);
-        if (annotationSummaries == null || annotationSummaries.isEmpty()){
-            //If nothing returned from the first search, try the second search service provided
-            if (ZoomaUtils.shouldSearch(ontologySources)) {
-                return annotationSummarySearchService.searchByPreferredSources(propertyType,
+    public Collection<AnnotationSummary> searchByPreferredSources(final String propertyType, final String propertyValuePattern, final List<URI> preferredSources, final URI[] requiredSources, final URI[] ontologySources, final int limit) {
+        List<Callable<Collection<AnnotationSummary>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                return OntologyAnnotationSummarySearchService.super.searchByPreferredSources(propertyType,
                         propertyValuePattern,
                         preferredSources,
                         requiredSources,
-                        ontologySources);
+                        ontologySources,
+                        limit);
             }
+        });
+        //If nothing returned from the first search, try the second search service provided
+        if (ZoomaUtils.shouldSearch(ontologySources)) {
+            stages.add(new Callable<Collection<AnnotationSummary>>() {
+                @Override public Collection<AnnotationSummary> call() {
+                    return annotationSummarySearchService.searchByPreferredSources(propertyType,
+                            propertyValuePattern,
+                            preferredSources,
+                            requiredSources,
+                            ontologySources,
+                            limit);
+                }
+            });
         }
-        return annotationSummaries;
+        return getSearchCascade().execute("ontology", stages);
     }
 }
@@ -1,6 +1,8 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
-import uk.ac.ebi.fgpt.zooma.exception.SearchTimeoutException;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
+import uk.ac.ebi.fgpt.zooma.concurrent.ZoomaThreadFactory;
+import uk.ac.ebi.fgpt.zooma.exception.SearchException;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
 import uk.ac.ebi.fgpt.zooma.model.SimpleAnnotationSummary;
 import uk.ac.ebi.fgpt.zooma.util.AnnotationSummarySearchCommand;
@@ -10,9 +12,21 @@ import uk.ac.ebi.fgpt.zooma.util.ZoomaUtils;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * An {@link AnnotationSummarySearchServiceDecorator} that extends the functionality of an {@link
@@ -26,8 +40,12 @@ import java.util.List;
  * This service returns aggregated {@link AnnotationSummary} objects that represent an inferred mapping between the
  * searched property and the list of semantic tags obtained from one or more ZOOMA searches.
  * <p>
- * Because expanding results in this way gives us a (possibly very) large set of summaries that require merging, this
- * class currently only supports merging if the processed string returns at most two distinct parts.
+ * The parts of a processed string are searched concurrently, sharing the deadline of the current search (see {@link
+ * SearchDeadline}), and expanded searches are skipped once this deadline has passed.  Because expanding results in
+ * this way gives us a (possibly very) large number of combined summaries, only the best scoring combinations are
+ * created, and strings that are processed into more than {@link #getMaxParts()} parts are not expanded at all.  The
+ * original and expanded searches are run as a {@link uk.ac.ebi.fgpt.zooma.concurrent.SearchCascade}, so the expanded
+ * search may be started before the original search has missed if hedging is enabled.
  *
  * @author Jose Iglesias
  * @date 12/8/13
@@ -38,6 +56,11 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
 
     private SearchStringProcessor searchStringProcessor;
 
+    private int maxParts = 4;
+    private int maxMergedResults = limitTo * limitTo;
+    private int subSearchThreadCount = Runtime.getRuntime().availableProcessors();
+    private volatile ExecutorService subSearchExecutor;
+
     public SearchStringProcessor getSearchStringProcessor() {
         return searchStringProcessor;
     }
@@ -46,18 +69,96 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
         this.searchStringProcessor = searchStringProcessor;
     }
 
+    public int getMaxParts() {
+        return maxParts;
+    }
+
+    public void setMaxParts(int maxParts) {
+        this.maxParts = maxParts;
+    }
+
+    public int getMaxMergedResults() {
+        return maxMergedResults;
+    }
+
+    /**
+     * Sets the maximum number of merged summaries created from the results for the parts of a processed string.  By
+     * default this is the number of combinations of the results for two parts, which is every combination that was
+     * created before strings could be processed into more than two parts.
+     *
+     * @param maxMergedResults the maximum number of merged summaries to return
+     */
+    public void setMaxMergedResults(int maxMergedResults) {
+        this.maxMergedResults = maxMergedResults;
+    }
+
+    public int getSubSearchThreadCount() {
+        return subSearchThreadCount;
+    }
+
+    public void setSubSearchThreadCount(int subSearchThreadCount) {
+        this.subSearchThreadCount = subSearchThreadCount;
+    }
+
     public PostProcessingAnnotationSummarySearchService(AnnotationSummarySearchService annotationSummarySearchService) {
         super(annotationSummarySearchService);
     }
 
+    @Override protected void doInitialization() throws Exception {
+        subSearchExecutor = Executors.newFixedThreadPool(Math.max(1, getSubSearchThreadCount()),
+                                                         new ZoomaThreadFactory("ZOOMA-Sub-Search"));
+    }
+
+    @Override protected void doTermination() throws Exception {
+        // searches still running after termination fall back to searching their parts on the calling thread
+        ExecutorService executor = subSearchExecutor;
+        subSearchExecutor = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
     @Override
     public Collection<AnnotationSummary> search(String propertyValuePattern, final URI[] sources, final URI[] ontologySources) {
+        return search(propertyValuePattern, sources, ontologySources, -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(final String propertyType,
+                                                String propertyValuePattern,
+                                                final URI[] sources, final URI[] ontologySources) {
+        return search(propertyType, propertyValuePattern, sources, ontologySources, -1);
+    }
+
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
+                                                                            final List<URI> preferredSources,
+                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+        return searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, -1);
+    }
+
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(final String propertyType,
+                                                                            String propertyValuePattern,
+                                                                            final List<URI> preferredSources,
+                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+        return searchByPreferredSources(propertyType,
+                                        propertyValuePattern,
+                                        preferredSources,
+                                        requiredSources,
+                                        ontologySources,
+                                        -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(String propertyValuePattern,
+                                                final URI[] sources,
+                                                final URI[] ontologySources,
+                                                final int limit) {
         if (!ZoomaUtils.shouldSearch(sources)){
             return new ArrayList<>();
         }
         return doProcessedSearch(propertyValuePattern, new AnnotationSummarySearchCommand() {
             @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
-                return PostProcessingAnnotationSummarySearchService.super.search(propertyValue, sources, ontologySources);
+                return PostProcessingAnnotationSummarySearchService.super.search(propertyValue, sources, ontologySources, limit);
             }
         });
     }
@@ -65,20 +166,24 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
     @Override
     public Collection<AnnotationSummary> search(final String propertyType,
                                                 String propertyValuePattern,
-                                                final URI[] sources, final URI[] ontologySources) {
+                                                final URI[] sources,
+                                                final URI[] ontologySources,
+                                                final int limit) {
         if (!ZoomaUtils.shouldSearch(sources)){
             return new ArrayList<>();
         }
         return doProcessedSearch(propertyValuePattern, new AnnotationSummarySearchCommand() {
             @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
-                return PostProcessingAnnotationSummarySearchService.super.search(propertyType, propertyValue, sources, ontologySources);
+                return PostProcessingAnnotationSummarySearchService.super.search(propertyType, propertyValue, sources, ontologySources, limit);
             }
         });
     }
 
     @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
                                                                             final List<URI> preferredSources,
-                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+                                                                            final URI[] requiredSources,
+                                                                            final URI[] ontologySources,
+                                                                            final int limit) {
         if (!ZoomaUtils.shouldSearch(requiredSources)){
             return new ArrayList<>();
         }
@@ -86,7 +191,9 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
             @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
                 return PostProcessingAnnotationSummarySearchService.super.searchByPreferredSources(propertyValue,
                                                                                                    preferredSources,
-                                                                                                   requiredSources, ontologySources);
+                                                                                                   requiredSources,
+                                                                                                   ontologySources,
+                                                                                                   limit);
             }
         });
     }
@@ -94,7 +201,9 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
     @Override public Collection<AnnotationSummary> searchByPreferredSources(final String propertyType,
                                                                             String propertyValuePattern,
                                                                             final List<URI> preferredSources,
-                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+                                                                            final URI[] requiredSources,
+                                                                            final URI[] ontologySources,
+                                                                            final int limit) {
         if (!ZoomaUtils.shouldSearch(requiredSources)){
             return new ArrayList<>();
         }
@@ -103,7 +212,9 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
                 return PostProcessingAnnotationSummarySearchService.super.searchByPreferredSources(propertyType,
                                                                                                    propertyValue,
                                                                                                    preferredSources,
-                                                                                                   requiredSources, ontologySources);
+                                                                                                   requiredSources,
+                                                                                                   ontologySources,
+                                                                                                   limit);
             }
         });
     }
@@ -113,30 +224,42 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
      * against the results of processing the supplied property value pattern using this classes search string processor
      * if no results were obtained from the original search.
      * <p>
-     * Note that this implementation can only handle the case where the original string can be processed into two or
-     * fewer parts; this limit is set to prevent a combinatorial explosion of possible results when merging individual
-     * responses
+     * Note that this implementation can only handle the case where the original string can be processed into at most
+     * {@link #getMaxParts()} parts; this limit is set to prevent a combinatorial explosion of possible results when
+     * merging individual responses
      *
      * @param propertyValuePattern the property value pattern to search for
      * @param command              a command that encapsulates the search to execute
      * @return a collection of annotation summaries that satisfy the query
      */
-    private Collection<AnnotationSummary> doProcessedSearch(String propertyValuePattern,
-                                                            AnnotationSummarySearchCommand command) {
-        Collection<AnnotationSummary> rawResults = command.executeSearch(propertyValuePattern);
-
-        // if raw results are empty, attempt to process the string and requery
-        if (rawResults.isEmpty()) {
-            try {
-                initOrWait();
+    private Collection<AnnotationSummary> doProcessedSearch(final String propertyValuePattern,
+                                                            final AnnotationSummarySearchCommand command) {
+        List<Callable<Collection<AnnotationSummary>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<AnnotationSummary>>() {
+            @Override public Collection<AnnotationSummary> call() {
+                return command.executeSearch(propertyValuePattern);
             }
-            catch (InterruptedException e) {
-                throw new RuntimeException("Initialization failed, cannot query", e);
-            }
-            return getProcessedSearch(getSearchStringProcessor(), propertyValuePattern, command);
+        });
+        // if raw results are empty, attempt to process the string and requery, if there is time
+        if (getSearchStringProcessor().canProcess(propertyValuePattern)) {
+            stages.add(new Callable<Collection<AnnotationSummary>>() {
+                @Override public Collection<AnnotationSummary> call() {
+                    if (SearchDeadline.isExceeded()) {
+                        SearchDeadline.markTruncated();
+                        return new ArrayList<>();
+                    }
+                    try {
+                        initOrWait();
+                    }
+                    catch (InterruptedException e) {
+                        throw new RuntimeException("Initialization failed, cannot query", e);
+                    }
+                    return getProcessedSearch(getSearchStringProcessor(), propertyValuePattern, command);
+                }
+            });
         }
-        // if we get to here, either we got raw results or we couldn't process the string into parts, so just return
-        return rawResults;
+        // if we only have one stage, either we got raw results or we couldn't process the string into parts
+        return getSearchCascade().execute("post-processing", stages);
     }
 
     Collection<AnnotationSummary> getProcessedSearch(SearchStringProcessor searchStringProcessor, String propertyValuePattern, AnnotationSummarySearchCommand command){
@@ -147,31 +270,26 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
                     "to expand results");
 
             try {
-                Collection<String> parts = searchStringProcessor.processSearchString(propertyValuePattern);
-                // for now, we only work with cases where the string returns at most 2 processed forms
-                if (parts.size() < 3) {
-                    if (parts.size() == 0) {
+                List<String> parts = new ArrayList<>(searchStringProcessor.processSearchString(propertyValuePattern));
+                if (parts.size() == 0) {
+                    return new ArrayList<>();
+                }
+                else if (parts.size() == 1) {
+                    return command.executeSearch(parts.get(0));
+                }
+                else if (parts.size() <= getMaxParts()) {
+                    List<Collection<AnnotationSummary>> partResults = executeSubSearches(parts, command);
+                    if (partResults == null) {
+                        getLog().debug("Search deadline passed before every part of '" + propertyValuePattern + "' " +
+                                               "was searched, results cannot be merged");
+                        SearchDeadline.markTruncated();
                         return new ArrayList<>();
                     }
-                    else if (parts.size() == 1) {
-                        return command.executeSearch(propertyValuePattern);
-                    }
-                    else {
-                        Iterator<String> partsIterator = parts.iterator();
-                        String firstPart = partsIterator.next();
-                        String secondPart = partsIterator.next();
-                        Collection<AnnotationSummary> firstPartResults = command.executeSearch(firstPart);
-                        Collection<AnnotationSummary> secondPartResults = command.executeSearch(secondPart);
-                        return mergeResults(propertyValuePattern,
-                                firstPart,
-                                firstPartResults,
-                                secondPart,
-                                secondPartResults);
-                    }
+                    return mergeResults(propertyValuePattern, parts, partResults);
                 }
                 else {
-                    getLog().warn("Cannot currently support merging more than 2 processed results, " +
-                            "due to limits in generating combined summaries.  " +
+                    getLog().warn("Cannot currently support merging more than " + getMaxParts() + " processed " +
+                            "results, due to limits in generating combined summaries.  " +
                             "Query '" + propertyValuePattern + "' may have lost results");
                 }
             }
@@ -179,114 +297,231 @@ public class PostProcessingAnnotationSummarySearchService extends AnnotationSumm
                 getLog().warn("Expanding search results for '" + propertyValuePattern + "' using " +
                         searchStringProcessor.getClass().getSimpleName() + " took too long, " +
                         "expanded search results will not be available");
+                SearchDeadline.markTruncated();
+                Thread.currentThread().interrupt();
             }
         }
         return new ArrayList<>();
     }
 
-    protected Collection<AnnotationSummary> mergeResults(String propertyValuePattern,
-                                                         String firstPart,
-                                                         Collection<AnnotationSummary> firstPartResults,
-                                                         String secondPart,
-                                                         Collection<AnnotationSummary> secondPartResults) {
-        return mergeResults(propertyValuePattern, limitTo, firstPart, firstPartResults, secondPart, secondPartResults);
-    }
+    /**
+     * Searches for every part of a processed property value at once, sharing the deadline of the current search (see
+     * {@link SearchDeadline}).  The first part is searched on the calling thread, and the rest concurrently.
+     *
+     * @param parts   the parts to search for
+     * @param command a command that encapsulates the search to execute
+     * @return the results for each part, in the same order as the parts, or null if the deadline passed before every
+     * part had been searched
+     * @throws InterruptedException if the calling thread was interrupted whilst waiting for results
+     */
+    private List<Collection<AnnotationSummary>> executeSubSearches(List<String> parts,
+                                                                   final AnnotationSummarySearchCommand command)
+            throws InterruptedException {
+        List<Collection<AnnotationSummary>> partResults = new ArrayList<>();
+        ExecutorService executor = subSearchExecutor;
+        if (executor == null) {
+            for (String part : parts) {
+                if (!partResults.isEmpty() && SearchDeadline.isExceeded()) {
+                    return null;
+                }
+                partResults.add(command.executeSearch(part));
+            }
+            return partResults;
+        }
 
-    protected Collection<AnnotationSummary> mergeResults(String propertyValuePattern,
-                                                         int limitTo,
-                                                         String firstPart,
-                                                         Collection<AnnotationSummary> firstPartResults,
-                                                         String secondPart,
-                                                         Collection<AnnotationSummary> secondPartResults) {
-        Collection<AnnotationSummary> results = new HashSet<>();
-
-        int firstPartLength = firstPart.length();
-        int secondPartLength = secondPart.length();
-
-        List<AnnotationSummary> firstPartResultsList = new ArrayList<>();
-        Iterator<AnnotationSummary> firstPartResultsIt = firstPartResults.iterator();
-        for (int i = 0; i < limitTo; i++) {
-            if (!firstPartResultsIt.hasNext()) {
-                break;
+        final SearchDeadline deadline = SearchDeadline.current();
+        List<Future<Collection<AnnotationSummary>>> futures = new ArrayList<>();
+        try {
+            for (final String part : parts.subList(1, parts.size())) {
+                futures.add(executor.submit(new Callable<Collection<AnnotationSummary>>() {
+                    @Override public Collection<AnnotationSummary> call() throws Exception {
+                        if (deadline == null) {
+                            return command.executeSearch(part);
+                        }
+                        SearchDeadline previous = deadline.attach();
+                        try {
+                            return command.executeSearch(part);
+                        }
+                        finally {
+                            SearchDeadline.restore(previous);
+                        }
+                    }
+                }));
             }
-            else {
-                firstPartResultsList.add(firstPartResultsIt.next());
+            partResults.add(command.executeSearch(parts.get(0)));
+            for (Future<Collection<AnnotationSummary>> future : futures) {
+                long remaining = SearchDeadline.remaining(Long.MAX_VALUE);
+                partResults.add(remaining == Long.MAX_VALUE
+                                        ? future.get()
+                                        : future.get(remaining, TimeUnit.MILLISECONDS));
             }
+            return partResults;
+        }
+        catch (TimeoutException e) {
+            return null;
         }
-        List<AnnotationSummary> secondPartResultsList = new ArrayList<>();
-        Iterator<AnnotationSummary> secondPartResultsIt = secondPartResults.iterator();
-        for (int i = 0; i < limitTo; i++) {
-            if (!secondPartResultsIt.hasNext()) {
-                break;
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-            else {
-                secondPartResultsList.add(secondPartResultsIt.next());
+            throw new SearchException("Failed to search for part of a processed property value " +
+                                              "(" + e.getCause().getMessage() + ")", e.getCause());
+        }
+        finally {
+            // stop searching for any parts that are no longer needed
+            for (Future<Collection<AnnotationSummary>> future : futures) {
+                future.cancel(true);
             }
         }
+    }
 
-        for (AnnotationSummary firstPartSummary : firstPartResultsList) {
-            float firstPartScore = firstPartSummary.getQuality();
-            String firstPartType = firstPartSummary.getAnnotatedPropertyType();
-
-            for (AnnotationSummary secondPartSummary : secondPartResultsList) {
-                float secondPartScore = secondPartSummary.getQuality();
-                String secondPartType = secondPartSummary.getAnnotatedPropertyType();
-
-                float scoreFinal =
-                        ((firstPartLength * firstPartScore + secondPartLength * secondPartScore) /
-                                (firstPartLength + secondPartLength)) * partialStringBoost;
-
-                HashSet<URI> aggregatedTags = new HashSet<>();
-                HashSet<URI> aggregatedURIs = new HashSet<>();
-                HashSet<URI> aggregatedSourceURIs = new HashSet<>();
-
-                Collection<URI> firstPartSemanticTags = firstPartSummary.getSemanticTags();
-                Collection<URI> secondPartSemanticTags = secondPartSummary.getSemanticTags();
-                Collection<URI> firstPartAnnotationURIs = firstPartSummary.getAnnotationURIs();
-                Collection<URI> secondPartAnnotationURIs = secondPartSummary.getAnnotationURIs();
-                Collection<URI> firstPartAnnotationSourceRIs = firstPartSummary.getAnnotationSourceURIs();
-                Collection<URI> secondPartAnnotationSourceURIs = secondPartSummary.getAnnotationSourceURIs();
-                if (firstPartSemanticTags != null && !firstPartSemanticTags.isEmpty()) {
-                    aggregatedTags.addAll(firstPartSemanticTags);
-                }
+    protected Collection<AnnotationSummary> mergeResults(String propertyValuePattern,
+                                                         List<String> parts,
+                                                         List<? extends Collection<AnnotationSummary>> partResults) {
+        return mergeResults(propertyValuePattern, limitTo, getMaxMergedResults(), parts, partResults);
+    }
 
-                if (secondPartSemanticTags != null && !secondPartSemanticTags.isEmpty()) {
-                    aggregatedTags.addAll(secondPartSemanticTags);
+    /**
+     * Merges the results of searching for each part of a processed property value into combined summaries, each
+     * combining one result for every part.  The score of a combined summary is the quality of the results it combines,
+     * averaged by the length of each part and reduced by the partial string boost.
+     * <p>
+     * Rather than creating every possible combination, the results for each part are ranked by quality and
+     * combinations are visited best first, so that only the best scoring combinations are ever created.  Merged
+     * summaries are returned in descending order of score.
+     *
+     * @param propertyValuePattern the property value that was processed
+     * @param limitTo              the maximum number of results for each part to consider
+     * @param maxResults           the maximum number of merged summaries to return
+     * @param parts                the parts the property value was processed into
+     * @param partResults          the results of searching for each part, in the same order as the parts
+     * @return the best scoring merged summaries
+     */
+    protected Collection<AnnotationSummary> mergeResults(String propertyValuePattern,
+                                                         int limitTo,
+                                                         int maxResults,
+                                                         List<String> parts,
+                                                         List<? extends Collection<AnnotationSummary>> partResults) {
+        Collection<AnnotationSummary> results = new LinkedHashSet<>();
+
+        List<List<AnnotationSummary>> rankedResults = new ArrayList<>();
+        float[] weights = new float[parts.size()];
+        float totalWeight = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            List<AnnotationSummary> ranked = new ArrayList<>();
+            Iterator<AnnotationSummary> partResultsIt = partResults.get(i).iterator();
+            while (ranked.size() < limitTo && partResultsIt.hasNext()) {
+                ranked.add(partResultsIt.next());
+            }
+            if (ranked.isEmpty()) {
+                // no combination can cover every part
+                return results;
+            }
+            Collections.sort(ranked, new Comparator<AnnotationSummary>() {
+                @Override public int compare(AnnotationSummary as1, AnnotationSummary as2) {
+                    return Float.compare(as2.getQuality(), as1.getQuality());
                 }
+            });
+            rankedResults.add(ranked);
+            weights[i] = Math.max(1, parts.get(i).length());
+            totalWeight += weights[i];
+        }
 
-                if (firstPartAnnotationURIs != null && !firstPartAnnotationURIs.isEmpty()) {
-                    aggregatedURIs.addAll(firstPartAnnotationURIs);
+        // start from the best result for every part, then repeatedly take the best unvisited combination and queue
+        // its successors, each of which swaps one part's result for the next best
+        PriorityQueue<Combination> candidates = new PriorityQueue<>();
+        Set<Long> visited = new HashSet<>();
+        int[] first = new int[parts.size()];
+        candidates.add(new Combination(first, score(rankedResults, weights, totalWeight, first)));
+        visited.add(encode(rankedResults, first));
+        while (!candidates.isEmpty() && results.size() < maxResults) {
+            Combination combination = candidates.poll();
+            results.add(createMergedSummary(propertyValuePattern, rankedResults, combination));
+            for (int i = 0; i < parts.size(); i++) {
+                if (combination.indices[i] + 1 < rankedResults.get(i).size()) {
+                    int[] next = combination.indices.clone();
+                    next[i]++;
+                    if (visited.add(encode(rankedResults, next))) {
+                        candidates.add(new Combination(next, score(rankedResults, weights, totalWeight, next)));
+                    }
                 }
+            }
+        }
+        return results;
+    }
 
-                if (secondPartAnnotationURIs != null && !secondPartAnnotationURIs.isEmpty()) {
-                    aggregatedURIs.addAll(secondPartAnnotationURIs);
-                }
+    private float score(List<List<AnnotationSummary>> rankedResults,
+                        float[] weights,
+                        float totalWeight,
+                        int[] indices) {
+        float score = 0;
+        for (int i = 0; i < indices.length; i++) {
+            score += weights[i] * rankedResults.get(i).get(indices[i]).getQuality();
+        }
+        return (score / totalWeight) * partialStringBoost;
+    }
 
-                if (firstPartAnnotationSourceRIs != null && !firstPartAnnotationSourceRIs.isEmpty()) {
-                    aggregatedSourceURIs.addAll(firstPartAnnotationSourceRIs);
-                }
+    private long encode(List<List<AnnotationSummary>> rankedResults, int[] indices) {
+        long key = 0;
+        for (int i = 0; i < indices.length; i++) {
+            key = key * rankedResults.get(i).size() + indices[i];
+        }
+        return key;
+    }
 
-                if (secondPartAnnotationSourceURIs != null && !secondPartAnnotationSourceURIs.isEmpty()) {
-                    aggregatedSourceURIs.addAll(secondPartAnnotationSourceURIs);
-                }
+    private AnnotationSummary createMergedSummary(String propertyValuePattern,
+                                                  List<List<AnnotationSummary>> rankedResults,
+                                                  Combination combination) {
+        Set<URI> aggregatedTags = new HashSet<>();
+        Set<URI> aggregatedURIs = new HashSet<>();
+        Set<URI> aggregatedSourceURIs = new HashSet<>();
+        String type = null;
+        for (int i = 0; i < combination.indices.length; i++) {
+            AnnotationSummary partSummary = rankedResults.get(i).get(combination.indices[i]);
+            if (partSummary.getSemanticTags() != null) {
+                aggregatedTags.addAll(partSummary.getSemanticTags());
+            }
+            if (partSummary.getAnnotationURIs() != null) {
+                aggregatedURIs.addAll(partSummary.getAnnotationURIs());
+            }
+            if (partSummary.getAnnotationSourceURIs() != null) {
+                aggregatedSourceURIs.addAll(partSummary.getAnnotationSourceURIs());
+            }
 
-                String type = null;
-                if (firstPartType.contentEquals(secondPartType)) {
-                    type = firstPartType;
-                }
+            // the merged summary only has a type if every part has the same type
+            String partType = partSummary.getAnnotatedPropertyType();
+            if (i == 0) {
+                type = partType;
+            }
+            else if (type != null && !type.equals(partType)) {
+                type = null;
+            }
+        }
 
-                AnnotationSummary newAnnotationSummary = new SimpleAnnotationSummary(null,
-                                                                                     null,
-                                                                                     type,
-                                                                                     propertyValuePattern,
-                                                                                     aggregatedTags,
-                                                                                     aggregatedURIs,
-                                                                                     scoreFinal,
-                                                                                     aggregatedSourceURIs);
+        return new SimpleAnnotationSummary(null,
+                                           null,
+                                           type,
+                                           propertyValuePattern,
+                                           aggregatedTags,
+                                           aggregatedURIs,
+                                           combination.score,
+                                           aggregatedSourceURIs);
+    }
 
-                results.add(newAnnotationSummary);
-            }
+    /**
+     * A combination of one result for each part of a processed property value, identified by the rank of each result
+     */
+    private static class Combination implements Comparable<Combination> {
+        private final int[] indices;
+        private final float score;
+
+        private Combination(int[] indices, float score) {
+            this.indices = indices;
+            this.score = score;
+        }
+
+        @Override public int compareTo(Combination other) {
+            return Float.compare(other.score, score);
         }
-        return results;
     }
-}
\ No newline at end of file
+}
@@ -8,7 +8,10 @@ import org.springframework.core.io.Resource;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -20,6 +23,9 @@ import java.util.Set;
  * three elements: first, the term; second, the ontology entry that defines this term; third, a boolean flag indicating
  * whether this term exactly matches the label in the ontology.  Only the first element is required.  Elements are tab
  * separated.
+ * <p/>
+ * Once loaded, the dictionary is compiled into a {@link DictionaryMatcher}, so that finding which terms occur in a
+ * search string takes a single pass over the string rather than one scan per dictionary term.
  *
  * @author Tony Burdett
  * @date 05/11/13
@@ -27,6 +33,9 @@ import java.util.Set;
 public abstract class AbstractDictionaryLoadingProcessor implements SearchStringProcessor {
     private final Resource dictionaryResource;
     private Set<String> dictionary;
+    private DictionaryMatcher dictionaryMatcher;
+    // terms containing spaces, which may be created when other terms are replaced by spaces
+    private BitSet spacedTerms;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -50,6 +59,10 @@ public abstract class AbstractDictionaryLoadingProcessor implements SearchString
         return dictionary;
     }
 
+    public DictionaryMatcher getDictionaryMatcher() {
+        return dictionaryMatcher;
+    }
+
     /**
      * Returns true if the search string contains any terms loaded from the dictionary.  This is a very basic
      * implementation of this method based on the loaded dictionary, and you may wish to override this to be smarter.
@@ -58,17 +71,34 @@ public abstract class AbstractDictionaryLoadingProcessor implements SearchString
      */
     @Override
     public boolean canProcess(String searchString) {
-        for (String term : getDictionary()) {
-            if (searchString.contains(term)) {
-                return true;
-            }
+        return getDictionaryMatcher().containsAny(searchString);
+    }
+
+    /**
+     * Returns the dictionary terms that processing the given text might need to consider, in the order in which they
+     * are iterated over in the dictionary.  These are the terms that occur in the text, plus any terms containing
+     * spaces.  Processors that only ever replace terms with spaces can use this in place of the whole dictionary: a
+     * term without spaces can only be found in the processed text if it was found in the original text, but replacing
+     * one term with spaces may create an occurrence of a term that itself contains spaces.
+     *
+     * @param text the text to find candidate terms in
+     * @return the candidate terms, in dictionary order
+     */
+    protected List<String> getCandidateTerms(String text) {
+        BitSet found = getDictionaryMatcher().findAll(text);
+        found.or(spacedTerms);
+        List<String> terms = getDictionaryMatcher().getTerms();
+        List<String> candidates = new ArrayList<>(found.cardinality());
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            candidates.add(terms.get(i));
         }
-        return false;
+        return candidates;
     }
 
     /**
      * Initializes this processor by loading the contents of the supplied dictionary resource into memory.  Once
-     * initialized, the dictionary is available for use in downstream processing
+     * initialized, the dictionary is available for use in downstream processing, and its terms are compiled into a
+     * {@link DictionaryMatcher}
      */
     public void init() throws IOException {
         this.dictionary = new HashSet<>();
@@ -83,6 +113,14 @@ public abstract class AbstractDictionaryLoadingProcessor implements SearchString
                 }
             }
         }
+        this.dictionaryMatcher = new DictionaryMatcher(dictionary);
+        this.spacedTerms = new BitSet();
+        List<String> terms = dictionaryMatcher.getTerms();
+        for (int i = 0; i < terms.size(); i++) {
+            if (terms.get(i).isEmpty() || terms.get(i).contains(" ")) {
+                spacedTerms.set(i);
+            }
+        }
         getLog().debug("Loaded dictionary from '" + getDictionaryResource().getURL() + "'. " +
                                getDictionary().size() + " entries loaded");
     }
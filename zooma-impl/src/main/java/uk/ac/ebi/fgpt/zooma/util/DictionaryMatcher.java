@@ -0,0 +1,197 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds which terms of a dictionary occur in a string, in a single pass over the string regardless of the size of the
+ * dictionary.  The dictionary is compiled once into an Aho-Corasick automaton, so matching a string never allocates
+ * more than the set of matched terms.
+ * <p/>
+ * Terms are numbered in the order in which they were supplied, so that callers can visit the matched terms in the same
+ * order as they would have iterated over the original dictionary.  Matching is case sensitive and literal, exactly as
+ * {@link String#contains(CharSequence)}; the empty term occurs in every string.
+ * <p/>
+ * Once compiled, a matcher is immutable and may be shared between threads.
+ *
+ * @date 18/10/26
+ */
+public class DictionaryMatcher {
+    private final List<String> terms;
+
+    // the automaton: for each state, its sorted transition characters and their target states
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    // the terms that end at each state, and the nearest state along the failure chain with any terms
+    private final int[][] outputs;
+    private final int[] outputLink;
+
+    private final boolean hasEmptyTerm;
+
+    /**
+     * Compiles the given terms into a matcher
+     *
+     * @param terms the dictionary terms, in the order they should be numbered
+     */
+    public DictionaryMatcher(Collection<String> terms) {
+        this.terms = Collections.unmodifiableList(new ArrayList<>(terms));
+
+        // build the trie
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> termsAtState = new ArrayList<>();
+        trie.add(new TreeMap<Character, Integer>());
+        termsAtState.add(new ArrayList<Integer>());
+        boolean emptyTerm = false;
+        for (int i = 0; i < this.terms.size(); i++) {
+            String term = this.terms.get(i);
+            if (term.isEmpty()) {
+                emptyTerm = true;
+                continue;
+            }
+            int state = 0;
+            for (int c = 0; c < term.length(); c++) {
+                Integer next = trie.get(state).get(term.charAt(c));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    termsAtState.add(new ArrayList<Integer>());
+                    trie.get(state).put(term.charAt(c), next);
+                }
+                state = next;
+            }
+            termsAtState.get(state).add(i);
+        }
+        this.hasEmptyTerm = emptyTerm;
+
+        int stateCount = trie.size();
+        transitionChars = new char[stateCount][];
+        transitionTargets = new int[stateCount][];
+        outputs = new int[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            TreeMap<Character, Integer> transitions = trie.get(s);
+            transitionChars[s] = new char[transitions.size()];
+            transitionTargets[s] = new int[transitions.size()];
+            int t = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                transitionChars[s][t] = transition.getKey();
+                transitionTargets[s][t] = transition.getValue();
+                t++;
+            }
+            List<Integer> ending = termsAtState.get(s);
+            outputs[s] = new int[ending.size()];
+            for (int o = 0; o < ending.size(); o++) {
+                outputs[s][o] = ending.get(o);
+            }
+        }
+
+        // compute failure and output links, breadth first
+        failure = new int[stateCount];
+        outputLink = new int[stateCount];
+        Arrays.fill(outputLink, -1);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int target : transitionTargets[0]) {
+            failure[target] = 0;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int t = 0; t < transitionChars[state].length; t++) {
+                char c = transitionChars[state][t];
+                int target = transitionTargets[state][t];
+                int fallback = failure[state];
+                while (fallback != 0 && transition(fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                int next = transition(fallback, c);
+                failure[target] = next < 0 ? 0 : next;
+                int linked = failure[target];
+                outputLink[target] = outputs[linked].length > 0 ? linked : outputLink[linked];
+                queue.add(target);
+            }
+        }
+    }
+
+    /**
+     * @return the dictionary terms, in the order in which they are numbered
+     */
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /**
+     * Returns true if any term of the dictionary occurs in the given text.  This is equivalent to testing each term
+     * with {@link String#contains(CharSequence)}, but stops at the first match.
+     *
+     * @param text the text to search
+     * @return true if the text contains at least one dictionary term
+     */
+    public boolean containsAny(CharSequence text) {
+        if (hasEmptyTerm) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            if (outputs[state].length > 0 || outputLink[state] >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds every term of the dictionary that occurs in the given text
+     *
+     * @param text the text to search
+     * @return the numbers of the terms that occur in the text
+     */
+    public BitSet findAll(CharSequence text) {
+        BitSet found = new BitSet(terms.size());
+        if (hasEmptyTerm) {
+            for (int i = 0; i < terms.size(); i++) {
+                if (terms.get(i).isEmpty()) {
+                    found.set(i);
+                }
+            }
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            for (int match = outputs[state].length > 0 ? state : outputLink[state];
+                 match >= 0;
+                 match = outputLink[match]) {
+                for (int term : outputs[match]) {
+                    found.set(term);
+                }
+            }
+        }
+        return found;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int next = transition(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure[state];
+        }
+    }
+
+    private int transition(int state, char c) {
+        int index = Arrays.binarySearch(transitionChars[state], c);
+        return index < 0 ? -1 : transitionTargets[state][index];
+    }
+}
@@ -0,0 +1,236 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe, size bounded cache whose entries expire a fixed time after they were loaded.
+ * <p/>
+ * Values are loaded on demand by the {@link Loader} supplied with each request.  If several threads request the same
+ * missing key at once, the value is loaded only once and every thread receives the result.  Loads that fail are not
+ * cached, so the next request for the same key will try again.  Values may be null.
+ * <p/>
+ * Once the cache holds the maximum number of entries, the least recently used entry is evicted to make room for each
+ * new entry.  Hit, miss and eviction counts are kept for monitoring.
+ *
+ * @date 18/10/26
+ */
+public class ExpiringCache<K, V> {
+    private final int maxSize;
+    private final long timeToLive;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new cache
+     *
+     * @param maxSize    the maximum number of entries to hold
+     * @param timeToLive the time, in milliseconds, after which a loaded entry expires
+     */
+    public ExpiringCache(int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for the given key, using the supplied loader to load it if it is missing or expired.
+     *
+     * @param key    the key to look up
+     * @param loader the loader to use if the value must be loaded
+     * @return the value for this key
+     * @throws RuntimeException any runtime exception thrown by the loader
+     */
+    public V get(final K key, final Loader<K, V> loader) {
+        Entry<V> entry;
+        boolean load = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired()) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry<>(new FutureTask<>(new Callable<V>() {
+                    @Override public V call() throws Exception {
+                        return loader.load(key);
+                    }
+                }));
+                entries.put(key, entry);
+                load = true;
+                misses.incrementAndGet();
+            }
+            else {
+                hits.incrementAndGet();
+            }
+        }
+
+        if (load) {
+            // load outside the lock; other threads requesting this key wait for the result
+            entry.task.run();
+            entry.loadedTime = System.currentTimeMillis();
+        }
+
+        try {
+            return entry.task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted whilst waiting for value of '" + key + "' to load", e);
+        }
+        catch (ExecutionException e) {
+            // don't cache failures
+            synchronized (entries) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            else {
+                throw new RuntimeException("Failed to load value of '" + key + "'", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Adds a value to this cache, replacing any existing value for the same key
+     *
+     * @param key   the key
+     * @param value the value for this key
+     */
+    public void put(K key, final V value) {
+        Entry<V> entry = new Entry<>(new FutureTask<>(new Callable<V>() {
+            @Override public V call() throws Exception {
+                return value;
+            }
+        }));
+        entry.task.run();
+        entry.loadedTime = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Returns a copy of every loaded, unexpired entry in this cache, for example so that it can be persisted and used
+     * to warm up another cache with {@link #putAll(Map)}
+     *
+     * @return the current contents of this cache
+     */
+    public Map<K, V> snapshot() {
+        Map<K, V> snapshot = new HashMap<>();
+        synchronized (entries) {
+            for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+                Entry<V> value = entry.getValue();
+                if (value.task.isDone() && !value.isExpired()) {
+                    try {
+                        snapshot.put(entry.getKey(), value.task.get());
+                    }
+                    catch (InterruptedException | ExecutionException e) {
+                        // failed loads are removed by the loading thread, so just skip
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    public void putAll(Map<K, V> values) {
+        for (Map.Entry<K, V> value : values.entrySet()) {
+            put(value.getKey(), value.getValue());
+        }
+    }
+
+    /**
+     * Removes all expired entries from this cache
+     */
+    public void purge() {
+        synchronized (entries) {
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isExpired()) {
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override public String toString() {
+        long requests = getHitCount() + getMissCount();
+        return "size=" + size() + "/" + maxSize + ", " +
+                "hits=" + getHitCount() + ", " +
+                "misses=" + getMissCount() + ", " +
+                "evictions=" + getEvictionCount() + ", " +
+                "hit rate=" + (requests == 0 ? "n/a" : String.format("%.1f%%", getHitCount() * 100.0 / requests));
+    }
+
+    /**
+     * Loads the value for a key that is missing from an {@link ExpiringCache}
+     */
+    public interface Loader<K, V> {
+        V load(K key);
+    }
+
+    private class Entry<T> {
+        private final FutureTask<T> task;
+        // set once loaded; entries that are still loading never expire
+        private volatile long loadedTime = -1;
+
+        private Entry(FutureTask<T> task) {
+            this.task = task;
+        }
+
+        private boolean isExpired() {
+            return loadedTime != -1 && System.currentTimeMillis() - loadedTime > timeToLive;
+        }
+    }
+}
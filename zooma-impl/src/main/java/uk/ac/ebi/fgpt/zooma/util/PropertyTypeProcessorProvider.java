@@ -10,14 +10,19 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.text.ParseException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A {@link SearchStringProcessorProvider} that uses a property type mapping list, loaded from the classpath, to define
  * mappings between search string processors and property type filters.  In this way, only certain processors are used
- * to process queries for a particular property type
+ * to process queries for a particular property type.
+ * <p/>
+ * The processors selected for each property type are worked out once and then reused for every subsequent search of
+ * that type, until another processor is registered.
  *
  * @author Tony Burdett
  * @date 19/11/13
@@ -27,6 +32,7 @@ public class PropertyTypeProcessorProvider extends Initializable implements Sear
 
     private final Collection<SearchStringProcessor> processors;
     private Map<String, Collection<SearchStringProcessor>> filteredProcessors;
+    private final Map<String, Collection<SearchStringProcessor>> selectedProcessors;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -42,6 +48,7 @@ public class PropertyTypeProcessorProvider extends Initializable implements Sear
         this.mappingResource = mappingResource;
         this.processors = new HashSet<>();
         this.filteredProcessors = new HashMap<>();
+        this.selectedProcessors = new ConcurrentHashMap<>();
         for (SearchStringProcessor processor : processors) {
             registerProcessor(processor);
         }
@@ -53,6 +60,7 @@ public class PropertyTypeProcessorProvider extends Initializable implements Sear
 
     @Override public void registerProcessor(SearchStringProcessor processor) {
         processors.add(processor);
+        selectedProcessors.clear();
     }
 
     @Override public void registerFilteredProcessor(SearchStringProcessor processor, String filter) {
@@ -62,6 +70,7 @@ public class PropertyTypeProcessorProvider extends Initializable implements Sear
             filteredProcessors.put(normalizedFilter, new HashSet<SearchStringProcessor>());
         }
         filteredProcessors.get(normalizedFilter).add(processor);
+        selectedProcessors.clear();
     }
 
     @Override public Collection<SearchStringProcessor> getProcessors() {
@@ -71,14 +80,17 @@ public class PropertyTypeProcessorProvider extends Initializable implements Sear
     @Override public Collection<SearchStringProcessor> getFilteredProcessors(String filter) {
         try {
             initOrWait();
-            Collection<SearchStringProcessor> results = new HashSet<>();
-
             String normalizedFilter = normalizeFilterString(filter);
-            if (filteredProcessors.containsKey(normalizedFilter)) {
-                results.addAll(filteredProcessors.get(normalizedFilter));
+            Collection<SearchStringProcessor> results = selectedProcessors.get(normalizedFilter);
+            if (results == null) {
+                Collection<SearchStringProcessor> selected = new HashSet<>();
+                if (filteredProcessors.containsKey(normalizedFilter)) {
+                    selected.addAll(filteredProcessors.get(normalizedFilter));
+                }
+                selected.addAll(processors);
+                results = Collections.unmodifiableCollection(selected);
+                selectedProcessors.put(normalizedFilter, results);
             }
-            results.addAll(processors);
-
             return results;
         }
         catch (InterruptedException e) {
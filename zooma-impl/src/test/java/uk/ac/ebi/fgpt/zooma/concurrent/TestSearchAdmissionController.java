@@ -0,0 +1,198 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchAdmissionController.Lane;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSearchAdmissionController {
+    private SearchAdmissionController controller;
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void setUp() {
+        controller = new SearchAdmissionController("test-search-thread", 2, 2);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        controller.shutdownNow();
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        controller.execute(createBlockingSearch(started, null), Lane.INTERACTIVE);
+        controller.execute(createBlockingSearch(started, null), Lane.INTERACTIVE);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        controller.execute(createBlockingSearch(null, null), Lane.INTERACTIVE);
+        controller.execute(createBlockingSearch(null, null), Lane.INTERACTIVE);
+        assertThrows(RejectedExecutionException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                controller.execute(createBlockingSearch(null, null), Lane.INTERACTIVE);
+            }
+        });
+        assertEquals(1L, getLaneStatistics(Lane.INTERACTIVE).get("rejected"));
+        assertEquals(2, getLaneStatistics(Lane.INTERACTIVE).get("queued"));
+    }
+
+    @Test
+    public void testInteractiveSearchesRunBeforeBulkSearches() throws Exception {
+        // a single search thread, so that searches run in the order they are dispatched
+        controller.shutdownNow();
+        controller = new SearchAdmissionController("test-search-thread", 1, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        controller.execute(createBlockingSearch(started, null), Lane.INTERACTIVE);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Lane> order = Collections.synchronizedList(new ArrayList<Lane>());
+        FutureTask<String> bulk = createBlockingSearch(null, new Recorder(order, Lane.BULK));
+        FutureTask<String> interactive = createBlockingSearch(null, new Recorder(order, Lane.INTERACTIVE));
+        controller.execute(bulk, Lane.BULK);
+        controller.execute(interactive, Lane.INTERACTIVE);
+
+        release.countDown();
+        bulk.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+        assertEquals(Lane.INTERACTIVE, order.get(0));
+    }
+
+    @Test
+    public void testQueuedSearchesAreShedAfterMaxQueueTime() throws Exception {
+        controller.setMaxQueueTime(Lane.BULK, 50);
+        controller.setBulkShare(0.5f);
+        CountDownLatch started = new CountDownLatch(1);
+        controller.execute(createBlockingSearch(started, null), Lane.BULK);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final FutureTask<String> queued = createBlockingSearch(null, null);
+        controller.execute(queued, Lane.BULK);
+        Thread.sleep(100);
+        assertThrows(RejectedExecutionException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                controller.execute(createBlockingSearch(null, null), Lane.BULK);
+            }
+        });
+
+        release.countDown();
+        waitUntilDone(queued);
+        assertTrue(queued.isCancelled());
+        assertEquals(1L, getLaneStatistics(Lane.BULK).get("shed"));
+    }
+
+    @Test
+    public void testShedSearchTasksFailAsRejected() throws Exception {
+        controller.setMaxQueueTime(Lane.BULK, 50);
+        controller.setBulkShare(0.5f);
+        CountDownLatch started = new CountDownLatch(1);
+        controller.execute(createBlockingSearch(started, null), Lane.BULK);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final SearchTask<String> queued = new SearchTask<>(new Callable<String>() {
+            @Override public String call() throws Exception {
+                return "done";
+            }
+        });
+        controller.execute(queued, Lane.BULK);
+        Thread.sleep(100);
+        release.countDown();
+        waitUntilDone(queued);
+
+        // a shed search is reported as overload, not as a cancelled or timed out search
+        assertFalse(queued.isCancelled());
+        ExecutionException e = assertThrows(ExecutionException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                queued.get();
+            }
+        });
+        assertTrue(e.getCause() instanceof SearchShedException);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void testConcurrencyLimitBacksOffWhenSearchesAreSlow() throws Exception {
+        controller.setTargetLatency(10);
+        CountDownLatch started = new CountDownLatch(2);
+        FutureTask<String> first = createBlockingSearch(started, null);
+        FutureTask<String> second = createBlockingSearch(started, null);
+        controller.execute(first, Lane.INTERACTIVE);
+        controller.execute(second, Lane.INTERACTIVE);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Thread.sleep(50);
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        waitUntilCompleted(2);
+
+        // both searches were running at the old limit, so the limit is only cut once
+        assertEquals(1, controller.getConcurrencyLimit());
+        assertEquals(1L, controller.getStatistics().get("limitDecreases"));
+    }
+
+    private FutureTask<String> createBlockingSearch(final CountDownLatch started, final Runnable onStart) {
+        return new FutureTask<>(new Callable<String>() {
+            @Override public String call() throws Exception {
+                if (onStart != null) {
+                    onStart.run();
+                }
+                if (started != null) {
+                    started.countDown();
+                }
+                release.await();
+                return "done";
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getLaneStatistics(Lane lane) {
+        return (Map<String, Object>) controller.getStatistics().get(lane.name().toLowerCase());
+    }
+
+    private void waitUntilDone(FutureTask<?> task) throws InterruptedException {
+        for (int i = 0; i < 100 && !task.isDone(); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private void waitUntilCompleted(long count) throws InterruptedException {
+        for (int i = 0; i < 100 && (Long) getLaneStatistics(Lane.INTERACTIVE).get("completed") < count; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static class Recorder implements Runnable {
+        private final List<Lane> order;
+        private final Lane lane;
+
+        private Recorder(List<Lane> order, Lane lane) {
+            this.order = order;
+            this.lane = lane;
+        }
+
+        @Override public void run() {
+            order.add(lane);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSearchCascade {
+    private SearchCascade cascade;
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void setUp() {
+        cascade = new SearchCascade("test-cascade", 2);
+        cascade.setHedgeDelay(0);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        cascade.shutdown();
+    }
+
+    @Test
+    public void testSerialCascadeStopsAtFirstResult() {
+        final AtomicInteger calls = new AtomicInteger();
+        List<Callable<Collection<String>>> stages = new ArrayList<>();
+        stages.add(createSearch(calls, Collections.<String>emptyList()));
+        stages.add(createSearch(calls, Collections.singletonList("untyped")));
+        stages.add(createSearch(calls, Collections.singletonList("ols")));
+
+        assertEquals(Collections.singletonList("untyped"), cascade.execute("test", stages));
+        assertEquals(2, calls.get(), "Stages after the first result should never run");
+    }
+
+    @Test
+    public void testHedgedCascadeStartsLaterStagesEarly() throws Exception {
+        cascade.setHedged(true);
+        final CountDownLatch fallbackStarted = new CountDownLatch(1);
+        final CountDownLatch fallbackInterrupted = new CountDownLatch(1);
+
+        List<Callable<Collection<String>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<String>>() {
+            @Override public Collection<String> call() throws Exception {
+                // only finishes once the fallback has been started speculatively
+                assertTrue(fallbackStarted.await(5, TimeUnit.SECONDS));
+                return Collections.singletonList("typed");
+            }
+        });
+        stages.add(new Callable<Collection<String>>() {
+            @Override public Collection<String> call() {
+                fallbackStarted.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    fallbackInterrupted.countDown();
+                }
+                return Collections.singletonList("untyped");
+            }
+        });
+
+        assertEquals(Collections.singletonList("typed"), cascade.execute("test", stages));
+        assertTrue(fallbackInterrupted.await(5, TimeUnit.SECONDS), "The losing stage should be cancelled");
+    }
+
+    @Test
+    public void testHedgedCascadeKeepsPriorityOrder() {
+        cascade.setHedged(true);
+        List<Callable<Collection<String>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<String>>() {
+            @Override public Collection<String> call() throws Exception {
+                Thread.sleep(100);
+                return Collections.emptyList();
+            }
+        });
+        stages.add(new Callable<Collection<String>>() {
+            @Override public Collection<String> call() throws Exception {
+                Thread.sleep(50);
+                return Collections.singletonList("untyped");
+            }
+        });
+        stages.add(createSearch(new AtomicInteger(), Collections.singletonList("ols")));
+
+        assertEquals(Collections.singletonList("untyped"), cascade.execute("test", stages));
+    }
+
+    @Test
+    public void testHedgedCascadeGivesUpAtDeadline() {
+        cascade.setHedged(true);
+        final CountDownLatch fallbackStarted = new CountDownLatch(1);
+
+        List<Callable<Collection<String>>> stages = new ArrayList<>();
+        stages.add(new Callable<Collection<String>>() {
+            @Override public Collection<String> call() throws Exception {
+                assertTrue(fallbackStarted.await(5, TimeUnit.SECONDS));
+                return Collections.emptyList();
+            }
+        });
+        stages.add(new Callable<Collection<String>>() {
+            @Override public Collection<String> call() throws Exception {
+                fallbackStarted.countDown();
+                release.await();
+                return Collections.singletonList("untyped");
+            }
+        });
+
+        SearchDeadline previous = SearchDeadline.after(100).attach();
+        try {
+            long start = System.currentTimeMillis();
+            assertTrue(cascade.execute("test", stages).isEmpty());
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+    }
+
+    private Callable<Collection<String>> createSearch(final AtomicInteger calls, final Collection<String> results) {
+        return new Callable<Collection<String>>() {
+            @Override public Collection<String> call() {
+                calls.incrementAndGet();
+                return results;
+            }
+        };
+    }
+}
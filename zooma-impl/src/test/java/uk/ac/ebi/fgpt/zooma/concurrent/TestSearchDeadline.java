@@ -0,0 +1,79 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSearchDeadline {
+    @AfterEach
+    public void tearDown() {
+        SearchDeadline.restore(null);
+        Thread.interrupted();
+    }
+
+    @Test
+    public void testUnboundedWithoutDeadline() {
+        assertNull(SearchDeadline.current());
+        assertFalse(SearchDeadline.isExceeded());
+        assertEquals(500, SearchDeadline.remaining(500));
+    }
+
+    @Test
+    public void testRemainingIsCappedByDeadline() {
+        SearchDeadline previous = SearchDeadline.after(100).attach();
+        try {
+            assertNull(previous);
+            assertFalse(SearchDeadline.isExceeded());
+            assertTrue(SearchDeadline.remaining(500) <= 100);
+            assertTrue(SearchDeadline.remaining(10) <= 10);
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        assertNull(SearchDeadline.current());
+    }
+
+    @Test
+    public void testPassedDeadlineIsExceeded() {
+        SearchDeadline.at(System.currentTimeMillis() - 1).attach();
+        assertTrue(SearchDeadline.isExceeded());
+        assertEquals(0, SearchDeadline.remaining(500));
+    }
+
+    @Test
+    public void testInterruptedThreadIsExceeded() {
+        Thread.currentThread().interrupt();
+        assertTrue(SearchDeadline.isExceeded());
+    }
+
+    @Test
+    public void testRestoreReattachesOuterDeadline() {
+        SearchDeadline outer = SearchDeadline.after(10000);
+        outer.attach();
+        SearchDeadline previous = SearchDeadline.after(10).attach();
+        assertSame(outer, previous);
+        SearchDeadline.restore(previous);
+        assertSame(outer, SearchDeadline.current());
+    }
+
+    @Test
+    public void testTruncationIsRecordedOnAttachedDeadline() {
+        SearchDeadline.markTruncated(); // no deadline attached, so nothing to record
+
+        SearchDeadline deadline = SearchDeadline.after(10000);
+        SearchDeadline previous = deadline.attach();
+        try {
+            assertFalse(deadline.isTruncated());
+            SearchDeadline.markTruncated();
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        assertTrue(deadline.isTruncated());
+    }
+}
@@ -0,0 +1,154 @@
+package uk.ac.ebi.fgpt.zooma.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.ac.ebi.fgpt.zooma.datasource.ZoomaCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestStreamingWorkloadScheduler {
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testAllItemsAreProcessedInBatches() throws InterruptedException {
+        CountingCursor cursor = new CountingCursor(25, -1);
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        StreamingWorkloadScheduler<Integer> scheduler =
+                new StreamingWorkloadScheduler<Integer>(executorService, cursor, 10, 2, 0, "test") {
+                    @Override protected void executeTask(int batchNumber, List<Integer> batch) {
+                        batchSizes.add(batch.size());
+                        processed.addAll(batch);
+                    }
+                };
+        scheduler.start();
+        scheduler.waitUntilComplete();
+
+        assertEquals(25, processed.size());
+        assertEquals(25, scheduler.getItemsRead());
+        Collections.sort(batchSizes);
+        assertEquals(Arrays.asList(5, 10, 10), batchSizes);
+        assertTrue(cursor.closed, "Cursor should be closed once reading is complete");
+    }
+
+    @Test
+    public void testReadingNeverRunsAheadOfPendingBatches() throws InterruptedException {
+        final CountingCursor cursor = new CountingCursor(100, -1);
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger maxUnprocessed = new AtomicInteger();
+
+        StreamingWorkloadScheduler<Integer> scheduler =
+                new StreamingWorkloadScheduler<Integer>(executorService, cursor, 5, 2, 0, "test") {
+                    @Override protected void executeTask(int batchNumber, List<Integer> batch) throws Exception {
+                        Thread.sleep(5);
+                        synchronized (maxUnprocessed) {
+                            int unprocessed = cursor.read.get() - processed.get();
+                            if (unprocessed > maxUnprocessed.get()) {
+                                maxUnprocessed.set(unprocessed);
+                            }
+                        }
+                        processed.addAndGet(batch.size());
+                    }
+                };
+        scheduler.start();
+        scheduler.waitUntilComplete();
+
+        assertEquals(100, processed.get());
+        // at most two pending batches, plus the batch currently being filled
+        assertTrue(maxUnprocessed.get() <= 15,
+                   "Reader ran " + maxUnprocessed.get() + " items ahead of processing");
+    }
+
+    @Test
+    public void testReadingStopsAtMaxItems() throws InterruptedException {
+        CountingCursor cursor = new CountingCursor(100, -1);
+        final AtomicInteger processed = new AtomicInteger();
+
+        StreamingWorkloadScheduler<Integer> scheduler =
+                new StreamingWorkloadScheduler<Integer>(executorService, cursor, 10, 2, 15, "test") {
+                    @Override protected void executeTask(int batchNumber, List<Integer> batch) {
+                        processed.addAndGet(batch.size());
+                    }
+                };
+        scheduler.start();
+        scheduler.waitUntilComplete();
+
+        assertEquals(15, processed.get());
+        assertTrue(cursor.closed);
+    }
+
+    @Test
+    public void testCursorFailureIsRethrown() {
+        CountingCursor cursor = new CountingCursor(100, 12);
+        final AtomicInteger processed = new AtomicInteger();
+
+        final StreamingWorkloadScheduler<Integer> scheduler =
+                new StreamingWorkloadScheduler<Integer>(executorService, cursor, 5, 2, 0, "test") {
+                    @Override protected void executeTask(int batchNumber, List<Integer> batch) {
+                        processed.addAndGet(batch.size());
+                    }
+                };
+        scheduler.start();
+        assertThrows(IllegalStateException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                scheduler.waitUntilComplete();
+            }
+        });
+        assertEquals(10, processed.get(), "Batches read before the failure should still be processed");
+        assertTrue(cursor.closed);
+    }
+
+    private static class CountingCursor implements ZoomaCursor<Integer> {
+        private final int size;
+        private final int failAt;
+        private final AtomicInteger read = new AtomicInteger();
+        private volatile boolean closed = false;
+
+        private CountingCursor(int size, int failAt) {
+            this.size = size;
+            this.failAt = failAt;
+        }
+
+        @Override public boolean hasNext() {
+            return read.get() < size;
+        }
+
+        @Override public Integer next() {
+            if (read.get() == failAt) {
+                throw new IllegalStateException("Datasource failed");
+            }
+            return read.incrementAndGet();
+        }
+
+        @Override public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
+import uk.ac.ebi.fgpt.zooma.model.SimpleAnnotationSummary;
+import uk.ac.ebi.fgpt.zooma.util.AnnotationSummarySearchCommand;
+import uk.ac.ebi.fgpt.zooma.util.SearchStringProcessor;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TestPostProcessingAnnotationSummarySearchService {
+    private PostProcessingAnnotationSummarySearchService service;
+    private Map<String, Collection<AnnotationSummary>> index;
+    private AnnotationSummarySearchCommand command;
+    private SearchStringProcessor splitter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        service = new PostProcessingAnnotationSummarySearchService(mock(AnnotationSummarySearchService.class));
+        service.init();
+        service.waitUntilReady();
+
+        index = new HashMap<>();
+        index.put("heart", Arrays.asList(createSummary("organism part", 90, "heart"),
+                                         createSummary("organism part", 60, "cardiac muscle")));
+        index.put("liver", Arrays.asList(createSummary("organism part", 80, "liver"),
+                                         createSummary("organism part", 70, "hepatocyte")));
+        index.put("kidney", Collections.singletonList(createSummary("cell type", 50, "kidney")));
+
+        command = new AnnotationSummarySearchCommand() {
+            @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
+                Collection<AnnotationSummary> results = index.get(propertyValue);
+                return results == null ? new ArrayList<AnnotationSummary>() : results;
+            }
+        };
+        splitter = new SearchStringProcessor() {
+            @Override public float getBoostFactor() {
+                return 1;
+            }
+
+            @Override public boolean canProcess(String searchString) {
+                return searchString.contains(" and ");
+            }
+
+            @Override public Collection<String> processSearchString(String searchString) {
+                return Arrays.asList(searchString.replace(",", " and").split(" and "));
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    public void testMergesTwoPartsBestFirst() {
+        List<AnnotationSummary> results =
+                new ArrayList<>(service.getProcessedSearch(splitter, "heart and liver", command));
+        assertEquals(4, results.size());
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getQuality() >= results.get(i).getQuality());
+        }
+
+        AnnotationSummary best = results.get(0);
+        assertTrue(best.getSemanticTags().contains(URI.create("http://test.org/heart")));
+        assertTrue(best.getSemanticTags().contains(URI.create("http://test.org/liver")));
+        assertEquals("organism part", best.getAnnotatedPropertyType());
+        assertEquals("heart and liver", best.getAnnotatedPropertyValue());
+        // (5 * 90 + 5 * 80) / 10, reduced by the partial string boost
+        assertEquals(85 * 0.7f, best.getQuality(), 0.001f);
+    }
+
+    @Test
+    public void testMergesMoreThanTwoParts() {
+        List<AnnotationSummary> results =
+                new ArrayList<>(service.getProcessedSearch(splitter, "heart, liver and kidney", command));
+        assertEquals(4, results.size());
+        AnnotationSummary best = results.get(0);
+        assertEquals(3, best.getSemanticTags().size());
+        assertNull(best.getAnnotatedPropertyType());
+    }
+
+    @Test
+    public void testMergeIsLimitedToBestCombinations() {
+        List<String> parts = Arrays.asList("heart", "liver");
+        List<Collection<AnnotationSummary>> partResults = Arrays.asList(index.get("heart"), index.get("liver"));
+        List<AnnotationSummary> results =
+                new ArrayList<>(service.mergeResults("heart and liver", 20, 2, parts, partResults));
+        assertEquals(2, results.size());
+        assertEquals(85 * 0.7f, results.get(0).getQuality(), 0.001f);
+        assertEquals(80 * 0.7f, results.get(1).getQuality(), 0.001f);
+    }
+
+    @Test
+    public void testEveryCombinationOfTwoPartsIsMergedByDefault() {
+        List<AnnotationSummary> heartResults = new ArrayList<>();
+        List<AnnotationSummary> liverResults = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            heartResults.add(createSummary("organism part", 90 - i, "heart" + i));
+            liverResults.add(createSummary("organism part", 80 - i, "liver" + i));
+        }
+        List<String> parts = Arrays.asList("heart", "liver");
+        List<Collection<AnnotationSummary>> partResults =
+                Arrays.<Collection<AnnotationSummary>>asList(heartResults, liverResults);
+        assertEquals(400, service.mergeResults("heart and liver", parts, partResults).size());
+    }
+
+    @Test
+    public void testDestroyStopsSubSearchThreads() throws InterruptedException {
+        assertEquals(4, service.getProcessedSearch(splitter, "heart and liver", command).size());
+        assertFalse(getSubSearchThreads().isEmpty(), "Parts should be searched on the sub-search threads");
+
+        service.destroy();
+        for (int i = 0; i < 100 && !getSubSearchThreads().isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(getSubSearchThreads().isEmpty(), "Sub-search threads are still running after destroy");
+
+        // parts are still searched, on the calling thread
+        assertEquals(4, service.getProcessedSearch(splitter, "heart and liver", command).size());
+    }
+
+    @Test
+    public void testPartWithoutResultsCannotBeMerged() {
+        assertTrue(service.getProcessedSearch(splitter, "heart and spleen", command).isEmpty());
+    }
+
+    @Test
+    public void testPartsNotSearchedByDeadlineTruncateResults() {
+        AnnotationSummarySearchCommand slowCommand = new AnnotationSummarySearchCommand() {
+            @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
+                if (propertyValue.equals("liver")) {
+                    try {
+                        Thread.sleep(2000);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return command.executeSearch(propertyValue);
+            }
+        };
+
+        SearchDeadline deadline = SearchDeadline.after(100);
+        SearchDeadline previous = deadline.attach();
+        try {
+            assertTrue(service.getProcessedSearch(splitter, "heart and liver", slowCommand).isEmpty());
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        assertTrue(deadline.isTruncated(), "Results missing parts at the deadline should be marked truncated");
+
+        deadline = SearchDeadline.after(60000);
+        previous = deadline.attach();
+        try {
+            assertEquals(4, service.getProcessedSearch(splitter, "heart and liver", command).size());
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        assertFalse(deadline.isTruncated());
+    }
+
+    private List<Thread> getSubSearchThreads() {
+        List<Thread> threads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("ZOOMA-Sub-Search-Thread-") && thread.isAlive()) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private AnnotationSummary createSummary(String type, float quality, String tag) {
+        URI semanticTag = URI.create("http://test.org/" + tag.replace(' ', '_'));
+        URI annotation = URI.create("http://test.org/annotation/" + tag.replace(' ', '_'));
+        return new SimpleAnnotationSummary(null,
+                                           null,
+                                           type,
+                                           tag,
+                                           Collections.singleton(semanticTag),
+                                           Collections.singleton(annotation),
+                                           quality,
+                                           Collections.singleton(URI.create("http://test.org/source")));
+    }
+}
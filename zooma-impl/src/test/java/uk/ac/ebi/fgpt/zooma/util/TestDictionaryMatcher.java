@@ -0,0 +1,105 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDictionaryMatcher {
+    @Test
+    public void testOverlappingTermsAreAllFound() {
+        DictionaryMatcher matcher = new DictionaryMatcher(Arrays.asList("he", "she", "his", "hers"));
+        assertEquals(bits(0, 1, 3), matcher.findAll("ushers"));
+        assertEquals(bits(0, 2), matcher.findAll("this here"));
+        assertEquals(bits(), matcher.findAll("hippo"));
+    }
+
+    @Test
+    public void testSuffixTermsAreFoundThroughFailureLinks() {
+        // 'ium', 'um' and 'm' all end where 'sodium' ends, but only 'sodium' is on the path through the trie
+        DictionaryMatcher matcher = new DictionaryMatcher(Arrays.asList("sodium", "ium", "um", "m", "chloride"));
+        assertEquals(bits(0, 1, 2, 3), matcher.findAll("sodium"));
+        assertTrue(matcher.containsAny("xum"));
+        assertEquals(bits(2, 3), matcher.findAll("xum"));
+    }
+
+    @Test
+    public void testEmptyTermMatchesEveryString() {
+        DictionaryMatcher matcher = new DictionaryMatcher(Arrays.asList("liver", ""));
+        assertTrue(matcher.containsAny(""));
+        assertTrue(matcher.containsAny("heart"));
+        assertEquals(bits(1), matcher.findAll("heart"));
+        assertEquals(bits(0, 1), matcher.findAll("left liver lobe"));
+    }
+
+    @Test
+    public void testContainsAnyAgreesWithFindAll() {
+        DictionaryMatcher matcher = new DictionaryMatcher(Arrays.asList("left", "right", "lobe"));
+        assertFalse(matcher.containsAny("heart"));
+        assertTrue(matcher.findAll("heart").isEmpty());
+        assertTrue(matcher.containsAny("upper lobe"));
+        assertEquals(bits(2), matcher.findAll("upper lobe"));
+
+        DictionaryMatcher empty = new DictionaryMatcher(Collections.<String>emptyList());
+        assertFalse(empty.containsAny("heart"));
+        assertTrue(empty.findAll("heart").isEmpty());
+    }
+
+    @Test
+    public void testRepeatedTermsAreNumberedSeparately() {
+        DictionaryMatcher matcher = new DictionaryMatcher(Arrays.asList("cell", "T cell", "cell"));
+        assertEquals(Arrays.asList("cell", "T cell", "cell"), matcher.getTerms());
+        assertEquals(bits(0, 1, 2), matcher.findAll("CD4-positive T cell"));
+        // matching is case sensitive
+        assertEquals(bits(), matcher.findAll("CELL"));
+    }
+
+    @Test
+    public void testMatchesAgreeWithStringContains() {
+        // small alphabets give plenty of overlapping and nested terms
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<String> terms = new ArrayList<>();
+            int termCount = random.nextInt(10);
+            for (int i = 0; i < termCount; i++) {
+                terms.add(randomString(random, random.nextInt(5)));
+            }
+            DictionaryMatcher matcher = new DictionaryMatcher(terms);
+            for (int t = 0; t < 20; t++) {
+                String text = randomString(random, random.nextInt(20));
+                BitSet expected = new BitSet();
+                for (int i = 0; i < terms.size(); i++) {
+                    if (text.contains(terms.get(i))) {
+                        expected.set(i);
+                    }
+                }
+                assertEquals(expected, matcher.findAll(text), "Terms " + terms + " in '" + text + "'");
+                assertEquals(!expected.isEmpty(), matcher.containsAny(text), "Terms " + terms + " in '" + text + "'");
+            }
+        }
+    }
+
+    private String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+    private BitSet bits(int... indices) {
+        BitSet bits = new BitSet();
+        for (int index : indices) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,154 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestExpiringCache {
+    @Test
+    public void testHitsAndMisses() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+        CountingLoader loader = new CountingLoader();
+        assertEquals("value-a", cache.get("a", loader));
+        assertEquals("value-a", cache.get("a", loader));
+        assertEquals(1, loader.count.get(), "Value should only be loaded once");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testNullValuesAreCached() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+        final AtomicInteger count = new AtomicInteger();
+        ExpiringCache.Loader<String, String> loader = new ExpiringCache.Loader<String, String>() {
+            @Override public String load(String key) {
+                count.incrementAndGet();
+                return null;
+            }
+        };
+        assertNull(cache.get("a", loader));
+        assertNull(cache.get("a", loader));
+        assertEquals(1, count.get(), "Null value should be cached");
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 20);
+        CountingLoader loader = new CountingLoader();
+        cache.get("a", loader);
+        Thread.sleep(50);
+        cache.get("a", loader);
+        assertEquals(2, loader.count.get(), "Expired value should be reloaded");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, 60000);
+        CountingLoader loader = new CountingLoader();
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+        cache.get("c", loader);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, loader.count.get());
+
+        // b was least recently used, so should have been evicted
+        cache.get("a", loader);
+        assertEquals(3, loader.count.get(), "a should still be cached");
+        cache.get("b", loader);
+        assertEquals(4, loader.count.get(), "b should have been evicted");
+    }
+
+    @Test
+    public void testFailuresAreNotCached() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+        ExpiringCache.Loader<String, String> failingLoader = new ExpiringCache.Loader<String, String>() {
+            @Override public String load(String key) {
+                throw new IllegalStateException("failed");
+            }
+        };
+        try {
+            cache.get("a", failingLoader);
+            fail("Loader exception should be thrown");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, cache.size());
+        assertEquals("value-a", cache.get("a", new CountingLoader()));
+    }
+
+    @Test
+    public void testConcurrentRequestsAreCoalesced() throws Exception {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        final ExpiringCache.Loader<String, String> slowLoader = new ExpiringCache.Loader<String, String>() {
+            @Override public String load(String key) {
+                count.incrementAndGet();
+                try {
+                    loading.await();
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return "value-" + key;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override public String call() throws Exception {
+                        return cache.get("a", slowLoader);
+                    }
+                }));
+            }
+            Thread.sleep(100);
+            loading.countDown();
+            for (Future<String> result : results) {
+                assertEquals("value-a", result.get());
+            }
+            assertEquals(1, count.get(), "Concurrent requests should be loaded once");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSnapshotWarmUp() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+        CountingLoader loader = new CountingLoader();
+        cache.get("a", loader);
+        cache.get("b", loader);
+
+        ExpiringCache<String, String> warmCache = new ExpiringCache<>(10, 60000);
+        warmCache.putAll(cache.snapshot());
+        assertEquals("value-b", warmCache.get("b", loader));
+        assertEquals(2, loader.count.get(), "Warmed up value should not be reloaded");
+    }
+
+    private static class CountingLoader implements ExpiringCache.Loader<String, String> {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override public String load(String key) {
+            count.incrementAndGet();
+            return "value-" + key;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -160,6 +161,29 @@ public class DefaultJdbcAnnotationDAO implements AnnotationDAO {
                         "of annotations using this method is not supported");
     }
 
+    /**
+     * Returns the annotations from the given source.  Every annotation in this datasource is created by the same
+     * annotation factory, and so shares the same source: the first annotation is read to determine this source, and all
+     * annotations are only read if it matches.
+     *
+     * @param sourceURI the URI of the annotation source
+     * @return all annotations in this datasource if they come from the given source, otherwise an empty collection
+     */
+    @Override
+    public Collection<Annotation> readBySource(URI sourceURI) {
+        List<Annotation> first = read(1, 0);
+        if (first.isEmpty() || !hasSource(first.get(0), sourceURI)) {
+            return Collections.emptySet();
+        }
+        return read();
+    }
+
+    private boolean hasSource(Annotation annotation, URI sourceURI) {
+        return annotation.getProvenance() != null &&
+                annotation.getProvenance().getSource() != null &&
+                annotation.getProvenance().getSource().getURI().equals(sourceURI);
+    }
+
     @Override
     public int count() {
         return getJdbcTemplate().queryForObject(ANNOTATIONS_SELECT_COUNT, Integer.class);
@@ -414,6 +414,21 @@ public class CSVAnnotationDAO extends RowBasedDataAnnotationMapper implements An
         return results;
     }
 
+    @Override
+    public Collection<Annotation> readBySource(URI sourceURI) {
+        // every annotation in this file is created by the same annotation factory, so only the first needs checking
+        Collection<Annotation> all = read();
+        if (!all.isEmpty()) {
+            Annotation first = annotations.get(0);
+            if (first.getProvenance() != null &&
+                    first.getProvenance().getSource() != null &&
+                    first.getProvenance().getSource().getURI().equals(sourceURI)) {
+                return all;
+            }
+        }
+        return Collections.emptySet();
+    }
+
     @Override
     public int count() {
         try {
@@ -108,6 +108,20 @@ public class OWLAnnotationDAO extends Initializable implements AnnotationDAO, Se
         throw new UnsupportedOperationException("Semantic tag lookup not yet implemented");
     }
 
+    @Override public Collection<Annotation> readBySource(URI sourceURI) {
+        // all annotations from an ontology share the same source, so only the first needs checking
+        Collection<Annotation> all = read();
+        if (!all.isEmpty()) {
+            Annotation first = annotations.get(0);
+            if (first.getProvenance() != null &&
+                    first.getProvenance().getSource() != null &&
+                    first.getProvenance().getSource().getURI().equals(sourceURI)) {
+                return new ArrayList<>(all);
+            }
+        }
+        return Collections.emptyList();
+    }
+
     @Override protected void doInitialization() throws Exception {
         // get the IRI to label mappings from the owlLoader
         Map<IRI, String> iriToLabelMap = owlLoader.getOntologyClassLabels();
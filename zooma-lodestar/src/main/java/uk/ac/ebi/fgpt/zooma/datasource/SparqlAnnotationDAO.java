@@ -35,7 +35,7 @@ import java.util.*;
  * @author Simon Jupp
  * @date 06/08/2013 Functional Genomics Group EMBL-EBI
  */
-public class SparqlAnnotationDAO implements AnnotationDAO {
+public class SparqlAnnotationDAO implements AnnotationDAO, StreamingDAO<Annotation> {
 
     private JenaQueryExecutionService queryService;
 
@@ -222,7 +222,56 @@ public class SparqlAnnotationDAO implements AnnotationDAO {
 
     @Override
     public int count() {
-        return getAllAnnotationURIs(-1, -1).size();
+        String query = getQueryManager().getSparqlQuery("Instance");
+        Graph g = getQueryService().getDefaultGraph();
+        Query q1 = QueryFactory.create(query, Syntax.syntaxARQ);
+        QuerySolutionMap initialBinding = new QuerySolutionMap();
+        initialBinding.add(QueryVariables.RESOURCE_TYPE.toString(),
+                new ResourceImpl(Namespaces.OAC.getURI() + "DataAnnotation"));
+
+        // count results as they arrive, rather than collecting every annotation URI first
+        QueryExecution execute = null;
+        int count = 0;
+        try {
+            execute = getQueryService().getQueryExecution(g, q1.toString(), initialBinding, false);
+            ResultSet results = execute.execSelect();
+            while (results.hasNext()) {
+                results.next();
+                count++;
+            }
+        } catch (LodeException e) {
+            throw new SPARQLQueryException("Failed to count annotations", e);
+        } finally {
+            if (execute != null) {
+                execute.close();
+                if (g != null) {
+                    g.close();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Opens a cursor over every annotation, using a single query ordered by annotation.  All the results for one
+     * annotation are therefore adjacent, so each annotation can be returned as soon as its results have been read and
+     * only one annotation is held in memory at a time.
+     */
+    @Override
+    public ZoomaCursor<Annotation> openCursor() {
+        String query = getQueryManager().getSparqlQuery("ANNOTATIONS.read");
+        Graph g = getQueryService().getDefaultGraph();
+        Query q1 = QueryFactory.create(query, Syntax.syntaxARQ);
+        q1.addOrderBy(underscore + QueryVariables.ANNOTATION_ID.toString(), Query.ORDER_DEFAULT);
+        try {
+            QueryExecution execute = getQueryService().getQueryExecution(g, q1, false);
+            return new AnnotationCursor(g, execute, execute.execSelect());
+        } catch (LodeException e) {
+            if (g != null) {
+                g.close();
+            }
+            throw new SPARQLQueryException("Failed to retrieve annotations", e);
+        }
     }
 
     @Override
@@ -468,6 +517,33 @@ public class SparqlAnnotationDAO implements AnnotationDAO {
 
     }
 
+    @Override
+    public Collection<Annotation> readBySource(URI sourceURI) {
+        String query = getQueryManager().getSparqlQuery("ANNOTATIONS.read");
+        Graph g = getQueryService().getDefaultGraph();
+        Query q1 = QueryFactory.create(query, Syntax.syntaxARQ);
+
+        QuerySolutionMap initialBinding = new QuerySolutionMap();
+        initialBinding.add(QueryVariables.DATABASEID.toString(), new ResourceImpl(sourceURI.toString()));
+        ParameterizedSparqlString queryString = new ParameterizedSparqlString(q1.toString(), initialBinding);
+
+        QueryExecution execute = null;
+        try {
+            execute = getQueryService().getQueryExecution(g, queryString.asQuery(), false);
+            ResultSet results = execute.execSelect();
+            return evaluateQueryResults(results);
+        } catch (LodeException e) {
+            throw new SPARQLQueryException("Failed to retrieve annotations", e);
+        } finally {
+            if (execute != null) {
+                execute.close();
+                if (g != null) {
+                    g.close();
+                }
+            }
+        }
+    }
+
     public List<Annotation> evaluateQueryResults(ResultSet result) {
         Map<URI, Annotation> annotationMap = new HashMap<>();
         while (result.hasNext()) {
@@ -698,5 +774,84 @@ public class SparqlAnnotationDAO implements AnnotationDAO {
 
     }
 
+    /**
+     * A cursor over the results of an annotation query that is ordered by annotation, which merges the results for each
+     * annotation in turn
+     */
+    class AnnotationCursor implements ZoomaCursor<Annotation> {
+        private final Graph graph;
+        private final QueryExecution execute;
+        private final ResultSet results;
+
+        // the results for the annotation currently being assembled
+        private final Map<URI, Annotation> annotationMap = new HashMap<>();
+        private URI pendingURI;
+        private Annotation next;
+        private boolean closed = false;
+
+        AnnotationCursor(Graph graph, QueryExecution execute, ResultSet results) {
+            this.graph = graph;
+            this.execute = execute;
+            this.results = results;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !closed) {
+                next = readNext();
+                if (next == null) {
+                    close();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Annotation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more annotations");
+            }
+            Annotation annotation = next;
+            next = null;
+            return annotation;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Annotations cannot be removed whilst reading");
+        }
 
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                execute.close();
+                if (graph != null) {
+                    graph.close();
+                }
+            }
+        }
+
+        private Annotation readNext() {
+            while (results.hasNext()) {
+                QuerySolution solution = results.nextSolution();
+                Resource annotationId = solution.getResource(underscore + QueryVariables.ANNOTATION_ID.toString());
+                URI annotationUri = URI.create(annotationId.getURI());
+                Annotation completed = null;
+                if (pendingURI != null && !pendingURI.equals(annotationUri)) {
+                    // all results for the previous annotation have been read
+                    completed = annotationMap.remove(pendingURI);
+                }
+                pendingURI = annotationUri;
+                getAnnotationFromBindingSet(annotationMap, solution);
+                if (completed != null) {
+                    return completed;
+                }
+            }
+            // results are exhausted, so return the last annotation (if any)
+            Annotation last = pendingURI != null ? annotationMap.remove(pendingURI) : null;
+            pendingURI = null;
+            return last;
+        }
+    }
 }
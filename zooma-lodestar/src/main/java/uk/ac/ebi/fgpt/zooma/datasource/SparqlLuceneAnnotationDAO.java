@@ -248,6 +248,35 @@ public class SparqlLuceneAnnotationDAO implements AnnotationDAO {
 
     }
 
+    @Override public Collection<Annotation> readBySource(URI sourceURI) {
+        String query = getQueryManager().getSparqlQuery("ANNOTATIONS.lucene.read");
+        Graph g = getQueryService().getDefaultGraph();
+        Query q1 = QueryFactory.create(query, Syntax.syntaxARQ);
+
+        QuerySolutionMap initialBinding = new QuerySolutionMap();
+        initialBinding.add(QueryVariables.DATABASEID.toString(), new ResourceImpl(sourceURI.toString()));
+
+        QueryExecution execute = null;
+        try {
+            execute = getQueryService().getQueryExecution(g, q1.toString(), initialBinding, false);
+            ResultSet results = execute.execSelect();
+            List<Annotation> annotations = evaluateQueryResults(results);
+            getLog().debug("Read " + annotations.size() + " annotations from <" + sourceURI + ">");
+            return annotations;
+        }
+        catch (LodeException e) {
+            throw new SPARQLQueryException("Failed to retrieve annotations for source <" + sourceURI + ">", e);
+        }
+        finally {
+            if (execute != null) {
+                execute.close();
+                if (g != null) {
+                    g.close();
+                }
+            }
+        }
+    }
+
     public List<Annotation> evaluateQueryResults(ResultSet result) {
         Map<URI, Annotation> annotationMap = new HashMap<>();
         while (result.hasNext()) {
@@ -3,6 +3,7 @@ package uk.ac.ebi.fgpt.zooma.datasource;
 import com.hp.hpl.jena.datatypes.RDFDatatype;
 import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
 import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.NodeFactory;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryFactory;
@@ -15,6 +16,9 @@ import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.impl.ResourceImpl;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.slf4j.Logger;
@@ -49,6 +53,9 @@ import java.util.List;
  */
 public class SparqlPropertyDAO implements PropertyDAO {
 
+    // maximum number of properties to read in one query
+    private static final int READ_BATCH_SIZE = 500;
+
     private Logger log = LoggerFactory.getLogger(getClass());
     private QueryManager queryManager;
     private JenaQueryExecutionService queryService;
@@ -311,6 +318,54 @@ public class SparqlPropertyDAO implements PropertyDAO {
 
     }
 
+    @Override public Collection<Property> readByURIs(Collection<URI> uris) {
+        List<Property> properties = new ArrayList<>();
+        List<URI> batch = new ArrayList<>();
+        for (URI uri : uris) {
+            batch.add(uri);
+            if (batch.size() == READ_BATCH_SIZE) {
+                properties.addAll(readBatch(batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            properties.addAll(readBatch(batch));
+        }
+        return properties;
+    }
+
+    private List<Property> readBatch(List<URI> uris) {
+        String query = getQueryManager().getSparqlQuery("Property.read");
+        Graph g = getQueryService().getDefaultGraph();
+        Query q1 = QueryFactory.create(query, Syntax.syntaxARQ);
+
+        // bind the property id to every requested uri at once, with a VALUES block
+        Var propertyId = Var.alloc(QueryVariables.PROPERTY_VALUE_ID.toString());
+        List<Binding> bindings = new ArrayList<>();
+        for (URI uri : uris) {
+            bindings.add(BindingFactory.binding(propertyId, NodeFactory.createURI(uri.toString())));
+        }
+        q1.setValuesDataBlock(Collections.singletonList(propertyId), bindings);
+
+        QueryExecution execute = null;
+        try {
+            execute = getQueryService().getQueryExecution(g, q1, false);
+            ResultSet results = execute.execSelect();
+            return evaluateQueryResults(results);
+        }
+        catch (LodeException e) {
+            throw new SPARQLQueryException("Failed to retrieve properties", e);
+        }
+        finally {
+            if (execute != null) {
+                execute.close();
+                if (g != null) {
+                    g.close();
+                }
+            }
+        }
+    }
+
     @Override public String readType(URI uri) {
         Property p = read(uri);
         if (p instanceof TypedProperty) {
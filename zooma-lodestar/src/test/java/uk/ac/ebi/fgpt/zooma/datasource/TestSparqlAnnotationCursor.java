@@ -0,0 +1,193 @@
+package uk.ac.ebi.fgpt.zooma.datasource;
+
+import com.hp.hpl.jena.graph.Factory;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ResultSetStream;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.ac.ebi.fgpt.zooma.model.Annotation;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationSource;
+import uk.ac.ebi.fgpt.zooma.service.QueryVariables;
+import uk.ac.ebi.fgpt.zooma.util.URIBindingUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSparqlAnnotationCursor {
+    private static final String ZOOMA = "http://rdf.ebi.ac.uk/terms/zooma/";
+    private static final String EFO = "http://www.ebi.ac.uk/efo/";
+
+    private String zoomaHome;
+    private File home;
+
+    private SparqlAnnotationDAO annotationDAO;
+    private Graph graph;
+    private QueryExecution execution;
+    private List<Binding> rows;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // source types and evidence are mapped to names using the types declared in zooma home
+        zoomaHome = System.getProperty("zooma.home");
+        home = Files.createTempDirectory("zooma-home").toFile();
+        File naming = new File(home, "config" + File.separator + "naming");
+        naming.mkdirs();
+        Files.write(new File(naming, "types.properties").toPath(),
+                    ("DATABASE " + ZOOMA + "DatabaseSource\n" +
+                            "ONTOLOGY " + ZOOMA + "OntologySource\n" +
+                            "SUBMITTER_PROVIDED " + ZOOMA + "ZOOMA_0000104\n").getBytes(StandardCharsets.UTF_8));
+        System.setProperty("zooma.home", home.getAbsolutePath());
+        URIBindingUtils.loadPrefixMappings();
+
+        annotationDAO = new SparqlAnnotationDAO();
+        graph = Factory.createGraphMem();
+        execution = QueryExecutionFactory.create("ASK {}", ModelFactory.createModelForGraph(graph));
+        rows = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (zoomaHome != null) {
+            System.setProperty("zooma.home", zoomaHome);
+        }
+        else {
+            System.clearProperty("zooma.home");
+        }
+        Files.delete(new File(home, "config/naming/types.properties").toPath());
+        Files.delete(new File(home, "config/naming").toPath());
+        Files.delete(new File(home, "config").toPath());
+        Files.delete(home.toPath());
+    }
+
+    @Test
+    public void testResultsForEachAnnotationAreMerged() {
+        addRow("annotation1", "DatabaseSource", "EFO_0000887");
+        addRow("annotation1", "DatabaseSource", "UBERON_0002107");
+        addRow("annotation2", "DatabaseSource", "EFO_0000815");
+
+        SparqlAnnotationDAO.AnnotationCursor cursor = openCursor();
+        Annotation first = cursor.next();
+        assertEquals(URI.create(ZOOMA + "annotation1"), first.getURI());
+        assertEquals(new HashSet<>(Arrays.asList(URI.create(EFO + "EFO_0000887"),
+                                                 URI.create(EFO + "UBERON_0002107"))),
+                     new HashSet<>(first.getSemanticTags()));
+        assertEquals(AnnotationSource.Type.DATABASE, first.getProvenance().getSource().getType());
+        assertEquals("test database", first.getProvenance().getSource().getName());
+
+        // the last annotation is only complete once the results are exhausted
+        Annotation last = cursor.next();
+        assertEquals(URI.create(ZOOMA + "annotation2"), last.getURI());
+        assertEquals(1, last.getSemanticTags().size());
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testAnnotationsWithUnrecognisedSourceTypesAreSkipped() {
+        addRow("annotation1", "DatabaseSource", "EFO_0000887");
+        addRow("annotation2", "UnknownSource", "EFO_0000815");
+        addRow("annotation3", "UnknownSource", "EFO_0000815");
+        addRow("annotation4", "OntologySource", "EFO_0001265");
+        addRow("annotation5", "UnknownSource", "EFO_0000815");
+
+        List<URI> annotations = new ArrayList<>();
+        SparqlAnnotationDAO.AnnotationCursor cursor = openCursor();
+        while (cursor.hasNext()) {
+            annotations.add(cursor.next().getURI());
+        }
+        assertEquals(Arrays.asList(URI.create(ZOOMA + "annotation1"), URI.create(ZOOMA + "annotation4")),
+                     annotations);
+    }
+
+    @Test
+    public void testCursorIsClosedOnceExhausted() {
+        addRow("annotation1", "DatabaseSource", "EFO_0000887");
+
+        final SparqlAnnotationDAO.AnnotationCursor cursor = openCursor();
+        assertTrue(cursor.hasNext());
+        assertFalse(graph.isClosed(), "Cursor should not be closed whilst there are results left to read");
+        cursor.next();
+        assertFalse(cursor.hasNext());
+        assertTrue(graph.isClosed(), "Cursor should be closed once every result has been read");
+        assertThrows(NoSuchElementException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                cursor.next();
+            }
+        });
+
+        // closing again has no effect
+        cursor.close();
+    }
+
+    @Test
+    public void testEmptyResultsAreClosedImmediately() {
+        SparqlAnnotationDAO.AnnotationCursor cursor = openCursor();
+        assertFalse(cursor.hasNext());
+        assertTrue(graph.isClosed());
+    }
+
+    private SparqlAnnotationDAO.AnnotationCursor openCursor() {
+        List<String> variables = new ArrayList<>();
+        for (Binding row : rows) {
+            for (Iterator<Var> vars = row.vars(); vars.hasNext(); ) {
+                String name = vars.next().getVarName();
+                if (!variables.contains(name)) {
+                    variables.add(name);
+                }
+            }
+        }
+        Model model = ModelFactory.createDefaultModel();
+        return annotationDAO.new AnnotationCursor(graph, execution, new ResultSetStream(variables,
+                                                                                        model,
+                                                                                        rows.iterator()));
+    }
+
+    /**
+     * Adds a result for one semantic tag of an annotation, as returned by the annotations query.  Every annotation
+     * annotates the property 'organism part' 'liver' and has the supplied type of source.
+     */
+    private void addRow(String annotation, String sourceType, String semanticTag) {
+        BindingMap row = BindingFactory.create();
+        bind(row, "_" + QueryVariables.ANNOTATION_ID, NodeFactory.createURI(ZOOMA + annotation));
+        bind(row, "_" + QueryVariables.PROPERTY_VALUE_ID, NodeFactory.createURI(ZOOMA + "liver"));
+        bind(row, "_" + QueryVariables.PROPERTY_NAME, NodeFactory.createLiteral("organism part"));
+        bind(row, "_" + QueryVariables.PROPERTY_VALUE, NodeFactory.createLiteral("liver"));
+        bind(row, "_" + QueryVariables.SEMANTIC_TAG, NodeFactory.createURI(EFO + semanticTag));
+        bind(row, QueryVariables.SOURCETYPE.toString(), NodeFactory.createURI(ZOOMA + sourceType));
+        bind(row, QueryVariables.DATABASEID.toString(), NodeFactory.createURI("http://www.ebi.ac.uk/test"));
+        bind(row, QueryVariables.SOURCENAME.toString(), NodeFactory.createLiteral("test database"));
+        bind(row, QueryVariables.EVIDENCE.toString(), NodeFactory.createURI(ZOOMA + "ZOOMA_0000104"));
+        bind(row, QueryVariables.GENERATOR.toString(), NodeFactory.createLiteral("ZOOMA"));
+        bind(row, QueryVariables.GENERATED.toString(), NodeFactory.createLiteral("2013-08-06T12:00:00Z"));
+        rows.add(row);
+    }
+
+    private void bind(BindingMap row, String variable, Node value) {
+        row.add(Var.alloc(variable), value);
+    }
+}
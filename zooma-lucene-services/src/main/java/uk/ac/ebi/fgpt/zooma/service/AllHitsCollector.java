@@ -0,0 +1,67 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A lucene collector that keeps every hit it is given, for queries where no limit on the number of results applies.
+ * Unlike a {@link TopScoreDocCollector}, this collector does not need to know the number of matching documents in
+ * advance, so unlimited queries only need to be run once.
+ * <p/>
+ * Hits are returned in the same order a {@link TopScoreDocCollector} would return them: by descending score, with ties
+ * broken by ascending document id.
+ *
+ * @date 18/10/26
+ */
+public class AllHitsCollector extends SimpleCollector {
+    private final List<ScoreDoc> hits = new ArrayList<>();
+
+    private Scorer scorer;
+    private int docBase;
+
+    @Override protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        docBase = context.docBase;
+    }
+
+    @Override public void setScorer(Scorer scorer) throws IOException {
+        this.scorer = scorer;
+    }
+
+    @Override public void collect(int doc) throws IOException {
+        hits.add(new ScoreDoc(docBase + doc, scorer.score()));
+    }
+
+    @Override public boolean needsScores() {
+        return true;
+    }
+
+    /**
+     * @return the number of hits collected so far
+     */
+    public int getTotalHits() {
+        return hits.size();
+    }
+
+    /**
+     * @return every hit collected, best scoring first
+     */
+    public ScoreDoc[] getHits() {
+        List<ScoreDoc> sorted = new ArrayList<>(hits);
+        Collections.sort(sorted, new Comparator<ScoreDoc>() {
+            @Override public int compare(ScoreDoc o1, ScoreDoc o2) {
+                int comparison = Float.compare(o2.score, o1.score);
+                return comparison != 0 ? comparison : Integer.compare(o1.doc, o2.doc);
+            }
+        });
+        return sorted.toArray(new ScoreDoc[sorted.size()]);
+    }
+}
@@ -0,0 +1,160 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact store of the provenance of indexed annotations, as needed to score annotation summaries.  For each
+ * annotation, only the quality score and the source are kept, keyed by a 64-bit hash of the annotation URI.
+ * <p/>
+ * Entries are held in primitive arrays using open addressing, with the score and an index into a (small) table of
+ * distinct sources packed into a single long.  This uses between 20 and 45 bytes per annotation (depending on how full
+ * the arrays are), regardless of the length of annotation URIs or the size of provenance objects, and allocates no
+ * objects per entry.
+ * <p/>
+ * Because annotations are identified by hash, two distinct URIs with colliding hashes would share an entry.  With a
+ * 64-bit hash the chance of this happening is negligible (around 1 in 10<sup>5</sup> for 30 million annotations) and
+ * would at worst cause a single summary to be scored with the provenance of a different annotation.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @date 18/10/26
+ */
+public class AnnotationProvenanceScores {
+    private static final float MAX_LOAD = 0.75f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    private final List<URI> sources = new ArrayList<>();
+    private final Map<URI, Integer> sourceIndices = new HashMap<>();
+
+    public AnnotationProvenanceScores() {
+        this(1024);
+    }
+
+    public AnnotationProvenanceScores(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+    }
+
+    /**
+     * Records the quality score and source of an annotation
+     *
+     * @param annotationURI the URI of the annotation
+     * @param score         the quality score of the annotation
+     * @param sourceURI     the URI of the source of the annotation
+     */
+    public synchronized void put(URI annotationURI, float score, URI sourceURI) {
+        if (size + 1 > keys.length * MAX_LOAD) {
+            resize(keys.length << 1);
+        }
+        long key = hash(annotationURI);
+        int slot = findSlot(keys, key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = ((long) Float.floatToIntBits(score) << 32) | (getSourceIndex(sourceURI) & 0xFFFFFFFFL);
+    }
+
+    public synchronized boolean contains(URI annotationURI) {
+        long key = hash(annotationURI);
+        return keys[findSlot(keys, key)] == key;
+    }
+
+    /**
+     * Returns the quality score of the given annotation
+     *
+     * @param annotationURI the URI of the annotation
+     * @return the quality score of this annotation
+     * @throws IllegalArgumentException if no score has been recorded for this annotation
+     */
+    public synchronized float getScore(URI annotationURI) {
+        return Float.intBitsToFloat((int) (getValue(annotationURI) >>> 32));
+    }
+
+    /**
+     * Returns the source of the given annotation
+     *
+     * @param annotationURI the URI of the annotation
+     * @return the URI of the source of this annotation
+     * @throws IllegalArgumentException if no source has been recorded for this annotation
+     */
+    public synchronized URI getSource(URI annotationURI) {
+        return sources.get((int) getValue(annotationURI));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private long getValue(URI annotationURI) {
+        long key = hash(annotationURI);
+        int slot = findSlot(keys, key);
+        if (keys[slot] != key) {
+            throw new IllegalArgumentException("No provenance recorded for annotation <" + annotationURI + ">");
+        }
+        return values[slot];
+    }
+
+    private int getSourceIndex(URI sourceURI) {
+        Integer index = sourceIndices.get(sourceURI);
+        if (index == null) {
+            index = sources.size();
+            sources.add(sourceURI);
+            sourceIndices.put(sourceURI, index);
+        }
+        return index;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = findSlot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Finds the slot holding the given key, or the empty slot where it should be inserted, using linear probing
+     */
+    private static int findSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) key & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns a 64-bit hash (FNV-1a, with a final avalanche step) of the given URI.  Zero is reserved to mark empty
+     * slots, so is never returned.
+     */
+    static long hash(URI uri) {
+        String s = uri.toString();
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
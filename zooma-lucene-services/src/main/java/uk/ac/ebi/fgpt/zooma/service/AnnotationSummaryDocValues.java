@@ -0,0 +1,105 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Column-wise access to the values used to score annotation summaries, read from the doc values of a single segment of
+ * the annotation summary index.  This allows summary quality to be evaluated without loading (and parsing) stored
+ * documents.
+ * <p/>
+ * Doc values are not thread safe, so instances of this class should only be used by the thread that created them.
+ * Document IDs supplied to this class are relative to the segment it was created for.
+ * <p/>
+ * The URIs of the annotations in each summary are also read from doc values, where the index has them, as a {@link
+ * CompactURISet} that is only decoded when it is iterated.
+ *
+ * @date 18/10/26
+ */
+public class AnnotationSummaryDocValues {
+    private final NumericDocValues topScores;
+    private final NumericDocValues timesVerified;
+    private final NumericDocValues frequencies;
+    private final SortedSetDocValues sources;
+    private final BinaryDocValues annotations;
+
+    /**
+     * Tests whether the given annotation summary index was built with doc values for the summary scoring fields.
+     * Indices built by older versions of ZOOMA only contain stored fields.
+     *
+     * @param reader the annotation summary index reader
+     * @return true if doc values are available for summary scoring fields
+     */
+    public static boolean isAvailable(IndexReader reader) {
+        FieldInfo fieldInfo = MultiFields.getMergedFieldInfos(reader).fieldInfo("topScore");
+        return fieldInfo != null && fieldInfo.getDocValuesType() != DocValuesType.NONE;
+    }
+
+    public AnnotationSummaryDocValues(LeafReader reader) throws IOException {
+        this.topScores = DocValues.getNumeric(reader, "topScore");
+        this.timesVerified = DocValues.getNumeric(reader, "timesVerified");
+        this.frequencies = DocValues.getNumeric(reader, "frequency");
+        this.sources = DocValues.getSortedSet(reader, "source");
+        this.annotations = reader.getFieldInfos().fieldInfo("annotations") != null
+                ? DocValues.getBinary(reader, "annotations")
+                : null;
+    }
+
+    /**
+     * Tests whether annotation URIs can be read from the doc values of this segment.  Indices built by older versions
+     * of ZOOMA store annotation URIs as separate "annotation" fields instead.
+     *
+     * @return true if {@link #getAnnotationURIs(int)} can be used
+     */
+    public boolean hasAnnotationURIs() {
+        return annotations != null;
+    }
+
+    public float getTopScore(int docId) {
+        return Float.intBitsToFloat((int) topScores.get(docId));
+    }
+
+    public int getTimesVerified(int docId) {
+        return (int) timesVerified.get(docId);
+    }
+
+    public int getFrequency(int docId) {
+        return (int) frequencies.get(docId);
+    }
+
+    /**
+     * Returns the URIs of the annotations in the given summary.  The returned set holds its own copy of the encoded
+     * URIs, so it remains usable once the reader it was obtained from has been closed.
+     *
+     * @param docId the id of the document, relative to the segment
+     * @return the annotation URIs of this summary
+     */
+    public Set<URI> getAnnotationURIs(int docId) {
+        BytesRef encoded = annotations.get(docId);
+        return new CompactURISet(encoded.bytes, encoded.offset, encoded.length);
+    }
+
+    public Set<URI> getSources(int docId) {
+        Set<URI> result = new HashSet<>();
+        sources.setDocument(docId);
+        long ord;
+        while ((ord = sources.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+            BytesRef source = sources.lookupOrd(ord);
+            result.add(URI.create(source.utf8ToString()));
+        }
+        return result;
+    }
+}
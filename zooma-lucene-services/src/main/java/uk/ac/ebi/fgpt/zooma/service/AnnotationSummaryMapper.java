@@ -1,26 +1,46 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.util.Bits;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
 import uk.ac.ebi.fgpt.zooma.model.SimpleAnnotationSummary;
 
+import java.io.IOException;
 import java.net.URI;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * Maps lucene documents into {@link AnnotationSummary} objects.
+ * <p/>
+ * Where the annotation summary index contains doc values for the fields used in scoring (<code>topScore</code>,
+ * <code>timesVerified</code>, <code>frequency</code> and <code>source</code>), quality scores are read column-wise from
+ * these and only the remaining stored fields are loaded for each document.  Annotation URIs are also read from doc
+ * values where available, and are only decoded if the summary's annotation URIs are used.
+ * <p/>
+ * Indices built with annotation URIs in doc values no longer store them, so documents from these indices must be
+ * mapped with a {@link #getLeafMapper(LeafReader) leaf mapper}.  Mapping a stored document alone, with {@link
+ * #mapDocument(Document, int)}, is deprecated and only supported for indices built without doc values.
  *
  * @author Tony Burdett
  * @date 10/07/13
  */
-public class AnnotationSummaryMapper implements LuceneDocumentMapper<AnnotationSummary> {
+public class AnnotationSummaryMapper implements LuceneDocValuesMapper<AnnotationSummary> {
+    private static final Set<String> STORED_FIELD_NAMES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "id", "propertyuri", "property", "propertytype", "semanticTag", "annotation")));
+
     private final int totalAnnotationCount;
     private final int totalAnnotationSummaryCount;
 
@@ -116,13 +136,81 @@ public class AnnotationSummaryMapper implements LuceneDocumentMapper<AnnotationS
                                            sourceRanking);
     }
 
+    /**
+     * @deprecated documents from indices with doc values must be mapped with a {@link #getLeafMapper(LeafReader) leaf
+     * mapper}, see {@link #mapDocument(Document, int)}
+     */
     @Override
+    @Deprecated
     public AnnotationSummary mapDocument(Document d) {
         return mapDocument(d, 1);
     }
 
+    /**
+     * Maps an annotation summary from the fields stored in the given document.  This only works for indices built
+     * without doc values, which store the URIs of the summarized annotations with each document.
+     *
+     * @param d    the document to map
+     * @param rank the rank (i.e. position) in a lucene search in which this document was returned
+     * @return the mapped annotation summary
+     * @throws IllegalArgumentException if the document does not store its annotation URIs, because they are held in
+     *                                  doc values
+     * @deprecated documents from indices with doc values must be mapped with a {@link #getLeafMapper(LeafReader) leaf
+     * mapper}, which is used whenever {@link #canUseDocValues(IndexReader)} is true
+     */
     @Override
+    @Deprecated
     public AnnotationSummary mapDocument(Document d, int rank) {
+        if (d.getValues("annotation").length == 0) {
+            throw new IllegalArgumentException("Annotation summary '" + d.get("id") + "' does not store its " +
+                                                       "annotation URIs; documents from indices with doc values " +
+                                                       "must be mapped with a leaf mapper");
+        }
+        Collection<URI> annotationSourceURIs = new HashSet<>();
+        for (String s : d.getValues("source")) {
+            annotationSourceURIs.add(URI.create(s));
+        }
+        return mapDocument(d, annotationSourceURIs, getDocumentQuality(d, rank));
+    }
+
+    @Override
+    public boolean canUseDocValues(IndexReader reader) {
+        return AnnotationSummaryDocValues.isAvailable(reader);
+    }
+
+    @Override
+    public Set<String> getStoredFieldNames() {
+        return STORED_FIELD_NAMES;
+    }
+
+    @Override
+    public LeafMapper<AnnotationSummary> getLeafMapper(LeafReader reader) throws IOException {
+        final AnnotationSummaryDocValues values = new AnnotationSummaryDocValues(reader);
+        return new LeafMapper<AnnotationSummary>() {
+            @Override public float getDocumentQuality(int docId, int rank) {
+                return AnnotationSummaryMapper.this.getDocumentQuality(values, docId, rank);
+            }
+
+            @Override public AnnotationSummary mapDocument(Document d, int docId, int rank) {
+                Collection<URI> annotations = values.hasAnnotationURIs()
+                        ? values.getAnnotationURIs(docId)
+                        : readStoredAnnotationURIs(d);
+                return AnnotationSummaryMapper.this.mapDocument(d,
+                                                                annotations,
+                                                                values.getSources(docId),
+                                                                getDocumentQuality(docId, rank));
+            }
+        };
+    }
+
+    protected AnnotationSummary mapDocument(Document d, Collection<URI> annotationSourceURIs, float score) {
+        return mapDocument(d, readStoredAnnotationURIs(d), annotationSourceURIs, score);
+    }
+
+    protected AnnotationSummary mapDocument(Document d,
+                                            Collection<URI> annotations,
+                                            Collection<URI> annotationSourceURIs,
+                                            float score) {
         getLog().trace("Mapping document '" + d.toString() + "'...");
 
         // grab single cardinality fields
@@ -132,34 +220,26 @@ public class AnnotationSummaryMapper implements LuceneDocumentMapper<AnnotationS
         String propertyValue = d.get("property");
         // grab multi-cardinality fields
         String[] deStrs = d.getValues("semanticTag");
-        String[] aStrs = d.getValues("annotation");
-        String[] sourceStrs = d.getValues("source");
         // tokenise on spaces
-        getLog().trace("Annotation search has " + aStrs.length + " results");
+        getLog().trace("Annotation search has " + annotations.size() + " results");
         getLog().trace("Semantic tag search has " + deStrs.length + " results");
-        getLog().trace("Annotation search has " + sourceStrs.length + " sources");
+        getLog().trace("Annotation search has " + annotationSourceURIs.size() + " sources");
         Collection<URI> semanticTags = new HashSet<>();
-        Collection<URI> annotations = new HashSet<>();
-        Collection<URI> annotationSourceURIs = new HashSet<>();
         for (String s : deStrs) {
             semanticTags.add(URI.create(s));
         }
-        for (String s : aStrs) {
-            annotations.add(URI.create(s));
-        }
-        for (String s : sourceStrs) {
-            annotationSourceURIs.add(URI.create(s));
+
+        if (getLog().isTraceEnabled()) {
+            // only decode annotation URIs if they are going to be logged
+            getLog().trace("\nNext Annotation summary:\n\t" +
+                                   "property uri '" + propertyUri + "',\n\t" +
+                                   "property type '" + propertyType + "',\n\t" +
+                                   "property value '" + propertyValue + "',\n\t" +
+                                   "semantic tags " + semanticTags + ",\n\t" +
+                                   "annotation URIs " + annotations + "\n\t" +
+                                   "annotation source URIs " + annotationSourceURIs + "\n\t" +
+                                   "Quality Score: " + score);
         }
-        float score = getDocumentQuality(d, rank);
-
-        getLog().trace("\nNext Annotation summary:\n\t" +
-                               "property uri '" + propertyUri + "',\n\t" +
-                               "property type '" + propertyType + "',\n\t" +
-                               "property value '" + propertyValue + "',\n\t" +
-                               "semantic tags " + semanticTags + ",\n\t" +
-                               "annotation URIs " + annotations + "\n\t" +
-                               "annotation source URIs " + annotationSourceURIs + "\n\t" +
-                               "Quality Score: " + score);
         return new SimpleAnnotationSummary(id,
                                            propertyUri,
                                            propertyType,
@@ -170,6 +250,20 @@ public class AnnotationSummaryMapper implements LuceneDocumentMapper<AnnotationS
                                            annotationSourceURIs);
     }
 
+    /**
+     * Reads annotation URIs stored as separate "annotation" fields, as in indices built by older versions of ZOOMA
+     *
+     * @param d the annotation summary document
+     * @return the stored annotation URIs, or an empty collection if there are none
+     */
+    protected Collection<URI> readStoredAnnotationURIs(Document d) {
+        Collection<URI> annotations = new HashSet<>();
+        for (String s : d.getValues("annotation")) {
+            annotations.add(URI.create(s));
+        }
+        return annotations;
+    }
+
     @Override
     public float getDocumentQuality(Document d) {
         return getDocumentQuality(d, 1);
@@ -184,7 +278,63 @@ public class AnnotationSummaryMapper implements LuceneDocumentMapper<AnnotationS
         for (String sourceString : d.getValues("source")) {
             sources.add(URI.create(sourceString));
         }
+        return getQuality(topScore, veris, freq, sources, rank);
+    }
+
+    /**
+     * Returns a measure of the 'quality' of an annotation summary, reading the values required from the doc values of
+     * the annotation summary index rather than from the stored document.  Sources are only read if this mapper has
+     * source rankings.
+     *
+     * @param values the doc values of the index segment containing the document
+     * @param docId  the id of the document, relative to the segment
+     * @param rank   the rank (i.e. position) in a lucene search in which this document was returned
+     * @return a float indicating a quality score for this document
+     */
+    public float getDocumentQuality(AnnotationSummaryDocValues values, int docId, int rank) {
+        Set<URI> sources = sourceRanking.length == 0 ? Collections.<URI>emptySet() : values.getSources(docId);
+        return getQuality(values.getTopScore(docId),
+                          values.getTimesVerified(docId),
+                          (float) values.getFrequency(docId),
+                          sources,
+                          rank);
+    }
+
+    /**
+     * Returns the maximum quality score of any annotation summary in the given index, with a rank of 1.  If the index
+     * contains doc values for the scoring fields, no stored documents are loaded.
+     *
+     * @param reader the annotation summary index reader
+     * @return the maximum quality score, or -1 if the index is empty
+     * @throws IOException if the index could not be read
+     */
+    public float getMaximumDocumentQuality(IndexReader reader) throws IOException {
+        float maxScore = -1;
+        if (canUseDocValues(reader)) {
+            for (LeafReaderContext context : reader.leaves()) {
+                LeafReader leafReader = context.reader();
+                Bits liveDocs = leafReader.getLiveDocs();
+                AnnotationSummaryDocValues values = new AnnotationSummaryDocValues(leafReader);
+                for (int i = 0; i < leafReader.maxDoc(); i++) {
+                    if (liveDocs == null || liveDocs.get(i)) {
+                        maxScore = Math.max(maxScore, getDocumentQuality(values, i, 1));
+                    }
+                }
+            }
+        }
+        else {
+            getLog().debug("Annotation summary index has no doc values, reading stored documents to calibrate scores");
+            Bits liveDocs = MultiFields.getLiveDocs(reader);
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                if (liveDocs == null || liveDocs.get(i)) {
+                    maxScore = Math.max(maxScore, getDocumentQuality(reader.document(i)));
+                }
+            }
+        }
+        return maxScore;
+    }
 
+    protected float getQuality(float topScore, int veris, float freq, Set<URI> sources, int rank) {
         float annotationCount = (float) totalAnnotationCount;
         float annotationSummaryCount = (float) totalAnnotationSummaryCount;
         float sourceRank = 0.05f * getSourceRanking(sources);
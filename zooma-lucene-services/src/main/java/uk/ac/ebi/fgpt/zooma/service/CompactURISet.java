@@ -0,0 +1,208 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of URIs held in a compact, front coded form, and decoded only as the set is iterated.
+ * <p/>
+ * URIs are encoded (see {@link #encode(Collection)}) as their UTF-8 bytes, in sorted order and without duplicates.
+ * Each URI is written as the length of the prefix it shares with the previous URI, followed by the remaining suffix, so
+ * large sets of URIs from the same namespace (such as the annotations of a popular annotation summary) take little
+ * more space than their local names.  The number of URIs is written first, so the size of the set is known without
+ * decoding it, and finding the first URI only decodes one entry.
+ * <p/>
+ * Instances are safe to use from multiple threads; each iterator decodes independently.
+ *
+ * @date 18/10/26
+ */
+public class CompactURISet extends AbstractSet<URI> {
+    private static final Comparator<byte[]> UNSIGNED_BYTES = new Comparator<byte[]>() {
+        @Override public int compare(byte[] b1, byte[] b2) {
+            int length = Math.min(b1.length, b2.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (b1[i] & 0xFF) - (b2[i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return b1.length - b2.length;
+        }
+    };
+
+    private final byte[] bytes;
+    private final int length;
+    private final int size;
+    private final int firstEntry;
+
+    // cached hash code, as summaries holding this set are often used as map keys
+    private int hash;
+
+    /**
+     * Creates a set over the given encoded URIs.  The bytes are copied, so the supplied array can be reused.
+     *
+     * @param bytes  an array containing URIs written by {@link #encode(Collection)}
+     * @param offset the start of the encoded URIs in this array
+     * @param length the length of the encoded URIs
+     */
+    public CompactURISet(byte[] bytes, int offset, int length) {
+        this.bytes = Arrays.copyOfRange(bytes, offset, offset + length);
+        this.length = length;
+        if (length == 0) {
+            this.size = 0;
+            this.firstEntry = 0;
+        }
+        else {
+            int[] position = {0};
+            this.size = readVInt(this.bytes, position);
+            this.firstEntry = position[0];
+        }
+    }
+
+    /**
+     * Encodes the given URIs into the compact form read by this class.  Duplicate URIs are only encoded once.
+     *
+     * @param uris the URIs to encode
+     * @return the encoded URIs
+     */
+    public static byte[] encode(Collection<URI> uris) {
+        byte[][] sorted = new byte[uris.size()][];
+        int count = 0;
+        for (URI uri : uris) {
+            sorted[count++] = uri.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(sorted, UNSIGNED_BYTES);
+
+        // count unique uris and total suffix length first, so the output is allocated once
+        int unique = 0;
+        int capacity = 5;
+        byte[] previous = null;
+        for (byte[] uri : sorted) {
+            if (previous == null || !Arrays.equals(previous, uri)) {
+                capacity += 10 + uri.length - sharedPrefix(previous, uri);
+                unique++;
+                previous = uri;
+            }
+        }
+
+        byte[] out = new byte[capacity];
+        int position = writeVInt(out, 0, unique);
+        previous = null;
+        for (byte[] uri : sorted) {
+            if (previous == null || !Arrays.equals(previous, uri)) {
+                int shared = sharedPrefix(previous, uri);
+                position = writeVInt(out, position, shared);
+                position = writeVInt(out, position, uri.length - shared);
+                System.arraycopy(uri, shared, out, position, uri.length - shared);
+                position += uri.length - shared;
+                previous = uri;
+            }
+        }
+        return Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Returns the number of bytes used by this set, excluding object overheads
+     *
+     * @return the length of the encoded URIs
+     */
+    public int getEncodedLength() {
+        return length;
+    }
+
+    @Override public int size() {
+        return size;
+    }
+
+    @Override public boolean contains(Object o) {
+        if (!(o instanceof URI)) {
+            return false;
+        }
+        for (URI uri : this) {
+            if (uri.equals(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override public int hashCode() {
+        int h = hash;
+        if (h == 0 && size > 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override public Iterator<URI> iterator() {
+        return new Iterator<URI>() {
+            private final int[] position = {firstEntry};
+            private byte[] current = new byte[64];
+            private int returned = 0;
+
+            @Override public boolean hasNext() {
+                return returned < size;
+            }
+
+            @Override public URI next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int shared = readVInt(bytes, position);
+                int suffix = readVInt(bytes, position);
+                if (current.length < shared + suffix) {
+                    current = Arrays.copyOf(current, Math.max(current.length * 2, shared + suffix));
+                }
+                System.arraycopy(bytes, position[0], current, shared, suffix);
+                position[0] += suffix;
+                returned++;
+                return URI.create(new String(current, 0, shared + suffix, StandardCharsets.UTF_8));
+            }
+
+            @Override public void remove() {
+                throw new UnsupportedOperationException("CompactURISet is immutable");
+            }
+        };
+    }
+
+    private static int sharedPrefix(byte[] previous, byte[] uri) {
+        if (previous == null) {
+            return 0;
+        }
+        int length = Math.min(previous.length, uri.length);
+        int i = 0;
+        while (i < length && previous[i] == uri[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int writeVInt(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVInt(byte[] in, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    }
+}
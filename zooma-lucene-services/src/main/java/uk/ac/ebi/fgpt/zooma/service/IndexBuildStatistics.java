@@ -0,0 +1,71 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each phase of a ZOOMA index build took, and how many documents it indexed, so that build throughput
+ * can be reported.  Phases may be recorded concurrently from several threads.
+ *
+ * @date 18/10/26
+ */
+public class IndexBuildStatistics {
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Records a completed phase of an index build
+     *
+     * @param name          the name of the phase, usually the index it built
+     * @param documentCount the number of documents indexed in this phase
+     * @param elapsedMillis the time taken by this phase, in milliseconds
+     */
+    public synchronized void recordPhase(String name, int documentCount, long elapsedMillis) {
+        phases.add(new Phase(name, documentCount, elapsedMillis));
+    }
+
+    /**
+     * Returns all recorded phases, in the order they completed
+     *
+     * @return the completed phases of this build
+     */
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    public synchronized void clear() {
+        phases.clear();
+    }
+
+    public static class Phase {
+        private final String name;
+        private final int documentCount;
+        private final long elapsedMillis;
+
+        public Phase(String name, int documentCount, long elapsedMillis) {
+            this.name = name;
+            this.documentCount = documentCount;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDocumentCount() {
+            return documentCount;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getDocumentsPerSecond() {
+            return elapsedMillis == 0 ? documentCount : documentCount * 1000.0 / elapsedMillis;
+        }
+
+        @Override public String toString() {
+            return String.format("%s: %d documents in %.1fs (%.0f docs/sec)",
+                                 name, documentCount, elapsedMillis / 1000.0, getDocumentsPerSecond());
+        }
+    }
+}
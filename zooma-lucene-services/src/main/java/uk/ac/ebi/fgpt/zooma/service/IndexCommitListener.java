@@ -0,0 +1,20 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.store.Directory;
+
+/**
+ * A listener that is notified by {@link ZoomaLuceneIndexer} whenever new data has been committed to one of the ZOOMA
+ * lucene indices.  Search services use this to refresh their shared searchers, so that newly indexed data becomes
+ * visible without reopening the index for every query.
+ *
+ * @date 18/10/26
+ */
+public interface IndexCommitListener {
+    /**
+     * Called once a commit to the given index has completed.  Implementations should return quickly; any expensive
+     * work (such as reopening readers) should be done in the background.
+     *
+     * @param index the directory of the index that was committed
+     */
+    void indexCommitted(Directory index);
+}
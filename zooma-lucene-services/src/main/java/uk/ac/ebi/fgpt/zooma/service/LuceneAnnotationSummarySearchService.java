@@ -1,6 +1,7 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import uk.ac.ebi.fgpt.zooma.datasource.AnnotationDAO;
 import uk.ac.ebi.fgpt.zooma.exception.SearchResourcesUnavailableException;
@@ -11,10 +12,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * A service that allows searching over the set of {@link AnnotationSummary} objects known to ZOOMA.  Prefix-based and
@@ -52,29 +50,43 @@ public class LuceneAnnotationSummarySearchService extends ZoomaLuceneSearchServi
 
     @Override protected void doInitialization() throws IOException {
         super.doInitialization();
-        try (IndexReader reader = getReader()) {
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            IndexReader reader = searcher.getIndexReader();
             int numAnnotations = getAnnotationDAO().count();
             int numSummaries = reader.numDocs();
             getLog().debug("Total number of annotations in zooma: " + numAnnotations);
             getLog().debug("Total number of summaries in zooma: " + numSummaries);
             AnnotationSummaryMapper preMapper = new AnnotationSummaryMapper(numAnnotations, numSummaries);
-            Set<Float> allScores = new HashSet<>();
-            for (int i = 0; i < numSummaries; i++) {
-                allScores.add(preMapper.mapDocument(reader.document(i)).getQuality());
-            }
-            float maxScore = Collections.max(allScores);
+            float maxScore = preMapper.getMaximumDocumentQuality(reader);
             getLog().debug("Maximum summary quality score = " + maxScore);
             this.mapper = new AnnotationSummaryMapper(numAnnotations,
                                                       numSummaries,
                                                       maxScore);
             getLog().debug("Annotation Summary mapper calibration complete");
         }
+        finally {
+            releaseSearcher(searcher);
+        }
     }
 
     @Override public Collection<AnnotationSummary> search(String propertyValuePattern, URI[] sources, URI[] ontologySources) {
+        return search(propertyValuePattern, sources, ontologySources, -1);
+    }
+
+    @Override public Collection<AnnotationSummary> search(String propertyType,
+                                                          String propertyValuePattern,
+                                                          URI[] sources, URI[] ontologySources) {
+        return search(propertyType, propertyValuePattern, sources, ontologySources, -1);
+    }
+
+    @Override public Collection<AnnotationSummary> search(String propertyValuePattern,
+                                                          URI[] sources,
+                                                          URI[] ontologySources,
+                                                          int limit) {
         try {
             initOrWait();
-            return doSearch(getMapper(), propertyValuePattern, sources);
+            return doSearch(getMapper(), propertyValuePattern, limit, sources);
         }
         catch (InterruptedException e) {
             throw new SearchResourcesUnavailableException("Failed to perform query - indexing process was interrupted",
@@ -84,10 +96,12 @@ public class LuceneAnnotationSummarySearchService extends ZoomaLuceneSearchServi
 
     @Override public Collection<AnnotationSummary> search(String propertyType,
                                                           String propertyValuePattern,
-                                                          URI[] sources, URI[] ontologySources) {
+                                                          URI[] sources,
+                                                          URI[] ontologySources,
+                                                          int limit) {
         try {
             initOrWait();
-            return doSearch(getMapper(), propertyType, propertyValuePattern, sources, ontologySources);
+            return doSearch(getMapper(), propertyType, propertyValuePattern, sources, ontologySources, limit);
         }
         catch (InterruptedException e) {
             throw new SearchResourcesUnavailableException("Failed to perform query - indexing process was interrupted",
@@ -216,13 +230,34 @@ public class LuceneAnnotationSummarySearchService extends ZoomaLuceneSearchServi
     @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
                                                                             List<URI> preferredSources,
                                                                             URI[] requiredSources, URI[] ontologySources) {
+        return searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, -1);
+    }
+
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyType,
+                                                                            String propertyValuePattern,
+                                                                            List<URI> preferredSources,
+                                                                            URI[] requiredSources, URI[] ontologySources) {
+        return searchByPreferredSources(propertyType,
+                                        propertyValuePattern,
+                                        preferredSources,
+                                        requiredSources,
+                                        ontologySources,
+                                        -1);
+    }
+
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
+                                                                            List<URI> preferredSources,
+                                                                            URI[] requiredSources,
+                                                                            URI[] ontologySources,
+                                                                            int limit) {
         try {
             initOrWait();
             if (preferredSources.isEmpty()) {
-                return search(propertyValuePattern, requiredSources, ontologySources);
+                return search(propertyValuePattern, requiredSources, ontologySources, limit);
             }
             return doSearch(getMapper().withRankings(preferredSources.toArray(new URI[preferredSources.size()])),
                             propertyValuePattern,
+                            limit,
                             requiredSources);
         }
         catch (InterruptedException e) {
@@ -234,22 +269,29 @@ public class LuceneAnnotationSummarySearchService extends ZoomaLuceneSearchServi
     @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyType,
                                                                             String propertyValuePattern,
                                                                             List<URI> preferredSources,
-                                                                            URI[] requiredSources, URI[] ontologySources) {
+                                                                            URI[] requiredSources,
+                                                                            URI[] ontologySources,
+                                                                            int limit) {
         try {
             initOrWait();
             // check for null type
             if (propertyType == null) {
-                return searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources);
+                return searchByPreferredSources(propertyValuePattern,
+                                                preferredSources,
+                                                requiredSources,
+                                                ontologySources,
+                                                limit);
             }
 
             if (preferredSources.isEmpty()) {
-                return search(propertyType, propertyValuePattern, requiredSources, ontologySources);
+                return search(propertyType, propertyValuePattern, requiredSources, ontologySources, limit);
             }
 
             return doSearch(getMapper().withRankings(preferredSources.toArray(new URI[preferredSources.size()])),
                             propertyType,
                             propertyValuePattern,
-                            requiredSources, ontologySources);
+                            requiredSources, ontologySources,
+                            limit);
         }
         catch (InterruptedException e) {
             throw new SearchResourcesUnavailableException("Failed to perform query - indexing process was interrupted",
@@ -259,6 +301,7 @@ public class LuceneAnnotationSummarySearchService extends ZoomaLuceneSearchServi
 
     protected Collection<AnnotationSummary> doSearch(AnnotationSummaryMapper mapper,
                                                      String propertyValuePattern,
+                                                     int limit,
                                                      URI... sources) throws InterruptedException {
         // first, formulate query for original propertyValuePattern
         Query pq = formulateQuery("property", propertyValuePattern);
@@ -294,16 +337,17 @@ public class LuceneAnnotationSummarySearchService extends ZoomaLuceneSearchServi
         }
 
         // do the query
-        return doQuery(q, mapper);
+        return doQuery(q, mapper, limit);
     }
 
     protected Collection<AnnotationSummary> doSearch(AnnotationSummaryMapper mapper,
                                                      String propertyType,
                                                      String propertyValuePattern,
-                                                     URI[] sources, URI[] ontologySources) throws InterruptedException {
+                                                     URI[] sources, URI[] ontologySources,
+                                                     int limit) throws InterruptedException {
         // check for null type
         if (propertyType == null) {
-            return search(propertyValuePattern, sources, ontologySources);
+            return search(propertyValuePattern, sources, ontologySources, limit);
         }
 
         // first, formulate query for original propertyValuePattern
@@ -342,6 +386,6 @@ public class LuceneAnnotationSummarySearchService extends ZoomaLuceneSearchServi
         }
 
         // do the query
-        return doQuery(q, mapper);
+        return doQuery(q, mapper, limit);
     }
 }
@@ -3,6 +3,9 @@ package uk.ac.ebi.fgpt.zooma.service;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import uk.ac.ebi.fgpt.zooma.datasource.AnnotationDAO;
 import uk.ac.ebi.fgpt.zooma.exception.SearchResourcesUnavailableException;
@@ -11,9 +14,7 @@ import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 /**
  * A service that allows retrieval of the set of {@link AnnotationSummary} objects known to ZOOMA.  This uses a Lucene
@@ -41,23 +42,24 @@ public class LuceneAnnotationSummaryService extends ZoomaLuceneSearchService
 
     @Override protected void doInitialization() throws IOException {
         super.doInitialization();
-        try (IndexReader reader = getReader()) {
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            IndexReader reader = searcher.getIndexReader();
             int numAnnotations = getAnnotationDAO().count();
             int numSummaries = reader.numDocs();
             getLog().debug("Total number of annotations in zooma: " + numAnnotations);
             getLog().debug("Total number of summaries in zooma: " + numSummaries);
             AnnotationSummaryMapper preMapper = new AnnotationSummaryMapper(numAnnotations, numSummaries);
-            Set<Float> allScores = new HashSet<>();
-            for (int i = 0; i < numSummaries; i++) {
-                allScores.add(preMapper.mapDocument(reader.document(i)).getQuality());
-            }
-            float maxScore = Collections.max(allScores);
+            float maxScore = preMapper.getMaximumDocumentQuality(reader);
             getLog().debug("Maximum summary quality score = " + maxScore);
             this.mapper = new AnnotationSummaryMapper(numAnnotations,
                                                       numSummaries,
                                                       maxScore);
             getLog().debug("Annotation Summary mapper calibration complete");
         }
+        finally {
+            releaseSearcher(searcher);
+        }
     }
 
     @Override public Collection<AnnotationSummary> getAnnotationSummaries() {
@@ -65,16 +67,41 @@ public class LuceneAnnotationSummaryService extends ZoomaLuceneSearchService
     }
 
     @Override public Collection<AnnotationSummary> getAnnotationSummaries(int limit, int start) {
-        try (IndexReader reader = getReader()){
+        try {
             initOrWait();
 
-            Collection<AnnotationSummary> results = new ArrayList<>();
-            for (int i = start; i < limit && i < reader.maxDoc(); i++) {
-                Document doc = reader.document(i);
-                AnnotationSummary as = getMapper().mapDocument(doc);
-                results.add(as);
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                IndexReader reader = searcher.getIndexReader();
+                Collection<AnnotationSummary> results = new ArrayList<>();
+                // annotation URIs are held in doc values, so map from these where the index has them
+                boolean useDocValues = getMapper().canUseDocValues(reader);
+                List<LeafReaderContext> leaves = reader.leaves();
+                int leafIndex = -1;
+                LuceneDocValuesMapper.LeafMapper<AnnotationSummary> leafMapper = null;
+                for (int i = start; i < limit && i < reader.maxDoc(); i++) {
+                    AnnotationSummary as;
+                    if (useDocValues) {
+                        // documents are read in order, so doc values only need opening as each segment is reached
+                        int nextLeafIndex = ReaderUtil.subIndex(i, leaves);
+                        if (nextLeafIndex != leafIndex) {
+                            leafIndex = nextLeafIndex;
+                            leafMapper = getMapper().getLeafMapper(leaves.get(leafIndex).reader());
+                        }
+                        Document doc = reader.document(i, getMapper().getStoredFieldNames());
+                        as = leafMapper.mapDocument(doc, i - leaves.get(leafIndex).docBase, 1);
+                    }
+                    else {
+                        // indices without doc values store annotation URIs with each document
+                        as = getMapper().mapDocument(reader.document(i));
+                    }
+                    results.add(as);
+                }
+                return results;
+            }
+            finally {
+                releaseSearcher(searcher);
             }
-            return results;
         }
         catch (IOException e) {
             throw new SearchResourcesUnavailableException("Problems retrieving annotation summaries from lucene index",
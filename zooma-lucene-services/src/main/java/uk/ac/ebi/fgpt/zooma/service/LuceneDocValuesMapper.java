@@ -0,0 +1,74 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A {@link LuceneDocumentMapper} that can read some of the values it needs from doc values rather than stored fields.
+ * Where an index supports it, only the stored fields named by {@link #getStoredFieldNames()} are loaded for each hit,
+ * and the remaining values are read column-wise from the index segment containing the hit.
+ * <p/>
+ * Doc values are opened once for each segment, by {@link #getLeafMapper(LeafReader)}, and the resulting {@link
+ * LeafMapper} is then used for every hit in that segment.  Because document quality can be read from doc values
+ * alone, it can also be evaluated whilst hits are being collected, before any stored fields are loaded.
+ *
+ * @date 18/10/26
+ */
+public interface LuceneDocValuesMapper<T> extends LuceneDocumentMapper<T> {
+    /**
+     * Tests whether the given index contains the doc values this mapper needs.  If not, documents should be mapped
+     * from stored fields alone.
+     *
+     * @param reader the index reader
+     * @return true if this mapper can use doc values from this index
+     */
+    boolean canUseDocValues(IndexReader reader);
+
+    /**
+     * Returns the names of the stored fields that must be loaded for each document mapped with {@link
+     * LeafMapper#mapDocument(Document, int, int)}
+     *
+     * @return the names of the stored fields required by this mapper
+     */
+    Set<String> getStoredFieldNames();
+
+    /**
+     * Opens the doc values of a single index segment, returning a mapper for documents in that segment.  The returned
+     * mapper should only be used by the thread that obtained it.
+     *
+     * @param reader the reader for the index segment
+     * @return a mapper for documents in this segment
+     * @throws IOException if doc values could not be read
+     */
+    LeafMapper<T> getLeafMapper(LeafReader reader) throws IOException;
+
+    /**
+     * Maps documents from a single index segment, reading values from the doc values of that segment.  Document IDs
+     * supplied to this mapper are relative to the segment.
+     */
+    interface LeafMapper<T> {
+        /**
+         * Returns a measure of the 'quality' of the given document, read from doc values alone
+         *
+         * @param docId the id of the document, relative to the segment
+         * @param rank  the rank (i.e. position) in a lucene search in which this document was returned
+         * @return a float indicating a quality score for this document
+         */
+        float getDocumentQuality(int docId, int rank);
+
+        /**
+         * Maps the supplied document into an object of the appropriate type, T, reading stored fields from the
+         * document and any other values from doc values.
+         *
+         * @param d     the document to map, containing only the fields named by {@link #getStoredFieldNames()}
+         * @param docId the id of the document, relative to the segment
+         * @param rank  the rank (i.e. position) in a lucene search in which this document was returned
+         * @return the mapped object
+         */
+        T mapDocument(Document d, int docId, int rank);
+    }
+}
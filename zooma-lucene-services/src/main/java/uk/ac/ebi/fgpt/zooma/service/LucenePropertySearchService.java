@@ -1,21 +1,45 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Bits;
 import uk.ac.ebi.fgpt.zooma.datasource.PropertyDAO;
 import uk.ac.ebi.fgpt.zooma.exception.SearchResourcesUnavailableException;
 import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.util.SearchStringProcessor;
 import uk.ac.ebi.fgpt.zooma.util.SearchStringProcessorProvider;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A service that allows searching over the set of {@link Property}s known to ZOOMA.  Prefix-based and pattern-based
  * matches are supported using a Lucene index to rapidly identify matching properties.
+ * <p/>
+ * By default, matching properties are built from the fields stored in the index.  Any that cannot be (because the index
+ * does not store their values) are looked up in the {@link PropertyDAO} together, in a single batch.  If
+ * <code>resolvePropertiesFromIndex</code> is false, every match is looked up in the DAO individually.
+ * <p/>
+ * Suggestions are served from a {@link PropertyValueSuggester} built from the values, annotation counts and sources
+ * stored in the property index, rather than by querying the index.  As well as by its own spelling, each value is
+ * looked up by its analyzed terms, and suggestions are sought for the analyzed prefix and for each string the search
+ * string processors make of it, as the prefix queries over the index do.  The suggester is built when the service
+ * starts and rebuilt whenever a refresh picks up a new property index; while it is being rebuilt, suggestions continue
+ * to come from the previous one.  If <code>useSuggester</code> is false, or until the index can first be read,
+ * suggestions are found by prefix queries over the index instead.
  *
  * @author Tony Burdett
  * @date 02/04/12
@@ -25,6 +49,13 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
 
     private SearchStringProcessorProvider searchStringProcessorProvider;
 
+    private boolean resolvePropertiesFromIndex = true;
+
+    private boolean useSuggester = true;
+    private int suggestionLimit = 20;
+
+    private volatile PropertyValueSuggester suggester;
+
     public PropertyDAO getPropertyDAO() {
         return propertyDAO;
     }
@@ -41,6 +72,30 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
         this.searchStringProcessorProvider = searchStringProcessorProvider;
     }
 
+    public boolean isResolvePropertiesFromIndex() {
+        return resolvePropertiesFromIndex;
+    }
+
+    public void setResolvePropertiesFromIndex(boolean resolvePropertiesFromIndex) {
+        this.resolvePropertiesFromIndex = resolvePropertiesFromIndex;
+    }
+
+    public boolean isUseSuggester() {
+        return useSuggester;
+    }
+
+    public void setUseSuggester(boolean useSuggester) {
+        this.useSuggester = useSuggester;
+    }
+
+    public int getSuggestionLimit() {
+        return suggestionLimit;
+    }
+
+    public void setSuggestionLimit(int suggestionLimit) {
+        this.suggestionLimit = suggestionLimit;
+    }
+
     @Override public List<Property> search(String propertyValuePattern, URI... sources) {
         try {
             initOrWait();
@@ -67,7 +122,7 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
             }
 
             // do the query
-            return doQuery(q, new SingleFieldURIMapper("uri"), getPropertyDAO());
+            return doPropertyQuery(q);
         }
         catch (IOException e) {
             throw new SearchResourcesUnavailableException("Problems creating query for '" + propertyValuePattern + "'",
@@ -115,7 +170,7 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
 
 
             // do the query
-            return doQuery(q, new SingleFieldURIMapper("uri"), getPropertyDAO());
+            return doPropertyQuery(q);
         }
         catch (IOException e) {
             throw new SearchResourcesUnavailableException(
@@ -153,7 +208,7 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
             }
 
             // do the query
-            return doQuery(q, new SingleFieldURIMapper("uri"), getPropertyDAO());
+            return doPropertyQuery(q);
         }
         catch (IOException e) {
             throw new SearchResourcesUnavailableException("Problems creating query for '" + propertyValuePrefix + "'",
@@ -209,7 +264,7 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
 
 
                 // do the query
-                return doQuery(q, new SingleFieldURIMapper("uri"), getPropertyDAO());
+                return doPropertyQuery(q);
             }
             catch (IOException e) {
                 throw new SearchResourcesUnavailableException(
@@ -227,6 +282,11 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
         try {
             initOrWait();
 
+            PropertyValueSuggester current = suggester;
+            if (isUseSuggester() && current != null) {
+                return current.suggest(getSuggestionKeys(propertyValuePrefix), getSuggestionLimit(), sources);
+            }
+
             // first, formulate query for original propertyValuePattern
             Query pq = formulatePrefixQuery("name", propertyValuePrefix);
 
@@ -249,18 +309,175 @@ public class LucenePropertySearchService extends ZoomaLuceneSearchService implem
             }
 
             // do the query
-            List<String> nonUnique = doQuery(q, new SingleFieldStringMapper("name"), 20);
-            List<String> results = new ArrayList<>();
-            for (String next : nonUnique) {
-                if (!results.contains(next)) {
-                    results.add(next);
-                }
-            }
-            return results;
+            List<String> nonUnique = doQuery(q, new SingleFieldStringMapper("name"), getSuggestionLimit());
+            return new ArrayList<>(new LinkedHashSet<>(nonUnique));
+        }
+        catch (IOException e) {
+            throw new SearchResourcesUnavailableException("Problems building suggestions for '" +
+                                                                  propertyValuePrefix + "'", e);
         }
         catch (InterruptedException e) {
             throw new SearchResourcesUnavailableException("Failed to perform query - indexing process was interrupted",
                                                           e);
         }
     }
+
+    @Override
+    protected void searcherRefreshed() throws IOException {
+        if (isUseSuggester()) {
+            rebuildSuggester();
+        }
+    }
+
+    /**
+     * Builds a new suggester over the property values in the current property index, unless the index has not
+     * changed since the current suggester was built.  Suggestions continue to come from the previous suggester until
+     * the new one is complete.
+     *
+     * @throws IOException if the suggester could not be built from the index
+     */
+    protected synchronized void rebuildSuggester() throws IOException {
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            long version = getIndexVersion(searcher.getIndexReader());
+            PropertyValueSuggester current = suggester;
+            if (current == null || current.getVersion() != version) {
+                long start = System.currentTimeMillis();
+                current = buildSuggester(searcher.getIndexReader(), version);
+                suggester = current;
+                getLog().debug("Built suggester over " + current.size() + " property values " +
+                                       "in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        }
+        finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    private PropertyValueSuggester buildSuggester(IndexReader reader, long version) throws IOException {
+        PropertyValueSuggester.Builder builder = new PropertyValueSuggester.Builder();
+        Bits liveDocs = MultiFields.getLiveDocs(reader);
+        for (int i = 0; i < reader.maxDoc(); i++) {
+            if (liveDocs != null && !liveDocs.get(i)) {
+                continue;
+            }
+            Document d = reader.document(i);
+            String value = d.get("name");
+            if (value == null) {
+                continue;
+            }
+            Number frequency = d.getField("frequency") != null ? d.getField("frequency").numericValue() : null;
+            List<URI> sources = new ArrayList<>();
+            for (String source : d.getValues("source")) {
+                sources.add(URI.create(source));
+            }
+            builder.add(value,
+                        Collections.singleton(analyzeSuggestionKey(value)),
+                        frequency != null ? frequency.intValue() : 0,
+                        sources);
+        }
+        return builder.build(version);
+    }
+
+    /**
+     * Returns the keys to look up suggestions for the given prefix by: the prefix itself, its analyzed terms (so that
+     * it matches values whose first analyzed term starts with it) and the analyzed terms of each string the search
+     * string processors make of it
+     *
+     * @param propertyValuePrefix the prefix to suggest property values for
+     * @return the keys to look up in the suggester
+     * @throws IOException          if the prefix could not be analyzed
+     * @throws InterruptedException if interrupted whilst processing the prefix
+     */
+    private Collection<String> getSuggestionKeys(String propertyValuePrefix)
+            throws IOException, InterruptedException {
+        Collection<String> keys = new LinkedHashSet<>();
+        keys.add(propertyValuePrefix);
+        keys.add(analyzeSuggestionKey(propertyValuePrefix));
+        if (getSearchStringProcessorProvider() != null) {
+            for (SearchStringProcessor processor : getSearchStringProcessorProvider().getProcessors()) {
+                if (processor.canProcess(propertyValuePrefix)) {
+                    for (String processedString : processor.processSearchString(propertyValuePrefix)) {
+                        keys.add(analyzeSuggestionKey(processedString));
+                    }
+                }
+            }
+        }
+        // an empty key would match every value
+        if (!propertyValuePrefix.isEmpty()) {
+            keys.remove("");
+        }
+        return keys;
+    }
+
+    private String analyzeSuggestionKey(String value) throws IOException {
+        StringBuilder key = new StringBuilder();
+        for (String term : getQueryAnalyzer().analyze("name", value)) {
+            if (key.length() > 0) {
+                key.append(" ");
+            }
+            key.append(term);
+        }
+        return key.toString();
+    }
+
+    private long getIndexVersion(IndexReader reader) {
+        return reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : 0;
+    }
+
+    /**
+     * Performs a query over the property index, and returns the matching properties in score order.  Properties are
+     * built from the index where possible, and the rest are read from the DAO in a single batch.
+     *
+     * @param q the lucene query to perform
+     * @return the matching properties
+     * @throws IOException if reading from the index failed
+     */
+    protected List<Property> doPropertyQuery(Query q) throws IOException {
+        if (!isResolvePropertiesFromIndex()) {
+            return doQuery(q, new SingleFieldURIMapper("uri"), getPropertyDAO());
+        }
+
+        UnresolvedPropertyRecorder mapper = new UnresolvedPropertyRecorder();
+        List<Property> hits = doQuery(q, mapper, -1);
+        if (mapper.unresolved.isEmpty()) {
+            return hits;
+        }
+
+        // read every property missing from the index at once
+        Map<URI, Property> read = new HashMap<>();
+        for (Property property : getPropertyDAO().readByURIs(mapper.unresolved)) {
+            read.put(property.getURI(), property);
+        }
+        List<Property> results = new ArrayList<>(hits.size());
+        Iterator<URI> unresolved = mapper.unresolved.iterator();
+        for (Property hit : hits) {
+            if (hit == null) {
+                URI uri = unresolved.next();
+                hit = read.get(uri);
+                if (hit == null) {
+                    getLog().warn("Failed to retrieve result for <" + uri + "> in DAO for " +
+                                          getPropertyDAO().getDatasourceName());
+                    continue;
+                }
+            }
+            results.add(hit);
+        }
+        return results;
+    }
+
+    /**
+     * Maps properties from the index, recording in order the URIs of any that cannot be mapped
+     */
+    private static class UnresolvedPropertyRecorder extends PropertyMapper {
+        private final List<URI> unresolved = new ArrayList<>();
+
+        @Override public Property mapDocument(Document d, int rank) {
+            Property property = super.mapDocument(d, rank);
+            if (property == null) {
+                unresolved.add(URI.create(d.get("uri")));
+            }
+            return property;
+        }
+    }
 }
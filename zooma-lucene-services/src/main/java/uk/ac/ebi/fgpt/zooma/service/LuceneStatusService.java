@@ -7,10 +7,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
 
 /**
- * An implementation of {@link StatusService} that reports on the status of a Lucene index and can rebuild indices if
- * requested.
+ * An implementation of {@link StatusService} that reports on the status of a Lucene index and can rebuild indices, or
+ * update them incrementally, if requested.
  *
  * @author Tony Burdett
  * @date 20/02/13
@@ -111,4 +113,27 @@ public class LuceneStatusService implements StatusService {
             return "ZOOMA re-indexing failed: " + e.getMessage();
         }
     }
+
+    @Override public String updateDatasource(URI sourceURI) {
+        try {
+            getZoomaLuceneIndexer().updateDatasourceIndices(sourceURI);
+            return "ZOOMA indices updated for datasource <" + sourceURI + ">.";
+        }
+        catch (Exception e) {
+            getLog().error("Updating indices for datasource <" + sourceURI + "> caught unexpected exception", e);
+            return "ZOOMA index update failed: " + e.getMessage();
+        }
+    }
+
+    @Override public String updateAnnotations(Collection<URI> annotationURIs) {
+        try {
+            getZoomaLuceneIndexer().updateAnnotationIndices(annotationURIs);
+            return "ZOOMA indices updated for " + annotationURIs.size() + " annotations.";
+        }
+        catch (Exception e) {
+            getLog().error("Updating indices for " + annotationURIs.size() + " annotations " +
+                                   "caught unexpected exception", e);
+            return "ZOOMA index update failed: " + e.getMessage();
+        }
+    }
 }
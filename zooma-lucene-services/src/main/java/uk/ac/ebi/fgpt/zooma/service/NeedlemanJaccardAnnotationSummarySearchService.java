@@ -5,6 +5,7 @@ import org.simmetrics.StringMetricBuilder;
 import org.simmetrics.metrics.JaccardSimilarity;
 import org.simmetrics.metrics.NeedlemanWunch;
 import org.simmetrics.tokenizers.Whitespace;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
 import uk.ac.ebi.fgpt.zooma.datasource.PropertyDAO;
 import uk.ac.ebi.fgpt.zooma.exception.SearchTimeoutException;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
@@ -15,29 +16,59 @@ import uk.ac.ebi.fgpt.zooma.util.SearchStringProcessor;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * This class extends AnnotationSummarySearchServiceDecorator and adds fuzzy string searching, in other words,
  * functionality to find approximate matchings. Specifically, the metrics "Needleman-Wunsch"  and "Jaccard similarity"
  * are included. Implementations of simMetrics library are used. http://sourceforge.net/projects/simmetrics/
+ * <p/>
+ * Property values are held in a {@link PropertyValueCandidateIndex}, so that only values that could be similar enough
+ * to a search string are scored.  Large candidate sets are scored in parallel.  Expansion stops once the expansion
+ * timeout or the deadline of the current search (see {@link SearchDeadline}) has passed, and continues with the
+ * similar strings found so far.
  *
  * @author Jose Iglesias
  * @author Tony Burdett
  * @date 16/08/13
  */
 public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSummarySearchServiceDecorator {
+    // candidate sets smaller than this are scored on the calling thread
+    private static final int PARALLEL_SCORING_THRESHOLD = 1000;
+
+    // extra time, in milliseconds, allowed for scoring threads to hand back their partial results after the deadline
+    private static final long SCORING_GRACE_PERIOD = 50;
+
     private PropertyDAO propertyDAO;
 
-    private Collection<String> propertyValueDictionary;
+    private PropertyValueCandidateIndex propertyValueIndex;
 
     private SearchStringProcessor searchStringProcessor;
 
+    private final StringMetric needlemanWunschSimilarity = new NeedlemanWunch();
+    private final StringMetric jaccardSimilarity =
+            StringMetricBuilder.with(new JaccardSimilarity<String>()).tokenize(new Whitespace()).build();
+
+    // maximum time, in milliseconds, to spend finding similar strings for a single search
+    private long expansionTimeout = 2000;
+    private int scoringThreadCount = Runtime.getRuntime().availableProcessors();
+    private ExecutorService scoringExecutor;
+
     public NeedlemanJaccardAnnotationSummarySearchService(AnnotationSummarySearchService annotationSummarySearchService) {
         super(annotationSummarySearchService);
     }
@@ -58,15 +89,67 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
         this.searchStringProcessor = searchStringProcessor;
     }
 
+    public long getExpansionTimeout() {
+        return expansionTimeout;
+    }
+
+    public void setExpansionTimeout(long expansionTimeout) {
+        this.expansionTimeout = expansionTimeout;
+    }
+
+    public int getScoringThreadCount() {
+        return scoringThreadCount;
+    }
+
+    public void setScoringThreadCount(int scoringThreadCount) {
+        this.scoringThreadCount = scoringThreadCount;
+    }
+
     public Collection<String> getPropertyValueDictionary() {
-        return propertyValueDictionary;
+        return propertyValueIndex.getValues();
     }
 
     @Override
     public Collection<AnnotationSummary> search(String propertyValuePattern, final URI[] sources, final URI[] ontologySources) {
+        return search(propertyValuePattern, sources, ontologySources, -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(final String propertyType,
+                                                String propertyValuePattern,
+                                                final URI[] sources, final URI[] ontologySources) {
+        return search(propertyType, propertyValuePattern, sources, ontologySources, -1);
+    }
+
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
+                                                                            final List<URI> preferredSources,
+                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+        return searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources, -1);
+    }
+
+    @Override public Collection<AnnotationSummary> searchByPreferredSources(final String propertyType,
+                                                                            String propertyValuePattern,
+                                                                            final List<URI> preferredSources,
+                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+        return searchByPreferredSources(propertyType,
+                                        propertyValuePattern,
+                                        preferredSources,
+                                        requiredSources,
+                                        ontologySources,
+                                        -1);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(String propertyValuePattern,
+                                                final URI[] sources,
+                                                final URI[] ontologySources,
+                                                final int limit) {
         return doExpandedSearch(propertyValuePattern, new AnnotationSummarySearchCommand() {
             @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
-                return NeedlemanJaccardAnnotationSummarySearchService.super.search(propertyValue, sources, ontologySources);
+                return NeedlemanJaccardAnnotationSummarySearchService.super.search(propertyValue,
+                                                                                   sources,
+                                                                                   ontologySources,
+                                                                                   limit);
             }
         });
     }
@@ -74,26 +157,33 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
     @Override
     public Collection<AnnotationSummary> search(final String propertyType,
                                                 String propertyValuePattern,
-                                                final URI[] sources, final URI[] ontologySources) {
+                                                final URI[] sources,
+                                                final URI[] ontologySources,
+                                                final int limit) {
         return doExpandedSearch(propertyValuePattern, new AnnotationSummarySearchCommand() {
             @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
                 return NeedlemanJaccardAnnotationSummarySearchService.super.search(propertyType,
                                                                                    propertyValue,
-                                                                                   sources, ontologySources);
+                                                                                   sources,
+                                                                                   ontologySources,
+                                                                                   limit);
             }
         });
     }
 
     @Override public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern,
                                                                             final List<URI> preferredSources,
-                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+                                                                            final URI[] requiredSources,
+                                                                            final URI[] ontologySources,
+                                                                            final int limit) {
         return doExpandedSearch(propertyValuePattern, new AnnotationSummarySearchCommand() {
             @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
                 return NeedlemanJaccardAnnotationSummarySearchService.super.searchByPreferredSources(
                         propertyValue,
                         preferredSources,
                         requiredSources,
-                        ontologySources);
+                        ontologySources,
+                        limit);
             }
         });
     }
@@ -101,7 +191,9 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
     @Override public Collection<AnnotationSummary> searchByPreferredSources(final String propertyType,
                                                                             String propertyValuePattern,
                                                                             final List<URI> preferredSources,
-                                                                            final URI[] requiredSources, final URI[] ontologySources) {
+                                                                            final URI[] requiredSources,
+                                                                            final URI[] ontologySources,
+                                                                            final int limit) {
         return doExpandedSearch(propertyValuePattern, new AnnotationSummarySearchCommand() {
             @Override public Collection<AnnotationSummary> executeSearch(String propertyValue) {
                 return NeedlemanJaccardAnnotationSummarySearchService.super.searchByPreferredSources(
@@ -109,7 +201,8 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
                         propertyValue,
                         preferredSources,
                         requiredSources,
-                        ontologySources);
+                        ontologySources,
+                        limit);
             }
         });
     }
@@ -128,17 +221,28 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
             processedStrings = getSearchStringProcessor().processSearchString(string);
         }
 
+        long deadline = System.currentTimeMillis() + SearchDeadline.remaining(getExpansionTimeout());
         Map<String, Float> results = new HashMap<>();
         for (String processedString : processedStrings) {
-            Map<String, Float> annotations = useNeedlemanWunschExpansion(processedString, 0.90f, 1, 0.0f);
+            if (System.currentTimeMillis() > deadline || SearchDeadline.isExceeded()) {
+                getLog().debug("Ran out of time expanding '" + string + "', " +
+                                       "using " + results.size() + " similar strings found so far");
+                SearchDeadline.markTruncated();
+                break;
+            }
+            Map<String, Float> annotations = useNeedlemanWunschExpansion(processedString, 0.90f, 1, 0.0f, deadline);
             if (annotations.isEmpty()) {
                 if (getLog().isTraceEnabled()) {
                     getLog().trace("No results from NeedlemanWunsch expansion, running Jaccard expansion...");
                 }
-                annotations = useJaccardExpansion(processedString, 0.525f, 1, 0.999f);
+                annotations = useJaccardExpansion(processedString, 0.525f, 1, 0.999f, deadline);
             }
             results.putAll(annotations);
         }
+        if (System.currentTimeMillis() > deadline) {
+            // scoring stopped at the deadline, so some similar strings may have been missed
+            SearchDeadline.markTruncated();
+        }
         return results;
     }
 
@@ -166,6 +270,12 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
                 Map<String, Float> similarStrings = findSimilarStrings(propertyValuePattern);
 
                 for (String s : similarStrings.keySet()) {
+                    if (SearchDeadline.isExceeded()) {
+                        getLog().debug("Search deadline passed, returning results of expanded search for " +
+                                               "'" + propertyValuePattern + "' found so far");
+                        SearchDeadline.markTruncated();
+                        break;
+                    }
                     if (haveEqualPolarity(s, propertyValuePattern)) {
                         results.addAll(command.executeSearch(s));
                     }
@@ -175,6 +285,7 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
                 getLog().warn("Expanding search results for '" + propertyValuePattern + "' using " +
                         getSearchStringProcessor().getClass().getSimpleName() + " took too long, " +
                         "expanded search results will not be available");
+                SearchDeadline.markTruncated();
             }
         }
         return results;
@@ -187,12 +298,15 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
      * @param min_score           the ZOOMA minimum score parameter
      * @param num_max_annotations the maximum number of annotations that should be returned
      * @param pct_cutoff          the ZOOMA cutoff percentage score
+     * @param deadline            the time by which expansion must be complete
      * @return properties identified by the Needleman-Wunsch algorithm and their similarity score
+     * @throws InterruptedException if expansion was interrupted
      */
     private Map<String, Float> useNeedlemanWunschExpansion(String propertyValue,
                                                            float min_score,
                                                            int num_max_annotations,
-                                                           float pct_cutoff) {
+                                                           float pct_cutoff,
+                                                           long deadline) throws InterruptedException {
         try {
             initOrWait();
         }
@@ -201,23 +315,11 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
         }
 
         getLog().debug("Attempting to use NeedlemanWunsch expansion to identify similar strings to " + propertyValue);
-        Map<String, Float> expandedPropertyMap = new HashMap<>();
-        NeedlemanWunch nwSimilarity = new NeedlemanWunch();
-        if (!getPropertyValueDictionary().isEmpty()) {
-            for (String comparedPropertyValue : getPropertyValueDictionary()) {
-                float result = nwSimilarity.compare(propertyValue, comparedPropertyValue);
-                if (getLog().isTraceEnabled()) {
-                    if (result > 0) {
-                        getLog().trace(
-                                "Needleman-Wunsch comparison: " + propertyValue + " <=> " + comparedPropertyValue +
-                                        " := " + result);
-                    }
-                }
-                if (result >= min_score) {
-                    expandedPropertyMap.put(comparedPropertyValue, result);
-                }
-            }
-        }
+        List<String> candidates = propertyValueIndex.findNeedlemanWunschCandidates(propertyValue, min_score);
+        getLog().trace("Scoring " + candidates.size() + " of " + propertyValueIndex.size() + " property values " +
+                               "with Needleman-Wunsch");
+        Map<String, Float> expandedPropertyMap =
+                scoreCandidates(propertyValue, candidates, needlemanWunschSimilarity, min_score, deadline);
 
         Map<String, Float> result = new HashMap<>();
         if (!expandedPropertyMap.isEmpty()) {
@@ -234,12 +336,15 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
      * @param min_score           the ZOOMA minimum score parameter
      * @param num_max_annotations the maximum number of annotations that should be returned
      * @param pct_cutoff          the ZOOMA cutoff percentage score
+     * @param deadline            the time by which expansion must be complete
      * @return properties identified by the Jaccard algorithm and their similarity score
+     * @throws InterruptedException if expansion was interrupted
      */
     private Map<String, Float> useJaccardExpansion(String propertyValue,
                                                    float min_score,
                                                    int num_max_annotations,
-                                                   float pct_cutoff) {
+                                                   float pct_cutoff,
+                                                   long deadline) throws InterruptedException {
         try {
             initOrWait();
         }
@@ -248,23 +353,11 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
         }
 
         getLog().debug("Attempting to use Jaccard expansion to identify similar strings to " + propertyValue);
-        Map<String, Float> expandedPropertyMap = new HashMap<>();
-        StringMetric jaccardSimilarity = StringMetricBuilder.with(new JaccardSimilarity<String>()).tokenize(new Whitespace()).build();
-        if (!getPropertyValueDictionary().isEmpty()) {
-            for (String comparedPropertyValue : getPropertyValueDictionary()) {
-                float result = jaccardSimilarity.compare(propertyValue, comparedPropertyValue);
-                if (getLog().isTraceEnabled()) {
-                    if (result > 0) {
-                        getLog().trace(
-                                "Jaccard comparison: " + propertyValue + " <=> " + comparedPropertyValue +
-                                        " := " + result);
-                    }
-                }
-                if (result >= min_score) {
-                    expandedPropertyMap.put(comparedPropertyValue, result);
-                }
-            }
-        }
+        List<String> candidates = propertyValueIndex.findJaccardCandidates(propertyValue, min_score);
+        getLog().trace("Scoring " + candidates.size() + " of " + propertyValueIndex.size() + " property values " +
+                               "with Jaccard");
+        Map<String, Float> expandedPropertyMap =
+                scoreCandidates(propertyValue, candidates, jaccardSimilarity, min_score, deadline);
 
         Map<String, Float> result = new HashMap<>();
         if (!expandedPropertyMap.isEmpty()) {
@@ -274,6 +367,91 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
         return result;
     }
 
+    /**
+     * Scores each candidate against the given property value, retaining those with at least the minimum score.  Large
+     * candidate sets are split between scoring threads.
+     *
+     * @param propertyValue the property value to compare candidates against
+     * @param candidates    the candidate property values
+     * @param metric        the similarity metric to score candidates with
+     * @param minScore      the minimum score for a candidate to be retained
+     * @param deadline      the time by which scoring must be complete
+     * @return candidates with at least the minimum score, mapped to their score; if the deadline passed, only those
+     * scored in time
+     * @throws InterruptedException if scoring was interrupted
+     */
+    private Map<String, Float> scoreCandidates(final String propertyValue,
+                                               List<String> candidates,
+                                               final StringMetric metric,
+                                               final float minScore,
+                                               final long deadline) throws InterruptedException {
+        if (candidates.size() < PARALLEL_SCORING_THRESHOLD || scoringExecutor == null) {
+            return scoreCandidateRange(propertyValue, candidates, metric, minScore, deadline);
+        }
+
+        List<Callable<Map<String, Float>>> tasks = new ArrayList<>();
+        int rangeSize = (candidates.size() + getScoringThreadCount() - 1) / getScoringThreadCount();
+        for (int start = 0; start < candidates.size(); start += rangeSize) {
+            final List<String> range = candidates.subList(start, Math.min(candidates.size(), start + rangeSize));
+            tasks.add(new Callable<Map<String, Float>>() {
+                @Override public Map<String, Float> call() throws Exception {
+                    return scoreCandidateRange(propertyValue, range, metric, minScore, deadline);
+                }
+            });
+        }
+
+        // scoring threads stop themselves at the deadline, so allow them a little longer to return what they have
+        Map<String, Float> results = new HashMap<>();
+        long remaining = Math.max(0, deadline - System.currentTimeMillis()) + SCORING_GRACE_PERIOD;
+        for (Future<Map<String, Float>> future : scoringExecutor.invokeAll(tasks, remaining, TimeUnit.MILLISECONDS)) {
+            try {
+                results.putAll(future.get());
+            }
+            catch (CancellationException e) {
+                getLog().debug("Scoring part of the similar strings to '" + propertyValue + "' did not complete " +
+                                       "in time, continuing with partial results");
+                SearchDeadline.markTruncated();
+            }
+            catch (ExecutionException e) {
+                throw new InterruptedException("Scoring similar strings to '" + propertyValue + "' failed " +
+                                                       "(" + e.getCause() + ")");
+            }
+        }
+        return results;
+    }
+
+    private Map<String, Float> scoreCandidateRange(String propertyValue,
+                                                   List<String> candidates,
+                                                   StringMetric metric,
+                                                   float minScore,
+                                                   long deadline) throws InterruptedException {
+        Map<String, Float> results = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i % 256 == 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Scoring similar strings to '" + propertyValue + "' " +
+                                                           "was interrupted");
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    getLog().debug("Scored " + i + " of " + candidates.size() + " similar strings to " +
+                                           "'" + propertyValue + "' before the deadline");
+                    break;
+                }
+            }
+            String comparedPropertyValue = candidates.get(i);
+            float result = metric.compare(propertyValue, comparedPropertyValue);
+            if (getLog().isTraceEnabled()) {
+                if (result > 0) {
+                    getLog().trace("Comparison: " + propertyValue + " <=> " + comparedPropertyValue + " := " + result);
+                }
+            }
+            if (result >= minScore) {
+                results.put(comparedPropertyValue, result);
+            }
+        }
+        return results;
+    }
+
     /**
      * Filters a map of strings linked to similarity scores based on parameters supplied.  The resulting map will
      * contain a subset of the original map, filtering out any strings with a quality score below the minimum score,
@@ -362,7 +540,7 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
         // get all properties
         Collection<Property> properties = getPropertyDAO().read();
 
-        propertyValueDictionary = new HashSet<>();
+        Collection<String> propertyValueDictionary = new HashSet<>();
         for (Property p : properties) {
             String propertyValue = p.getPropertyValue();
             if (getSearchStringProcessor().canProcess(propertyValue)) {
@@ -380,8 +558,24 @@ public class NeedlemanJaccardAnnotationSummarySearchService extends AnnotationSu
                 propertyValueDictionary.add(propertyValue);
             }
         }
+        propertyValueIndex = new PropertyValueCandidateIndex(propertyValueDictionary);
+        scoringExecutor = Executors.newFixedThreadPool(Math.max(1, getScoringThreadCount()), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(1);
+
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "zooma-similarity-" + threadCount.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
         time_end = System.currentTimeMillis();
         getLog().debug("Loaded property value dictionary of " + propertyValueDictionary.size() + " entries in " +
                                (time_end - time_start) + " milliseconds");
     }
+
+    @Override protected void doTermination() throws Exception {
+        if (scoringExecutor != null) {
+            scoringExecutor.shutdownNow();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.document.Document;
+import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.model.SimpleTypedProperty;
+import uk.ac.ebi.fgpt.zooma.model.SimpleUntypedProperty;
+
+import java.net.URI;
+
+/**
+ * Maps a property index document into a {@link Property} using the "uri", "name" and "type" fields stored by {@link
+ * ZoomaLuceneIndexer}, so that properties can be returned without looking them up in a {@link
+ * uk.ac.ebi.fgpt.zooma.datasource.PropertyDAO}.  Documents without a "type" field map to untyped properties.
+ * <p/>
+ * Documents that do not store a property value (for example, in an index built before values were stored) cannot be
+ * mapped, and are mapped to null.
+ *
+ * @date 18/10/26
+ */
+public class PropertyMapper implements LuceneDocumentMapper<Property> {
+    @Override public Property mapDocument(Document d) {
+        return mapDocument(d, 1);
+    }
+
+    @Override public Property mapDocument(Document d, int rank) {
+        String value = d.get("name");
+        if (value == null) {
+            return null;
+        }
+        URI uri = URI.create(d.get("uri"));
+        String type = d.get("type");
+        if (type == null) {
+            return new SimpleUntypedProperty(uri, value);
+        }
+        else {
+            return new SimpleTypedProperty(uri, type, value);
+        }
+    }
+
+    /**
+     * This implementation returns 1 for all documents; properties are not quality scored.
+     *
+     * @param d the document to score
+     * @return 1 for all documents
+     */
+    @Override public float getDocumentQuality(Document d) {
+        return 1;
+    }
+
+    /**
+     * This implementation returns 1 for all documents; properties are not quality scored.
+     *
+     * @param d the document to score
+     * @return 1 for all documents
+     */
+    @Override public float getDocumentQuality(Document d, int rank) {
+        return 1;
+    }
+}
@@ -0,0 +1,238 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.simmetrics.tokenizers.Tokenizer;
+import org.simmetrics.tokenizers.Whitespace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index over a dictionary of property values, used to find a small set of candidates that might be similar enough
+ * to a search string to be worth scoring with Needleman-Wunsch or Jaccard similarity, instead of scoring every value in
+ * the dictionary.
+ * <p/>
+ * Candidate generation never discards a value that could reach the requested minimum score, so scoring the candidates
+ * gives exactly the same results as scoring the whole dictionary:
+ * <ul>
+ * <li>Needleman-Wunsch similarity (with the simmetrics default costs of 1 for a substitution and 2 for a gap) is one
+ * minus the alignment cost divided by twice the length of the longer string.  A minimum similarity therefore bounds
+ * both the difference in length between two strings, and the number of edits between them.  Strings within
+ * <i>k</i> edits of each other share at least <code>max(length) - 1 - 2k</code> character bigrams, so values sharing
+ * fewer bigrams than this with the search string can be discarded.</li>
+ * <li>Jaccard similarity of whitespace delimited tokens is zero unless two strings share a token, so candidates are
+ * taken from the values containing any of the search string's tokens, and discarded unless their shared token count
+ * could reach the minimum score.</li>
+ * </ul>
+ * <p/>
+ * This class is immutable, and safe to use from multiple threads.
+ *
+ * @date 18/10/26
+ */
+public class PropertyValueCandidateIndex {
+    // allowance for rounding in similarity metrics, so borderline values are always scored
+    private static final double SLACK = 1e-4;
+
+    private final String[] values;
+    private final int[][] valuesByLength;
+
+    private final Map<Integer, Postings> bigramPostings;
+    private final Map<String, int[]> tokenPostings;
+    private final int[] tokenCounts;
+
+    private final Tokenizer tokenizer = new Whitespace();
+
+    public PropertyValueCandidateIndex(Collection<String> values) {
+        this.values = values.toArray(new String[values.size()]);
+
+        // group values by length
+        int maxLength = 0;
+        for (String value : this.values) {
+            maxLength = Math.max(maxLength, value.length());
+        }
+        int[] lengthCounts = new int[maxLength + 1];
+        for (String value : this.values) {
+            lengthCounts[value.length()]++;
+        }
+        this.valuesByLength = new int[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            valuesByLength[length] = new int[lengthCounts[length]];
+            lengthCounts[length] = 0;
+        }
+        for (int id = 0; id < this.values.length; id++) {
+            int length = this.values[id].length();
+            valuesByLength[length][lengthCounts[length]++] = id;
+        }
+
+        // index bigrams and tokens of each value
+        this.bigramPostings = new HashMap<>();
+        Map<String, Postings> tokens = new HashMap<>();
+        this.tokenCounts = new int[this.values.length];
+        for (int id = 0; id < this.values.length; id++) {
+            for (Map.Entry<Integer, Integer> bigram : countBigrams(this.values[id]).entrySet()) {
+                Postings postings = bigramPostings.get(bigram.getKey());
+                if (postings == null) {
+                    postings = new Postings();
+                    bigramPostings.put(bigram.getKey(), postings);
+                }
+                postings.add(id, bigram.getValue());
+            }
+
+            Set<String> valueTokens = tokenizer.tokenizeToSet(this.values[id]);
+            tokenCounts[id] = valueTokens.size();
+            for (String token : valueTokens) {
+                Postings postings = tokens.get(token);
+                if (postings == null) {
+                    postings = new Postings();
+                    tokens.put(token, postings);
+                }
+                postings.add(id, 1);
+            }
+        }
+        for (Postings postings : bigramPostings.values()) {
+            postings.trim();
+        }
+        this.tokenPostings = new HashMap<>();
+        for (Map.Entry<String, Postings> token : tokens.entrySet()) {
+            tokenPostings.put(token.getKey(), Arrays.copyOf(token.getValue().ids, token.getValue().size));
+        }
+    }
+
+    /**
+     * Returns every value in this index
+     *
+     * @return the dictionary of values this index was built from
+     */
+    public Collection<String> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the values in this index that could have a Needleman-Wunsch similarity to the given string of at least
+     * the given minimum score
+     *
+     * @param string   the string to find similar values for
+     * @param minScore the minimum Needleman-Wunsch similarity of interest
+     * @return the candidate values, which must be scored to find those that are similar enough
+     */
+    public List<String> findNeedlemanWunschCandidates(String string, float minScore) {
+        int length = string.length();
+        if (length == 0 || minScore <= 0) {
+            return new ArrayList<>(Arrays.asList(values));
+        }
+
+        // count the bigrams shared with every value containing any bigram of this string
+        int[] sharedBigrams = new int[values.length];
+        for (Map.Entry<Integer, Integer> bigram : countBigrams(string).entrySet()) {
+            Postings postings = bigramPostings.get(bigram.getKey());
+            if (postings != null) {
+                for (int i = 0; i < postings.size; i++) {
+                    sharedBigrams[postings.ids[i]] += Math.min(bigram.getValue(), postings.counts[i]);
+                }
+            }
+        }
+
+        // each edit costs at least 1, and a length difference of d costs 2d in gaps,
+        // so a value of length l is only similar enough if within (1 - minScore) * max(length, l) edits
+        int minLength = Math.max(0, (int) Math.floor(length * minScore - SLACK));
+        int maxLength = Math.min(valuesByLength.length - 1, (int) Math.ceil(length / minScore + SLACK));
+        List<String> candidates = new ArrayList<>();
+        for (int valueLength = minLength; valueLength <= maxLength; valueLength++) {
+            int longest = Math.max(length, valueLength);
+            double maxCost = 2 * (1 - minScore) * longest + SLACK;
+            if (2 * Math.abs(length - valueLength) > maxCost) {
+                continue;
+            }
+            int maxEdits = (int) Math.floor(maxCost);
+            int requiredBigrams = longest - 1 - 2 * maxEdits;
+            for (int id : valuesByLength[valueLength]) {
+                if (requiredBigrams <= 0 || sharedBigrams[id] >= requiredBigrams) {
+                    candidates.add(values[id]);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the values in this index that could have a Jaccard similarity (over whitespace delimited tokens) to the
+     * given string of at least the given minimum score
+     *
+     * @param string   the string to find similar values for
+     * @param minScore the minimum Jaccard similarity of interest
+     * @return the candidate values, which must be scored to find those that are similar enough
+     */
+    public List<String> findJaccardCandidates(String string, float minScore) {
+        Set<String> tokens = tokenizer.tokenizeToSet(string);
+        if (tokens.isEmpty() || minScore <= 0) {
+            return new ArrayList<>(Arrays.asList(values));
+        }
+
+        // count the tokens shared with every value containing any token of this string
+        Map<Integer, Integer> sharedTokens = new HashMap<>();
+        for (String token : tokens) {
+            int[] ids = tokenPostings.get(token);
+            if (ids != null) {
+                for (int id : ids) {
+                    Integer shared = sharedTokens.get(id);
+                    sharedTokens.put(id, shared == null ? 1 : shared + 1);
+                }
+            }
+        }
+
+        List<String> candidates = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> shared : sharedTokens.entrySet()) {
+            int union = tokens.size() + tokenCounts[shared.getKey()] - shared.getValue();
+            if ((double) shared.getValue() / union >= minScore - SLACK) {
+                candidates.add(values[shared.getKey()]);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Counts each pair of adjacent characters in the given string, packed into an int
+     */
+    private static Map<Integer, Integer> countBigrams(String string) {
+        Map<Integer, Integer> bigrams = new HashMap<>();
+        for (int i = 0; i < string.length() - 1; i++) {
+            int bigram = (string.charAt(i) << 16) | string.charAt(i + 1);
+            Integer count = bigrams.get(bigram);
+            bigrams.put(bigram, count == null ? 1 : count + 1);
+        }
+        return bigrams;
+    }
+
+    /**
+     * The ids of the values containing a bigram or token, with the number of times it occurs in each value
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        private void add(int id, int count) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            ids[size] = id;
+            counts[size] = count;
+            size++;
+        }
+
+        private void trim() {
+            ids = Arrays.copyOf(ids, size);
+            counts = Arrays.copyOf(counts, size);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A dictionary of property values that completes a prefix to the most frequently used values starting with it,
+ * optionally restricted to values used by annotations from a set of sources.
+ * <p/>
+ * Each value is looked up by its lower cased form, and by any further keys supplied when it is added (such as the
+ * analyzed terms of the value, so that a prefix can match the first term of a value rather than only its exact
+ * spelling).  Keys are held in an array sorted on their lower cased form, so all the keys starting with a prefix are
+ * found with a binary search and lie in one contiguous range.  Each value carries a weight (the number of annotations
+ * that use it) and a set of source contexts, so the best completions are selected by a single pass over this range,
+ * without querying an index or post-filtering results by source.  Values that share the same sources share the same
+ * context set.
+ * <p/>
+ * This class is immutable, and safe to use from multiple threads.  Instances are created using a {@link Builder}.
+ *
+ * @date 18/10/26
+ */
+public class PropertyValueSuggester {
+    private final long version;
+
+    private final String[] keys;
+    private final int[] keyValues;
+    private final String[] values;
+    private final int[] weights;
+    private final BitSet[] contexts;
+
+    private final Map<URI, Integer> sourceIds;
+
+    private PropertyValueSuggester(long version,
+                                   String[] keys,
+                                   int[] keyValues,
+                                   String[] values,
+                                   int[] weights,
+                                   BitSet[] contexts,
+                                   Map<URI, Integer> sourceIds) {
+        this.version = version;
+        this.keys = keys;
+        this.keyValues = keyValues;
+        this.values = values;
+        this.weights = weights;
+        this.contexts = contexts;
+        this.sourceIds = sourceIds;
+    }
+
+    /**
+     * Returns the version of the data this suggester was built from, so that callers can tell whether it needs to be
+     * rebuilt
+     *
+     * @return the version supplied when this suggester was built
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns at most <code>limit</code> property values that start with the given prefix, ignoring case, in order of
+     * decreasing weight.  Values with equal weights are returned in alphabetical order.  If any sources are supplied,
+     * only values used by at least one of these sources are returned.
+     *
+     * @param prefix  the prefix to complete
+     * @param limit   the maximum number of completions to return
+     * @param sources the sources values must be used in, or none to return values from any source
+     * @return the best completions of this prefix
+     */
+    public List<String> suggest(String prefix, int limit, URI... sources) {
+        return suggest(Collections.singleton(prefix), limit, sources);
+    }
+
+    /**
+     * Returns at most <code>limit</code> property values with a key that starts with any of the given prefixes,
+     * ignoring case, in order of decreasing weight.  Values with equal weights are returned in alphabetical order, and
+     * each value is returned once however many of its keys match.  If any sources are supplied, only values used by at
+     * least one of these sources are returned.
+     *
+     * @param prefixes the prefixes to complete
+     * @param limit    the maximum number of completions to return
+     * @param sources  the sources values must be used in, or none to return values from any source
+     * @return the best completions of these prefixes
+     */
+    public List<String> suggest(Collection<String> prefixes, int limit, URI... sources) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        BitSet required = null;
+        if (sources.length > 0) {
+            required = new BitSet();
+            for (URI source : sources) {
+                Integer id = sourceIds.get(source);
+                if (id != null) {
+                    required.set(id);
+                }
+            }
+            if (required.isEmpty()) {
+                // none of these sources are used by any value
+                return Collections.emptyList();
+            }
+        }
+
+        // keep the best completions seen so far in order, best first
+        int[] best = new int[Math.min(limit, values.length)];
+        int count = 0;
+        BitSet seen = new BitSet(values.length);
+        for (String prefix : prefixes) {
+            String key = normalize(prefix);
+            for (int k = lowerBound(key); k < keys.length && keys[k].startsWith(key); k++) {
+                int i = keyValues[k];
+                if (seen.get(i)) {
+                    continue;
+                }
+                seen.set(i);
+                if (required != null && !contexts[i].intersects(required)) {
+                    continue;
+                }
+                if (count == best.length) {
+                    if (!isBetter(i, best[count - 1])) {
+                        continue;
+                    }
+                    count--;
+                }
+                int insert = count;
+                while (insert > 0 && isBetter(i, best[insert - 1])) {
+                    best[insert] = best[insert - 1];
+                    insert--;
+                }
+                best[insert] = i;
+                count++;
+            }
+        }
+
+        List<String> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(values[best[i]]);
+        }
+        return results;
+    }
+
+    /**
+     * Tests whether one value is a better completion than another: values are ordered by decreasing weight, and values
+     * of equal weight alphabetically, which is the order they are held in
+     */
+    private boolean isBetter(int value, int other) {
+        return weights[value] > weights[other] || (weights[value] == weights[other] && value < other);
+    }
+
+    /**
+     * Returns the index of the first key that is not less than the given key
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Collects property values, and the keys, weights and sources of each, to build a {@link PropertyValueSuggester}.
+     * The same value may be added more than once (for example, for properties with different types): weights of the
+     * same value are added together, and keys and sources are combined.
+     * <p/>
+     * Builders are not thread safe.
+     */
+    public static class Builder {
+        private final Map<String, Entry> entries = new TreeMap<>(new ValueComparator());
+        private final Map<URI, Integer> sourceIds = new HashMap<>();
+
+        /**
+         * Adds a property value to the suggester being built
+         *
+         * @param value   the property value
+         * @param weight  the weight of this value, usually the number of annotations that use it
+         * @param sources the sources of annotations that use this value
+         * @return this builder
+         */
+        public Builder add(String value, int weight, Collection<URI> sources) {
+            return add(value, Collections.<String>emptySet(), weight, sources);
+        }
+
+        /**
+         * Adds a property value to the suggester being built, that can also be looked up by the given keys
+         *
+         * @param value   the property value
+         * @param keys    further keys to look this value up by, as well as the value itself
+         * @param weight  the weight of this value, usually the number of annotations that use it
+         * @param sources the sources of annotations that use this value
+         * @return this builder
+         */
+        public Builder add(String value, Collection<String> keys, int weight, Collection<URI> sources) {
+            Entry entry = entries.get(value);
+            if (entry == null) {
+                entry = new Entry();
+                entry.keys.add(normalize(value));
+                entries.put(value, entry);
+            }
+            for (String key : keys) {
+                if (!key.isEmpty()) {
+                    entry.keys.add(normalize(key));
+                }
+            }
+            entry.weight += Math.max(0, weight);
+            for (URI source : sources) {
+                Integer id = sourceIds.get(source);
+                if (id == null) {
+                    id = sourceIds.size();
+                    sourceIds.put(source, id);
+                }
+                entry.sources.set(id);
+            }
+            return this;
+        }
+
+        /**
+         * Builds a suggester from every value added so far
+         *
+         * @param version the version of the data this suggester is built from
+         * @return the new suggester
+         */
+        public PropertyValueSuggester build(long version) {
+            int size = entries.size();
+            String[] values = new String[size];
+            int[] weights = new int[size];
+            BitSet[] contexts = new BitSet[size];
+
+            // order keys alphabetically, and the values with the same key in the same order as the values themselves
+            Map<String, List<Integer>> keyedValues = new TreeMap<>();
+            Map<BitSet, BitSet> sharedContexts = new HashMap<>();
+            int i = 0;
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                for (String key : entry.getValue().keys) {
+                    List<Integer> keyValues = keyedValues.get(key);
+                    if (keyValues == null) {
+                        keyValues = new ArrayList<>(1);
+                        keyedValues.put(key, keyValues);
+                    }
+                    keyValues.add(i);
+                }
+                values[i] = entry.getKey();
+                weights[i] = entry.getValue().weight;
+                BitSet context = sharedContexts.get(entry.getValue().sources);
+                if (context == null) {
+                    context = (BitSet) entry.getValue().sources.clone();
+                    sharedContexts.put(context, context);
+                }
+                contexts[i] = context;
+                i++;
+            }
+
+            int keyCount = 0;
+            for (List<Integer> keyValues : keyedValues.values()) {
+                keyCount += keyValues.size();
+            }
+            String[] keys = new String[keyCount];
+            int[] keyValues = new int[keyCount];
+            int k = 0;
+            for (Map.Entry<String, List<Integer>> keyed : keyedValues.entrySet()) {
+                for (int value : keyed.getValue()) {
+                    keys[k] = keyed.getKey();
+                    keyValues[k] = value;
+                    k++;
+                }
+            }
+            return new PropertyValueSuggester(version,
+                                              keys,
+                                              keyValues,
+                                              values,
+                                              weights,
+                                              contexts,
+                                              new HashMap<>(sourceIds));
+        }
+
+        private static class Entry {
+            private final Set<String> keys = new TreeSet<>();
+            private int weight;
+            private final BitSet sources = new BitSet();
+        }
+
+        /**
+         * Orders values by their lower cased form, and then by the values themselves so that values differing only by
+         * case are kept apart
+         */
+        private static class ValueComparator implements Comparator<String> {
+            @Override public int compare(String s1, String s2) {
+                int result = normalize(s1).compareTo(normalize(s2));
+                return result != 0 ? result : s1.compareTo(s2);
+            }
+        }
+    }
+}
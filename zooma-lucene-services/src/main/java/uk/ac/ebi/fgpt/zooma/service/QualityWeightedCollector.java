@@ -0,0 +1,121 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A lucene collector that ranks hits by their lucene score weighted by the quality of the matching document, as
+ * evaluated by a {@link LuceneDocValuesMapper}.  Quality is read from doc values as each hit is collected, so the
+ * documents that will score best once mapped are the ones retained, and no stored fields are loaded during
+ * collection.
+ * <p/>
+ * At most <code>numHits</code> hits are retained, or every hit if no limit is given.  Hits are returned as {@link
+ * WeightedScoreDoc}s, whose score is the weighted score and which also carry the original lucene score.  Document
+ * quality is evaluated with a rank of 1, as the final rank of a hit is not known until collection is complete.
+ *
+ * @date 18/10/26
+ */
+public class QualityWeightedCollector extends SimpleCollector {
+    // orders hits best first: by descending weighted score, with ties broken by ascending document id
+    private static final Comparator<ScoreDoc> BEST_FIRST = new Comparator<ScoreDoc>() {
+        @Override public int compare(ScoreDoc o1, ScoreDoc o2) {
+            int comparison = Float.compare(o2.score, o1.score);
+            return comparison != 0 ? comparison : Integer.compare(o1.doc, o2.doc);
+        }
+    };
+
+    private final LuceneDocValuesMapper<?> mapper;
+    private final int numHits;
+
+    // the worst retained hit is at the head of the queue, so it can be replaced by better hits
+    private final PriorityQueue<WeightedScoreDoc> hits;
+    private int totalHits = 0;
+
+    private LuceneDocValuesMapper.LeafMapper<?> leafMapper;
+    private Scorer scorer;
+    private int docBase;
+
+    /**
+     * Creates a new collector that weights hits by the quality evaluated by the given mapper
+     *
+     * @param mapper  the mapper used to evaluate the quality of each hit
+     * @param numHits the maximum number of hits to retain, or -1 to retain every hit
+     */
+    public QualityWeightedCollector(LuceneDocValuesMapper<?> mapper, int numHits) {
+        this.mapper = mapper;
+        this.numHits = numHits;
+        this.hits = new PriorityQueue<>(numHits > 0 ? numHits : 16, Collections.reverseOrder(BEST_FIRST));
+    }
+
+    @Override protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        docBase = context.docBase;
+        leafMapper = mapper.getLeafMapper(context.reader());
+    }
+
+    @Override public void setScorer(Scorer scorer) throws IOException {
+        this.scorer = scorer;
+    }
+
+    @Override public void collect(int doc) throws IOException {
+        totalHits++;
+        if (numHits == 0) {
+            return;
+        }
+        float luceneScore = scorer.score();
+        WeightedScoreDoc hit = new WeightedScoreDoc(docBase + doc,
+                                                    luceneScore * leafMapper.getDocumentQuality(doc, 1),
+                                                    luceneScore);
+        if (numHits < 0 || hits.size() < numHits) {
+            hits.add(hit);
+        }
+        else if (BEST_FIRST.compare(hit, hits.peek()) < 0) {
+            hits.poll();
+            hits.add(hit);
+        }
+    }
+
+    @Override public boolean needsScores() {
+        return true;
+    }
+
+    /**
+     * @return the number of hits collected, including those that were not retained
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return the retained hits, best weighted score first
+     */
+    public ScoreDoc[] getHits() {
+        List<ScoreDoc> sorted = new ArrayList<ScoreDoc>(hits);
+        Collections.sort(sorted, BEST_FIRST);
+        return sorted.toArray(new ScoreDoc[sorted.size()]);
+    }
+
+    /**
+     * A hit scored by its quality weighted score, which also records the lucene score of the hit
+     */
+    public static class WeightedScoreDoc extends ScoreDoc {
+        private final float luceneScore;
+
+        public WeightedScoreDoc(int doc, float score, float luceneScore) {
+            super(doc, score);
+            this.luceneScore = luceneScore;
+        }
+
+        public float getLuceneScore() {
+            return luceneScore;
+        }
+    }
+}
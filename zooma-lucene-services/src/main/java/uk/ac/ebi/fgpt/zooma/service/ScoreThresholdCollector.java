@@ -0,0 +1,94 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.ScoreCachingWrappingScorer;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+
+/**
+ * A lucene {@link Collector} that only passes on hits scoring within a given fraction of the best score seen so far.
+ * <p/>
+ * Because the best score can only ever increase as collection proceeds, any hit rejected by this collector is
+ * guaranteed to fall below the same fraction of the final top score, so rejected hits never need to enter the priority
+ * queue of the wrapped collector.  Hits collected before the eventual top hit was seen may still be below the threshold
+ * though, so callers should apply the threshold once more to the final results - see {@link #isAboveThreshold(float,
+ * float)}.
+ *
+ * @date 18/10/26
+ */
+public class ScoreThresholdCollector extends FilterCollector {
+    private final float threshold;
+
+    private float maxScore = Float.NEGATIVE_INFINITY;
+    private int rejectedCount = 0;
+
+    /**
+     * Creates a new collector that wraps the given collector
+     *
+     * @param in        the collector to pass hits on to
+     * @param threshold the fraction of the best score (between 0 and 1) that a hit must achieve to be collected
+     */
+    public ScoreThresholdCollector(Collector in, float threshold) {
+        super(in);
+        this.threshold = threshold;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return the best score of any hit seen by this collector
+     */
+    public float getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * @return the number of hits that were rejected for scoring below the threshold
+     */
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Tests whether the given score lies within the threshold of this collector, given the top score
+     *
+     * @param score    the score to test
+     * @param topScore the top score obtained by the query
+     * @return true if the score lies within the threshold fraction of the top score
+     */
+    public boolean isAboveThreshold(float score, float topScore) {
+        return score >= topScore * threshold;
+    }
+
+    @Override public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        return new FilterLeafCollector(super.getLeafCollector(context)) {
+            private Scorer scorer;
+
+            @Override public void setScorer(Scorer scorer) throws IOException {
+                // cache scores, so documents are not scored twice by this and the wrapped collector
+                this.scorer = new ScoreCachingWrappingScorer(scorer);
+                super.setScorer(this.scorer);
+            }
+
+            @Override public void collect(int doc) throws IOException {
+                float score = scorer.score();
+                if (score > maxScore) {
+                    maxScore = score;
+                }
+                if (isAboveThreshold(score, maxScore)) {
+                    super.collect(doc);
+                }
+                else {
+                    rejectedCount++;
+                }
+            }
+        };
+    }
+}
@@ -1,25 +1,49 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
-import org.apache.lucene.index.IndexDeletionPolicy;
+import org.apache.lucene.document.FloatDocValuesField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
 import uk.ac.ebi.fgpt.zooma.Initializable;
 import uk.ac.ebi.fgpt.zooma.datasource.AnnotationDAO;
 import uk.ac.ebi.fgpt.zooma.datasource.AnnotationSummaryDAO;
 import uk.ac.ebi.fgpt.zooma.datasource.PropertyDAO;
+import uk.ac.ebi.fgpt.zooma.datasource.StreamingDAO;
+import uk.ac.ebi.fgpt.zooma.datasource.ZoomaCursor;
 import uk.ac.ebi.fgpt.zooma.model.Annotation;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationProvenance;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationSummary;
+import uk.ac.ebi.fgpt.zooma.model.BiologicalEntity;
 import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.model.SimpleAnnotation;
+import uk.ac.ebi.fgpt.zooma.model.SimpleTypedProperty;
+import uk.ac.ebi.fgpt.zooma.model.SimpleUntypedProperty;
 import uk.ac.ebi.fgpt.zooma.model.TypedProperty;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.security.MessageDigest;
@@ -29,14 +53,36 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Constructs a search index of annotations and properties using a Lucene implementation.  This enables fast text-based
  * searches over the documents contained within the index.
+ * <p/>
+ * Indices are normally built from scratch when this indexer is initialized.  Once built, they can also be updated
+ * incrementally for changes to single datasources or annotations (see {@link #updateDatasourceIndices(URI)} and {@link
+ * #updateAnnotationIndices(Collection)}): annotation documents record the keys of the summary, property and property
+ * type documents derived from them, so only the documents affected by a change need to be rewritten.
+ * <p/>
+ * In a parallel build, the annotation summary, property and count indices (which only depend on the annotation index)
+ * are built concurrently once the annotation index is complete.  Index writers can be tuned with a RAM buffer size,
+ * merge policy and codec, and indices can be force merged down to a number of segments once built.  The time taken
+ * by each phase of the last build is available from {@link #getBuildStatistics()}.
  *
  * @author Tony Burdett
  * @date 02/04/12
@@ -47,12 +93,38 @@ public class ZoomaLuceneIndexer extends Initializable {
     private static final String ENCODING = "SHA-1";
     private static final String HEX_CHARACTERS = "0123456789ABCDEF";
 
+    private static final String UNTYPED = "##zooma.untyped.property.key##";
+
+    /**
+     * The commit user data key recording the scheme used to generate annotation summary IDs.  Version 2 sorts semantic
+     * tags before generating the ID, so IDs of summaries with more than one semantic tag differ from those in indices
+     * built with earlier versions, which did not record a scheme.
+     */
+    public static final String SUMMARY_ID_SCHEME_KEY = "zooma.summary.id.scheme";
+    public static final String SUMMARY_ID_SCHEME = "2";
+
+    // number of annotations each indexing thread converts to documents at a time
+    private static final int INDEXING_BATCH_SIZE = 1000;
+
     // lucene analyzer for producing indexed strings
     private Analyzer analyzer;
 
     // maximum number of entities that will be fetched from DAO, usually only used in testing
     private int maxEntityCount = -1;
 
+    // number of annotations to read from the annotation DAO at a time, and threads to index them with
+    private int annotationPageSize = 100000;
+    private int indexingThreadCount = Runtime.getRuntime().availableProcessors();
+
+    // settings for full index builds
+    private boolean parallelBuild = false;
+    private double ramBufferSizeMB = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+    private MergePolicy mergePolicy;
+    private String codecName;
+    private int maxSegmentCount = -1;
+
+    private final IndexBuildStatistics buildStatistics = new IndexBuildStatistics();
+
     // DAOs to fetch entities which will be used to build indices
     private AnnotationDAO annotationDAO;
     private AnnotationSummaryDAO annotationSummaryDAO;
@@ -65,8 +137,14 @@ public class ZoomaLuceneIndexer extends Initializable {
     private Directory annotationCountIndex;
     private Directory annotationIndex;
     private Directory annotationSummaryIndex;
-    private Map<URI, Collection<URI>> propertyUriToSourcesMap = new HashMap<>();
-    private Map<String, Collection<URI>> propertyTypeToSourcesMap = new HashMap<>();
+    private ConcurrentMap<URI, Collection<URI>> propertyUriToSourcesMap = new ConcurrentHashMap<>();
+    private ConcurrentMap<String, Collection<URI>> propertyTypeToSourcesMap = new ConcurrentHashMap<>();
+
+    // listeners to notify whenever an index has been committed
+    private Collection<IndexCommitListener> indexCommitListeners = new ArrayList<>();
+
+    // incremental updates are applied one at a time
+    private final Object updateLock = new Object();
 
 
     public Analyzer getAnalyzer() {
@@ -85,6 +163,94 @@ public class ZoomaLuceneIndexer extends Initializable {
         this.maxEntityCount = maxEntityCount;
     }
 
+    public int getAnnotationPageSize() {
+        return annotationPageSize;
+    }
+
+    public void setAnnotationPageSize(int annotationPageSize) {
+        this.annotationPageSize = annotationPageSize;
+    }
+
+    public int getIndexingThreadCount() {
+        return indexingThreadCount;
+    }
+
+    public void setIndexingThreadCount(int indexingThreadCount) {
+        this.indexingThreadCount = indexingThreadCount;
+    }
+
+    public boolean isParallelBuild() {
+        return parallelBuild;
+    }
+
+    /**
+     * Sets whether indices that do not depend on each other should be built concurrently.  Defaults to false.
+     *
+     * @param parallelBuild true to build independent indices concurrently
+     */
+    public void setParallelBuild(boolean parallelBuild) {
+        this.parallelBuild = parallelBuild;
+    }
+
+    public double getRamBufferSizeMB() {
+        return ramBufferSizeMB;
+    }
+
+    public void setRamBufferSizeMB(double ramBufferSizeMB) {
+        this.ramBufferSizeMB = ramBufferSizeMB;
+    }
+
+    public MergePolicy getMergePolicy() {
+        return mergePolicy;
+    }
+
+    /**
+     * Sets the merge policy for index writers.  If not set, lucene's default merge policy is used.
+     *
+     * @param mergePolicy the merge policy to use when writing indices
+     */
+    public void setMergePolicy(MergePolicy mergePolicy) {
+        this.mergePolicy = mergePolicy;
+    }
+
+    public String getCodecName() {
+        return codecName;
+    }
+
+    /**
+     * Sets the name of the codec used to write indices, which must be available to {@link Codec#forName(String)}.  If
+     * not set, lucene's default codec is used.
+     *
+     * @param codecName the name of the codec to write indices with
+     */
+    public void setCodecName(String codecName) {
+        this.codecName = codecName;
+    }
+
+    public int getMaxSegmentCount() {
+        return maxSegmentCount;
+    }
+
+    /**
+     * Sets the number of segments that each index should be force merged down to once it has been built from scratch.
+     * Merging makes builds slower but searches faster.  Defaults to -1, meaning indices are not force merged.
+     *
+     * @param maxSegmentCount the maximum number of segments to leave in each newly built index
+     */
+    public void setMaxSegmentCount(int maxSegmentCount) {
+        this.maxSegmentCount = maxSegmentCount;
+    }
+
+    /**
+     * Returns the time taken, and documents indexed, by each phase of index building since this indexer was last
+     * (re)initialized
+     *
+     * @return statistics for each completed build phase
+     */
+    public IndexBuildStatistics getBuildStatistics() {
+        return buildStatistics;
+    }
+
     public AnnotationDAO getAnnotationDAO() {
         return annotationDAO;
     }
@@ -141,6 +307,14 @@ public class ZoomaLuceneIndexer extends Initializable {
         this.annotationSummaryIndex = annotationSummaryIndex;
     }
 
+    public Collection<IndexCommitListener> getIndexCommitListeners() {
+        return indexCommitListeners;
+    }
+
+    public void setIndexCommitListeners(Collection<IndexCommitListener> indexCommitListeners) {
+        this.indexCommitListeners = indexCommitListeners;
+    }
+
     public AnnotationSummaryDAO getAnnotationSummaryDAO() {
         return annotationSummaryDAO;
     }
@@ -161,84 +335,153 @@ public class ZoomaLuceneIndexer extends Initializable {
 
     public void createPropertyIndices(Collection<Property> properties) throws IOException {
         getLog().debug("Creating lucene indices from " + properties.size() + " properties...");
+        long startTime = System.currentTimeMillis();
 
         // collect unique property types
         Set<String> uniquePropertyTypes = new HashSet<>();
 
         // set up index
-        IndexWriterConfig propertyConfig = new IndexWriterConfig(getAnalyzer());
-        IndexWriter propertyIndexWriter = new IndexWriter(getPropertyIndex(), propertyConfig);
-        IndexWriterConfig propertyTypeConfig = new IndexWriterConfig(getAnalyzer());
-        IndexWriter propertyTypeIndexWriter = new IndexWriter(getPropertyTypeIndex(), propertyTypeConfig);
-
-        // iterate over all properties
-        for (Property property : properties) {
-            // build the document to index text data and store URIs
-            Document doc = new Document();
-
-            doc.add(new Field("uri",
-                    property.getURI().toString(),
-                    Field.Store.YES,
-                    Field.Index.NOT_ANALYZED));
-            doc.add(new Field("name",
-                    property.getPropertyValue(),
-                    Field.Store.YES,
-                    Field.Index.ANALYZED));
-            if (property instanceof TypedProperty) {
-                String propertyType = ((TypedProperty) property).getPropertyType();
-
-                // add type field to property index
-                doc.add(new Field("type",
-                        propertyType,
-                        Field.Store.YES,
-                        Field.Index.ANALYZED));
+        IndexWriter propertyIndexWriter = obtainIndexWriter(getPropertyIndex());
+        IndexWriter propertyTypeIndexWriter = obtainIndexWriter(getPropertyTypeIndex());
 
+        // the annotation index, if built, is used to count the annotations using each property
+        IndexReader annotationReader = null;
+        if (getAnnotationIndex() != null && DirectoryReader.indexExists(getAnnotationIndex())) {
+            annotationReader = DirectoryReader.open(getAnnotationIndex());
+        }
+        IndexSearcher annotationSearcher = annotationReader != null ? new IndexSearcher(annotationReader) : null;
 
-                // add type document to property type index if not a duplicate
-                if (!uniquePropertyTypes.contains(propertyType)) {
-                    // this is a new property type, add to unique set
-                    uniquePropertyTypes.add(propertyType);
-
-                    // and index
-                    Document typeDoc = new Document();
-                    typeDoc.add(new Field("name",
-                            propertyType,
-                            Field.Store.YES,
-                            Field.Index.ANALYZED));
-                    // add any sources where this property type is used
-                    for (URI sourceUri : propertyTypeToSourcesMap.get(propertyType)) {
-                        typeDoc.add(new Field("source",
-                                sourceUri.toString(),
-                                Field.Store.YES,
-                                Field.Index.NOT_ANALYZED));
+        // iterate over all properties
+        try {
+            for (Property property : properties) {
+                if (property instanceof TypedProperty) {
+                    String propertyType = ((TypedProperty) property).getPropertyType();
+
+                    // add type document to property type index if not a duplicate
+                    if (!uniquePropertyTypes.contains(propertyType)) {
+                        // this is a new property type, add to unique set
+                        uniquePropertyTypes.add(propertyType);
+
+                        // and index
+                        propertyTypeIndexWriter.addDocument(
+                                createPropertyTypeDocument(propertyType, propertyTypeToSourcesMap.get(propertyType)));
                     }
-                    propertyTypeIndexWriter.addDocument(typeDoc);
                 }
-            }
 
-            // add any sources where this property is used
-            for (URI sourceUri : propertyUriToSourcesMap.get(property.getURI())) {
-                doc.add(new Field("source",
-                        sourceUri.toString(),
-                        Field.Store.YES,
-                        Field.Index.NOT_ANALYZED));
+                // add this document to the index
+                int annotationCount = annotationSearcher != null
+                        ? countAnnotations(annotationSearcher, property.getURI())
+                        : 0;
+                propertyIndexWriter.addDocument(
+                        createPropertyDocument(property,
+                                               propertyUriToSourcesMap.get(property.getURI()),
+                                               annotationCount));
+            }
+        }
+        finally {
+            if (annotationReader != null) {
+                annotationReader.close();
             }
-
-            // add this document to the index
-            propertyIndexWriter.addDocument(doc);
         }
 
         // now we have indexed all properties, close the index writer
-        propertyIndexWriter.close();
-        propertyTypeIndexWriter.close();
+        closeIndexWriter(propertyIndexWriter, getPropertyIndex());
+        closeIndexWriter(propertyTypeIndexWriter, getPropertyTypeIndex());
+        getBuildStatistics().recordPhase("properties",
+                                         properties.size() + uniquePropertyTypes.size(),
+                                         System.currentTimeMillis() - startTime);
         getLog().debug("Property lucene indexing complete!");
     }
 
     public void clearPropertyIndices() {
     }
 
+    /**
+     * Counts the annotations in the annotation index that use the given property
+     *
+     * @param annotationSearcher a searcher over the annotation index
+     * @param propertyUri        the URI of the property
+     * @return the number of annotations of this property
+     * @throws IOException if the annotation index could not be searched
+     */
+    protected int countAnnotations(IndexSearcher annotationSearcher, URI propertyUri) throws IOException {
+        TotalHitCountCollector counter = new TotalHitCountCollector();
+        annotationSearcher.search(new TermQuery(new Term("propertyuri", propertyUri.toString())), counter);
+        return counter.getTotalHits();
+    }
+
+    /**
+     * Creates the document that indexes a property, the sources of any annotations that use it and the number of
+     * these annotations.  The annotation count is stored in the "frequency" field, and is used to rank property value
+     * suggestions.
+     *
+     * @param property        the property to index
+     * @param sources         the sources in which this property is used
+     * @param annotationCount the number of annotations that use this property
+     * @return the property document
+     */
+    protected Document createPropertyDocument(Property property, Collection<URI> sources, int annotationCount) {
+        // build the document to index text data and store URIs
+        Document doc = new Document();
+
+        doc.add(new Field("uri",
+                property.getURI().toString(),
+                Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        doc.add(new Field("name",
+                property.getPropertyValue(),
+                Field.Store.YES,
+                Field.Index.ANALYZED));
+        if (property instanceof TypedProperty) {
+            // add type field to property index
+            doc.add(new Field("type",
+                    ((TypedProperty) property).getPropertyType(),
+                    Field.Store.YES,
+                    Field.Index.ANALYZED));
+        }
+
+        // add any sources where this property is used
+        for (URI sourceUri : sources) {
+            doc.add(new Field("source",
+                    sourceUri.toString(),
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+        }
+        doc.add(new StoredField("frequency", annotationCount));
+        return doc;
+    }
+
+    /**
+     * Creates the document that indexes a property type, and the sources of any annotations that use it
+     *
+     * @param propertyType the property type to index
+     * @param sources      the sources in which this property type is used
+     * @return the property type document
+     */
+    protected Document createPropertyTypeDocument(String propertyType, Collection<URI> sources) {
+        Document typeDoc = new Document();
+        // exact copy of the type, so this document can be replaced by incremental updates
+        typeDoc.add(new Field("id",
+                propertyType,
+                Field.Store.NO,
+                Field.Index.NOT_ANALYZED));
+        typeDoc.add(new Field("name",
+                propertyType,
+                Field.Store.YES,
+                Field.Index.ANALYZED));
+        // add any sources where this property type is used
+        for (URI sourceUri : sources) {
+            typeDoc.add(new Field("source",
+                    sourceUri.toString(),
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+        }
+        return typeDoc;
+    }
+
     public void createAnnotationCountIndex(int size) throws IOException {
         getLog().debug("Creating annotation count lucene index...");
+        long startTime = System.currentTimeMillis();
 
         // build the document to index total count of annotations
         Document doc = new Document();
@@ -249,7 +492,8 @@ public class ZoomaLuceneIndexer extends Initializable {
 
         IndexWriter indexWriter = obtainIndexWriter(getAnnotationCountIndex());
         indexWriter.addDocument(doc);
-        indexWriter.close();
+        closeIndexWriter(indexWriter, getAnnotationCountIndex());
+        getBuildStatistics().recordPhase("annotation count", 1, System.currentTimeMillis() - startTime);
         getLog().debug("Annotation count lucene indexing complete!");
     }
 
@@ -266,7 +510,7 @@ public class ZoomaLuceneIndexer extends Initializable {
         createAnnotationIndex(annotations, provenanceMap, annotationIndexWriter);
 
         // now we have indexed all annotations, close the index writer
-        annotationIndexWriter.close();
+        closeIndexWriter(annotationIndexWriter, getAnnotationIndex());
 
         getLog().debug("Annotation lucene indexing complete!");
         return provenanceMap;
@@ -279,66 +523,290 @@ public class ZoomaLuceneIndexer extends Initializable {
 
         // iterate over all annotations
         for (Annotation annotation : annotations) {
-            Property property = annotation.getAnnotatedProperty();
+            recordAnnotationSources(annotation);
+            provenanceMap.put(annotation.getURI(), annotation.getProvenance());
+            // add this document to the index
+            indexWriter.addDocument(createAnnotationDocument(annotation));
+        }
+    }
 
-            // build the document to index text data and store URIs
-            Document doc = new Document();
-            doc.add(new Field("uri",
-                    annotation.getURI().toString(),
-                    Field.Store.YES,
-                    Field.Index.NOT_ANALYZED));
-            doc.add(new Field("property",
-                    property.getPropertyValue(),
-                    Field.Store.YES,
-                    Field.Index.ANALYZED));
-            if (property instanceof TypedProperty) {
-                String propertyType = ((TypedProperty) property).getPropertyType();
-                doc.add(new Field("propertytype",
-                        propertyType,
-                        Field.Store.YES,
-                        Field.Index.ANALYZED));
+    /**
+     * Creates the annotation index by streaming annotations from the given DAO a page at a time, rather than reading
+     * them all into memory.  Documents are built on several threads, all feeding the same index writer, and the next
+     * page is only read once the one before last has been indexed, so at most two pages are held in memory at once.
+     * <p/>
+     * Paged DAOs may return an annotation with several semantic tags as several partial copies, one per row, and these
+     * may span any number of pages.  Partial copies are merged by annotation URI, and the annotation at the end of
+     * each page is held back until a page starts with a different annotation, so every annotation is indexed exactly
+     * once, with all its semantic tags.  This relies on the rows of each annotation being returned together, as the
+     * paged reads of ZOOMA's DAOs do.
+     * <p/>
+     * Instead of the full provenance of every annotation, only the quality score and source needed to build the
+     * annotation summary index are retained, in a compact {@link AnnotationProvenanceScores} store.
+     *
+     * @param annotationDAO the DAO to read annotations from, which must support paged reads with {@link
+     *                      AnnotationDAO#read(int, int)}
+     * @return the quality scores and sources of all indexed annotations
+     * @throws IOException if the annotation index could not be written
+     */
+    public AnnotationProvenanceScores createAnnotationIndex(AnnotationDAO annotationDAO) throws IOException {
+        getLog().info("Creating lucene index for annotations, " + getAnnotationPageSize() + " at a time, " +
+                              "using " + getIndexingThreadCount() + " threads");
+        long startTime = System.currentTimeMillis();
+        final AnnotationProvenanceScores scores = new AnnotationProvenanceScores();
+        final IndexWriter annotationIndexWriter = obtainIndexWriter(getAnnotationIndex());
+        ExecutorService executor = createIndexingExecutor();
+        boolean committed = false;
+        try {
+            // the annotation at the end of the last page read, which may continue on the next page
+            Annotation pending = null;
+            List<Future<Void>> previousTasks = Collections.emptyList();
+
+            int start = 0;
+            List<Annotation> page;
+            while (!(page = annotationDAO.read(getAnnotationPageSize(), start)).isEmpty()) {
+                // merge partial copies of each annotation, keeping annotations in the order they were read
+                Map<URI, Annotation> merged = new LinkedHashMap<>();
+                if (pending != null) {
+                    merged.put(pending.getURI(), pending);
+                }
+                for (Annotation annotation : page) {
+                    Annotation previous = merged.get(annotation.getURI());
+                    merged.put(annotation.getURI(),
+                               previous != null ? mergeAnnotations(previous, annotation) : annotation);
+                }
 
-                // keep a map of types to sources
-                if (!propertyTypeToSourcesMap.containsKey(propertyType)) {
-                    propertyTypeToSourcesMap.put(propertyType, new HashSet<URI>());
+                // only the last annotation on this page may continue onto the next, so every other is complete
+                URI lastURI = page.get(page.size() - 1).getURI();
+                pending = merged.remove(lastURI);
+
+                List<Future<Void>> tasks = new ArrayList<>();
+                List<Annotation> batch = new ArrayList<>();
+                for (Annotation annotation : merged.values()) {
+                    batch.add(annotation);
+                    if (batch.size() == INDEXING_BATCH_SIZE) {
+                        tasks.add(executor.submit(createIndexingTask(batch, scores, annotationIndexWriter)));
+                        batch = new ArrayList<>();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    tasks.add(executor.submit(createIndexingTask(batch, scores, annotationIndexWriter)));
                 }
-                propertyTypeToSourcesMap.get(propertyType).add(annotation.getProvenance().getSource().getURI());
 
+                // wait for the previous page before reading another, to bound the number of annotations in memory
+                awaitCompletion(previousTasks);
+                previousTasks = tasks;
+                start += getAnnotationPageSize();
+                getLog().debug("Read " + start + " annotation rows, indexed " + scores.size() + " annotations");
             }
-            if (annotation.getProvenance() != null && annotation.getProvenance().getSource() != null) {
-                doc.add(new Field("source",
-                        annotation.getProvenance().getSource().getURI().toString(),
-                        Field.Store.YES,
-                        Field.Index.NOT_ANALYZED));
+            awaitCompletion(previousTasks);
+
+            if (pending != null) {
+                recordAnnotation(pending, scores);
+                annotationIndexWriter.addDocument(createAnnotationDocument(pending));
+            }
+
+            // now we have indexed all annotations, close the index writer
+            closeIndexWriter(annotationIndexWriter, getAnnotationIndex());
+            committed = true;
+        }
+        finally {
+            executor.shutdownNow();
+            if (!committed) {
+                annotationIndexWriter.rollback();
             }
-            for (URI target : annotation.getSemanticTags()) {
-                // allow for null semantic tags -
-                // "null" is a positive assertion of NO mapping, but shouldn't be indexed (not searchable)
-                if (target != null) {
-                    doc.add(new Field("target",
-                            target.toString(),
-                            Field.Store.YES,
-                            Field.Index.NOT_ANALYZED));
+        }
+
+        getBuildStatistics().recordPhase("annotations", scores.size(), System.currentTimeMillis() - startTime);
+        getLog().info("Annotation lucene indexing complete! Indexed " + scores.size() + " annotations");
+        return scores;
+    }
+
+    private Callable<Void> createIndexingTask(final List<Annotation> annotations,
+                                              final AnnotationProvenanceScores scores,
+                                              final IndexWriter indexWriter) {
+        return new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                for (Annotation annotation : annotations) {
+                    recordAnnotation(annotation, scores);
+                    indexWriter.addDocument(createAnnotationDocument(annotation));
                 }
+                return null;
             }
+        };
+    }
 
-            provenanceMap.put(annotation.getURI(), annotation.getProvenance());
-            doc.add(new Field("quality",
-                    Float.toString(scoreAnnotationQuality(annotation.getProvenance())),
-                    Field.Store.YES,
-                    Field.Index.ANALYZED));
+    private ExecutorService createIndexingExecutor() {
+        // bounded queue, so that the thread reading annotations indexes them too if indexing falls behind
+        int threads = Math.max(1, getIndexingThreadCount());
+        return new ThreadPoolExecutor(threads,
+                                      threads,
+                                      0L,
+                                      TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<Runnable>(threads * 2),
+                                      createThreadFactory("zooma-indexer-"),
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
+    }
 
+    private ThreadFactory createThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(1);
 
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, namePrefix + threadCount.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
 
+    private void awaitCompletion(List<Future<Void>> tasks) throws IOException {
+        for (Future<Void> task : tasks) {
+            try {
+                task.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted whilst waiting for annotations to be indexed");
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                else {
+                    throw new IOException("Failed to index annotations", e.getCause());
+                }
+            }
+        }
+    }
 
-            // we want to keep a map of property uris to sources for the property index
-            if (!propertyUriToSourcesMap.containsKey(property.getURI())) {
-                propertyUriToSourcesMap.put(property.getURI(), new HashSet<URI>());
+    /**
+     * Combines two partial copies of the same annotation, read as separate rows, into a single annotation with the
+     * biological entities and semantic tags of both
+     */
+    private Annotation mergeAnnotations(Annotation first, Annotation second) {
+        Set<BiologicalEntity> biologicalEntities = new HashSet<>(first.getAnnotatedBiologicalEntities());
+        biologicalEntities.addAll(second.getAnnotatedBiologicalEntities());
+        Set<URI> semanticTags = new HashSet<>(first.getSemanticTags());
+        semanticTags.addAll(second.getSemanticTags());
+        return new SimpleAnnotation(first.getURI(),
+                                    biologicalEntities,
+                                    first.getAnnotatedProperty(),
+                                    first.getProvenance(),
+                                    semanticTags.toArray(new URI[semanticTags.size()]),
+                                    first.getReplacedBy().toArray(new URI[first.getReplacedBy().size()]),
+                                    first.getReplaces().toArray(new URI[first.getReplaces().size()]));
+    }
+
+    private void recordAnnotation(Annotation annotation, AnnotationProvenanceScores scores) {
+        recordAnnotationSources(annotation);
+        scores.put(annotation.getURI(),
+                   scoreAnnotationQuality(annotation.getProvenance()),
+                   annotation.getProvenance().getSource().getURI());
+    }
+
+    /**
+     * Records the source of the given annotation against its property and property type, for the property indices
+     */
+    private void recordAnnotationSources(Annotation annotation) {
+        Property property = annotation.getAnnotatedProperty();
+        URI sourceUri = annotation.getProvenance().getSource().getURI();
+
+        if (property instanceof TypedProperty) {
+            // keep a map of types to sources
+            addSource(propertyTypeToSourcesMap, ((TypedProperty) property).getPropertyType(), sourceUri);
+        }
+
+        // we want to keep a map of property uris to sources for the property index
+        if (property.getURI() != null) {
+            addSource(propertyUriToSourcesMap, property.getURI(), sourceUri);
+        }
+    }
+
+    private <K> void addSource(ConcurrentMap<K, Collection<URI>> sourcesMap, K key, URI sourceUri) {
+        Collection<URI> sources = sourcesMap.get(key);
+        if (sources == null) {
+            Collection<URI> newSources = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+            sources = sourcesMap.putIfAbsent(key, newSources);
+            if (sources == null) {
+                sources = newSources;
             }
-            propertyUriToSourcesMap.get(property.getURI()).add(annotation.getProvenance().getSource().getURI());
-            // add this document to the index
-            indexWriter.addDocument(doc);
         }
+        sources.add(sourceUri);
+    }
+
+    /**
+     * Creates the document that indexes an annotation.  As well as the searchable annotation fields, the document
+     * records the keys of the summary, property and property type documents derived from this annotation so that they
+     * can be located by incremental updates.
+     *
+     * @param annotation the annotation to index
+     * @return the annotation document
+     */
+    protected Document createAnnotationDocument(Annotation annotation) {
+        Property property = annotation.getAnnotatedProperty();
+        String propertyType = null;
+
+        // build the document to index text data and store URIs
+        Document doc = new Document();
+        doc.add(new Field("uri",
+                annotation.getURI().toString(),
+                Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        doc.add(new Field("property",
+                property.getPropertyValue(),
+                Field.Store.YES,
+                Field.Index.ANALYZED));
+        if (property.getURI() != null) {
+            doc.add(new Field("propertyuri",
+                    property.getURI().toString(),
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+        }
+        if (property instanceof TypedProperty) {
+            propertyType = ((TypedProperty) property).getPropertyType();
+            doc.add(new Field("propertytype",
+                    propertyType,
+                    Field.Store.YES,
+                    Field.Index.ANALYZED));
+            doc.add(new Field("propertytypeid",
+                    propertyType,
+                    Field.Store.NO,
+                    Field.Index.NOT_ANALYZED));
+        }
+        if (annotation.getProvenance() != null && annotation.getProvenance().getSource() != null) {
+            doc.add(new Field("source",
+                    annotation.getProvenance().getSource().getURI().toString(),
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+        }
+        for (URI target : annotation.getSemanticTags()) {
+            // allow for null semantic tags -
+            // "null" is a positive assertion of NO mapping, but shouldn't be indexed (not searchable)
+            if (target != null) {
+                doc.add(new Field("target",
+                        target.toString(),
+                        Field.Store.YES,
+                        Field.Index.NOT_ANALYZED));
+            }
+        }
+
+        String summaryId = generateSummaryID(propertyType, property.getPropertyValue(), annotation.getSemanticTags());
+        if (summaryId != null) {
+            doc.add(new Field("summaryid",
+                    summaryId,
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+        }
+
+        doc.add(new Field("quality",
+                Float.toString(scoreAnnotationQuality(annotation.getProvenance())),
+                Field.Store.YES,
+                Field.Index.ANALYZED));
+        return doc;
     }
 
     public void clearAnnotationIndex() {
@@ -347,157 +815,585 @@ public class ZoomaLuceneIndexer extends Initializable {
 
     public void createAnnotationSummaryIndex(AnnotationSummaryDAO summaryDao,
                                              Map<URI, AnnotationProvenance> provenanceMap) throws IOException {
+        AnnotationProvenanceScores scores = new AnnotationProvenanceScores(provenanceMap.size());
+        for (Map.Entry<URI, AnnotationProvenance> entry : provenanceMap.entrySet()) {
+            scores.put(entry.getKey(),
+                       scoreAnnotationQuality(entry.getValue()),
+                       entry.getValue().getSource().getURI());
+        }
+        createAnnotationSummaryIndex(summaryDao, scores);
+    }
+
+    /**
+     * Creates the annotation summary index from the summaries in the given DAO.  If the DAO is a {@link StreamingDAO},
+     * summaries are read through a cursor and indexed one at a time, so they are never all held in memory; otherwise
+     * every summary is read with {@link AnnotationSummaryDAO#read()} before indexing.
+     *
+     * @param summaryDao the DAO to read annotation summaries from
+     * @param scores     the quality scores and sources of all indexed annotations
+     * @throws IOException if the annotation summary index could not be written
+     */
+    public void createAnnotationSummaryIndex(AnnotationSummaryDAO summaryDao,
+                                             AnnotationProvenanceScores scores) throws IOException {
 
         getLog().info("Creating annotation summary lucene index...");
+        long startTime = System.currentTimeMillis();
+        int summaryCount = 0;
 
         IndexWriter summaryIndexWriter = obtainIndexWriter(getAnnotationSummaryIndex());
 
-        final String UNTYPED = "##zooma.untyped.property.key##";
+        if (summaryDao instanceof StreamingDAO) {
+            getLog().debug("Streaming summaries to index from " + summaryDao.getDatasourceName());
+            try (ZoomaCursor<AnnotationSummary> cursor = ((StreamingDAO<AnnotationSummary>) summaryDao).openCursor()) {
+                while (cursor.hasNext()) {
+                    if (indexAnnotationSummary(cursor.next(), scores, summaryIndexWriter)) {
+                        summaryCount++;
+                    }
+                }
+            }
+        }
+        else {
+            Collection<AnnotationSummary> summaries = summaryDao.read();
+            getLog().debug("Number of summaries to index: " + summaries.size());
+            for (AnnotationSummary summary : summaries) {
+                if (indexAnnotationSummary(summary, scores, summaryIndexWriter)) {
+                    summaryCount++;
+                }
+            }
+        }
+        closeIndexWriter(summaryIndexWriter, getAnnotationSummaryIndex());
+        releaseGeneratedIDs();
+        getBuildStatistics().recordPhase("annotation summaries", summaryCount, System.currentTimeMillis() - startTime);
+        getLog().info("Annotation summary lucene indexing complete!");
+    }
 
-        Collection<AnnotationSummary> summaries = summaryDao.read();
-        getLog().debug("Number of summaries to index: " + summaries.size());
+    private boolean indexAnnotationSummary(AnnotationSummary summary,
+                                           AnnotationProvenanceScores scores,
+                                           IndexWriter summaryIndexWriter) throws IOException {
+        // get property
+        String propertyType = summary.getAnnotatedPropertyType();
+        String propertyValue = summary.getAnnotatedPropertyValue();
+        // get semantic tags
+        URI propertyUri = summary.getAnnotatedPropertyUri();
+        Collection<URI> semanticTags = summary.getSemanticTags();
+        Collection<URI> annotations = summary.getAnnotationURIs();
+
+        // generate summary id
+        String summaryId = generateSummaryID(propertyType, propertyValue, semanticTags);
+        if (summaryId == null) {
+            return false;
+        }
 
-        Map<String, Float> summaryIdToMaxScore = new HashMap<>();
-        Map<String, Set<URI>> summaryIdToSourcesMap = new HashMap<>();
+        getLog().trace("Found new unique combination - " +
+                "property value '" + propertyValue + "', type '" + propertyType + "' " +
+                "maps to " + semanticTags + " (" + summaryId + ")");
+        Set<URI> sources = new HashSet<>();
 
-        for (AnnotationSummary summary : summaries) {
+        // the summary scores as well as its best scoring annotation
+        Float topScore = null;
+        for (URI annoUri : annotations) {
+            if (!scores.contains(annoUri)) {
+                getLog().warn("No provenance for annotation " + annoUri.toString());
+            }
+            else {
+                float annotationScore = scores.getScore(annoUri);
+                if (topScore == null || annotationScore > topScore) {
+                    topScore = annotationScore;
+                }
+                sources.add(scores.getSource(annoUri));
+            }
+        }
 
-            String summaryId = null;
-            // get property
-            String propertyType =
-                    summary.getAnnotatedPropertyType() != null ? summary.getAnnotatedPropertyType() : UNTYPED;
-            String propertyValue = summary.getAnnotatedPropertyValue();
-            // get semantic tags
-            URI propertyUri = summary.getAnnotatedPropertyUri();
-            Collection<URI> semanticTags = summary.getSemanticTags();
-            Collection<URI> annotations = summary.getAnnotationURIs();
+        // add one document to index each summary combination
+        summaryIndexWriter.addDocument(createAnnotationSummaryDocument(summaryId,
+                                                                       propertyUri,
+                                                                       propertyType,
+                                                                       propertyValue,
+                                                                       semanticTags,
+                                                                       annotations,
+                                                                       topScore,
+                                                                       sources));
+
+        // this summary is complete, so its ID no longer needs checking for collisions
+        idKeyContentMap.remove(summaryId);
+        return true;
+    }
 
-            // generate summary id
-            List<String> idContent = new ArrayList<>();
-            for (URI uri : semanticTags) {
-                if (uri != null) {
-                    // append URI to ID
-                    idContent.add(uri.toString());
-                }
+    /**
+     * Creates the document that indexes an annotation summary - a unique combination of property and semantic tags -
+     * along with the values used to score it.  The URIs of the summarized annotations are not stored, but written to a
+     * binary doc value in the compact form read by {@link CompactURISet}.
+     *
+     * @param summaryId     the ID of this summary, see {@link #generateSummaryID(String, String, Collection)}
+     * @param propertyUri   the URI of the summarized property, or null if the annotations do not record it
+     * @param propertyType  the type of the summarized property, or null if it is untyped
+     * @param propertyValue the value of the summarized property
+     * @param semanticTags  the semantic tags this property is mapped to
+     * @param annotations   the URIs of the annotations that make up this summary
+     * @param topScore      the best quality score of any of these annotations
+     * @param sources       the sources of these annotations
+     * @return the annotation summary document
+     */
+    protected Document createAnnotationSummaryDocument(String summaryId,
+                                                       URI propertyUri,
+                                                       String propertyType,
+                                                       String propertyValue,
+                                                       Collection<URI> semanticTags,
+                                                       Collection<URI> annotations,
+                                                       float topScore,
+                                                       Set<URI> sources) {
+        // build one document to index each summary combination
+        Document doc = new Document();
+        doc.add(new Field("id",
+                summaryId,
+                Field.Store.YES,
+                Field.Index.NOT_ANALYZED));
+        if (propertyUri != null) {
+            doc.add(new Field("propertyuri",
+                    propertyUri.toString(),
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+        }
+        doc.add(new Field("property",
+                propertyValue,
+                Field.Store.YES,
+                Field.Index.ANALYZED));
+        if (propertyType != null) {
+            doc.add(new Field("propertytype",
+                    propertyType,
+                    Field.Store.YES,
+                    Field.Index.ANALYZED));
+        }
+        // add field for each semantic tag
+        for (URI uri : semanticTags) {
+            if (uri != null) {
+                // add a field for this URI
+                getLog().trace("Next summary semantic tag: " + uri);
+                doc.add(new Field("semanticTag",
+                        uri.toString(),
+                        Field.Store.YES,
+                        Field.Index.ANALYZED));
             }
+        }
+        // add annotation URIs in compact form, as doc values so they are only read for summaries that are returned
+        getLog().trace("Summary annotations: " + annotations);
+        doc.add(new BinaryDocValuesField("annotations", new BytesRef(CompactURISet.encode(annotations))));
+        // add a field for the frequency of use of this pattern - scoring inputs are never searched, so they are only
+        // stored, and added as doc values so summaries can be scored without loading stored fields
+        getLog().trace("Summary frequency: " + annotations.size());
+        doc.add(new StoredField("frequency", Integer.toString(annotations.size())));
+        doc.add(new NumericDocValuesField("frequency", annotations.size()));
+        getLog().trace("Best score: " + topScore);
+        doc.add(new StoredField("topScore", Float.toString(topScore)));
+        doc.add(new FloatDocValuesField("topScore", topScore));
+        for (URI source : sources) {
+            getLog().trace("Next source: " + source.toString());
+            doc.add(new Field("source",
+                    source.toString(),
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED));
+            doc.add(new SortedSetDocValuesField("source", new BytesRef(source.toString())));
+        }
 
-            if (idContent.size() > 0) {
-                // add property type and value to id content
-                idContent.add(0, propertyValue);
-                idContent.add(0, propertyType);
+        getLog().trace("Number of times verified: " + sources.size());
+        doc.add(new StoredField("timesVerified", Integer.toString(sources.size())));
+        doc.add(new NumericDocValuesField("timesVerified", sources.size()));
+
+        getLog().trace("Annotation Summary index entry:\n\t" +
+                "ID: " + summaryId + ",\n\t" +
+                "Property: " + propertyValue + ",\n\t" +
+                "Property Type: " + propertyType + ",\n\t" +
+                "Semantic Tags: " + semanticTags.toString() + ",\n\t" +
+                "Summary Frequency: " + annotations.size() + ",\n\t" +
+                "Best score: " + topScore + ",\n\t" +
+                "Times verified: " + sources.size());
+        return doc;
+    }
 
-                summaryId = generateEncodedID(idContent.toArray(new String[idContent.size()]));
-                getLog().trace("Found new unique combination - " +
-                        "property value '" + propertyValue + "', type '" + propertyType + "' " +
-                        "maps to " + semanticTags + " (" + summaryId + ")");
+    public void clearAnnotationSummaryIndex() {
 
+    }
+
+    /**
+     * Tests whether the current indices can be updated incrementally.  This requires an existing annotation index that
+     * was built by a version of ZOOMA that records the keys of derived documents on each annotation document, and that
+     * generates summary IDs with the current {@link #SUMMARY_ID_SCHEME}, so that summaries rebuilt by an update replace
+     * the existing ones.  Older indices must be rebuilt from scratch once before they can be updated.
+     *
+     * @return true if the indices can be updated incrementally, false if a full rebuild is required
+     * @throws IOException if the annotation index could not be read
+     */
+    public boolean supportsIncrementalUpdates() throws IOException {
+        if (!DirectoryReader.indexExists(getAnnotationIndex())) {
+            return false;
+        }
+        try (DirectoryReader reader = DirectoryReader.open(getAnnotationIndex())) {
+            if (reader.numDocs() == 0) {
+                return true;
             }
+            String idScheme = reader.getIndexCommit().getUserData().get(SUMMARY_ID_SCHEME_KEY);
+            if (!SUMMARY_ID_SCHEME.equals(idScheme)) {
+                getLog().info("Lucene indices use annotation summary ID scheme " +
+                                      (idScheme != null ? idScheme : "1") + ", not " + SUMMARY_ID_SCHEME);
+                return false;
+            }
+            return MultiFields.getMergedFieldInfos(reader).fieldInfo("propertyuri") != null;
+        }
+    }
 
-            if (summaryId != null) {
-                summaryIdToSourcesMap.put(summaryId, new HashSet<URI>());
+    /**
+     * Incrementally updates all indices for the annotations with the given URIs, without rebuilding them.  Each
+     * annotation is read again from the annotation DAO: annotations that still exist are re-indexed, and annotations
+     * that no longer exist are removed from the indices.  Only the summaries, properties and property types derived
+     * from these annotations are recalculated.
+     *
+     * @param annotationURIs the URIs of the annotations that have been created, updated or deleted
+     * @throws IOException if the indices could not be updated
+     */
+    public void updateAnnotationIndices(Collection<URI> annotationURIs) throws IOException {
+        getLog().info("Querying underlying datasources for " + annotationURIs.size() + " annotations to update...");
+        Collection<Annotation> annotations = new ArrayList<>();
+        Collection<URI> deletedAnnotationURIs = new ArrayList<>();
+        for (URI annotationURI : annotationURIs) {
+            Annotation annotation = getAnnotationDAO().read(annotationURI);
+            if (annotation != null) {
+                annotations.add(annotation);
+            }
+            else {
+                deletedAnnotationURIs.add(annotationURI);
+            }
+        }
+        updateIndices(null, annotations, deletedAnnotationURIs);
+    }
 
-                // check annotation score against current max - if no current max, or if greater, replace
-                for (URI annoUri : annotations) {
-                    if (!provenanceMap.containsKey(annoUri)) {
-                        getLog().warn("No provenance for annotation " + annoUri.toString());
+    /**
+     * Incrementally updates all indices for a single datasource, without rebuilding them.  All annotations from the
+     * source with the given URI are replaced by those currently available from the annotation DAO, and the summaries,
+     * properties and property types derived from the old and new annotations are recalculated.
+     *
+     * @param sourceURI the URI of the annotation source that has changed
+     * @throws IOException if the indices could not be updated
+     */
+    public void updateDatasourceIndices(URI sourceURI) throws IOException {
+        getLog().info("Querying underlying datasources for annotations from <" + sourceURI + "> to update...");
+        updateDatasourceIndices(sourceURI, getAnnotationDAO().readBySource(sourceURI));
+    }
+
+    /**
+     * Incrementally updates all indices for a single datasource, replacing all annotations from the source with the
+     * given URI with the supplied annotations.  Supplying an empty collection removes the source from the indices.
+     *
+     * @param sourceURI   the URI of the annotation source that has changed
+     * @param annotations the complete set of annotations now available from this source
+     * @throws IOException if the indices could not be updated
+     */
+    public void updateDatasourceIndices(URI sourceURI, Collection<Annotation> annotations) throws IOException {
+        updateIndices(sourceURI, annotations, Collections.<URI>emptySet());
+    }
+
+    /**
+     * Applies an incremental update to all indices.  Annotation documents are deleted or replaced by URI first,
+     * collecting the keys of the summary, property and property type documents derived from both the old and the new
+     * versions of each annotation.  Once the annotation index is committed, only these derived documents are rebuilt
+     * from the annotation index.
+     *
+     * @param replacedSourceURI     the URI of a source for which all existing annotations should be removed, or null
+     * @param annotations           the annotations to add or replace
+     * @param deletedAnnotationURIs the URIs of annotations to remove
+     * @throws IOException if the indices could not be updated
+     */
+    protected void updateIndices(URI replacedSourceURI,
+                                 Collection<Annotation> annotations,
+                                 Collection<URI> deletedAnnotationURIs) throws IOException {
+        synchronized (updateLock) {
+            if (hasInitStarted() && !isReady()) {
+                throw new IllegalStateException("Lucene indices are currently being rebuilt, " +
+                                                        "incremental updates are not possible until this completes");
+            }
+            if (!supportsIncrementalUpdates()) {
+                throw new IllegalStateException("Lucene indices were built by an earlier version of ZOOMA, " +
+                                                        "a full rebuild is required before they can be updated");
+            }
+
+            getLog().info("Updating lucene indices for " + annotations.size() + " annotations " +
+                                  "(" + deletedAnnotationURIs.size() + " deleted" +
+                                  (replacedSourceURI != null ? ", replacing source <" + replacedSourceURI + ">" : "") +
+                                  ")...");
+
+            // keys of documents derived from the changed annotations, before and after this update
+            Set<String> summaryIds = new HashSet<>();
+            Set<URI> propertyUris = new HashSet<>();
+            Set<String> propertyTypes = new HashSet<>();
+            Set<URI> sources = new HashSet<>();
+            if (replacedSourceURI != null) {
+                sources.add(replacedSourceURI);
+            }
+
+            IndexWriter annotationIndexWriter =
+                    obtainIndexWriter(getAnnotationIndex(), IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            boolean committed = false;
+            try (IndexReader reader = DirectoryReader.open(getAnnotationIndex())) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                if (replacedSourceURI != null) {
+                    Query query = new TermQuery(new Term("source", replacedSourceURI.toString()));
+                    collectDerivedKeys(searcher, query, summaryIds, propertyUris, propertyTypes);
+                    annotationIndexWriter.deleteDocuments(query);
+                }
+                for (URI annotationURI : deletedAnnotationURIs) {
+                    Query query = new TermQuery(new Term("uri", annotationURI.toString()));
+                    collectDerivedKeys(searcher, query, summaryIds, propertyUris, propertyTypes);
+                    annotationIndexWriter.deleteDocuments(query);
+                }
+                for (Annotation annotation : annotations) {
+                    Term uriTerm = new Term("uri", annotation.getURI().toString());
+                    collectDerivedKeys(searcher, new TermQuery(uriTerm), summaryIds, propertyUris, propertyTypes);
+                    Document doc = createAnnotationDocument(annotation);
+                    collectDerivedKeys(doc, summaryIds, propertyUris, propertyTypes);
+                    if (doc.get("source") != null) {
+                        sources.add(URI.create(doc.get("source")));
                     }
-                    else {
-                        AnnotationProvenance prov = provenanceMap.get(annoUri);
-                        float annotationScore = scoreAnnotationQuality(prov);
-                        if (!summaryIdToMaxScore.containsKey(summaryId) ||
-                                (annotationScore > summaryIdToMaxScore.get(summaryId))) {
-                            summaryIdToMaxScore.put(summaryId, scoreAnnotationQuality(prov));
+                    annotationIndexWriter.updateDocument(uriTerm, doc);
+                }
+                closeIndexWriter(annotationIndexWriter, getAnnotationIndex());
+                committed = true;
+            }
+            finally {
+                if (!committed) {
+                    annotationIndexWriter.rollback();
+                }
+            }
+
+            // now rebuild the affected documents from the updated annotation index
+            try (IndexReader reader = DirectoryReader.open(getAnnotationIndex())) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                updateAnnotationSummaryIndex(searcher, summaryIds);
+                updatePropertyIndices(searcher, propertyUris, propertyTypes, sources);
+                createAnnotationCountIndex(reader.numDocs());
+            }
+            releaseGeneratedIDs();
+            getLog().info("Lucene index update complete! " +
+                                  "Updated " + summaryIds.size() + " summaries, " + propertyUris.size() + " properties " +
+                                  "and " + propertyTypes.size() + " property types");
+        }
+    }
+
+    /**
+     * Rebuilds the annotation summary documents with the given IDs from the annotations now in the annotation index,
+     * removing any summaries that no longer have annotations
+     *
+     * @param annotationSearcher a searcher over the updated annotation index
+     * @param summaryIds         the IDs of the summaries to rebuild
+     * @throws IOException if the annotation summary index could not be updated
+     */
+    protected void updateAnnotationSummaryIndex(IndexSearcher annotationSearcher, Collection<String> summaryIds)
+            throws IOException {
+        IndexWriter summaryIndexWriter =
+                obtainIndexWriter(getAnnotationSummaryIndex(), IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        boolean committed = false;
+        try {
+            for (String summaryId : summaryIds) {
+                Term idTerm = new Term("id", summaryId);
+                ScoreDoc[] hits = findAll(annotationSearcher, new TermQuery(new Term("summaryid", summaryId)));
+
+                URI propertyUri = null;
+                String propertyType = null;
+                String propertyValue = null;
+                Collection<URI> semanticTags = new ArrayList<>();
+                Collection<URI> annotations = new ArrayList<>();
+                float topScore = Float.NEGATIVE_INFINITY;
+                Set<URI> sources = new HashSet<>();
+                for (ScoreDoc hit : hits) {
+                    Document doc = annotationSearcher.doc(hit.doc);
+                    if (annotations.isEmpty()) {
+                        // all annotations in a summary share the same property and semantic tags
+                        propertyUri = doc.get("propertyuri") != null ? URI.create(doc.get("propertyuri")) : null;
+                        propertyType = doc.get("propertytype");
+                        propertyValue = doc.get("property");
+                        for (String target : doc.getValues("target")) {
+                            semanticTags.add(URI.create(target));
                         }
-                        summaryIdToSourcesMap.get(summaryId).add(prov.getSource().getURI());
+                    }
+                    annotations.add(URI.create(doc.get("uri")));
+                    topScore = Math.max(topScore, Float.parseFloat(doc.get("quality")));
+                    if (doc.get("source") != null) {
+                        sources.add(URI.create(doc.get("source")));
                     }
                 }
 
-                // build one document to index each summary combination
-                Document doc = new Document();
-                doc.add(new Field("id",
-                        summaryId,
-                        Field.Store.YES,
-                        Field.Index.NOT_ANALYZED));
-                doc.add(new Field("propertyuri",
-                        propertyUri.toString(),
-                        Field.Store.YES,
-                        Field.Index.NOT_ANALYZED));
-                doc.add(new Field("property",
-                        propertyValue,
-                        Field.Store.YES,
-                        Field.Index.ANALYZED));
-                if (!propertyType.equals(UNTYPED)) {
-                    doc.add(new Field("propertytype",
-                            propertyType,
-                            Field.Store.YES,
-                            Field.Index.ANALYZED));
-                }
-                // add field for each semantic tag
-                for (URI uri : semanticTags) {
-                    if (uri != null) {
-                        // add a field for this URI
-                        getLog().trace("Next summary semantic tag: " + uri);
-                        doc.add(new Field("semanticTag",
-                                uri.toString(),
-                                Field.Store.YES,
-                                Field.Index.ANALYZED));
-                    }
+                if (annotations.isEmpty()) {
+                    // no annotations left for this summary
+                    getLog().trace("Removing annotation summary " + summaryId);
+                    summaryIndexWriter.deleteDocuments(idTerm);
                 }
-                // add field for each annotation
-                for (URI annotationUri : annotations) {
-                    // add a field for this URI
-                    getLog().trace("Next summary annotation: " + annotationUri.toString());
-                    doc.add(new Field("annotation",
-                            annotationUri.toString(),
-                            Field.Store.YES,
-                            Field.Index.ANALYZED));
+                else {
+                    getLog().trace("Updating annotation summary " + summaryId);
+                    summaryIndexWriter.updateDocument(idTerm, createAnnotationSummaryDocument(summaryId,
+                                                                                              propertyUri,
+                                                                                              propertyType,
+                                                                                              propertyValue,
+                                                                                              semanticTags,
+                                                                                              annotations,
+                                                                                              topScore,
+                                                                                              sources));
                 }
-                // add a field for the frequency of use of this pattern
-                getLog().trace("Summary frequency: " + annotations.size());
-                doc.add(new Field("frequency",
-                        Integer.toString(annotations.size()),
-                        Field.Store.YES,
-                        Field.Index.ANALYZED));
-                getLog().trace("Best score: " + summaryIdToMaxScore.get(summaryId));
-                doc.add(new Field("topScore",
-                        Float.toString(summaryIdToMaxScore.get(summaryId)),
-                        Field.Store.YES,
-                        Field.Index.ANALYZED));
-                for (URI source : summaryIdToSourcesMap.get(summaryId)) {
-                    getLog().trace("Next source: " + source.toString());
-                    doc.add(new Field("source",
-                            source.toString(),
-                            Field.Store.YES,
-                            Field.Index.NOT_ANALYZED));
+            }
+            closeIndexWriter(summaryIndexWriter, getAnnotationSummaryIndex());
+            committed = true;
+        }
+        finally {
+            if (!committed) {
+                summaryIndexWriter.rollback();
+            }
+        }
+    }
 
+    /**
+     * Rebuilds the property and property type documents for the given keys from the annotations now in the annotation
+     * index, removing any properties or types that are no longer used
+     *
+     * @param annotationSearcher a searcher over the updated annotation index
+     * @param propertyUris       the URIs of the properties to rebuild
+     * @param propertyTypes      the property types to rebuild
+     * @param changedSources     the sources of any annotations that were added or replaced
+     * @throws IOException if the property indices could not be updated
+     */
+    protected void updatePropertyIndices(IndexSearcher annotationSearcher,
+                                         Collection<URI> propertyUris,
+                                         Collection<String> propertyTypes,
+                                         Collection<URI> changedSources) throws IOException {
+        IndexWriter propertyIndexWriter =
+                obtainIndexWriter(getPropertyIndex(), IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        boolean committed = false;
+        try (IndexReader propertyReader = DirectoryReader.open(getPropertyIndex())) {
+            IndexSearcher propertySearcher = new IndexSearcher(propertyReader);
+            for (URI propertyUri : propertyUris) {
+                Term uriTerm = new Term("uri", propertyUri.toString());
+                Term annotationTerm = new Term("propertyuri", propertyUri.toString());
+                ScoreDoc[] hits = annotationSearcher.search(new TermQuery(annotationTerm), 1).scoreDocs;
+                if (hits.length == 0) {
+                    // property no longer used by any annotation
+                    propertyIndexWriter.deleteDocuments(uriTerm);
+                    propertyUriToSourcesMap.remove(propertyUri);
+                }
+                else {
+                    Document annotationDoc = annotationSearcher.doc(hits[0].doc);
+                    Property property = annotationDoc.get("propertytype") != null
+                            ? new SimpleTypedProperty(propertyUri,
+                                                      annotationDoc.get("propertytype"),
+                                                      annotationDoc.get("property"))
+                            : new SimpleUntypedProperty(propertyUri, annotationDoc.get("property"));
+                    Set<URI> sources = findSources(annotationSearcher,
+                                                   annotationTerm,
+                                                   propertySearcher,
+                                                   uriTerm,
+                                                   changedSources);
+                    propertyUriToSourcesMap.put(propertyUri, sources);
+                    propertyIndexWriter.updateDocument(uriTerm,
+                                                       createPropertyDocument(property,
+                                                                              sources,
+                                                                              countAnnotations(annotationSearcher,
+                                                                                               propertyUri)));
                 }
+            }
+            closeIndexWriter(propertyIndexWriter, getPropertyIndex());
+            committed = true;
+        }
+        finally {
+            if (!committed) {
+                propertyIndexWriter.rollback();
+            }
+        }
 
-                getLog().trace("Number of times verified: " + summaryIdToSourcesMap.get(summaryId).size());
-                doc.add(new Field("timesVerified",
-                        Integer.toString(summaryIdToSourcesMap.get(summaryId).size()),
-                        Field.Store.YES,
-                        Field.Index.ANALYZED));
+        IndexWriter propertyTypeIndexWriter =
+                obtainIndexWriter(getPropertyTypeIndex(), IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        committed = false;
+        try (IndexReader propertyTypeReader = DirectoryReader.open(getPropertyTypeIndex())) {
+            IndexSearcher propertyTypeSearcher = new IndexSearcher(propertyTypeReader);
+            for (String propertyType : propertyTypes) {
+                Term idTerm = new Term("id", propertyType);
+                Set<URI> sources = findSources(annotationSearcher,
+                                               new Term("propertytypeid", propertyType),
+                                               propertyTypeSearcher,
+                                               idTerm,
+                                               changedSources);
+                if (sources.isEmpty()) {
+                    // property type no longer used by any annotation
+                    propertyTypeIndexWriter.deleteDocuments(idTerm);
+                    propertyTypeToSourcesMap.remove(propertyType);
+                }
+                else {
+                    propertyTypeToSourcesMap.put(propertyType, sources);
+                    propertyTypeIndexWriter.updateDocument(idTerm, createPropertyTypeDocument(propertyType, sources));
+                }
+            }
+            closeIndexWriter(propertyTypeIndexWriter, getPropertyTypeIndex());
+            committed = true;
+        }
+        finally {
+            if (!committed) {
+                propertyTypeIndexWriter.rollback();
+            }
+        }
+    }
 
-                getLog().trace("Annotation Summary index entry:\n\t" +
-                        "ID: " + summaryId + ",\n\t" +
-                        "Property: " + propertyValue + ",\n\t" +
-                        "Property Type: " + propertyType + ",\n\t" +
-                        "Semantic Tags: " + semanticTags.toString() + ",\n\t" +
-                        "Summary Frequency: " + annotations.size() + ",\n\t" +
-                        "Best score: " + summaryIdToMaxScore.get(summaryId) + ",\n\t" +
-                        "Times verified: " + summaryIdToSourcesMap.get(summaryId).size());
+    /**
+     * Finds the sources of all annotations matching the given annotation index term.  Only sources already recorded on
+     * the existing property (or property type) document, or sources touched by the current update, can have changed, so
+     * each of these candidates is checked for at least one matching annotation rather than loading every annotation.
+     */
+    private Set<URI> findSources(IndexSearcher annotationSearcher,
+                                 Term annotationTerm,
+                                 IndexSearcher searcher,
+                                 Term documentTerm,
+                                 Collection<URI> changedSources) throws IOException {
+        Set<URI> candidates = new HashSet<>(changedSources);
+        for (ScoreDoc hit : findAll(searcher, new TermQuery(documentTerm))) {
+            for (String source : searcher.doc(hit.doc, Collections.singleton("source")).getValues("source")) {
+                candidates.add(URI.create(source));
+            }
+        }
 
-                // add this document to the index
-                summaryIndexWriter.addDocument(doc);
+        Set<URI> sources = new HashSet<>();
+        for (URI candidate : candidates) {
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            builder.add(new TermQuery(annotationTerm), BooleanClause.Occur.MUST);
+            builder.add(new TermQuery(new Term("source", candidate.toString())), BooleanClause.Occur.MUST);
+            if (annotationSearcher.search(builder.build(), 1).totalHits > 0) {
+                sources.add(candidate);
             }
+        }
+        return sources;
+    }
 
+    private void collectDerivedKeys(IndexSearcher annotationSearcher,
+                                    Query query,
+                                    Set<String> summaryIds,
+                                    Set<URI> propertyUris,
+                                    Set<String> propertyTypes) throws IOException {
+        for (ScoreDoc hit : findAll(annotationSearcher, query)) {
+            collectDerivedKeys(annotationSearcher.doc(hit.doc), summaryIds, propertyUris, propertyTypes);
         }
-        getLog().info("Annotation summary lucene indexing complete!");
-        summaryIndexWriter.close();
     }
 
-    public void clearAnnotationSummaryIndex() {
+    private void collectDerivedKeys(Document annotationDoc,
+                                    Set<String> summaryIds,
+                                    Set<URI> propertyUris,
+                                    Set<String> propertyTypes) {
+        if (annotationDoc.get("summaryid") != null) {
+            summaryIds.add(annotationDoc.get("summaryid"));
+        }
+        if (annotationDoc.get("propertyuri") != null) {
+            propertyUris.add(URI.create(annotationDoc.get("propertyuri")));
+        }
+        if (annotationDoc.get("propertytype") != null) {
+            propertyTypes.add(annotationDoc.get("propertytype"));
+        }
+    }
 
+    private ScoreDoc[] findAll(IndexSearcher searcher, Query query) throws IOException {
+        TotalHitCountCollector counter = new TotalHitCountCollector();
+        searcher.search(query, counter);
+        return searcher.search(query, Math.max(1, counter.getTotalHits())).scoreDocs;
     }
 
     @Override
@@ -508,24 +1404,63 @@ public class ZoomaLuceneIndexer extends Initializable {
         clearAnnotationIndex();
         clearAnnotationCountIndex();
         clearPropertyIndices();
+        getBuildStatistics().clear();
+        long startTime = System.currentTimeMillis();
+
         getLog().info("Querying underlying datasources for annotations to index...");
-        Collection<Annotation> annotations = getAnnotationDAO().read();
-        getLog().info("Total annotations:" + annotations.size());
+        final AnnotationProvenanceScores scores = createAnnotationIndex(getAnnotationDAO());
+        getLog().info("Total annotations:" + scores.size());
 
-        int count = getMaxEntityCount() == -1 ? annotations.size() : getMaxEntityCount();
+        final int count = getMaxEntityCount() == -1 ? scores.size() : getMaxEntityCount();
         getLog().info("Total annotation to index:" + count);
-        createAnnotationCountIndex(count);
-        Map<URI, AnnotationProvenance> provenanceMap = createAnnotationIndex(new ArrayList<>(annotations));
-        createAnnotationSummaryIndex(getAnnotationSummaryDAO(), provenanceMap);
 
-        getLog().info("Querying underlying datasources for properties to index...");
-        Collection<Property> properties = getMaxEntityCount() == -1
-                ? getPropertyDAO().read()
-                : getPropertyDAO().read(getMaxEntityCount(), 0);
-        getLog().info("Building lucene indices...");
-        createPropertyIndices(properties);
+        // the remaining indices only depend on the annotation index
+        List<Callable<Void>> phases = new ArrayList<>();
+        phases.add(new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                createAnnotationCountIndex(count);
+                return null;
+            }
+        });
+        phases.add(new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                createAnnotationSummaryIndex(getAnnotationSummaryDAO(), scores);
+                return null;
+            }
+        });
+        phases.add(new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                getLog().info("Querying underlying datasources for properties to index...");
+                Collection<Property> properties = getMaxEntityCount() == -1
+                        ? getPropertyDAO().read()
+                        : getPropertyDAO().read(getMaxEntityCount(), 0);
+                getLog().info("Building lucene indices...");
+                createPropertyIndices(properties);
+                return null;
+            }
+        });
+
+        if (isParallelBuild()) {
+            getLog().info("Building annotation summary, property and count indices concurrently...");
+            ExecutorService executor = Executors.newFixedThreadPool(phases.size(),
+                                                                    createThreadFactory("zooma-index-build-"));
+            try {
+                awaitCompletion(executor.invokeAll(phases));
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+        else {
+            for (Callable<Void> phase : phases) {
+                phase.call();
+            }
+        }
 
-        getLog().info("Lucene indexing complete!");
+        for (IndexBuildStatistics.Phase phase : getBuildStatistics().getPhases()) {
+            getLog().info("Indexed " + phase);
+        }
+        getLog().info("Lucene indexing complete in " + (System.currentTimeMillis() - startTime) / 1000 + "s!");
     }
 
     @Override
@@ -549,11 +1484,46 @@ public class ZoomaLuceneIndexer extends Initializable {
     }
 
     protected IndexWriter obtainIndexWriter(Directory directory) throws IOException {
+        return obtainIndexWriter(directory, IndexWriterConfig.OpenMode.CREATE);
+    }
+
+    protected IndexWriter obtainIndexWriter(Directory directory, IndexWriterConfig.OpenMode openMode)
+            throws IOException {
         IndexWriterConfig config = new IndexWriterConfig(getAnalyzer());
-        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        config.setOpenMode(openMode);
+        config.setRAMBufferSizeMB(getRamBufferSizeMB());
+        if (getMergePolicy() != null) {
+            config.setMergePolicy(getMergePolicy());
+        }
+        if (getCodecName() != null) {
+            config.setCodec(Codec.forName(getCodecName()));
+        }
         return new IndexWriter(directory, config);
     }
 
+    /**
+     * Commits and closes the supplied index writer, recording the commit time and the {@link #SUMMARY_ID_SCHEME} in
+     * the commit user data, and then notifies any registered {@link IndexCommitListener}s that the index has changed.
+     *
+     * @param indexWriter the writer to close
+     * @param directory   the directory this writer was writing to
+     * @throws IOException if the commit failed
+     */
+    protected void closeIndexWriter(IndexWriter indexWriter, Directory directory) throws IOException {
+        if (getMaxSegmentCount() > 0 && indexWriter.getConfig().getOpenMode() == IndexWriterConfig.OpenMode.CREATE) {
+            // newly built index, so merge down now rather than leaving it to searches to cope with many segments
+            indexWriter.forceMerge(getMaxSegmentCount());
+        }
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(ZoomaSearcherManager.COMMIT_TIMESTAMP_KEY, Long.toString(System.currentTimeMillis()));
+        commitData.put(SUMMARY_ID_SCHEME_KEY, SUMMARY_ID_SCHEME);
+        indexWriter.setCommitData(commitData);
+        indexWriter.close();
+        for (IndexCommitListener listener : getIndexCommitListeners()) {
+            listener.indexCommitted(directory);
+        }
+    }
+
     /**
      * Returns a float value that is the quality score for the given annotation.
      * <p/>
@@ -575,8 +1545,54 @@ public class ZoomaLuceneIndexer extends Initializable {
         return score;
     }
 
+    /**
+     * Generates the ID of the annotation summary for a property mapped to a set of semantic tags.  Tags are sorted
+     * first, so summaries built from annotation summary DAOs and from individual annotations always agree on the ID for
+     * the same combination.  This is version 2 of the ID scheme, recorded as {@link #SUMMARY_ID_SCHEME} in every index
+     * commit: summaries with a single semantic tag keep the IDs they had under version 1, but those with several tags
+     * do not, so indices without this marker must be rebuilt before they can be updated incrementally.
+     *
+     * @param propertyType  the property type, or null if the property is untyped
+     * @param propertyValue the property value
+     * @param semanticTags  the semantic tags the property is mapped to
+     * @return the summary ID, or null if there are no semantic tags (in which case there is no summary)
+     */
+    protected String generateSummaryID(String propertyType, String propertyValue, Collection<URI> semanticTags) {
+        List<String> idContent = new ArrayList<>();
+        for (URI uri : semanticTags) {
+            if (uri != null) {
+                // append URI to ID
+                idContent.add(uri.toString());
+            }
+        }
+
+        if (idContent.isEmpty()) {
+            return null;
+        }
+        else {
+            // add property type and value to id content
+            Collections.sort(idContent);
+            idContent.add(0, propertyValue);
+            idContent.add(0, propertyType != null ? propertyType : UNTYPED);
+            return generateEncodedID(idContent.toArray(new String[idContent.size()]));
+        }
+    }
+
+    // the contents of each ID generated during the current build, to detect collisions; IDs are released as the
+    // summaries they identify are indexed, and any that remain once the build is complete are released then
     private Map<String, String[]> idKeyContentMap = Collections.synchronizedMap(new HashMap<String, String[]>());
 
+    /**
+     * Releases the contents of all IDs generated so far, once the build or update that generated them is complete, so
+     * that memory used for collision checks does not grow with every build
+     */
+    private void releaseGeneratedIDs() {
+        if (!idKeyContentMap.isEmpty()) {
+            getLog().debug("Releasing " + idKeyContentMap.size() + " generated IDs with no annotation summary");
+            idKeyContentMap.clear();
+        }
+    }
+
     private String generateEncodedID(String... contents) {
         StringBuilder idContent = new StringBuilder();
         for (String s : contents) {
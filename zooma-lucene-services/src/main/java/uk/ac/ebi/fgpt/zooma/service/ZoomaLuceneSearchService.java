@@ -1,19 +1,14 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.en.EnglishAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.ExitableDirectoryReader;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.QueryTimeoutImpl;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
@@ -29,45 +24,69 @@ import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.search.spans.SpanTermQuery;
 import org.apache.lucene.store.Directory;
 import uk.ac.ebi.fgpt.zooma.Initializable;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
 import uk.ac.ebi.fgpt.zooma.datasource.ZoomaDAO;
 import uk.ac.ebi.fgpt.zooma.exception.QueryCreationException;
 import uk.ac.ebi.fgpt.zooma.exception.SearchResourcesUnavailableException;
-import uk.ac.ebi.fgpt.zooma.exception.SearchTimeoutException;
 import uk.ac.ebi.fgpt.zooma.model.Identifiable;
 import uk.ac.ebi.fgpt.zooma.util.SearchStringProcessor;
+import uk.ac.ebi.fgpt.zooma.util.ZoomaQueryAnalyzer;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An abstract implementation of a lucene search service for ZOOMA.  This class provides a convenience method for
  * performing lucene queries against any index that contains documents with a "uri" field, and resolving these documents
- * against a provided {@link ZoomaDAO}.  All results obtained from the index are returned by iterating over pages of
- * results and collecting the results into a list.
+ * against a provided {@link ZoomaDAO}.  Results are collected in a single pass over the index, keeping only the best
+ * scoring hits up to an optional limit, and only the stored documents of those hits are read.
  * <p/>
  * Implementations are free to concentrate on the business of generating the queries without worrying about performing
  * them and collecting results.  The one stipulation is that you should always call {@link #init()} on this class once
  * the index has been set in order to
+ * <p/>
+ * Queries share a single, reference counted searcher per index (see {@link ZoomaSearcherManager}) rather than opening
+ * the index for every query.  This searcher is refreshed when a {@link ZoomaLuceneIndexer} signals a commit to the
+ * index, and also periodically in the background (every <code>zooma.lucene.refresh.interval</code> seconds) to pick up
+ * indices rebuilt by other processes.  Whenever a refresh opens a new searcher, any registered {@link
+ * DataChangeListener}s are notified so that cached search results can be discarded.
+ * <p/>
+ * Search patterns are analysed by a {@link ZoomaQueryAnalyzer}, which should share the analyzer used to build the
+ * index, and which remembers the queries built for recently searched patterns.
  *
  * @author Tony Burdett
  * @date 03/04/12
  */
-public abstract class ZoomaLuceneSearchService extends Initializable {
+public abstract class ZoomaLuceneSearchService extends Initializable implements IndexCommitListener {
     // Max lucene query time - if zooma.search.timeout in properties, this is set to 1/5 of that value
     private long luceneQueryTimeout = 1000; // Default 1 second lucene query timeout
 
     private int luceneBatchSize = 10000; // Default lucene batch size
 
+    private float luceneScoreThreshold = 0f; // Default no lucene score threshold, return all hits
+
+    private long refreshInterval = 60; // Default 60 second interval between background searcher refreshes
+
     private Directory index;
     private Similarity similarity;
+    private volatile ZoomaQueryAnalyzer queryAnalyzer;
+
+    private volatile ZoomaSearcherManager searcherManager;
+    private ScheduledExecutorService refreshExecutor;
+
+    private Collection<DataChangeListener> dataChangeListeners = Collections.emptySet();
 
     protected enum QUERY_TYPE {
         EXACT,
@@ -85,6 +104,12 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
         if (configuration.containsKey("zooma.lucene.batch.size")) {
             this.luceneBatchSize = Integer.parseInt(configuration.getProperty("zooma.lucene.batch.size"));
         }
+        if (configuration.containsKey("zooma.lucene.score.threshold")) {
+            this.luceneScoreThreshold = Float.parseFloat(configuration.getProperty("zooma.lucene.score.threshold"));
+        }
+        if (configuration.containsKey("zooma.lucene.refresh.interval")) {
+            this.refreshInterval = Long.parseLong(configuration.getProperty("zooma.lucene.refresh.interval"));
+        }
     }
 
     public void setIndex(Directory index) {
@@ -95,31 +120,193 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
         this.similarity = similarity;
     }
 
-    protected IndexReader getReader() {
+    /**
+     * Returns the analyzer used to turn search patterns into queries.  If none has been set, an analyzer matching the
+     * default indexing configuration is created.
+     *
+     * @return the query analyzer for this service
+     */
+    public ZoomaQueryAnalyzer getQueryAnalyzer() {
+        ZoomaQueryAnalyzer qa = queryAnalyzer;
+        if (qa == null) {
+            synchronized (this) {
+                qa = queryAnalyzer;
+                if (qa == null) {
+                    qa = new ZoomaQueryAnalyzer();
+                    queryAnalyzer = qa;
+                }
+            }
+        }
+        return qa;
+    }
+
+    /**
+     * Sets the analyzer used to turn search patterns into queries.  This should be shared by every search service, and
+     * use the same analyzer as the {@link ZoomaLuceneIndexer} that builds the index.
+     *
+     * @param queryAnalyzer the query analyzer to use
+     */
+    public void setQueryAnalyzer(ZoomaQueryAnalyzer queryAnalyzer) {
+        this.queryAnalyzer = queryAnalyzer;
+    }
+
+    /**
+     * Sets the listeners to notify whenever this service starts searching a newly committed version of its index
+     *
+     * @param dataChangeListeners the listeners to notify when new index data becomes visible to searches
+     */
+    public void setDataChangeListeners(Collection<DataChangeListener> dataChangeListeners) {
+        this.dataChangeListeners = dataChangeListeners;
+    }
+
+    /**
+     * Returns the manager of the shared searcher over this service's index, creating it if necessary.
+     *
+     * @return the searcher manager for this index
+     */
+    public ZoomaSearcherManager getSearcherManager() {
+        ZoomaSearcherManager sm = searcherManager;
+        if (sm == null) {
+            synchronized (this) {
+                sm = searcherManager;
+                if (sm == null) {
+                    sm = new ZoomaSearcherManager(index, similarity);
+                    searcherManager = sm;
+                }
+            }
+        }
+        return sm;
+    }
+
+    /**
+     * Acquires the shared searcher for this index.  Every searcher acquired must be released by calling {@link
+     * #releaseSearcher(IndexSearcher)} once it is no longer required; the reader of the returned searcher must not be
+     * closed.
+     *
+     * @return the current searcher
+     * @throws SearchResourcesUnavailableException if the index could not be read
+     */
+    protected IndexSearcher acquireSearcher() {
         try {
-            return ExitableDirectoryReader.wrap(DirectoryReader.open(index), new QueryTimeoutImpl(luceneQueryTimeout));
+            return getSearcherManager().acquire();
         }
         catch (IOException e) {
             throw new SearchResourcesUnavailableException("Unable to read lucene index", e);
         }
     }
 
-    private IndexSearcher getSearcher(IndexReader reader) {
-        IndexSearcher searcher = new IndexSearcher(reader);
-        if (similarity != null) {
-            searcher.setSimilarity(similarity);
+    /**
+     * Releases a searcher previously obtained from {@link #acquireSearcher()}
+     *
+     * @param searcher the searcher to release
+     */
+    protected void releaseSearcher(IndexSearcher searcher) {
+        try {
+            getSearcherManager().release(searcher);
+        }
+        catch (IOException e) {
+            getLog().error("Failed to release lucene searcher - index files may not have been closed", e);
+        }
+    }
+
+    /**
+     * Refreshes the shared searcher if the given index is the one searched by this service.  The refresh happens in
+     * the background where possible
+     *
+     * @param index the directory of the index that was committed
+     */
+    @Override public void indexCommitted(Directory index) {
+        if (index == this.index) {
+            ScheduledExecutorService executor = refreshExecutor;
+            if (executor != null && !executor.isShutdown()) {
+                executor.execute(new Runnable() {
+                    @Override public void run() {
+                        refreshSearcher();
+                    }
+                });
+            }
+            else {
+                refreshSearcher();
+            }
+        }
+    }
+
+    private void refreshSearcher() {
+        try {
+            ZoomaSearcherManager sm = getSearcherManager();
+            long refreshCount = sm.getRefreshCount();
+            sm.maybeRefresh();
+            if (sm.getRefreshCount() != refreshCount) {
+                searcherRefreshed();
+                notifyDataChangeListeners();
+            }
+        }
+        catch (IOException e) {
+            getLog().warn("Failed to refresh lucene searcher for " + index + " (" + e.getMessage() + ")");
+        }
+        catch (RuntimeException e) {
+            getLog().warn("Unexpected problem refreshing lucene searcher for " + index, e);
+        }
+    }
+
+    /**
+     * Called whenever a new searcher over this service's index is opened, at startup and whenever a refresh picks up a
+     * new commit, before any {@link DataChangeListener}s are notified.  Services that hold structures derived from the
+     * index should rebuild them here, rather than when they are first searched.  Does nothing by default.
+     *
+     * @throws IOException if the index could not be read
+     */
+    protected void searcherRefreshed() throws IOException {
+        // nothing to rebuild by default
+    }
+
+    private void notifyDataChangeListeners() {
+        for (DataChangeListener listener : dataChangeListeners) {
+            try {
+                listener.dataChanged();
+            }
+            catch (RuntimeException e) {
+                getLog().warn("Failed to notify " + listener + " of new data in " + index, e);
+            }
         }
-        return searcher;
     }
 
     @Override
     protected void doInitialization() throws IOException {
-        // required initialization goes here
+        // open the shared searcher early if we can, then refresh it periodically to pick up external changes
+        try {
+            getSearcherManager().maybeRefresh();
+            searcherRefreshed();
+        }
+        catch (IOException e) {
+            getLog().warn("Lucene index " + index + " could not be opened yet; " +
+                                  "searches will fail until it is available (" + e.getMessage() + ")");
+        }
+        if (refreshInterval > 0) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    String name = ZoomaLuceneSearchService.this.getClass().getSimpleName() + "-refresh-thread";
+                    Thread t = new Thread(r, name);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override public void run() {
+                    refreshSearcher();
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+        }
     }
 
     @Override
     protected void doTermination() throws Exception {
-        // required shutdown hooks go here
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        if (searcherManager != null) {
+            searcherManager.close();
+        }
     }
 
     /**
@@ -215,6 +402,9 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
      * whitespace, calling this method will tokenise the supplied <code>pattern</code> string and delegate to {@link
      * #formulateSpanQuery(String, uk.ac.ebi.fgpt.zooma.service.ZoomaLuceneSearchService.QUERY_TYPE, int, boolean,
      * String...)}.
+     * <p/>
+     * Recently formulated queries are cached by the {@link #getQueryAnalyzer() query analyzer}, and the query returned
+     * is always a copy that the caller may modify.
      *
      * @param field                    the field to query
      * @param pattern                  the pattern to search for
@@ -227,22 +417,20 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
                                    String pattern,
                                    QUERY_TYPE queryType,
                                    boolean conserveOrderIfMultiword) {
+        ZoomaQueryAnalyzer queryAnalyzer = getQueryAnalyzer();
+        String key = queryType + "\u0000" + conserveOrderIfMultiword + "\u0000" + field + "\u0000" + pattern;
+        Query cached = queryAnalyzer.getQuery(key);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
             Query q;
 
             List<String> terms;
             if (queryType != QUERY_TYPE.EXACT) {
-                // tokenize the pattern using the given analyzer
-                terms = new ArrayList<>();
-                // todo - creating a new analyzer here means we run the risk of using different analyzers for indexing and query
-                Analyzer analyzer = new EnglishAnalyzer(CharArraySet.EMPTY_SET);
-                try (TokenStream stream = analyzer.tokenStream(field, new StringReader(QueryParser.escape(pattern)))) {
-                    stream.reset();
-                    CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
-                    while (stream.incrementToken()) {
-                        terms.add(termAtt.toString());
-                    }
-                }
+                // tokenize the pattern using the analyzer shared with the indexer
+                terms = queryAnalyzer.analyze(field, pattern);
             }
             else {
                 terms = Collections.singletonList(pattern);
@@ -282,7 +470,8 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
                                            conserveOrderIfMultiword,
                                            terms.toArray(new String[terms.size()]));
                 }
-                return q;
+                queryAnalyzer.putQuery(key, q);
+                return q.clone();
             }
         }
         catch (IOException e) {
@@ -440,9 +629,8 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
 
     /**
      * Performs a lucene query, and uses the supplied mapper to convert the resulting lucene document into the relevant
-     * object type.  All results that match the given query are iterated over, in batches according to the
-     * luceneBatchSize parameter, and put into a collection of objects (of type matching the type of the mapper) that is
-     * returned.
+     * object type.  All results that match the given query are collected, in score order, and put into a collection of
+     * objects (of type matching the type of the mapper) that is returned.
      *
      * @param q the lucene query to perform
      * @return a collection of results
@@ -453,75 +641,54 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
 
     /**
      * Performs a lucene query, and uses the supplied mapper to convert the resulting lucene document into the relevant
-     * object type.  All results that match the given query are iterated over, in batches according to the
-     * luceneBatchSize parameter, and put into a collection of objects (of type matching the type of the mapper) that is
-     * returned.
+     * object type.  At most <code>limit</code> of the best scoring results that match the given query are collected, in
+     * score order, and put into a collection of objects (of type matching the type of the mapper) that is returned.
+     * Hits scoring below the score threshold of this service (<code>zooma.lucene.score.threshold</code>) are omitted.
      *
-     * @param q the lucene query to perform
+     * @param q     the lucene query to perform
+     * @param limit the maximum number of results to return, or -1 for all results
      * @return a collection of results
      * @throws SearchResourcesUnavailableException if reading from the index failed
      */
     protected <T> List<T> doQuery(Query q, LuceneDocumentMapper<T> mapper, int limit) {
-        try (IndexReader reader = getReader()) {
+        return doQuery(q, mapper, limit, luceneScoreThreshold);
+    }
+
+    /**
+     * Performs a lucene query, and uses the supplied mapper to convert the resulting lucene document into the relevant
+     * object type.  At most <code>limit</code> of the best scoring results that match the given query are collected, in
+     * a single pass over the index, and only the stored documents of these results are read.  Hits scoring less than
+     * <code>scoreThreshold</code> of the top hit are discarded during collection.
+     * <p/>
+     * If the mapper can evaluate document quality from doc values, and a limit is given, results are ranked by their
+     * lucene score weighted by document quality as they are collected, so that the results retained are those that
+     * score best once mapped.
+     *
+     * @param q              the lucene query to perform
+     * @param limit          the maximum number of results to return, or -1 for all results
+     * @param scoreThreshold the fraction of the top lucene score (between 0 and 1) that results must achieve, or 0 to
+     *                       return all results
+     * @return a collection of results
+     * @throws SearchResourcesUnavailableException if reading from the index failed
+     */
+    protected <T> List<T> doQuery(Query q, LuceneDocumentMapper<T> mapper, int limit, float scoreThreshold) {
+        try {
             // init, to make sure searcher is available
             initOrWait();
 
-            // create the list to collect results in
-            List<T> results = new ArrayList<>();
-
-            // perform queries in blocks until there are no more hits
-            ScoreDoc lastScoreDoc = null;
-            boolean complete = false;
-            int rank = 1;
-
-            if (getLog().isTraceEnabled()) {
-                getLog().trace("Starting query '" + q + "'");
-            }
-
             if (getLog().isTraceEnabled()) {
                 getLog().trace("Acquiring searcher for query '" + q + "'");
             }
-            IndexSearcher searcher = getSearcher(reader);
-
-            while (!complete) {
-                // create a collector to obtain query results
-                TopScoreDocCollector topScoreCollector = lastScoreDoc == null
-                        ? TopScoreDocCollector.create(luceneBatchSize)
-                        : TopScoreDocCollector.create(luceneBatchSize, lastScoreDoc);
-                TimeLimitingCollector collector = new TimeLimitingCollector(
-                        topScoreCollector, TimeLimitingCollector.getGlobalCounter(), (luceneQueryTimeout));
-
-                // perform query
-                if (getLog().isTraceEnabled()) {
-                    getLog().trace("Dispatching search for query '" + q + "' (from " + results.size() + ")");
-                }
-                searcher.search(q, collector);
-                if (getLog().isTraceEnabled()) {
-                    getLog().trace("Collating results for query '" + q + "'");
-                }
-                ScoreDoc[] hits = topScoreCollector.topDocs().scoreDocs;
-
-                if (hits.length == 0) {
-                    complete = true;
-                }
-                else {
-                    // get URI and readByProperty property, add to results
-                    for (ScoreDoc hit : hits) {
-                        lastScoreDoc = hit;
-                        Document doc = searcher.doc(hit.doc);
-                        if (limit == -1 || results.size() < limit) {
-                            results.add(mapper.mapDocument(doc, rank));
-                        }
-                        else {
-                            complete = true;
-                            break;
-                        }
-                    }
-                }
-                rank++;
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                ScoreDoc[] hits = collectTopHits(searcher, q, limit, scoreThreshold, mapper);
+                List<T> results = mapHits(searcher, hits, mapper);
+                getLog().debug("Query '" + q.toString() + "' returned " + results.size() + " results");
+                return results;
+            }
+            finally {
+                releaseSearcher(searcher);
             }
-            getLog().debug("Query '" + q.toString() + "' returned " + results.size() + " results");
-            return results;
         }
         catch (IOException e) {
             throw new SearchResourcesUnavailableException("Failed to read index", e);
@@ -530,21 +697,13 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
             throw new SearchResourcesUnavailableException("Failed to perform query - indexing process was interrupted",
                                                           e);
         }
-        catch (TimeLimitingCollector.TimeExceededException e) {
-            throw new SearchTimeoutException("Failed to collect result of Lucene query [" + q + "] - " +
-                                                     "timeout after " + luceneQueryTimeout + "ms.", e);
-        }
-        catch (ExitableDirectoryReader.ExitingReaderException e) {
-            throw new SearchTimeoutException("Failed to perform Lucene query [" + q + "] - " +
-                                                     "timeout after " + luceneQueryTimeout + "ms.", e);
-        }
     }
 
     /**
      * Performs a lucene query, and obtains a collection of objects by using the supplied DAO to perform a lookup once
      * the URI of the object has been retrieved from the index.  The name of the field that describes the URI must be
-     * specified by supplying the fieldname.  All results that match the given query are iterated over, in batches of
-     * 100, and put into a collection of objects that is returned.  This collection is typed by the type of DAO that is
+     * specified by supplying the fieldname.  All results that match the given query are collected, in score order, and
+     * put into a collection of objects that is returned.  This collection is typed by the type of DAO that is
      * supplied.
      *
      * @param q      the lucene query to perform
@@ -563,13 +722,15 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
     /**
      * Performs a lucene query, and obtains a collection of objects by using the supplied DAO to perform a lookup once
      * the URI of the object has been retrieved from the index.  The name of the field that describes the URI must be
-     * specified by supplying the fieldname.  All results that match the given query are iterated over, in batches of
-     * 100, and put into a collection of objects that is returned.  This collection is typed by the type of DAO that is
-     * supplied.
+     * specified by supplying the fieldname.  At most <code>limit</code> of the best scoring results that match the given
+     * query are collected, in a single pass over the index, and looked up in the DAO.  Results that cannot be found in
+     * the DAO are omitted, so fewer than <code>limit</code> results may be returned.  This collection is typed by the
+     * type of DAO that is supplied.
      *
      * @param q      the lucene query to perform
      * @param mapper the document mapper to use to extract the URI from resulting lucene documents
      * @param dao    the zooma dao that can be used to do the lookup of matching objects
+     * @param limit  the maximum number of results to return, or -1 for all results
      * @param <T>    the type of object to lookup - the ZoomaDAO supplied declares this type
      * @return a collection of results
      * @throws IOException if reading from the index failed
@@ -578,85 +739,258 @@ public abstract class ZoomaLuceneSearchService extends Initializable {
                                                        LuceneDocumentMapper<URI> mapper,
                                                        ZoomaDAO<T> dao,
                                                        int limit) throws IOException {
-        try (IndexReader reader = getReader()) {
+        try {
             // init, to make sure searcher is available
             initOrWait();
 
-            // create the list to collect results in
-            List<T> results = new ArrayList<>();
-
-            // perform queries in blocks until there are no more hits
-            ScoreDoc lastScoreDoc = null;
-            boolean complete = false;
-            int rank = 1;
-            if (getLog().isTraceEnabled()) {
-                getLog().trace("Starting query '" + q + "'");
-            }
-
             if (getLog().isTraceEnabled()) {
                 getLog().trace("Acquiring searcher for query '" + q + "'");
             }
-            IndexSearcher searcher = getSearcher(reader);
-
-            while (!complete) {
-                // create a collector to obtain query results
-                TopScoreDocCollector topScoreCollector = lastScoreDoc == null
-                        ? TopScoreDocCollector.create(luceneBatchSize)
-                        : TopScoreDocCollector.create(100, lastScoreDoc);
-                TimeLimitingCollector collector = new TimeLimitingCollector(
-                        topScoreCollector, TimeLimitingCollector.getGlobalCounter(), luceneQueryTimeout);
-
-                // perform query
-                if (getLog().isTraceEnabled()) {
-                    getLog().trace("Dispatching search for query '" + q + "' (from " + results.size() + ")");
-                }
-                searcher.search(q, collector);
-                if (getLog().isTraceEnabled()) {
-                    getLog().trace("Collating results for query '" + q + "'");
-                }
-                ScoreDoc[] hits = topScoreCollector.topDocs().scoreDocs;
-
-                if (hits.length == 0) {
-                    complete = true;
-                }
-                else {
-                    // get URI and readByProperty property, add to results
-                    for (ScoreDoc hit : hits) {
-                        lastScoreDoc = hit;
-                        Document doc = searcher.doc(hit.doc);
-                        URI uri = mapper.mapDocument(doc, rank);
-                        T t = dao.read(uri);
-                        if (t != null) {
-                            if (limit == -1 || results.size() < limit) {
-                                results.add(t);
-                            }
-                            else {
-                                complete = true;
-                                break;
-                            }
-                        }
-                        else {
-                            getLog().warn("Failed to retrieve result for <" + uri + "> in DAO for " +
-                                                  dao.getDatasourceName());
-                        }
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                ScoreDoc[] hits = collectTopHits(searcher, q, limit, luceneScoreThreshold);
+
+                // get URI and readByProperty property, add to results
+                List<T> results = new ArrayList<>(hits.length);
+                for (int i = 0; i < hits.length; i++) {
+                    if (SearchDeadline.isExceeded()) {
+                        getLog().debug("Search deadline passed, returning " + results.size() + " of " + hits.length +
+                                               " results for query '" + q + "'");
+                        SearchDeadline.markTruncated();
+                        break;
+                    }
+                    Document doc = searcher.doc(hits[i].doc);
+                    URI uri = mapper.mapDocument(doc, getRank(i));
+                    T t = dao.read(uri);
+                    if (t != null) {
+                        results.add(t);
+                    }
+                    else {
+                        getLog().warn("Failed to retrieve result for <" + uri + "> in DAO for " +
+                                              dao.getDatasourceName());
                     }
                 }
-                rank++;
+                getLog().debug("Query '" + q.toString() + "' returned " + results.size() + " results");
+                return results;
+            }
+            finally {
+                releaseSearcher(searcher);
             }
-            getLog().debug("Query '" + q.toString() + "' returned " + results.size() + " results");
-            return results;
         }
         catch (InterruptedException e) {
             throw new IOException("Failed to perform query - indexing process was interrupted", e);
         }
+    }
+
+    /**
+     * Collects the best scoring hits for the given query in a single pass over the index.  Only the top
+     * <code>limit</code> hits are retained by the collector; if no limit is given, every hit is kept as it is collected
+     * and the hits are sorted afterwards, so the query never has to be run twice.  If a score threshold is given, hits
+     * scoring less than that fraction of the top score are discarded as they are collected, and so are never retained.
+     *
+     * @param searcher       the searcher to query
+     * @param q              the lucene query to perform
+     * @param limit          the maximum number of hits to collect, or -1 for all hits
+     * @param scoreThreshold the fraction of the top score that hits must achieve, or 0 to collect all hits
+     * @return the top hits, in descending score order
+     * @throws IOException if reading from the index failed
+     */
+    protected ScoreDoc[] collectTopHits(IndexSearcher searcher, Query q, int limit, float scoreThreshold)
+            throws IOException {
+        return collectTopHits(searcher, q, limit, scoreThreshold, null);
+    }
+
+    /**
+     * Collects the best hits for the given query in a single pass over the index, as {@link #collectTopHits(IndexSearcher,
+     * Query, int, float)}.  If a limit is given and the supplied mapper can evaluate document quality from the doc
+     * values of this index, hits are ranked by their lucene score weighted by document quality as they are collected,
+     * using a {@link QualityWeightedCollector}.  The score threshold still applies to the unweighted lucene score.
+     *
+     * @param searcher       the searcher to query
+     * @param q              the lucene query to perform
+     * @param limit          the maximum number of hits to collect, or -1 for all hits
+     * @param scoreThreshold the fraction of the top score that hits must achieve, or 0 to collect all hits
+     * @param mapper         the mapper that will map the hits, or null if hits should be ranked by lucene score alone
+     * @return the top hits, in descending (weighted) score order
+     * @throws IOException if reading from the index failed
+     */
+    protected ScoreDoc[] collectTopHits(IndexSearcher searcher,
+                                        Query q,
+                                        int limit,
+                                        float scoreThreshold,
+                                        LuceneDocumentMapper<?> mapper) throws IOException {
+        if (SearchDeadline.isExceeded()) {
+            getLog().debug("Skipping query '" + q + "', the search deadline has passed");
+            SearchDeadline.markTruncated();
+            return new ScoreDoc[0];
+        }
+
+        // create a collector to obtain query results
+        TopScoreDocCollector topScoreCollector = null;
+        AllHitsCollector allHitsCollector = null;
+        QualityWeightedCollector qualityCollector = null;
+        Collector collector;
+        if (limit < 0) {
+            allHitsCollector = new AllHitsCollector();
+            collector = allHitsCollector;
+        }
+        else {
+            int numHits = Math.min(limit, searcher.getIndexReader().maxDoc());
+            if (numHits == 0) {
+                return new ScoreDoc[0];
+            }
+            if (mapper instanceof LuceneDocValuesMapper &&
+                    ((LuceneDocValuesMapper<?>) mapper).canUseDocValues(searcher.getIndexReader())) {
+                qualityCollector = new QualityWeightedCollector((LuceneDocValuesMapper<?>) mapper, numHits);
+                collector = qualityCollector;
+            }
+            else {
+                topScoreCollector = TopScoreDocCollector.create(numHits);
+                collector = topScoreCollector;
+            }
+        }
+        ScoreThresholdCollector thresholdCollector = null;
+        if (scoreThreshold > 0) {
+            thresholdCollector = new ScoreThresholdCollector(collector, scoreThreshold);
+            collector = thresholdCollector;
+        }
+
+        // perform query
+        if (getLog().isTraceEnabled()) {
+            getLog().trace("Dispatching search for query '" + q + "' (" + (limit < 0 ? "all" : "top " + limit) +
+                                   " hits)");
+        }
+        searchWithinDeadline(searcher, q, collector);
+        ScoreDoc[] hits;
+        if (topScoreCollector != null) {
+            hits = topScoreCollector.topDocs().scoreDocs;
+        }
+        else if (qualityCollector != null) {
+            hits = qualityCollector.getHits();
+        }
+        else {
+            hits = allHitsCollector.getHits();
+        }
+
+        // hits collected before the top hit was seen may still fall below the threshold, so remove them
+        if (thresholdCollector != null && hits.length > 0) {
+            List<ScoreDoc> retained = new ArrayList<>(hits.length);
+            for (ScoreDoc hit : hits) {
+                float luceneScore = hit instanceof QualityWeightedCollector.WeightedScoreDoc
+                        ? ((QualityWeightedCollector.WeightedScoreDoc) hit).getLuceneScore()
+                        : hit.score;
+                if (thresholdCollector.isAboveThreshold(luceneScore, thresholdCollector.getMaxScore())) {
+                    retained.add(hit);
+                }
+            }
+            if (getLog().isTraceEnabled()) {
+                getLog().trace("Query '" + q + "' discarded " +
+                                       (thresholdCollector.getRejectedCount() + hits.length - retained.size()) +
+                                       " hits scoring below " + scoreThreshold + " of the top score");
+            }
+            if (retained.size() < hits.length) {
+                hits = retained.toArray(new ScoreDoc[retained.size()]);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Runs the given query, stopping once the lucene query timeout (<code>zooma.search.timeout</code>/5) or the
+     * deadline of the current search, whichever is sooner, has passed.  Collection is bounded by a {@link
+     * TimeLimitingCollector}, and the same deadline is set on the shared searcher's reader (see {@link
+     * ZoomaSearcherManager#startQueryDeadline(long)}), so that expensive rewrites of multi-term queries (which happen
+     * before any hits are collected) are bounded too.  Hits gathered before the time ran out are kept in the
+     * collector, so a slow query yields the best hits it found rather than failing.
+     *
+     * @param searcher  the searcher to query
+     * @param q         the lucene query to perform
+     * @param collector the collector to gather hits into
+     * @throws IOException if reading from the index failed
+     */
+    protected void searchWithinDeadline(IndexSearcher searcher, Query q, Collector collector) throws IOException {
+        long timeout = Math.max(1, SearchDeadline.remaining(luceneQueryTimeout));
+        ZoomaSearcherManager searcherManager = getSearcherManager();
+        searcherManager.startQueryDeadline(timeout);
+        try {
+            searcher.search(q, new TimeLimitingCollector(collector, TimeLimitingCollector.getGlobalCounter(), timeout));
+        }
         catch (TimeLimitingCollector.TimeExceededException e) {
-            throw new SearchTimeoutException("Failed to collect result of Lucene query [" + q + "] - " +
-                                                     "timeout after " + luceneQueryTimeout + "ms.", e);
+            getLog().debug("Lucene query [" + q + "] timed out after " + timeout + "ms, " +
+                                   "using the hits collected so far");
+            SearchDeadline.markTruncated();
         }
         catch (ExitableDirectoryReader.ExitingReaderException e) {
-            throw new SearchTimeoutException("Failed to perform Lucene query [" + q + "] - " +
-                                                     "timeout after " + luceneQueryTimeout + "ms.", e);
+            getLog().debug("Lucene query [" + q + "] timed out after " + timeout + "ms whilst reading terms, " +
+                                   "using the hits collected so far");
+            SearchDeadline.markTruncated();
+        }
+        finally {
+            searcherManager.endQueryDeadline();
         }
     }
-}
 
+    /**
+     * Returns the metrics kept by the shared searcher over this service's index
+     *
+     * @return a map of statistic names to values
+     * @see ZoomaSearcherManager#getStatistics()
+     */
+    public Map<String, Object> getSearcherStatistics() {
+        return getSearcherManager().getStatistics();
+    }
+
+    /**
+     * Maps the supplied hits into objects using the given mapper.  If the mapper can read values from doc values, and
+     * the index supports this, only the stored fields the mapper needs are loaded, and doc values are opened once for
+     * each segment containing a hit; otherwise full stored documents are read for each hit.
+     *
+     * @param searcher the searcher that obtained the hits
+     * @param hits     the hits to map, in rank order
+     * @param mapper   the mapper used to convert documents into objects
+     * @return the mapped results, in rank order
+     * @throws IOException if reading from the index failed
+     */
+    protected <T> List<T> mapHits(IndexSearcher searcher, ScoreDoc[] hits, LuceneDocumentMapper<T> mapper)
+            throws IOException {
+        List<T> results = new ArrayList<>(hits.length);
+        IndexReader reader = searcher.getIndexReader();
+        if (mapper instanceof LuceneDocValuesMapper && ((LuceneDocValuesMapper<T>) mapper).canUseDocValues(reader)) {
+            LuceneDocValuesMapper<T> docValuesMapper = (LuceneDocValuesMapper<T>) mapper;
+            List<LeafReaderContext> leaves = reader.leaves();
+            List<LuceneDocValuesMapper.LeafMapper<T>> leafMappers =
+                    new ArrayList<>(Collections.<LuceneDocValuesMapper.LeafMapper<T>>nCopies(leaves.size(), null));
+            for (int i = 0; i < hits.length; i++) {
+                int docId = hits[i].doc;
+                int leafIndex = ReaderUtil.subIndex(docId, leaves);
+                LeafReaderContext leaf = leaves.get(leafIndex);
+                LuceneDocValuesMapper.LeafMapper<T> leafMapper = leafMappers.get(leafIndex);
+                if (leafMapper == null) {
+                    leafMapper = docValuesMapper.getLeafMapper(leaf.reader());
+                    leafMappers.set(leafIndex, leafMapper);
+                }
+                Document doc = searcher.doc(docId, docValuesMapper.getStoredFieldNames());
+                results.add(leafMapper.mapDocument(doc, docId - leaf.docBase, getRank(i)));
+            }
+        }
+        else {
+            for (int i = 0; i < hits.length; i++) {
+                Document doc = searcher.doc(hits[i].doc);
+                results.add(mapper.mapDocument(doc, getRank(i)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the rank to supply to document mappers for the hit at the given position.  Results used to be collected
+     * in pages of <code>zooma.lucene.batch.size</code> hits, all of which were given the same rank, so ranks are still
+     * assigned per block of that size to keep mapped quality scores unchanged.
+     *
+     * @param position the zero-based position of a hit in the results
+     * @return the rank of the hit
+     */
+    protected int getRank(int position) {
+        return position / luceneBatchSize + 1;
+    }
+}
@@ -0,0 +1,287 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.ExitableDirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.QueryTimeout;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains a single, long-lived and reference counted {@link IndexSearcher} over a lucene index, using a lucene {@link
+ * SearcherManager}.  Every query against the index shares the same searcher, so segment files, norms and term
+ * dictionaries are only loaded once rather than on every search.  The searcher is only reopened when {@link
+ * #maybeRefresh()} detects a new commit to the index.
+ * <p/>
+ * Every searcher obtained with {@link #acquire()} must be handed back with {@link #release(IndexSearcher)}, ideally in
+ * a finally block, otherwise old index files can never be closed.
+ * <p/>
+ * The index is opened once, wrapped in an {@link ExitableDirectoryReader} (which every refreshed reader inherits), so
+ * that reading terms - for example, whilst rewriting a multi-term query - can be stopped at a deadline.  The deadline
+ * is set for the current thread with {@link #startQueryDeadline(long)} and removed with {@link #endQueryDeadline()};
+ * threads without a deadline are never stopped.
+ * <p/>
+ * This class also keeps some simple metrics - the number of acquired and released searchers, the number of refreshes
+ * that have opened a new searcher, and the lag between a commit made by {@link ZoomaLuceneIndexer} and the moment that
+ * commit became visible to searches.  These are reported by {@link #getStatistics()}.
+ *
+ * @date 18/10/26
+ */
+public class ZoomaSearcherManager implements Closeable {
+    /**
+     * The key of the index commit user data entry that records the time (in milliseconds) at which a commit was made
+     */
+    public static final String COMMIT_TIMESTAMP_KEY = "zooma.commit.timestamp";
+
+    private final Directory index;
+    private final Similarity similarity;
+    private final ThreadDeadlineQueryTimeout queryTimeout = new ThreadDeadlineQueryTimeout();
+
+    private volatile SearcherManager searcherManager;
+    private volatile boolean closed = false;
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong releaseCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private volatile long lastRefreshTime = -1;
+    private volatile long refreshLag = -1;
+
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    protected Logger getLog() {
+        return log;
+    }
+
+    public ZoomaSearcherManager(Directory index, Similarity similarity) {
+        this.index = index;
+        this.similarity = similarity;
+    }
+
+    public Directory getIndex() {
+        return index;
+    }
+
+    /**
+     * Obtains the current searcher for this index.  The underlying index is opened the first time this method is
+     * called; if the index does not exist yet, opening will be reattempted on the next call.
+     *
+     * @return the current searcher, which must be released after use
+     * @throws IOException if the index could not be opened
+     */
+    public IndexSearcher acquire() throws IOException {
+        IndexSearcher searcher = obtainSearcherManager().acquire();
+        acquireCount.incrementAndGet();
+        return searcher;
+    }
+
+    /**
+     * Releases a searcher previously obtained from {@link #acquire()}.  The searcher must not be used after calling
+     * this method.
+     *
+     * @param searcher the searcher to release
+     * @throws IOException if closing an outdated reader failed
+     */
+    public void release(IndexSearcher searcher) throws IOException {
+        SearcherManager sm = searcherManager;
+        if (sm != null) {
+            releaseCount.incrementAndGet();
+            sm.release(searcher);
+        }
+    }
+
+    /**
+     * Checks the index for new commits, and if there are any opens a new searcher that will be handed to subsequent
+     * calls to {@link #acquire()}.  Searchers already acquired remain valid (and keep their point-in-time view of the
+     * index) until released.
+     *
+     * @return true if the searcher is now current with the latest commit, false if another thread was refreshing
+     * @throws IOException if reopening the index failed
+     */
+    public boolean maybeRefresh() throws IOException {
+        if (closed) {
+            return false;
+        }
+        return obtainSearcherManager().maybeRefresh();
+    }
+
+    /**
+     * Sets a deadline, the given number of milliseconds from now, after which any searcher obtained from this manager
+     * stops reading terms on the current thread by throwing an {@link ExitableDirectoryReader.ExitingReaderException}.
+     * The deadline must be removed with {@link #endQueryDeadline()} once the query is complete.
+     *
+     * @param timeout the time allowed for the query, in milliseconds
+     */
+    public void startQueryDeadline(long timeout) {
+        queryTimeout.start(timeout);
+    }
+
+    /**
+     * Removes the deadline set for the current thread by {@link #startQueryDeadline(long)}
+     */
+    public void endQueryDeadline() {
+        queryTimeout.end();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    public long getReleaseCount() {
+        return releaseCount.get();
+    }
+
+    /**
+     * @return the number of searchers currently acquired and not yet released
+     */
+    public long getActiveSearcherCount() {
+        return acquireCount.get() - releaseCount.get();
+    }
+
+    /**
+     * @return the number of times a new searcher was opened, including the first
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return the time, in milliseconds, at which a new searcher was last opened, or -1 if the index was never opened
+     */
+    public long getLastRefreshTime() {
+        return lastRefreshTime;
+    }
+
+    /**
+     * @return the delay, in milliseconds, between the commit of the currently searched index and the point at which
+     * the searcher was opened over it, or -1 if this is unknown (e.g. because the index was not built by ZOOMA)
+     */
+    public long getRefreshLag() {
+        return refreshLag;
+    }
+
+    /**
+     * Returns the metrics kept by this searcher manager
+     *
+     * @return a map of statistic names to values
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("acquired", getAcquireCount());
+        statistics.put("released", getReleaseCount());
+        statistics.put("activeSearchers", getActiveSearcherCount());
+        statistics.put("refreshes", getRefreshCount());
+        statistics.put("lastRefreshTime", getLastRefreshTime());
+        statistics.put("refreshLagMillis", getRefreshLag());
+        return statistics;
+    }
+
+    @Override public synchronized void close() throws IOException {
+        // searchers still in use can be released after closing, so keep the reference to the manager
+        closed = true;
+        if (searcherManager != null) {
+            searcherManager.close();
+        }
+    }
+
+    private SearcherManager obtainSearcherManager() throws IOException {
+        SearcherManager sm = searcherManager;
+        if (sm == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new AlreadyClosedException("Searcher manager for " + index + " has been closed");
+                }
+                sm = searcherManager;
+                if (sm == null) {
+                    // wrap the reader once; readers opened on refresh are wrapped with the same timeout
+                    DirectoryReader reader = ExitableDirectoryReader.wrap(DirectoryReader.open(index), queryTimeout);
+                    try {
+                        sm = new SearcherManager(reader, new ZoomaSearcherFactory());
+                    }
+                    catch (IOException | RuntimeException e) {
+                        reader.close();
+                        throw e;
+                    }
+                    sm.addListener(new ReferenceManager.RefreshListener() {
+                        @Override public void beforeRefresh() {
+                            // nothing to do
+                        }
+
+                        @Override public void afterRefresh(boolean didRefresh) {
+                            if (didRefresh) {
+                                getLog().debug("Refreshed searcher for " + index + " " +
+                                                       "(refresh lag " + refreshLag + "ms)");
+                            }
+                        }
+                    });
+                    searcherManager = sm;
+                }
+            }
+        }
+        return sm;
+    }
+
+    private void recordRefresh(IndexReader reader) throws IOException {
+        long now = System.currentTimeMillis();
+        refreshCount.incrementAndGet();
+        lastRefreshTime = now;
+        if (reader instanceof DirectoryReader) {
+            Map<String, String> userData = ((DirectoryReader) reader).getIndexCommit().getUserData();
+            if (userData.containsKey(COMMIT_TIMESTAMP_KEY)) {
+                refreshLag = now - Long.parseLong(userData.get(COMMIT_TIMESTAMP_KEY));
+            }
+            else {
+                refreshLag = -1;
+            }
+        }
+    }
+
+    private class ZoomaSearcherFactory extends SearcherFactory {
+        @Override public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader)
+                throws IOException {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            if (similarity != null) {
+                searcher.setSimilarity(similarity);
+            }
+            recordRefresh(reader);
+            return searcher;
+        }
+    }
+
+    /**
+     * A query timeout that stops reading once the deadline set for the current thread has passed
+     */
+    private static class ThreadDeadlineQueryTimeout implements QueryTimeout {
+        private final ThreadLocal<Long> deadline = new ThreadLocal<>();
+
+        private void start(long timeout) {
+            deadline.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+        }
+
+        private void end() {
+            deadline.remove();
+        }
+
+        @Override public boolean shouldExit() {
+            Long end = deadline.get();
+            return end != null && System.nanoTime() - end > 0;
+        }
+
+        @Override public String toString() {
+            return "ThreadDeadlineQueryTimeout";
+        }
+    }
+}
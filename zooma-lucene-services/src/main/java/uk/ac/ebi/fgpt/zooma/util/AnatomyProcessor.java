@@ -4,6 +4,7 @@ import org.springframework.core.io.Resource;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * This class handles the processing of properties of type "organism part".
@@ -12,6 +13,8 @@ import java.util.List;
  * @date 16/08/13
  */
 public class AnatomyProcessor extends AbstractDictionaryLoadingProcessor {
+    private static final Pattern SPACES = Pattern.compile(" +");
+
     // organism part qualifier dictionary contains all subclasses of "anatomical modifier" (EFO)
     // and all subclasses of "position" (PATO)
     public AnatomyProcessor(String dictionaryResourceName) {
@@ -39,8 +42,8 @@ public class AnatomyProcessor extends AbstractDictionaryLoadingProcessor {
     public List<String> processSearchString(String searchString) throws IllegalArgumentException {
         // lower case the entire string
         String processedString = searchString.toLowerCase();
-        // can we find our search string in the dictionary?
-        for (String organismPartQualifier : getDictionary()) {
+        // can we find our search string in the dictionary? only terms found in the string can possibly be removed
+        for (String organismPartQualifier : getCandidateTerms(processedString)) {
             if (processedString.contains(" " + organismPartQualifier + " ") ||
                     processedString.startsWith(organismPartQualifier + " ") ||
                     processedString.endsWith(" " + organismPartQualifier)) {
@@ -49,7 +52,7 @@ public class AnatomyProcessor extends AbstractDictionaryLoadingProcessor {
         }
 
         // remove extraneous whitespace
-        processedString = processedString.trim().replaceAll(" +", " ");
+        processedString = SPACES.matcher(processedString.trim()).replaceAll(" ");
         // return processed string, only if it is different from the original
         if (!processedString.contentEquals(searchString.toLowerCase())) {
             return Collections.singletonList(processedString);
@@ -3,10 +3,12 @@ package uk.ac.ebi.fgpt.zooma.util;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.io.Resource;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,6 +19,16 @@ import java.util.regex.Pattern;
  * @date 16/08/13
  */
 public class ChemicalCompoundProcessor extends AbstractDictionaryLoadingProcessor {
+    // space is important in order not to remove numbers within compounds.. (e.g indole-3-acetic acid)
+    private static final String SPACE = "\\s";
+    // pattern for number: int or float..
+    private static final Pattern NUMBER_FLOAT = Pattern.compile("\\d{1,10}.\\d{1,10}" + SPACE);
+    private static final Pattern NUMBER_INT = Pattern.compile("\\d{1,10}" + SPACE);
+    private static final Pattern SPACES = Pattern.compile(" +");
+
+    // units eligible for approximate matching, grouped by length
+    private Map<Integer, List<String>> approximateUnitsByLength;
+
     // units dictionary contains all subclasses of "concentration unit" (UO_0000051).
     public ChemicalCompoundProcessor(String dictionaryResourceName) {
         super(dictionaryResourceName);
@@ -31,6 +43,24 @@ public class ChemicalCompoundProcessor extends AbstractDictionaryLoadingProcesso
         return 0.95f;
     }
 
+    /**
+     * Loads the dictionary of concentration units, and groups those units that are eligible for approximate matching by
+     * their length
+     */
+    @Override public void init() throws IOException {
+        super.init();
+        Map<Integer, List<String>> unitsByLength = new HashMap<>();
+        for (String unit : getDictionary()) {
+            if (unit.length() > 2) {  //Exclude abbreviations/acronyms units
+                if (!unitsByLength.containsKey(unit.length())) {
+                    unitsByLength.put(unit.length(), new ArrayList<String>());
+                }
+                unitsByLength.get(unit.length()).add(unit);
+            }
+        }
+        this.approximateUnitsByLength = unitsByLength;
+    }
+
     /**
      * Takes a string, looks for numbers and concentration units in the string, removes them and returns the processed
      * strings. Normally, one string is returned.
@@ -39,17 +69,8 @@ public class ChemicalCompoundProcessor extends AbstractDictionaryLoadingProcesso
     public List<String> processSearchString(String searchString) throws IllegalArgumentException {
         String processedString = searchString;
 
-        // space is important in order not to remove numbers within compounds.. (e.g indole-3-acetic acid)
-        String space = "\\s";
-        // pattern for number: int or float..
-        String number_float = "\\d{1,10}.\\d{1,10}" + space;
-        String number_int = "\\d{1,10}" + space;
-
-        Pattern pattern_number_float = Pattern.compile(number_float);
-        Pattern pattern_number_int = Pattern.compile(number_int);
-
-        Matcher matcher_number_float = pattern_number_float.matcher(searchString);
-        Matcher matcher_number_int = pattern_number_int.matcher(searchString);
+        Matcher matcher_number_float = NUMBER_FLOAT.matcher(searchString);
+        Matcher matcher_number_int = NUMBER_INT.matcher(searchString);
 
         String substring_number = null;
         if (matcher_number_float.find()) {
@@ -64,9 +85,9 @@ public class ChemicalCompoundProcessor extends AbstractDictionaryLoadingProcesso
             processedString = searchString.replaceAll(substring_number, " ");
         }
 
-        // remove any units at the end of this string
+        // remove any units at the end of this string - only units found in the string can possibly be removed
         boolean removed_unit = false;
-        for (String unit : getDictionary()) {
+        for (String unit : getCandidateTerms(processedString)) {
             if (processedString.contains(" " + unit + " ") ||
                     processedString.startsWith(unit + " ") ||
                     processedString.endsWith(" " + unit)) {
@@ -80,7 +101,7 @@ public class ChemicalCompoundProcessor extends AbstractDictionaryLoadingProcesso
         if (!removed_unit) {
             ArrayList<String> substrings = extractSubstrings(processedString);
             for (String substring : substrings) {
-                if (levenshteinMatches(substring, getDictionary())) {
+                if (levenshteinMatches(substring)) {
                     processedString = processedString.replaceAll(substring, " ");
                     break;
                 }
@@ -88,7 +109,7 @@ public class ChemicalCompoundProcessor extends AbstractDictionaryLoadingProcesso
         }
 
         // remove extraneous whitespace
-        processedString = processedString.trim().replaceAll(" +", " ");
+        processedString = SPACES.matcher(processedString.trim()).replaceAll(" ");
         // return processed string, only if it is different from the original
         if (!processedString.contentEquals(searchString)) {
             return Collections.singletonList(processedString);
@@ -127,13 +148,17 @@ public class ChemicalCompoundProcessor extends AbstractDictionaryLoadingProcesso
 
     /**
      * Check if substring matches approximately to any concentration unit The method uses LevenshteinDistance. Only 1
-     * edition/change between strings is permissible to consider that there is an approximate matching.
+     * edition/change between strings is permissible to consider that there is an approximate matching, so only units
+     * whose length differs from the substring by at most one character need to be compared.
      */
-    private boolean levenshteinMatches(String substring, Set<String> units) {
-        for (String unit : units) {
-            if (unit.length() > 2) {  //Exclude abbreviations/acronyms units
-                if (StringUtils.getLevenshteinDistance(substring, unit, 1) != -1) {
-                    return true;
+    private boolean levenshteinMatches(String substring) {
+        for (int length = substring.length() - 1; length <= substring.length() + 1; length++) {
+            List<String> units = approximateUnitsByLength.get(length);
+            if (units != null) {
+                for (String unit : units) {
+                    if (StringUtils.getLevenshteinDistance(substring, unit, 1) != -1) {
+                        return true;
+                    }
                 }
             }
         }
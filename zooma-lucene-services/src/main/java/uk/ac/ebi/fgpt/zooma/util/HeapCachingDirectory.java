@@ -0,0 +1,215 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link Directory} that holds a copy of every index file it reads on the heap, so that searches never touch the
+ * disk.  Writes go straight through to the wrapped directory, so the index on disk remains complete and survives
+ * restarts.
+ * <p/>
+ * Lucene never modifies a file once it has been written, so cached files are keyed on their name alone: each file is
+ * copied to the heap and its checksum verified the first time it is opened, and it is then served from the heap,
+ * without touching the disk, until it is deleted.  Segments that are unchanged by a new commit therefore stay cached.
+ * <p/>
+ * The index may also be rebuilt by another process, which can reuse the names of files that are already cached (for
+ * example, <code>segments_1</code> and <code>_0.cfs</code> after the index is deleted and recreated).  Only the
+ * segments file of each commit is checked against the disk, when a commit is opened: if a cached segments file has
+ * changed on disk, or the opened commit is older than one already seen, the index has been recreated and the whole
+ * cache is dropped.
+ * <p/>
+ * This is intended for small indices that are read by most searches; large indices are better memory mapped.
+ *
+ * @date 18/10/26
+ */
+public class HeapCachingDirectory extends FilterDirectory {
+    // the signature of cached files that are not checked against the disk
+    private static final FileSignature NOT_CHECKED = new FileSignature(-1, -1, -1);
+
+    private final RAMDirectory cache = new RAMDirectory();
+
+    // the files held on the heap; segments files map to the signature they had on disk, other files to NOT_CHECKED
+    private final ConcurrentMap<String, FileSignature> cachedFiles = new ConcurrentHashMap<>();
+    // guards copying files onto the heap, so each file is only copied once
+    private final Object cacheLock = new Object();
+    private long latestGeneration = -1;
+
+    /**
+     * Creates a heap caching directory, copying the existing index files in the wrapped directory onto the heap
+     *
+     * @param in the directory holding the index on disk
+     * @throws IOException if the existing index files could not be read
+     */
+    public HeapCachingDirectory(Directory in) throws IOException {
+        super(in);
+        for (String name : in.listAll()) {
+            if (!name.equals(IndexWriter.WRITE_LOCK_NAME)) {
+                if (name.startsWith(IndexFileNames.SEGMENTS)) {
+                    checkCommit(name);
+                }
+                else {
+                    cacheFile(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes of index files currently held on the heap
+     */
+    public long getCachedBytes() {
+        return cache.ramBytesUsed();
+    }
+
+    @Override public IndexInput openInput(String name, IOContext context) throws IOException {
+        if (name.startsWith(IndexFileNames.SEGMENTS)) {
+            // opened once per commit, so the only file checked against the disk
+            checkCommit(name);
+        }
+        else if (!cachedFiles.containsKey(name)) {
+            cacheFile(name);
+        }
+        return cache.openInput(name, context);
+    }
+
+    @Override public void deleteFile(String name) throws IOException {
+        in.deleteFile(name);
+        uncacheFile(name);
+    }
+
+    @Override public void renameFile(String source, String dest) throws IOException {
+        in.renameFile(source, dest);
+        // the renamed file is cached again under its new name when it is next opened
+        uncacheFile(source);
+    }
+
+    @Override public void close() throws IOException {
+        try {
+            cache.close();
+        }
+        finally {
+            super.close();
+        }
+    }
+
+    private void checkCommit(String segmentsFile) throws IOException {
+        FileSignature signature = readSignature(segmentsFile);
+        synchronized (cacheLock) {
+            long generation = SegmentInfos.generationFromSegmentsFileName(segmentsFile);
+            boolean cached = cachedFiles.containsKey(segmentsFile);
+            if ((cached && !signature.equals(cachedFiles.get(segmentsFile))) ||
+                    (!cached && generation < latestGeneration)) {
+                // the index has been recreated, so any cached file may have been replaced under the same name
+                uncacheAll();
+            }
+            latestGeneration = Math.max(latestGeneration, generation);
+            if (!cachedFiles.containsKey(segmentsFile)) {
+                copyFile(segmentsFile);
+                cachedFiles.put(segmentsFile, signature);
+            }
+        }
+    }
+
+    private void cacheFile(String name) throws IOException {
+        synchronized (cacheLock) {
+            if (!cachedFiles.containsKey(name)) {
+                copyFile(name);
+                cachedFiles.put(name, NOT_CHECKED);
+            }
+        }
+    }
+
+    private void copyFile(String name) throws IOException {
+        cache.copyFrom(in, name, name, IOContext.READONCE);
+        try (IndexInput input = cache.openInput(name, IOContext.READONCE)) {
+            CodecUtil.checksumEntireFile(input);
+        }
+        catch (IOException e) {
+            cache.deleteFile(name);
+            throw e;
+        }
+    }
+
+    private void uncacheFile(String name) throws IOException {
+        synchronized (cacheLock) {
+            if (cachedFiles.remove(name) != null) {
+                cache.deleteFile(name);
+            }
+        }
+    }
+
+    private void uncacheAll() throws IOException {
+        // inputs that are already open keep reading the bytes they were opened with
+        synchronized (cacheLock) {
+            for (String name : new ArrayList<>(cachedFiles.keySet())) {
+                uncacheFile(name);
+            }
+            latestGeneration = -1;
+        }
+    }
+
+    private FileSignature readSignature(String name) throws IOException {
+        long lastModified = -1;
+        Directory directory = FilterDirectory.unwrap(in);
+        if (directory instanceof FSDirectory) {
+            lastModified = Files.getLastModifiedTime(((FSDirectory) directory).getDirectory().resolve(name))
+                    .toMillis();
+        }
+        long checksum;
+        try (IndexInput input = in.openInput(name, IOContext.READONCE)) {
+            checksum = CodecUtil.retrieveChecksum(input);
+        }
+        return new FileSignature(in.fileLength(name), lastModified, checksum);
+    }
+
+    @Override public String toString() {
+        return "HeapCachingDirectory(" + in + ")";
+    }
+
+    /**
+     * The length, modification time and footer checksum of a file on disk, used to detect files that have been
+     * replaced under the same name.  The modification time is -1 if the wrapped directory is not on the file system.
+     */
+    private static class FileSignature {
+        private final long length;
+        private final long lastModified;
+        private final long checksum;
+
+        private FileSignature(long length, long lastModified, long checksum) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FileSignature that = (FileSignature) o;
+            return length == that.length && lastModified == that.lastModified && checksum == that.checksum;
+        }
+
+        @Override public int hashCode() {
+            int result = (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return 31 * result + (int) (checksum ^ (checksum >>> 32));
+        }
+    }
+}
@@ -12,6 +12,17 @@ import java.util.regex.Pattern;
  * @date 16/08/13
  */
 public class ParenthesesProcessor implements SearchStringProcessor {
+    // Brackets of compounds mustn't be removed (e.g: 4-(N-nitrosomethylamino)-1-(3-pyridyl)butan-1-one  )
+    // Two patterns to identify compounds:
+    private static final Pattern COMPOUND_PATTERN_1 = Pattern.compile(".{0,100}\\(.{1,100}\\)\\S{1,100}.{0,100}");
+    private static final Pattern COMPOUND_PATTERN_2 = Pattern.compile(".{0,100}\\S{1,100}\\(.{1,100}\\).{0,100}");
+
+    //a group starting with
+    //     \\( => starting with one (
+    //     [^\\)]* => followed by any character but not a closing ) 0 or more times
+    //     \\) => followed by a closing parenthesis )
+    private static final Pattern BRACKETS = Pattern.compile("(\\([^\\)\\(]*\\))");
+
     @Override
     public float getBoostFactor() {
         return 0.95f;
@@ -26,14 +37,9 @@ public class ParenthesesProcessor implements SearchStringProcessor {
     @Override
     public boolean canProcess(String searchString) {
         if (searchString.contains("(") && searchString.contains(")")) {
-            // Brackets of compounds mustn't be removed (e.g: 4-(N-nitrosomethylamino)-1-(3-pyridyl)butan-1-one  )
-            // Two patterns to identify compounds:
-            String pattern1_compound = ".{0,100}\\(.{1,100}\\)\\S{1,100}.{0,100}";
-            String pattern2_compound = ".{0,100}\\S{1,100}\\(.{1,100}\\).{0,100}";
-
             // Check if string would be a compound..
-            if (!(Pattern.matches(pattern1_compound, searchString) ||
-                    Pattern.matches(pattern2_compound, searchString))) {
+            if (!(COMPOUND_PATTERN_1.matcher(searchString).matches() ||
+                    COMPOUND_PATTERN_2.matcher(searchString).matches())) {
                 return true;
             }
         }
@@ -48,13 +54,7 @@ public class ParenthesesProcessor implements SearchStringProcessor {
     public List<String> processSearchString(String searchString) throws IllegalArgumentException, InterruptedException {
         String processedString = searchString;
 
-//a group starting with
-//     \\( => starting with one (
-//     [^\\)]* => followed by any character but not a closing ) 0 or more times
-//     \\) => followed by a closing parenthesis )
-        Pattern p = Pattern.compile("(\\([^\\)\\(]*\\))");
-
-        Matcher m = p.matcher(processedString);
+        Matcher m = BRACKETS.matcher(processedString);
         while (m.find()) {
             if (Thread.interrupted()) {
                 throw new InterruptedException("Interrupted whilst processing search string '" + searchString + "'");
@@ -67,7 +67,7 @@ public class ParenthesesProcessor implements SearchStringProcessor {
                 String one = processedString.substring(0,pos_ini);
                 String two = processedString.substring(pos_fin, processedString.length());
                 processedString = one + two;// processedString.substring(0,pos_ini) + processedString.substring(pos_fin, processedString.length());
-                m = p.matcher(processedString);
+                m = BRACKETS.matcher(processedString);
             }
         }
         // remove extraneous whitespace
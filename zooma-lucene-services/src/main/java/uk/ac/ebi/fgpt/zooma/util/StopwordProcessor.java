@@ -19,6 +19,18 @@ import java.util.regex.Pattern;
  * @date 11/11/13
  */
 public class StopwordProcessor extends AbstractDictionaryLoadingProcessor {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern COMMA = Pattern.compile("\\s*,\\s*");
+    private static final Pattern UNDERSCORE = Pattern.compile("\\s*_\\s*");
+    private static final Pattern HYPHEN = Pattern.compile("\\s*-\\s*");
+    private static final Pattern OPENING_BRACKET = Pattern.compile("\\(");
+    private static final Pattern CLOSING_BRACKET = Pattern.compile("\\)");
+
+    //Brackets of compounds shouldn't be removed  (e.g: 4-(N-nitrosomethylamino)-1-(3-pyridyl)butan-1-one  )
+    //Two patterns try to discover compounds..
+    private static final Pattern COMPOUND_PATTERN_1 = Pattern.compile(".{0,100}\\(.{1,100}\\)\\S{1,100}.{0,100}");
+    private static final Pattern COMPOUND_PATTERN_2 = Pattern.compile(".{0,100}\\S{1,100}\\(.{1,100}\\).{0,100}");
+
     public StopwordProcessor(String dictionaryResourceName) {
         super(dictionaryResourceName);
     }
@@ -42,16 +54,16 @@ public class StopwordProcessor extends AbstractDictionaryLoadingProcessor {
      * @return the processed string
      */
     private String removeStopWords(String input) {
-        String output = "";
-        String[] inputWords = input.split("\\s+");
+        StringBuilder output = new StringBuilder(input.length());
+        String[] inputWords = WHITESPACE.split(input);
         for (String inputWord : inputWords) {
             if (!getDictionary().contains(inputWord) && inputWord != null && !inputWord.isEmpty()) {
-                output += inputWord + " ";
+                output.append(inputWord).append(" ");
             }
         }
 
         // remove extraneous whitespace
-        return output.trim();
+        return output.toString().trim();
     }
 
     /**
@@ -61,19 +73,14 @@ public class StopwordProcessor extends AbstractDictionaryLoadingProcessor {
      * @return the processed string
      */
     private String removeCharacters(String input) {
-        String output = input.replaceAll("\\s*,\\s*", " ");
-        output = output.replaceAll("\\s*_\\s*", " ");
-        output = output.replaceAll("\\s*-\\s*", " ");
-
-        //Brackets of compounds shouldn't be removed  (e.g: 4-(N-nitrosomethylamino)-1-(3-pyridyl)butan-1-one  )
-        //Two patterns try to discover compounds..
-        String pattern1 = ".{0,100}\\(.{1,100}\\)\\S{1,100}.{0,100}";
-        String pattern2 = ".{0,100}\\S{1,100}\\(.{1,100}\\).{0,100}";
+        String output = COMMA.matcher(input).replaceAll(" ");
+        output = UNDERSCORE.matcher(output).replaceAll(" ");
+        output = HYPHEN.matcher(output).replaceAll(" ");
 
         //if brackets don't belong to a compound then they are removed
-        if (!(Pattern.matches(pattern1, input) || Pattern.matches(pattern2, input))) {
-            output = output.replaceAll("\\(", " ");
-            output = output.replaceAll("\\)", " ");
+        if (!(COMPOUND_PATTERN_1.matcher(input).matches() || COMPOUND_PATTERN_2.matcher(input).matches())) {
+            output = OPENING_BRACKET.matcher(output).replaceAll(" ");
+            output = CLOSING_BRACKET.matcher(output).replaceAll(" ");
             if (output.endsWith(")")) {
                 output = output.substring(0, output.length() - 1);
             }
@@ -0,0 +1,105 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FileSwitchDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+import org.apache.lucene.store.RAFDirectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The ways in which a ZOOMA lucene index can be stored and read.  Each index can be given its own storage, so that
+ * small indices read by most searches can be held on the heap whilst large ones are memory mapped.
+ * <p/>
+ * Directories are usually created from spring configuration, using {@link #open(Path, String)} as a factory method.
+ *
+ * @date 18/10/26
+ */
+public enum ZoomaIndexStorage {
+    /**
+     * Reads each file through a single random access file.  Concurrent reads of the same file are serialised, so this
+     * scales poorly across search threads.
+     */
+    RAF,
+
+    /**
+     * Memory maps every file, so that reads are served from the operating system's page cache without locking
+     */
+    MMAP,
+
+    /**
+     * Memory maps every file, and loads the files that most searches read (the terms dictionary, postings, norms and
+     * doc values) into the page cache as soon as they are opened, rather than on first search
+     */
+    MMAP_PRELOAD,
+
+    /**
+     * Memory maps every file, but holds small newly flushed segments in memory until they are committed, so that
+     * incremental updates write fewer small files to disk
+     */
+    NRT,
+
+    /**
+     * Holds a copy of the whole index on the heap, writing changes through to disk.  Only suitable for small indices.
+     */
+    HEAP;
+
+    // the files read by most searches, which are worth loading into the page cache up front
+    private static final Set<String> HOT_EXTENSIONS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("tim", "tip", "doc", "nvd", "nvm", "dvd", "dvm")));
+
+    // segments are only held in memory by NRT storage if they are smaller than this, up to this total
+    private static final double NRT_MAX_MERGE_SIZE_MB = 5.0;
+    private static final double NRT_MAX_CACHED_MB = 60.0;
+
+    /**
+     * Opens the index at the given path, using the named storage
+     *
+     * @param path    the path of the index on disk
+     * @param storage the name of the storage to use, ignoring case (for example, "mmap-preload" or "heap")
+     * @return a directory for reading and writing the index
+     * @throws IOException if the index could not be opened
+     */
+    public static Directory open(Path path, String storage) throws IOException {
+        ZoomaIndexStorage indexStorage;
+        try {
+            indexStorage = valueOf(storage.trim().toUpperCase().replace('-', '_'));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown index storage '" + storage + "' for index at " + path + ", " +
+                                                       "expected one of " + Arrays.toString(values()), e);
+        }
+        return indexStorage.createDirectory(path);
+    }
+
+    /**
+     * Creates a directory that uses this storage for the index at the given path
+     *
+     * @param path the path of the index on disk
+     * @return a directory for reading and writing the index
+     * @throws IOException if the index could not be opened
+     */
+    public Directory createDirectory(Path path) throws IOException {
+        switch (this) {
+            case RAF:
+                return new RAFDirectory(path);
+            case MMAP_PRELOAD:
+                MMapDirectory preloaded = new MMapDirectory(path);
+                preloaded.setPreload(true);
+                return new FileSwitchDirectory(HOT_EXTENSIONS, preloaded, new MMapDirectory(path), true);
+            case NRT:
+                return new NRTCachingDirectory(new MMapDirectory(path), NRT_MAX_MERGE_SIZE_MB, NRT_MAX_CACHED_MB);
+            case HEAP:
+                return new HeapCachingDirectory(new MMapDirectory(path));
+            case MMAP:
+            default:
+                return new MMapDirectory(path);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Turns search patterns into the terms used to build lucene queries, and remembers recently built queries so that hot
+ * patterns are not analysed and rebuilt on every search.
+ * <p/>
+ * Patterns are analysed with the same {@link Analyzer} that the {@link uk.ac.ebi.fgpt.zooma.service.ZoomaLuceneIndexer}
+ * uses to build the indices, so that query terms always match indexed terms.  A single analyzer is shared by every
+ * search, and lucene reuses its token streams for each thread, so analysing a pattern no longer creates a new analyzer
+ * and token stream chain.
+ * <p/>
+ * Cached queries are shared by every search, so callers must not modify them; {@link #getQuery(String)} returns a copy
+ * that may be boosted freely.  At most <code>zooma.lucene.query.cache.size</code> queries are cached, evicting the
+ * least recently used first, and setting this size to 0 disables the cache.
+ *
+ * @date 18/10/26
+ */
+public class ZoomaQueryAnalyzer {
+    private final Analyzer analyzer;
+
+    private int maxCachedQueries = 10000; // Default 10,000 cached queries
+
+    // access ordered, so iteration starts from the least recently used query
+    private final LinkedHashMap<String, Query> queries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates a query analyzer that matches the default ZOOMA indexing configuration, an {@link EnglishAnalyzer}
+     * without stopwords
+     */
+    public ZoomaQueryAnalyzer() {
+        this(new EnglishAnalyzer(CharArraySet.EMPTY_SET));
+    }
+
+    /**
+     * Creates a query analyzer that analyses patterns with the given analyzer
+     *
+     * @param analyzer the analyzer used to index the documents that will be searched
+     */
+    public ZoomaQueryAnalyzer(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    public void setConfigurationProperties(Properties configuration) {
+        if (configuration.containsKey("zooma.lucene.query.cache.size")) {
+            setMaxCachedQueries(Integer.parseInt(configuration.getProperty("zooma.lucene.query.cache.size")));
+        }
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public synchronized int getMaxCachedQueries() {
+        return maxCachedQueries;
+    }
+
+    public synchronized void setMaxCachedQueries(int maxCachedQueries) {
+        this.maxCachedQueries = maxCachedQueries;
+        evict();
+    }
+
+    /**
+     * Tokenizes the given pattern, after escaping any lucene query syntax, into the terms that would be indexed for it
+     * in the given field
+     *
+     * @param field   the field being searched
+     * @param pattern the pattern to tokenize
+     * @return the analysed terms, in order
+     * @throws IOException if the pattern could not be read
+     */
+    public List<String> analyze(String field, String pattern) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream(field, QueryParser.escape(pattern))) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(termAtt.toString());
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    /**
+     * Returns a copy of the query cached under the given key, if there is one
+     *
+     * @param key a key that identifies everything the query was built from
+     * @return a copy of the cached query, or null if no query is cached for this key
+     */
+    public Query getQuery(String key) {
+        Query query;
+        synchronized (this) {
+            query = queries.get(key);
+            if (query == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        return query.clone();
+    }
+
+    /**
+     * Caches the given query under the given key.  The query must not be modified after it has been cached.
+     *
+     * @param key   a key that identifies everything the query was built from
+     * @param query the query to cache
+     */
+    public synchronized void putQuery(String key, Query query) {
+        if (maxCachedQueries > 0) {
+            queries.put(key, query);
+            evict();
+        }
+    }
+
+    /**
+     * @return statistics describing the size and effectiveness of the query cache
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("cachedQueries", queries.size());
+        statistics.put("maxCachedQueries", maxCachedQueries);
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        return statistics;
+    }
+
+    private void evict() {
+        while (queries.size() > Math.max(0, maxCachedQueries)) {
+            queries.remove(queries.keySet().iterator().next());
+        }
+    }
+
+    @Override public String toString() {
+        return "ZoomaQueryAnalyzer(" + analyzer + ")";
+    }
+}
@@ -0,0 +1,77 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCompactURISet {
+    @Test
+    public void testRoundTrip() {
+        Set<URI> uris = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            uris.add(URI.create("http://rdf.ebi.ac.uk/resource/zooma/gwas/annotation/" + Integer.toHexString(i * 7919)));
+        }
+        uris.add(URI.create("http://www.ebi.ac.uk/efo/EFO_0000001"));
+        uris.add(URI.create("http://example.com/caf%C3%A9/\u00e9t\u00e9"));
+
+        byte[] encoded = CompactURISet.encode(uris);
+        CompactURISet decoded = new CompactURISet(encoded, 0, encoded.length);
+        assertEquals(uris.size(), decoded.size());
+        assertEquals(uris, decoded);
+        assertEquals(uris.hashCode(), decoded.hashCode());
+        assertTrue(decoded.contains(URI.create("http://www.ebi.ac.uk/efo/EFO_0000001")));
+        assertFalse(decoded.contains(URI.create("http://www.ebi.ac.uk/efo/EFO_0000002")));
+
+        int uncompressed = 0;
+        for (URI uri : uris) {
+            uncompressed += uri.toString().length();
+        }
+        assertTrue(encoded.length < uncompressed / 4,
+                   "Encoded " + uncompressed + " characters of URIs into " + encoded.length + " bytes");
+    }
+
+    @Test
+    public void testDuplicatesAndOrder() {
+        List<URI> uris = Arrays.asList(URI.create("http://www.test.com/annotation2"),
+                                       URI.create("http://www.test.com/annotation10"),
+                                       URI.create("http://www.test.com/annotation2"),
+                                       URI.create("http://www.test.com/annotation1"));
+        byte[] encoded = CompactURISet.encode(uris);
+        CompactURISet decoded = new CompactURISet(encoded, 0, encoded.length);
+        assertEquals(3, decoded.size());
+        assertEquals(Arrays.asList(URI.create("http://www.test.com/annotation1"),
+                                   URI.create("http://www.test.com/annotation10"),
+                                   URI.create("http://www.test.com/annotation2")),
+                     new ArrayList<>(decoded));
+    }
+
+    @Test
+    public void testEncodedBytesAreCopied() {
+        byte[] encoded = CompactURISet.encode(Collections.singleton(URI.create("http://www.test.com/annotation1")));
+        byte[] padded = new byte[encoded.length + 4];
+        System.arraycopy(encoded, 0, padded, 2, encoded.length);
+        CompactURISet decoded = new CompactURISet(padded, 2, encoded.length);
+        Arrays.fill(padded, (byte) 0);
+        Iterator<URI> it = decoded.iterator();
+        assertEquals(URI.create("http://www.test.com/annotation1"), it.next());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testEmpty() {
+        byte[] encoded = CompactURISet.encode(Collections.<URI>emptyList());
+        assertTrue(new CompactURISet(encoded, 0, encoded.length).isEmpty());
+        assertTrue(new CompactURISet(new byte[0], 0, 0).isEmpty());
+    }
+}
@@ -1,10 +1,175 @@
 package uk.ac.ebi.fgpt.zooma.service;
 
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import uk.ac.ebi.fgpt.zooma.datasource.PropertyDAO;
+import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.model.SimpleTypedProperty;
+import uk.ac.ebi.fgpt.zooma.model.SimpleUntypedProperty;
+import uk.ac.ebi.fgpt.zooma.model.TypedProperty;
+import uk.ac.ebi.fgpt.zooma.util.SearchStringProcessor;
+import uk.ac.ebi.fgpt.zooma.util.SearchStringProcessorProvider;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class TestLucenePropertySearchService {
+    private static final URI LIVER = URI.create("http://www.ebi.ac.uk/zooma/test/property/liver");
+    private static final URI LIVER_CANCER = URI.create("http://www.ebi.ac.uk/zooma/test/property/liver-cancer");
+    private static final URI UNTYPED_LIVER = URI.create("http://www.ebi.ac.uk/zooma/test/property/untyped-liver");
+    private static final URI UNSTORED_LIVER = URI.create("http://www.ebi.ac.uk/zooma/test/property/unstored-liver");
+
+    private LucenePropertySearchService searchService;
+    private PropertyDAO propertyDAO;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Directory index = new RAMDirectory();
+        IndexWriter w = new IndexWriter(index, new IndexWriterConfig(new EnglishAnalyzer()));
+        addDoc(w, LIVER, "organism part", "liver", true);
+        addDoc(w, LIVER_CANCER, "disease", "liver cancer", true);
+        addDoc(w, UNTYPED_LIVER, null, "liver tissue", true);
+        addDoc(w, UNSTORED_LIVER, "organism part", "liver lobe", false);
+        addDoc(w, URI.create("http://www.ebi.ac.uk/zooma/test/property/lung"), "organism part", "lung", true);
+        w.close();
+
+        Map<URI, Property> properties = new HashMap<>();
+        properties.put(LIVER, new SimpleTypedProperty(LIVER, "organism part", "liver"));
+        properties.put(LIVER_CANCER, new SimpleTypedProperty(LIVER_CANCER, "disease", "liver cancer"));
+        properties.put(UNTYPED_LIVER, new SimpleUntypedProperty(UNTYPED_LIVER, "liver tissue"));
+        properties.put(UNSTORED_LIVER, new SimpleTypedProperty(UNSTORED_LIVER, "organism part", "liver lobe"));
+
+        propertyDAO = mock(PropertyDAO.class);
+        for (Map.Entry<URI, Property> property : properties.entrySet()) {
+            when(propertyDAO.read(property.getKey())).thenReturn(property.getValue());
+        }
+        when(propertyDAO.readByURIs(Collections.singletonList(UNSTORED_LIVER)))
+                .thenReturn(Collections.singletonList(properties.get(UNSTORED_LIVER)));
+
+        searchService = new LucenePropertySearchService();
+        searchService.setIndex(index);
+        searchService.setPropertyDAO(propertyDAO);
+        searchService.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        searchService.destroy();
+    }
+
+    @Test
+    public void testPropertiesResolvedFromIndex() {
+        List<Property> results = searchService.search("liver");
+        assertEquals(4, results.size());
+        for (Property result : results) {
+            assertTrue(result.getPropertyValue().contains("liver"));
+            if (result.getURI().equals(UNTYPED_LIVER)) {
+                assertFalse(result instanceof TypedProperty);
+            }
+            else {
+                assertTrue(result instanceof TypedProperty);
+            }
+        }
+
+        // only the property without a stored value should be read from the DAO, in one batch
+        verify(propertyDAO, never()).read(any(URI.class));
+        verify(propertyDAO, times(1)).readByURIs(anyCollectionOf(URI.class));
+    }
+
     @Test
-    public void test() {
-        // TODO - unimplemented test, test query creation logic
+    public void testPropertiesResolvedFromDAO() {
+        searchService.setResolvePropertiesFromIndex(false);
+        List<Property> results = searchService.search("liver");
+        assertEquals(4, results.size());
+        verify(propertyDAO, times(4)).read(any(URI.class));
+        verify(propertyDAO, never()).readByURIs(anyCollectionOf(URI.class));
+    }
+
+    @Test
+    public void testResultOrderMatchesDAOMode() {
+        List<Property> fromIndex = searchService.search("organism part", "liver");
+        searchService.setResolvePropertiesFromIndex(false);
+        List<Property> fromDAO = searchService.search("organism part", "liver");
+        assertEquals(uris(fromDAO), uris(fromIndex));
+    }
+
+    @Test
+    public void testSuggestionsFromIndex() {
+        List<String> suggestions = searchService.suggest("LIV");
+        assertEquals(3, suggestions.size());
+        assertTrue(suggestions.containsAll(Arrays.asList("liver", "liver cancer", "liver tissue")));
+        assertTrue(searchService.suggest("liv", URI.create("http://www.ebi.ac.uk/zooma/test/source")).isEmpty());
+        verify(propertyDAO, never()).read(any(URI.class));
+    }
+
+    @Test
+    public void testSuggestionsMatchAnalyzedAndProcessedPrefixes() {
+        // the analyzed prefix matches the first analyzed term of each value
+        List<String> suggestions = searchService.suggest("Livers");
+        assertEquals(3, suggestions.size());
+        assertTrue(suggestions.containsAll(Arrays.asList("liver", "liver cancer", "liver tissue")));
+        assertTrue(searchService.suggest("hepatic c").isEmpty());
+
+        SearchStringProcessor synonyms = new SearchStringProcessor() {
+            @Override public float getBoostFactor() {
+                return 1;
+            }
+
+            @Override public boolean canProcess(String searchString) {
+                return searchString.startsWith("hepatic ");
+            }
+
+            @Override public Collection<String> processSearchString(String searchString) {
+                return Collections.singletonList(searchString.replace("hepatic ", "liver "));
+            }
+        };
+        SearchStringProcessorProvider provider = mock(SearchStringProcessorProvider.class);
+        when(provider.getProcessors()).thenReturn(Collections.singletonList(synonyms));
+        searchService.setSearchStringProcessorProvider(provider);
+        assertEquals(Collections.singletonList("liver cancer"), searchService.suggest("hepatic c"));
+    }
+
+    private Collection<URI> uris(List<Property> properties) {
+        List<URI> uris = new ArrayList<>();
+        for (Property property : properties) {
+            uris.add(property.getURI());
+        }
+        return uris;
+    }
+
+    private void addDoc(IndexWriter w, URI uri, String type, String value, boolean storeValue) throws IOException {
+        Document doc = new Document();
+        doc.add(new Field("uri", uri.toString(), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        doc.add(new Field("name", value, storeValue ? Field.Store.YES : Field.Store.NO, Field.Index.ANALYZED));
+        if (type != null) {
+            doc.add(new Field("type", type, Field.Store.YES, Field.Index.ANALYZED));
+        }
+        w.addDocument(doc);
     }
 }
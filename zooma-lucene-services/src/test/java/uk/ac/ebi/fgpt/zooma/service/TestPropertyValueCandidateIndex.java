@@ -0,0 +1,119 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.simmetrics.StringMetric;
+import org.simmetrics.StringMetricBuilder;
+import org.simmetrics.metrics.JaccardSimilarity;
+import org.simmetrics.metrics.NeedlemanWunch;
+import org.simmetrics.tokenizers.Whitespace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPropertyValueCandidateIndex {
+    private List<String> dictionary;
+    private List<String> queries;
+
+    private PropertyValueCandidateIndex index;
+
+    private StringMetric needlemanWunsch;
+    private StringMetric jaccard;
+
+    @BeforeEach
+    public void setUp() {
+        List<String> words = Arrays.asList("liver", "lung", "heart", "brain", "kidney", "adenocarcinoma", "carcinoma",
+                                           "cell", "line", "homo", "sapiens", "mus", "musculus", "type", "ii",
+                                           "diabetes", "mellitus", "breast", "cancer", "of", "the", "a", "b");
+        Random random = new Random(42);
+        Set<String> values = new HashSet<>();
+        while (values.size() < 2000) {
+            StringBuilder value = new StringBuilder();
+            int wordCount = 1 + random.nextInt(4);
+            for (int i = 0; i < wordCount; i++) {
+                if (i > 0) {
+                    value.append(" ");
+                }
+                value.append(words.get(random.nextInt(words.size())));
+            }
+            values.add(mutate(value.toString(), random));
+        }
+        dictionary = new ArrayList<>(values);
+
+        queries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            queries.add(mutate(dictionary.get(random.nextInt(dictionary.size())), random));
+        }
+        queries.addAll(Arrays.asList("a", "ab", "liver", "lver", "type ii diabetes mellitus", "xyz", " leading"));
+
+        index = new PropertyValueCandidateIndex(dictionary);
+        needlemanWunsch = new NeedlemanWunch();
+        jaccard = StringMetricBuilder.with(new JaccardSimilarity<String>()).tokenize(new Whitespace()).build();
+    }
+
+    @Test
+    public void testNeedlemanWunschCandidatesMatchScan() {
+        for (String query : queries) {
+            assertEquals(scan(query, needlemanWunsch, 0.90f),
+                         score(query, index.findNeedlemanWunschCandidates(query, 0.90f), needlemanWunsch, 0.90f),
+                         "Needleman-Wunsch candidates missed similar values for '" + query + "'");
+        }
+    }
+
+    @Test
+    public void testJaccardCandidatesMatchScan() {
+        for (String query : queries) {
+            assertEquals(scan(query, jaccard, 0.525f),
+                         score(query, index.findJaccardCandidates(query, 0.525f), jaccard, 0.525f),
+                         "Jaccard candidates missed similar values for '" + query + "'");
+        }
+    }
+
+    @Test
+    public void testCandidatesAreSmallerThanDictionary() {
+        List<String> candidates = index.findNeedlemanWunschCandidates("type ii diabetes mellitus", 0.90f);
+        assertTrue(candidates.size() < dictionary.size() / 10,
+                   "Too many Needleman-Wunsch candidates (" + candidates.size() + ")");
+    }
+
+    private Set<String> scan(String query, StringMetric metric, float minScore) {
+        return score(query, dictionary, metric, minScore);
+    }
+
+    private Set<String> score(String query, Collection<String> values, StringMetric metric, float minScore) {
+        Set<String> results = new HashSet<>();
+        for (String value : values) {
+            if (metric.compare(query, value) >= minScore) {
+                results.add(value);
+            }
+        }
+        return results;
+    }
+
+    private String mutate(String value, Random random) {
+        StringBuilder mutated = new StringBuilder(value);
+        int edits = random.nextInt(3);
+        for (int i = 0; i < edits && mutated.length() > 1; i++) {
+            int position = random.nextInt(mutated.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    mutated.setCharAt(position, (char) ('a' + random.nextInt(26)));
+                    break;
+                case 1:
+                    mutated.deleteCharAt(position);
+                    break;
+                default:
+                    mutated.insert(position, (char) ('a' + random.nextInt(26)));
+            }
+        }
+        return mutated.toString();
+    }
+}
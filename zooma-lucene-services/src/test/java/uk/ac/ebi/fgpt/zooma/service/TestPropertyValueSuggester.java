@@ -0,0 +1,113 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPropertyValueSuggester {
+    private static final URI ATLAS = URI.create("http://www.ebi.ac.uk/gxa");
+    private static final URI GWAS = URI.create("http://www.ebi.ac.uk/gwas");
+    private static final URI UNKNOWN = URI.create("http://www.ebi.ac.uk/unknown");
+
+    private PropertyValueSuggester suggester;
+
+    @BeforeEach
+    public void setUp() {
+        suggester = new PropertyValueSuggester.Builder()
+                .add("cancer", 50, Collections.singletonList(GWAS))
+                .add("carcinoma", 10, Collections.singletonList(ATLAS))
+                .add("Cardiac muscle", 30, Arrays.asList(ATLAS, GWAS))
+                .add("cardiac muscle", 5, Collections.singletonList(ATLAS))
+                .add("cat", 10, Collections.singletonList(ATLAS))
+                .add("cancer", 20, Collections.singletonList(ATLAS))
+                .add("liver", 100, Collections.singletonList(ATLAS))
+                .build(1);
+    }
+
+    @Test
+    public void testSuggestionsAreOrderedByWeight() {
+        assertEquals(Arrays.asList("cancer", "Cardiac muscle", "carcinoma", "cat", "cardiac muscle"),
+                     suggester.suggest("ca", 10));
+        assertEquals(Arrays.asList("cancer", "Cardiac muscle"), suggester.suggest("CA", 2));
+        assertEquals(Arrays.asList("Cardiac muscle", "carcinoma", "cardiac muscle"), suggester.suggest("car", 10));
+        assertEquals(Collections.singletonList("liver"), suggester.suggest("", 1));
+        assertTrue(suggester.suggest("lung", 10).isEmpty());
+        assertTrue(suggester.suggest("ca", 0).isEmpty());
+    }
+
+    @Test
+    public void testSuggestionsAreFilteredBySource() {
+        assertEquals(Arrays.asList("cancer", "Cardiac muscle"), suggester.suggest("ca", 10, GWAS));
+        assertEquals(Arrays.asList("cancer", "Cardiac muscle", "carcinoma", "cat", "cardiac muscle"),
+                     suggester.suggest("ca", 10, ATLAS, GWAS));
+        assertTrue(suggester.suggest("ca", 10, UNKNOWN).isEmpty());
+        assertEquals(Collections.singletonList("cancer"), suggester.suggest("ca", 1, UNKNOWN, GWAS));
+    }
+
+    @Test
+    public void testValuesAreSuggestedForEachKey() {
+        suggester = new PropertyValueSuggester.Builder()
+                .add("Livers", Collections.singletonList("liver"), 10, Collections.singletonList(ATLAS))
+                .add("liver cancer", Collections.singletonList("liver cancer"), 20, Collections.singletonList(GWAS))
+                .add("hepatic cancer", Arrays.asList("hepat cancer", "liver cancer"), 5,
+                     Collections.singletonList(GWAS))
+                .build(1);
+        assertEquals(Arrays.asList("liver cancer", "Livers", "hepatic cancer"), suggester.suggest("liver", 10));
+        assertEquals(Arrays.asList("liver cancer", "hepatic cancer"), suggester.suggest("LIVER C", 10));
+        assertEquals(Arrays.asList("liver cancer", "hepatic cancer"),
+                     suggester.suggest(Arrays.asList("hepat", "liver c", "liver can"), 10));
+        assertEquals(Collections.singletonList("hepatic cancer"), suggester.suggest("hepat", 10, GWAS));
+        assertEquals(Collections.singletonList("Livers"), suggester.suggest("liver", 1, ATLAS));
+    }
+
+    @Test
+    public void testSuggestionsMatchExhaustiveSearch() {
+        Random random = new Random(42);
+        String alphabet = "abcde";
+        List<URI> sources = Arrays.asList(ATLAS, GWAS, UNKNOWN);
+        List<String> values = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        List<URI> valueSources = new ArrayList<>();
+        PropertyValueSuggester.Builder builder = new PropertyValueSuggester.Builder();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (values.contains(value.toString())) {
+                continue;
+            }
+            values.add(value.toString());
+            // distinct weights, so there is only one correct order
+            weights.add(i);
+            valueSources.add(sources.get(random.nextInt(sources.size())));
+            builder.add(value.toString(), i, Collections.singletonList(valueSources.get(valueSources.size() - 1)));
+        }
+        suggester = builder.build(1);
+
+        for (String prefix : Arrays.asList("", "a", "ab", "abc", "e", "edc")) {
+            for (URI source : Arrays.asList(null, ATLAS)) {
+                List<String> expected = new ArrayList<>();
+                for (int w = weights.size() - 1; w >= 0 && expected.size() < 20; w--) {
+                    if (values.get(w).startsWith(prefix) && (source == null || valueSources.get(w).equals(source))) {
+                        expected.add(values.get(w));
+                    }
+                }
+                List<String> actual = source == null
+                        ? suggester.suggest(prefix, 20)
+                        : suggester.suggest(prefix, 20, source);
+                assertEquals(expected, actual, "Wrong suggestions for '" + prefix + "' from " + source);
+            }
+        }
+    }
+}
@@ -3,13 +3,22 @@ package uk.ac.ebi.fgpt.zooma.service;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.Version;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.function.Executable;
 import uk.ac.ebi.fgpt.zooma.datasource.AnnotationDAO;
 import uk.ac.ebi.fgpt.zooma.datasource.AnnotationSummaryDAO;
 import uk.ac.ebi.fgpt.zooma.datasource.PropertyDAO;
@@ -42,9 +51,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
@@ -62,6 +74,7 @@ public class TestZoomaLuceneIndexer {
     private AnnotationDAO singleAnnotationDAO;
     private AnnotationDAO multiAnnotationDAO;
     private AnnotationDAO verifiedAnnotationDAO;
+    private AnnotationDAO pagedAnnotationDAO;
     private AnnotationSummaryDAO verifiedSummaryAnnotationDAO;
 
     private Map<URI, AnnotationProvenance> verifiedProvenanceMap;
@@ -178,6 +191,20 @@ public class TestZoomaLuceneIndexer {
             verifiedAnnotations.add(anno5);
             when(verifiedAnnotationDAO.read()).thenReturn(verifiedAnnotations);
             when(verifiedAnnotationDAO.count()).thenReturn(4);
+            when(verifiedAnnotationDAO.read(anno3.getURI())).thenReturn(null);
+
+            // the same verified annotations, read two at a time with the tags of anno3 split across three pages
+            Annotation anno3Split = new SimpleAnnotation(anno3.getURI(),
+                    Collections.<BiologicalEntity>emptySet(),
+                    property1,
+                    prov3,
+                    semanticTag2);
+            pagedAnnotationDAO = mock(AnnotationDAO.class);
+            when(pagedAnnotationDAO.read(2, 0)).thenReturn(Arrays.asList(anno1, anno3));
+            when(pagedAnnotationDAO.read(2, 2)).thenReturn(Arrays.asList(anno3Split, anno3));
+            when(pagedAnnotationDAO.read(2, 4)).thenReturn(Arrays.asList(anno3Split, anno4));
+            when(pagedAnnotationDAO.read(2, 6)).thenReturn(Collections.singletonList(anno5));
+            when(pagedAnnotationDAO.read(2, 8)).thenReturn(Collections.<Annotation>emptyList());
 
             verifiedProvenanceMap = new HashMap<>();
             verifiedProvenanceMap.put(anno1.getURI(), prov1);
@@ -360,5 +387,204 @@ public class TestZoomaLuceneIndexer {
 
         assertTrue(verifiedSummary.getQuality() > unverifiedSummary.getQuality(),
                 "Verified summary should score higher than unverified summary");
+
+        // doc values should give the same quality scores as stored fields
+        try (IndexReader reader = DirectoryReader.open(summaryDir)) {
+            assertTrue(AnnotationSummaryDocValues.isAvailable(reader), "Summary index should contain doc values");
+            URI rankedSource = URI.create("http://www.test.com/source2");
+            AnnotationSummaryMapper mapper = new AnnotationSummaryMapper(3, reader.numDocs(), rankedSource);
+            for (LeafReaderContext context : reader.leaves()) {
+                AnnotationSummaryDocValues values = new AnnotationSummaryDocValues(context.reader());
+                LuceneDocValuesMapper.LeafMapper<AnnotationSummary> leafMapper =
+                        mapper.getLeafMapper(context.reader());
+                for (int i = 0; i < context.reader().maxDoc(); i++) {
+                    final Document doc = context.reader().document(i);
+                    assertEquals(mapper.getDocumentQuality(doc),
+                                 mapper.getDocumentQuality(values, i, 1),
+                                 "Doc values quality differs from stored field quality");
+
+                    // annotation URIs are only held in doc values, so can only be mapped with a leaf mapper
+                    assertFalse(leafMapper.mapDocument(doc, i, 1).getAnnotationURIs().isEmpty(),
+                                "Leaf mapper should read annotation URIs from doc values");
+                    assertThrows(IllegalArgumentException.class, new Executable() {
+                        @Override public void execute() throws Throwable {
+                            mapper.mapDocument(doc, 1);
+                        }
+                    });
+                }
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            fail("Couldn't read annotation summary index");
+        }
+    }
+
+    @Test
+    public void testStreamingAnnotationIndex() throws IOException {
+        ZoomaLuceneIndexer indexer = new ZoomaLuceneIndexer();
+        indexer.setAnalyzer(analyzer);
+        indexer.setAnnotationPageSize(2);
+        indexer.setIndexingThreadCount(2);
+        indexer.setPropertyIndex(new RAMDirectory());
+        indexer.setPropertyTypeIndex(new RAMDirectory());
+        indexer.setAnnotationCountIndex(new RAMDirectory());
+        indexer.setAnnotationIndex(new RAMDirectory());
+        indexer.setAnnotationSummaryIndex(new RAMDirectory());
+
+        AnnotationProvenanceScores scores = indexer.createAnnotationIndex(pagedAnnotationDAO);
+        assertEquals(4, scores.size(), "Wrong number of annotation scores");
+        assertEquals(URI.create("http://www.test.com/source2"),
+                     scores.getSource(URI.create("http://www.test.com/annotation4")),
+                     "Wrong annotation source");
+
+        try (IndexReader reader = DirectoryReader.open(indexer.getAnnotationIndex())) {
+            assertEquals(4, reader.numDocs(), "Wrong number of annotations");
+            Bits liveDocs = MultiFields.getLiveDocs(reader);
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                if ((liveDocs == null || liveDocs.get(i)) &&
+                        reader.document(i).get("uri").equals("http://www.test.com/annotation3")) {
+                    assertEquals(2,
+                                 reader.document(i).getValues("semanticTag").length,
+                                 "Annotation split across pages should have all semantic tags");
+                }
+            }
+        }
+
+        indexer.createAnnotationSummaryIndex(verifiedSummaryAnnotationDAO, scores);
+        assertEquals("2",
+                     getSummary(indexer, verifiableSemanticTag).get("timesVerified"),
+                     "Wrong summary verification count");
+        indexer.destroy();
+    }
+
+    @Test
+    public void testIncrementalDatasourceUpdate() throws IOException {
+        ZoomaLuceneIndexer indexer = createIncrementalIndexer();
+
+        // remove all annotations from source2 - this removes anno4, which verified anno1
+        URI source2 = URI.create("http://www.test.com/source2");
+        indexer.updateDatasourceIndices(source2, Collections.<Annotation>emptySet());
+
+        try (IndexReader reader = DirectoryReader.open(indexer.getAnnotationIndex())) {
+            assertEquals(3, reader.numDocs(), "Wrong number of annotations after update");
+        }
+
+        Document summary = getSummary(indexer, verifiableSemanticTag);
+        assertEquals("1", summary.get("frequency"), "Wrong summary frequency after update");
+        assertEquals("1", summary.get("timesVerified"), "Summary should no longer be verified");
+
+        Set<String> typeSources = new HashSet<>();
+        try (IndexReader reader = DirectoryReader.open(indexer.getPropertyTypeIndex())) {
+            Bits liveDocs = MultiFields.getLiveDocs(reader);
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                if ((liveDocs == null || liveDocs.get(i)) && reader.document(i).get("name").equals("type1")) {
+                    typeSources.addAll(Arrays.asList(reader.document(i).getValues("source")));
+                }
+            }
+        }
+        assertEquals(new HashSet<>(Arrays.asList("http://www.test.com/source1", "http://www.test.com/source3")),
+                     typeSources,
+                     "Wrong property type sources after update");
+        indexer.destroy();
+    }
+
+    @Test
+    public void testIncrementalAnnotationUpdate() throws IOException {
+        ZoomaLuceneIndexer indexer = createIncrementalIndexer();
+
+        // anno3 no longer exists in the annotation DAO, so should be removed
+        indexer.updateAnnotationIndices(Collections.singleton(URI.create("http://www.test.com/annotation3")));
+
+        try (IndexReader reader = DirectoryReader.open(indexer.getAnnotationIndex())) {
+            assertEquals(3, reader.numDocs(), "Wrong number of annotations after update");
+        }
+        try (IndexReader reader = DirectoryReader.open(indexer.getAnnotationSummaryIndex())) {
+            assertEquals(3, reader.numDocs(), "Summaries should be replaced, not duplicated");
+        }
+
+        Document summary = getSummary(indexer, unverifiableSemanticTag);
+        assertEquals("1", summary.get("frequency"), "Wrong summary frequency after update");
+        assertEquals(Collections.singleton(URI.create("http://www.test.com/annotation5")),
+                     getSummaryAnnotations(indexer, unverifiableSemanticTag),
+                     "Wrong summary annotations after update");
+        indexer.destroy();
+    }
+
+    @Test
+    public void testIndicesWithOldSummaryIDsAreNotUpdatable() throws IOException {
+        ZoomaLuceneIndexer indexer = createIncrementalIndexer();
+        // recommit the annotation index as a version that did not record the summary ID scheme would have done
+        try (IndexWriter writer = new IndexWriter(indexer.getAnnotationIndex(), new IndexWriterConfig(analyzer))) {
+            writer.setCommitData(Collections.singletonMap(ZoomaSearcherManager.COMMIT_TIMESTAMP_KEY,
+                                                          Long.toString(System.currentTimeMillis())));
+            writer.commit();
+        }
+        assertFalse(indexer.supportsIncrementalUpdates(),
+                    "Indices with summary IDs from an earlier scheme should not support incremental updates");
+        indexer.destroy();
+    }
+
+    private ZoomaLuceneIndexer createIncrementalIndexer() throws IOException {
+        ZoomaLuceneIndexer indexer = new ZoomaLuceneIndexer();
+        indexer.setAnalyzer(analyzer);
+        indexer.setAnnotationDAO(verifiedAnnotationDAO);
+        indexer.setPropertyDAO(propertyDAO);
+        indexer.setPropertyIndex(new RAMDirectory());
+        indexer.setPropertyTypeIndex(new RAMDirectory());
+        indexer.setAnnotationCountIndex(new RAMDirectory());
+        indexer.setAnnotationIndex(new RAMDirectory());
+        indexer.setAnnotationSummaryIndex(new RAMDirectory());
+
+        indexer.createAnnotationCountIndex(verifiedAnnotationDAO.count());
+        indexer.createAnnotationIndex(new ArrayList<>(verifiedAnnotationDAO.read()));
+        indexer.createAnnotationSummaryIndex(verifiedSummaryAnnotationDAO, verifiedProvenanceMap);
+        // all verified annotations share the same property
+        Annotation annotation = verifiedAnnotationDAO.read().iterator().next();
+        indexer.createPropertyIndices(Collections.singleton(annotation.getAnnotatedProperty()));
+        assertTrue(indexer.supportsIncrementalUpdates(), "Indices should support incremental updates");
+        return indexer;
+    }
+
+    private Document getSummary(ZoomaLuceneIndexer indexer, URI semanticTag) throws IOException {
+        Document result = null;
+        try (IndexReader reader = DirectoryReader.open(indexer.getAnnotationSummaryIndex())) {
+            Bits liveDocs = MultiFields.getLiveDocs(reader);
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                if (liveDocs != null && !liveDocs.get(i)) {
+                    // skip summaries replaced by the update
+                    continue;
+                }
+                Document doc = reader.document(i);
+                if (Arrays.asList(doc.getValues("semanticTag")).contains(semanticTag.toString())) {
+                    assertTrue(result == null, "Found more than one summary for " + semanticTag);
+                    result = doc;
+                }
+            }
+        }
+        assertNotNull(result, "Could not find summary for " + semanticTag);
+        return result;
+    }
+
+    private Set<URI> getSummaryAnnotations(ZoomaLuceneIndexer indexer, URI semanticTag) throws IOException {
+        Set<URI> result = null;
+        try (IndexReader reader = DirectoryReader.open(indexer.getAnnotationSummaryIndex())) {
+            for (LeafReaderContext context : reader.leaves()) {
+                Bits liveDocs = context.reader().getLiveDocs();
+                AnnotationSummaryDocValues values = new AnnotationSummaryDocValues(context.reader());
+                assertTrue(values.hasAnnotationURIs(), "Summary index should contain annotation doc values");
+                for (int i = 0; i < context.reader().maxDoc(); i++) {
+                    if (liveDocs != null && !liveDocs.get(i)) {
+                        continue;
+                    }
+                    Document doc = context.reader().document(i);
+                    if (Arrays.asList(doc.getValues("semanticTag")).contains(semanticTag.toString())) {
+                        result = values.getAnnotationURIs(i);
+                    }
+                }
+            }
+        }
+        assertNotNull(result, "Could not find summary for " + semanticTag);
+        return result;
     }
 }
@@ -6,10 +6,17 @@ import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.Query;
@@ -22,6 +29,7 @@ import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
 import uk.ac.ebi.fgpt.zooma.datasource.ZoomaDAO;
 import uk.ac.ebi.fgpt.zooma.model.Identifiable;
 
@@ -32,10 +40,14 @@ import java.net.URI;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
@@ -110,6 +122,13 @@ public class TestZoomaLuceneSearchService {
         }
     }
 
+    public void addDoc(IndexWriter w, String s, long quality) throws IOException {
+        Document doc = new Document();
+        doc.add(new Field("name", s, Field.Store.YES, Field.Index.ANALYZED));
+        doc.add(new NumericDocValuesField("quality", quality));
+        w.addDocument(doc);
+    }
+
     public URI convertToURI(String s) throws UnsupportedEncodingException {
         String encoded = URLEncoder.encode(s, "UTF-8");
         encoded = encoded.replaceAll("%20", "+");
@@ -147,6 +166,115 @@ public class TestZoomaLuceneSearchService {
         }
     }
 
+    @Test
+    public void testDoQueryWithLimit() {
+        try {
+            Query q = new QueryParser("name", analyzer).parse("foo");
+            List<String> results = searchService.doQuery(q, new SingleFieldStringMapper("name"), 2);
+            assertEquals(2, results.size(), "Wrong number of results");
+            assertEquals("foo", results.get(0), "Best match should be returned first");
+
+            results = searchService.doQuery(q, new SingleFieldStringMapper("name"), 10);
+            assertEquals(4, results.size(), "Wrong number of results");
+        }
+        catch (ParseException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testUnlimitedQueryKeepsScoreOrder() throws Exception {
+        Query q = new QueryParser("name", analyzer).parse("foo bar");
+        List<String> all = searchService.doQuery(q, new SingleFieldStringMapper("name"), -1);
+        List<String> limited = searchService.doQuery(q, new SingleFieldStringMapper("name"), 100);
+        assertEquals(6, all.size(), "Wrong number of results");
+        assertEquals(limited, all, "Unlimited queries should return hits in the same order as limited queries");
+    }
+
+    @Test
+    public void testLimitedQueryRanksByDocumentQuality() throws Exception {
+        Directory index = new RAMDirectory();
+        IndexWriter w = new IndexWriter(index, new IndexWriterConfig(analyzer));
+        addDoc(w, "foo", 1);
+        addDoc(w, "foo bar", 10);
+        addDoc(w, "foo baz", 1);
+        w.close();
+        ZoomaLuceneSearchService qualitySearchService = new ZoomaLuceneSearchService() {
+        };
+        qualitySearchService.setIndex(index);
+        qualitySearchService.init();
+
+        final AtomicInteger leafMapperCount = new AtomicInteger();
+        LuceneDocValuesMapper<String> mapper = new QualityMapper(leafMapperCount);
+        Query q = new QueryParser("name", analyzer).parse("foo");
+
+        // "foo" is the best lucene match, but "foo bar" has a much higher quality
+        assertEquals(Collections.singletonList("foo bar"), qualitySearchService.doQuery(q, mapper, 1, 0f));
+
+        leafMapperCount.set(0);
+        assertEquals(3, qualitySearchService.doQuery(q, mapper, 3, 0f).size());
+        assertEquals(2, leafMapperCount.get(),
+                     "Doc values should be opened once per segment for collection and once for mapping");
+    }
+
+    @Test
+    public void testDoQueryWithScoreThreshold() {
+        try {
+            Query q = new QueryParser("name", analyzer).parse("foo");
+            List<String> results = searchService.doQuery(q, new SingleFieldStringMapper("name"), -1, 0.99f);
+            assertEquals(1, results.size(), "Wrong number of results");
+            assertEquals("foo", results.get(0), "Only the best match should be above the threshold");
+
+            results = searchService.doQuery(q, new SingleFieldStringMapper("name"), -1, 0f);
+            assertEquals(4, results.size(), "Wrong number of results");
+        }
+        catch (ParseException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testQueryAfterDeadlineIsTruncated() throws Exception {
+        Query q = new QueryParser("name", analyzer).parse("foo");
+        SearchDeadline deadline = SearchDeadline.at(System.currentTimeMillis() - 1);
+        SearchDeadline previous = deadline.attach();
+        try {
+            assertTrue(searchService.doQuery(q, new SingleFieldStringMapper("name")).isEmpty());
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        assertTrue(deadline.isTruncated(), "Skipping a query at the deadline should mark the results truncated");
+
+        deadline = SearchDeadline.after(60000);
+        previous = deadline.attach();
+        try {
+            assertEquals(4, searchService.doQuery(q, new SingleFieldStringMapper("name")).size());
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        assertFalse(deadline.isTruncated(), "A query completed within the deadline should not be truncated");
+    }
+
+    @Test
+    public void testSlowQueryRewriteIsBoundedByDeadline() throws Exception {
+        SearchDeadline deadline = SearchDeadline.after(200);
+        SearchDeadline previous = deadline.attach();
+        long start = System.currentTimeMillis();
+        try {
+            assertTrue(searchService.doQuery(new SlowRewriteQuery("foo"), new SingleFieldStringMapper("name")).isEmpty());
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        long time = System.currentTimeMillis() - start;
+        assertTrue(time < 2000, "Rewriting took " + time + "ms, but should have stopped at the 200ms deadline");
+        assertTrue(deadline.isTruncated(), "A query stopped whilst rewriting should mark the results truncated");
+    }
+
     @Test
     public void testDoQueryObject() {
         // build a query
@@ -229,4 +357,70 @@ public class TestZoomaLuceneSearchService {
             fail("Query failed");
         }
     }
+
+    /**
+     * A query that keeps reading the terms of the index whilst it is rewritten, as an expensive multi-term query
+     * would, for up to five seconds before rewriting to a simple term query.
+     */
+    private static class SlowRewriteQuery extends Query {
+        private final String term;
+
+        private SlowRewriteQuery(String term) {
+            this.term = term;
+        }
+
+        @Override public Query rewrite(IndexReader reader) throws IOException {
+            long giveUp = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < giveUp) {
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    TermsEnum terms = leaf.reader().terms("name").iterator();
+                    while (terms.next() != null) {
+                        try {
+                            Thread.sleep(1);
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("Interrupted whilst rewriting", e);
+                        }
+                    }
+                }
+            }
+            return new TermQuery(new Term("name", term));
+        }
+
+        @Override public String toString(String field) {
+            return "slow(" + term + ")";
+        }
+    }
+
+    private static class QualityMapper extends SingleFieldStringMapper implements LuceneDocValuesMapper<String> {
+        private final AtomicInteger leafMapperCount;
+
+        private QualityMapper(AtomicInteger leafMapperCount) {
+            super("name");
+            this.leafMapperCount = leafMapperCount;
+        }
+
+        @Override public boolean canUseDocValues(IndexReader reader) {
+            return true;
+        }
+
+        @Override public Set<String> getStoredFieldNames() {
+            return Collections.singleton("name");
+        }
+
+        @Override public LeafMapper<String> getLeafMapper(LeafReader reader) throws IOException {
+            leafMapperCount.incrementAndGet();
+            final NumericDocValues quality = DocValues.getNumeric(reader, "quality");
+            return new LeafMapper<String>() {
+                @Override public float getDocumentQuality(int docId, int rank) {
+                    return quality.get(docId);
+                }
+
+                @Override public String mapDocument(Document d, int docId, int rank) {
+                    return d.get("name");
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,135 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.ExitableDirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestZoomaSearcherManager {
+    private Directory index;
+    private ZoomaSearcherManager searcherManager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        index = new RAMDirectory();
+        addDoc("foo");
+        searcherManager = new ZoomaSearcherManager(index, null);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        searcherManager.close();
+        index.close();
+    }
+
+    private void addDoc(String s) throws IOException {
+        IndexWriter w = new IndexWriter(index, new IndexWriterConfig(new EnglishAnalyzer()));
+        Document doc = new Document();
+        doc.add(new Field("name", s, Field.Store.YES, Field.Index.ANALYZED));
+        w.addDocument(doc);
+        w.setCommitData(Collections.singletonMap(ZoomaSearcherManager.COMMIT_TIMESTAMP_KEY,
+                                                 Long.toString(System.currentTimeMillis())));
+        w.close();
+    }
+
+    @Test
+    public void testSearcherIsShared() throws IOException {
+        IndexSearcher first = searcherManager.acquire();
+        IndexSearcher second = searcherManager.acquire();
+        try {
+            assertSame(first, second, "Searchers should be shared between queries");
+            assertEquals(2, searcherManager.getActiveSearcherCount(), "Wrong number of active searchers");
+        }
+        finally {
+            searcherManager.release(first);
+            searcherManager.release(second);
+        }
+        assertEquals(0, searcherManager.getActiveSearcherCount(), "Searchers were not released");
+        assertEquals(1, searcherManager.getRefreshCount(), "Index should only have been opened once");
+    }
+
+    @Test
+    public void testQueryDeadlineStopsReadingTermsOnRefreshedSearchers() throws Exception {
+        addDoc("bar");
+        searcherManager.maybeRefresh();
+
+        final IndexSearcher searcher = searcherManager.acquire();
+        try {
+            searcherManager.startQueryDeadline(1);
+            Thread.sleep(10);
+            try {
+                assertThrows(ExitableDirectoryReader.ExitingReaderException.class, new Executable() {
+                    @Override public void execute() throws Throwable {
+                        readTerms(searcher);
+                    }
+                });
+            }
+            finally {
+                searcherManager.endQueryDeadline();
+            }
+            // without a deadline, the same searcher reads every term
+            assertEquals(2, readTerms(searcher));
+        }
+        finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private int readTerms(IndexSearcher searcher) throws IOException {
+        int count = 0;
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            TermsEnum terms = leaf.reader().terms("name").iterator();
+            while (terms.next() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testRefreshAfterCommit() throws IOException {
+        IndexSearcher before = searcherManager.acquire();
+        try {
+            assertEquals(1, before.getIndexReader().numDocs(), "Wrong number of documents");
+        }
+        finally {
+            searcherManager.release(before);
+        }
+
+        addDoc("bar");
+        searcherManager.maybeRefresh();
+
+        IndexSearcher after = searcherManager.acquire();
+        try {
+            assertNotSame(before, after, "Searcher was not refreshed after commit");
+            assertEquals(2, after.getIndexReader().numDocs(), "Refreshed searcher does not see new document");
+        }
+        finally {
+            searcherManager.release(after);
+        }
+        assertEquals(2, searcherManager.getRefreshCount(), "Wrong number of refreshes");
+        assertTrue(searcherManager.getRefreshLag() >= 0, "Refresh lag should be known for timestamped commits");
+        assertEquals(2L, searcherManager.getStatistics().get("refreshes"));
+        assertEquals(0L, searcherManager.getStatistics().get("activeSearchers"));
+    }
+}
@@ -0,0 +1,134 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.ac.ebi.fgpt.zooma.util.ZoomaQueryAnalyzer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark of the time and memory allocated per query when turning search patterns into lucene queries,
+ * comparing the previous approach (a new analyzer for every pattern) with a shared {@link ZoomaQueryAnalyzer}, both
+ * with and without its query cache.
+ * <p/>
+ * Each benchmark invocation formulates a query for every one of a fixed set of typical patterns, and results are
+ * reported per formulated query.  Run {@link #main(String[])} from the test classpath to run every benchmark with the
+ * GC profiler, which reports allocation per query as <code>gc.alloc.rate.norm</code>.
+ *
+ * @date 18/10/26
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZoomaQueryFormulationBenchmark {
+    private static final String[] PATTERNS = {
+            "heart",
+            "liver",
+            "Homo sapiens",
+            "breast carcinoma",
+            "acute myeloid leukemia",
+            "bone marrow (left femur)",
+            "CD4-positive, alpha-beta T cell",
+            "adult",
+            "normal",
+            "Mus musculus"
+    };
+
+    private ZoomaLuceneSearchService uncached;
+    private ZoomaLuceneSearchService cached;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(ZoomaQueryFormulationBenchmark.class.getSimpleName())
+                           .addProfiler(GCProfiler.class)
+                           .build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        uncached = new ZoomaLuceneSearchService() {
+        };
+        ZoomaQueryAnalyzer uncachedAnalyzer = new ZoomaQueryAnalyzer();
+        uncachedAnalyzer.setMaxCachedQueries(0);
+        uncached.setQueryAnalyzer(uncachedAnalyzer);
+
+        cached = new ZoomaLuceneSearchService() {
+        };
+        cached.setQueryAnalyzer(new ZoomaQueryAnalyzer());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void newAnalyzerPerQuery(Blackhole blackhole) throws IOException {
+        for (String pattern : PATTERNS) {
+            Analyzer analyzer = new EnglishAnalyzer(CharArraySet.EMPTY_SET);
+            List<String> terms = new ArrayList<>();
+            try (TokenStream stream = analyzer.tokenStream("name", new StringReader(QueryParser.escape(pattern)))) {
+                stream.reset();
+                CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+                while (stream.incrementToken()) {
+                    terms.add(termAtt.toString());
+                }
+            }
+            // build the query as the search service does, with the terms already analysed
+            Query q;
+            if (terms.size() > 1) {
+                q = uncached.formulateSpanQuery("name",
+                                                ZoomaLuceneSearchService.QUERY_TYPE.FULL,
+                                                1,
+                                                false,
+                                                terms.toArray(new String[terms.size()]));
+            }
+            else {
+                q = new TermQuery(new Term("name", terms.get(0)));
+            }
+            blackhole.consume(q);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void sharedAnalyzer(Blackhole blackhole) {
+        for (String pattern : PATTERNS) {
+            blackhole.consume(uncached.formulateQuery("name", pattern));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void sharedAnalyzerWithQueryCache(Blackhole blackhole) {
+        for (String pattern : PATTERNS) {
+            blackhole.consume(cached.formulateQuery("name", pattern));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package uk.ac.ebi.fgpt.zooma.test;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.NIOFSDirectory;
@@ -29,16 +30,21 @@ public class ZoomaScoreCollector extends LuceneAnnotationSummarySearchService {
     public List<Float> getAllScores() throws IOException, InterruptedException {
         initOrWait();
 
-        try (IndexReader reader = getReader()){
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            IndexReader reader = searcher.getIndexReader();
             List<Float> allScores = new ArrayList<>();
             for (int i = 0; i < reader.numDocs(); i++) {
-                float nextScore = getMapper().mapDocument(reader.document(i)).getQuality();
+                float nextScore = getMapper().getDocumentQuality(reader.document(i));
                 allScores.add(nextScore);
             }
             Collections.sort(allScores);
             getLog().debug("Maximum score = " + Collections.max(allScores));
             return allScores;
         }
+        finally {
+            releaseSearcher(searcher);
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,169 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestHeapCachingDirectory {
+    private Directory disk;
+    private HeapCachingDirectory index;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        disk = new RAMDirectory();
+        addDoc(disk, "liver");
+        index = new HeapCachingDirectory(disk);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    private void addDoc(Directory directory, String s) throws IOException {
+        IndexWriter w = new IndexWriter(directory, new IndexWriterConfig(new EnglishAnalyzer()));
+        Document doc = new Document();
+        doc.add(new Field("name", s, Field.Store.YES, Field.Index.ANALYZED));
+        w.addDocument(doc);
+        w.close();
+    }
+
+    @Test
+    public void testExistingIndexIsLoadedOntoHeap() throws IOException {
+        assertTrue(index.getCachedBytes() > 0, "Existing index files should be copied onto the heap");
+        try (DirectoryReader reader = DirectoryReader.open(index)) {
+            assertEquals(1, reader.numDocs());
+        }
+    }
+
+    @Test
+    public void testWritesGoThroughToWrappedDirectory() throws IOException {
+        addDoc(index, "heart");
+        try (DirectoryReader reader = DirectoryReader.open(disk)) {
+            assertEquals(2, reader.numDocs());
+        }
+        try (DirectoryReader reader = DirectoryReader.open(index)) {
+            assertEquals(2, reader.numDocs());
+        }
+    }
+
+    @Test
+    public void testDeletedFilesAreRemovedFromHeap() throws IOException {
+        long cachedBytes = index.getCachedBytes();
+        IndexWriter w = new IndexWriter(index, new IndexWriterConfig(new EnglishAnalyzer())
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE));
+        w.close();
+        assertTrue(index.getCachedBytes() < cachedBytes, "Files replaced by a new index should leave the heap");
+    }
+
+    @Test
+    public void testUnchangedSegmentsStayCachedAcrossCommits() throws IOException {
+        CountingDirectory counting = new CountingDirectory(new RAMDirectory());
+        addDoc(counting, "liver");
+        try (HeapCachingDirectory cached = new HeapCachingDirectory(counting)) {
+            try (DirectoryReader reader = DirectoryReader.open(cached)) {
+                assertEquals(1, reader.numDocs());
+            }
+            int firstSegmentReads = counting.getReads("_0");
+            assertTrue(firstSegmentReads > 0);
+
+            addDoc(cached, "heart");
+            try (DirectoryReader reader = DirectoryReader.open(cached)) {
+                assertEquals(2, reader.numDocs());
+            }
+            assertEquals(firstSegmentReads, counting.getReads("_0"),
+                         "Files of a segment unchanged by a commit should not be read from disk again");
+        }
+    }
+
+    @Test
+    public void testExternalRebuildReusingFileNamesIsReread() throws IOException {
+        Path path = Files.createTempDirectory("zooma-heap-cache");
+        try (Directory external = FSDirectory.open(path)) {
+            addDoc(external, "liver");
+            try (HeapCachingDirectory cached = new HeapCachingDirectory(FSDirectory.open(path))) {
+                try (DirectoryReader reader = DirectoryReader.open(cached)) {
+                    assertEquals(1, reader.numDocs());
+                }
+
+                // another process deletes and rebuilds the index, reusing the same segment and commit file names
+                for (String name : external.listAll()) {
+                    external.deleteFile(name);
+                }
+                IndexWriter w = new IndexWriter(external, new IndexWriterConfig(new EnglishAnalyzer()));
+                for (String s : new String[]{"heart", "kidney"}) {
+                    Document doc = new Document();
+                    doc.add(new Field("name", s, Field.Store.YES, Field.Index.ANALYZED));
+                    w.addDocument(doc);
+                }
+                w.close();
+
+                try (DirectoryReader reader = DirectoryReader.open(cached)) {
+                    assertEquals(2, reader.numDocs());
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    assertEquals(1, searcher.search(new TermQuery(new Term("name", "kidnei")), 1).totalHits);
+                    assertEquals(0, searcher.search(new TermQuery(new Term("name", "liver")), 1).totalHits);
+                }
+            }
+        }
+        finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Counts the inputs opened on the wrapped directory for each segment
+     */
+    private static class CountingDirectory extends FilterDirectory {
+        private final Map<String, Integer> reads = new HashMap<>();
+
+        private CountingDirectory(Directory in) {
+            super(in);
+        }
+
+        public synchronized int getReads(String segment) {
+            Integer count = reads.get(segment);
+            return count == null ? 0 : count;
+        }
+
+        @Override public IndexInput openInput(String name, IOContext context) throws IOException {
+            synchronized (this) {
+                String segment = IndexFileNames.parseSegmentName(name);
+                Integer count = reads.get(segment);
+                reads.put(segment, count == null ? 1 : count + 1);
+            }
+            return super.openInput(name, context);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every search string processor still produces exactly the output recorded in the golden corpus, so that
+ * optimisations to the processors never change the strings that are searched for.
+ *
+ * @date 18/10/26
+ */
+public class TestSearchStringProcessorGoldenCorpus {
+    private Map<String, SearchStringProcessor> processors;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        AnatomyProcessor anatomyProcessor = new AnatomyProcessor("organism_part_qualifier.dictionary");
+        anatomyProcessor.init();
+        ChemicalCompoundProcessor chemicalCompoundProcessor =
+                new ChemicalCompoundProcessor("concentration_unit.dictionary");
+        chemicalCompoundProcessor.init();
+        StopwordProcessor stopwordProcessor = new StopwordProcessor("stopword.dictionary");
+        stopwordProcessor.init();
+
+        processors = new HashMap<>();
+        for (SearchStringProcessor processor : Arrays.asList(anatomyProcessor,
+                                                             chemicalCompoundProcessor,
+                                                             stopwordProcessor,
+                                                             new TimeProcessor(),
+                                                             new ParenthesesProcessor(),
+                                                             new SplittingProcessor())) {
+            processors.put(processor.getClass().getSimpleName(), processor);
+        }
+    }
+
+    @Test
+    public void testProcessorsMatchGoldenCorpus() throws Exception {
+        int checked = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream("search_string_processor_golden_corpus.txt"),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                SearchStringProcessor processor = processors.get(fields[0]);
+                assertNotNull(processor, "Unknown processor " + fields[0]);
+                String searchString = fields[1];
+
+                assertEquals(Boolean.parseBoolean(fields[2]),
+                             processor.canProcess(searchString),
+                             fields[0] + ".canProcess('" + searchString + "')");
+                List<String> expected = Arrays.asList(fields).subList(3, fields.length);
+                assertEquals(expected,
+                             new ArrayList<>(processor.processSearchString(searchString)),
+                             fields[0] + ".processSearchString('" + searchString + "')");
+                checked++;
+            }
+        }
+        assertTrue(checked > 0, "Golden corpus was empty");
+    }
+}
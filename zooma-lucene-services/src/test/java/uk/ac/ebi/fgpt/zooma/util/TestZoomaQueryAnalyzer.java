@@ -0,0 +1,61 @@
+package uk.ac.ebi.fgpt.zooma.util;
+
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TestZoomaQueryAnalyzer {
+    private ZoomaQueryAnalyzer queryAnalyzer;
+
+    @BeforeEach
+    public void setUp() {
+        queryAnalyzer = new ZoomaQueryAnalyzer(new EnglishAnalyzer(CharArraySet.EMPTY_SET));
+        queryAnalyzer.setMaxCachedQueries(2);
+    }
+
+    @Test
+    public void testAnalyzeMatchesIndexingAnalyzer() throws IOException {
+        assertEquals(Arrays.asList("heart", "of", "liver"), queryAnalyzer.analyze("name", "Hearts of Livers"));
+        // token streams are reused, so analysing again on the same thread must give the same result
+        assertEquals(Arrays.asList("heart", "of", "liver"), queryAnalyzer.analyze("name", "Hearts of Livers"));
+        assertEquals(Collections.singletonList("kidnei"), queryAnalyzer.analyze("name", "kidney"));
+    }
+
+    @Test
+    public void testAnalyzeEscapesQuerySyntax() throws IOException {
+        assertEquals(Arrays.asList("heart", "liver"), queryAnalyzer.analyze("name", "heart + (liver)"));
+    }
+
+    @Test
+    public void testCachedQueriesAreCopied() {
+        queryAnalyzer.putQuery("heart", new TermQuery(new Term("name", "heart")));
+        Query first = queryAnalyzer.getQuery("heart");
+        assertNotNull(first);
+        first.setBoost(5f);
+        assertEquals(1f, queryAnalyzer.getQuery("heart").getBoost(), 0f);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedQueryIsEvicted() {
+        queryAnalyzer.putQuery("heart", new TermQuery(new Term("name", "heart")));
+        queryAnalyzer.putQuery("liver", new TermQuery(new Term("name", "liver")));
+        queryAnalyzer.getQuery("heart");
+        queryAnalyzer.putQuery("kidney", new TermQuery(new Term("name", "kidnei")));
+
+        assertNotNull(queryAnalyzer.getQuery("heart"));
+        assertNull(queryAnalyzer.getQuery("liver"));
+        assertNotNull(queryAnalyzer.getQuery("kidney"));
+    }
+}
@@ -131,6 +131,26 @@ public class OLSAnnotationSummarySearchService extends Initializable implements
         }
     }
 
+    @Override
+    public Collection<AnnotationSummary> search(String propertyValuePattern, URI[] sources, URI[] ontologySources, int limit) {
+        return limitResults(search(propertyValuePattern, sources, ontologySources), limit);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> search(String propertyType, String propertyValuePattern, URI[] sources, URI[] ontologySources, int limit) {
+        return limitResults(search(propertyType, propertyValuePattern, sources, ontologySources), limit);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> searchByPreferredSources(String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources, int limit) {
+        return limitResults(searchByPreferredSources(propertyValuePattern, preferredSources, requiredSources, ontologySources), limit);
+    }
+
+    @Override
+    public Collection<AnnotationSummary> searchByPreferredSources(String propertyType, String propertyValuePattern, List<URI> preferredSources, URI[] requiredSources, URI[] ontologySources, int limit) {
+        return limitResults(searchByPreferredSources(propertyType, propertyValuePattern, preferredSources, requiredSources, ontologySources), limit);
+    }
+
     @Override
     protected void doInitialization() throws Exception {
         this.mapper = new OLSAnnotationSummaryMapper();
@@ -262,6 +282,23 @@ public class OLSAnnotationSummarySearchService extends Initializable implements
         return annotationSummaries;
     }
 
+    /*
+     * OLS returns terms in order of relevance, so keep the first results up to the given limit (-1 for no limit)
+     */
+    private Collection<AnnotationSummary> limitResults(Collection<AnnotationSummary> annotationSummaries, int limit) {
+        if (limit < 0 || annotationSummaries.size() <= limit) {
+            return annotationSummaries;
+        }
+        Collection<AnnotationSummary> limited = new ArrayList<>();
+        for (AnnotationSummary annotationSummary : annotationSummaries) {
+            if (limited.size() == limit) {
+                break;
+            }
+            limited.add(annotationSummary);
+        }
+        return limited;
+    }
+
     /*
      * Used to clean a source from e.g.: "http://www.berkeleybop.org/ontologies/po/po.owl"
      * to "po", so to be added in the ols query as: ontology=po
@@ -2,18 +2,53 @@ package uk.ac.ebi.fgpt.zooma.service;
 
 import org.springframework.web.client.RestClientException;
 import uk.ac.ebi.fgpt.zooma.Initializable;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
+import uk.ac.ebi.fgpt.zooma.util.ExpiringCache;
 import uk.ac.ebi.fgpt.zooma.util.URIUtils;
 import uk.ac.ebi.pride.utilities.ols.web.service.client.OLSClient;
 import uk.ac.ebi.pride.utilities.ols.web.service.config.OLSWsConfig;
 import uk.ac.ebi.pride.utilities.ols.web.service.model.*;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  *
  * Uses the PRIDE ols-client, modified to the SPOT needs (https://github.com/EBISPOT/ols-client)
  *
+ * Term searches, label lookups and obsolete term replacements are cached in size bounded caches whose entries expire
+ * after a configurable time ("ols.cache.size" and "ols.cache.ttl.minutes").  If "ols.cache.snapshot" names a file,
+ * cached labels and replacements are saved to it on shutdown and used to warm up the caches on startup.
+ *
+ * Searches across several ontologies query each ontology concurrently with the asynchronous methods of the client,
+ * using at most "ols.search.concurrency" requests to OLS at once.  Connections to OLS are pooled, with at most
+ * "ols.max.connections" open at once (by default, the larger of the search concurrency and the client default).  If not every ontology has responded within "ols.search.timeout.ms", the terms found so far are
+ * returned (and not cached).  Individual requests to OLS are bounded by "ols.connect.timeout.ms" and
+ * "ols.read.timeout.ms".  If a {@link SearchDeadline} is attached to the searching thread, OLS is only waited on until
+ * that deadline, and is not searched at all once it has passed; incomplete results are recorded against the deadline
+ * with {@link SearchDeadline#markTruncated()}.
+ *
+ * This service is safe to use from multiple threads: paging options are passed to the shared OLS client with each
+ * search, rather than set on the client beforehand.
+ *
  * Created by olgavrou on 20/05/2016.
  */
 public class OLSSearchService extends Initializable {
@@ -33,184 +68,351 @@ public class OLSSearchService extends Initializable {
     //holds all the ontology <namespace, Ontology> mappings
     private Map<String, Ontology> ontologyMappings;
 
-    private Map<URI, URI> originalToReplacementCache = new HashMap<>();
-    private Map<URI, Boolean> replaceableCache = new HashMap<>();
+    // caches of OLS responses; replacements are null for terms that cannot be replaced
+    private ExpiringCache<List<String>, List<Term>> termSearchCache;
+    private ExpiringCache<String, String> labelCache;
+    private ExpiringCache<URI, URI> replacementCache;
+
+    // executes searches across several ontologies concurrently, within a time limit per search
+    private ExecutorService searchExecutor;
+    private long searchTimeout;
 
-    //default parameters of search page number and search page size
-    private int defaultPageNum;
-    private int defaultPageSize;
+    // paging options of each kind of search, passed with every call so the shared client is never reconfigured
+    // stands in for the empty source, which searches every ontology, in term search cache keys
+    private static final String ALL_ONTOLOGIES = "*";
+
+    private static final SearchOptions EXACT_SEARCH_OPTIONS =
+            new SearchOptions.SearchOptionsBuilder().setPageNum(0).setPageSize(20).build();
+    private static final SearchOptions FUZZY_SEARCH_OPTIONS =
+            new SearchOptions.SearchOptionsBuilder().setPageNum(0).setPageSize(2).build();
+    private SearchOptions defaultSearchOptions;
 
 
     @Override
     protected void doInitialization() throws Exception {
 
         String olsServer = this.configuration.getProperty("ols.server");
-        if (olsServer != null) {
-            this.olsClient = new OLSClient(new OLSWsConfig(olsServer));
+        String olsProtocol = this.configuration.getProperty("ols.protocol");
+        OLSWsConfig olsConfig;
+        if (olsServer != null && olsProtocol != null) {
+            olsConfig = new OLSWsConfig(olsProtocol, olsServer);
+        } else if (olsServer != null) {
+            olsConfig = new OLSWsConfig(olsServer);
         } else {
-            this.olsClient = new OLSClient(new OLSWsConfig());
+            olsConfig = new OLSWsConfig();
+        }
+        String connectTimeout = this.configuration.getProperty("ols.connect.timeout.ms");
+        if (connectTimeout != null) {
+            olsConfig.setConnectTimeout(Integer.parseInt(connectTimeout));
+        }
+        String readTimeout = this.configuration.getProperty("ols.read.timeout.ms");
+        if (readTimeout != null) {
+            olsConfig.setReadTimeout(Integer.parseInt(readTimeout));
         }
+        int searchConcurrency = Integer.parseInt(this.configuration.getProperty("ols.search.concurrency", "8"));
+        olsConfig.setMaxConnections(Integer.parseInt(this.configuration.getProperty(
+                "ols.max.connections",
+                String.valueOf(Math.max(searchConcurrency, olsConfig.getMaxConnections())))));
+        this.searchTimeout = Long.parseLong(this.configuration.getProperty("ols.search.timeout.ms", "10000"));
+        this.searchExecutor = Executors.newFixedThreadPool(searchConcurrency, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(1);
+
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "zooma-ols-search-" + threadCount.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        this.olsClient = new OLSClient(olsConfig);
+        this.olsClient.setAsyncExecutor(searchExecutor);
 
-        this.defaultPageNum = this.olsClient.getSearchPageNum();
-        this.defaultPageSize = this.olsClient.getSearchPageSize();
+        this.defaultSearchOptions = this.olsClient.getSearchOptions();
 
-        this.ontologyMappings = new HashMap<>();
+        this.ontologyMappings = new ConcurrentHashMap<>();
         populateOntologyMappings();
 
+        int cacheSize = Integer.parseInt(this.configuration.getProperty("ols.cache.size", "10000"));
+        long cacheTimeToLive = Long.parseLong(this.configuration.getProperty("ols.cache.ttl.minutes", "60")) * 60000;
+        this.termSearchCache = new ExpiringCache<>(cacheSize, cacheTimeToLive);
+        this.labelCache = new ExpiringCache<>(cacheSize, cacheTimeToLive);
+        this.replacementCache = new ExpiringCache<>(cacheSize, cacheTimeToLive);
+        loadCacheSnapshot();
     }
 
     private void populateOntologyMappings() {
         List<Ontology> ontologies = this.getAllOntologies();
         if (ontologies != null && !ontologies.isEmpty()) {
             for (Ontology ontology : ontologies) {
-                this.ontologyMappings.put(ontology.getConfig().getId(), ontology);
+                if (ontology.getConfig() != null && ontology.getConfig().getId() != null) {
+                    this.ontologyMappings.put(ontology.getConfig().getId(), ontology);
+                }
             }
         }
     }
 
     @Override
     protected void doTermination() throws Exception {
-
+        getLog().info("OLS term search cache: " + termSearchCache);
+        getLog().info("OLS label cache: " + labelCache);
+        getLog().info("OLS replacement cache: " + replacementCache);
+        saveCacheSnapshot();
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+        }
+        if (olsClient != null) {
+            olsClient.shutdown();
+        }
     }
 
-    public List<Term> getExactTermsByName(String value){
-        specificSearchParams(0, 20);
-        return filterDefiningOntology(getExactTermsByName(value, ""));
+    /**
+     * Returns the hit, miss and eviction counts of each OLS cache
+     *
+     * @return a description of each cache, keyed by the kind of lookup it caches
+     */
+    public Map<String, String> getCacheStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("terms", termSearchCache.toString());
+        statistics.put("labels", labelCache.toString());
+        statistics.put("replacements", replacementCache.toString());
+        return statistics;
     }
 
-    public List<Term> getTermsByName(String value){
-        specificSearchParams(0, 2);
-        return filterDefiningOntology(getTermsByName(value, ""));
+    public List<Term> getExactTermsByName(final String value){
+        return searchTerms("exact", value, null, Collections.singletonList(""), new TermSearch() {
+            @Override public CompletableFuture<List<Term>> search(String source) {
+                return olsClient.getExactTermsByNameAsync(value, source, EXACT_SEARCH_OPTIONS);
+            }
+        });
     }
 
-    public List<Term> getExactTermsByName(String value, ArrayList<String> sources){
-        specificSearchParams(0, 20);
-        List<Term> terms = new ArrayList<>();
-        for (String source : sources) {
-            terms.addAll(getExactTermsByName(value, source));
-        }
-        return filterDefiningOntology(terms);
+    public List<Term> getTermsByName(final String value){
+        return searchTerms("fuzzy", value, null, Collections.singletonList(""), new TermSearch() {
+            @Override public CompletableFuture<List<Term>> search(String source) {
+                return olsClient.getTermsByNameAsync(value, source, false, FUZZY_SEARCH_OPTIONS);
+            }
+        });
     }
 
-    public List<Term> getTermsByName(String value, ArrayList<String> sources){
-        specificSearchParams(0, 2);
-        List<Term> terms = new ArrayList<>();
-        for (String source : sources) {
-            terms.addAll(getTermsByName(value, source));
-        }
-        return filterDefiningOntology(terms);
+    public List<Term> getExactTermsByName(final String value, ArrayList<String> sources){
+        return searchTerms("exact", value, null, sources, new TermSearch() {
+            @Override public CompletableFuture<List<Term>> search(String source) {
+                return olsClient.getExactTermsByNameAsync(value, source, EXACT_SEARCH_OPTIONS);
+            }
+        });
     }
 
-    private List<Term> getExactTermsByName(String value, String source){
-        try {
-            specificSearchParams(0, 20);
-            return olsClient.getExactTermsByName(value, source);
-        } catch (RestClientException e){
-            return new ArrayList<>();
-        }
+    public List<Term> getTermsByName(final String value, ArrayList<String> sources){
+        return searchTerms("fuzzy", value, null, sources, new TermSearch() {
+            @Override public CompletableFuture<List<Term>> search(String source) {
+                return olsClient.getTermsByNameAsync(value, source, false, FUZZY_SEARCH_OPTIONS);
+            }
+        });
     }
 
-    private List<Term> getTermsByName(String value, String source){
-        try {
-            specificSearchParams(0, 2);
-            return olsClient.getTermsByName(value, source, false);
-        } catch (RestClientException e){
-            return new ArrayList<>();
-        }
+    public List<Term> getExactTermsByNameFromParent(String value, String childrenOf){
+        return getExactTermsByNameFromParent(value, new ArrayList<>(Collections.singletonList("")), childrenOf);
     }
 
-
-    public List<Term> getExactTermsByNameFromParent(String value, String childrenOf){
-        specificSearchParams(0, 20);
-        return filterDefiningOntology(getExactTermsByNameFromParent(value, "", childrenOf));
+    public List<Term> getTermsByNameFromParent(String value, String childrenOf){
+        return getTermsByNameFromParent(value, new ArrayList<>(Collections.singletonList("")), childrenOf);
     }
 
+    public List<Term> getExactTermsByNameFromParent(final String value,
+                                                    ArrayList<String> sources,
+                                                    final String childrenOf){
+        return searchTerms("exact", value, childrenOf, sources, new TermSearch() {
+            @Override public CompletableFuture<List<Term>> search(String source) {
+                return olsClient.getExactTermsByNameFromParentAsync(value, source, childrenOf, EXACT_SEARCH_OPTIONS);
+            }
+        });
+    }
 
-    public List<Term> getTermsByNameFromParent(String value, String childrenOf){
-        specificSearchParams(0, 2);
-        return filterDefiningOntology(getTermsByNameFromParent(value, "", childrenOf));
+    public List<Term> getTermsByNameFromParent(final String value,
+                                               ArrayList<String> sources,
+                                               final String childrenOf){
+        return searchTerms("fuzzy", value, childrenOf, sources, new TermSearch() {
+            @Override public CompletableFuture<List<Term>> search(String source) {
+                return olsClient.getTermsByNameFromParentAsync(value, source, false, childrenOf, FUZZY_SEARCH_OPTIONS);
+            }
+        });
     }
 
-    public List<Term> getExactTermsByNameFromParent(String value, ArrayList<String> sources, String childrenOf){
-        specificSearchParams(0, 20);
-        List<Term> terms = new ArrayList<>();
+    /**
+     * Creates the key that the results of a term search are cached under.  The empty source searches every
+     * ontology, so it is given an explicit marker that can never be confused with searching no ontologies at all.
+     */
+    private static List<String> createSearchKey(String searchType,
+                                                String value,
+                                                String childrenOf,
+                                                Collection<String> sources) {
+        List<String> key = new ArrayList<>();
+        key.add(searchType);
+        key.add(value);
+        key.add(childrenOf);
         for (String source : sources) {
-            terms.addAll(getExactTermsByNameFromParent(value, source, childrenOf));
+            key.add(source.isEmpty() ? ALL_ONTOLOGIES : source);
         }
-        return filterDefiningOntology(terms);
+        return key;
     }
 
-    public List<Term> getTermsByNameFromParent(String value, ArrayList<String> sources, String childrenOf){
-        specificSearchParams(0, 2);
-        List<Term> terms = new ArrayList<>();
-        for (String source : sources) {
-            terms.addAll(getTermsByNameFromParent(value, source, childrenOf));
+    /**
+     * Runs the given search against each source, and filters the combined results to terms from their defining
+     * ontology.  Each source is searched once, in sorted order, so that results do not depend on how the caller
+     * ordered its sources.  Results are cached, unless the search failed or timed out for any source, in which case
+     * the terms found in the other sources are returned without being cached.
+     */
+    private List<Term> searchTerms(String searchType,
+                                   String value,
+                                   String childrenOf,
+                                   Collection<String> requestedSources,
+                                   final TermSearch search) {
+        final Collection<String> sources = new TreeSet<>(requestedSources);
+        List<String> key = createSearchKey(searchType, value, childrenOf, sources);
+        try {
+            return new ArrayList<>(termSearchCache.get(key, new ExpiringCache.Loader<List<String>, List<Term>>() {
+                @Override public List<Term> load(List<String> key) {
+                    List<Term> terms = new ArrayList<>();
+                    if (SearchDeadline.isExceeded()) {
+                        getLog().debug("Search deadline passed, not searching OLS for " + key);
+                        throw new PartialSearchException(terms);
+                    }
+                    boolean failed;
+                    // a single request is bounded only by the read timeout, so run it in the background whenever
+                    // it must also be bounded by the deadline of the search
+                    if (sources.size() > 1 || SearchDeadline.current() != null) {
+                        failed = !searchConcurrently(search, sources, terms);
+                    } else {
+                        failed = false;
+                        for (String source : sources) {
+                            if (SearchDeadline.isExceeded()) {
+                                failed = true;
+                                break;
+                            }
+                            try {
+                                addTerms(terms, search.search(source).get());
+                            } catch (ExecutionException e){
+                                getLog().debug("Searching OLS failed for " + source, e.getCause());
+                                failed = true;
+                            } catch (InterruptedException e){
+                                Thread.currentThread().interrupt();
+                                failed = true;
+                                break;
+                            }
+                        }
+                    }
+                    List<Term> results = filterDefiningOntology(terms);
+                    if (failed) {
+                        throw new PartialSearchException(results);
+                    }
+                    return results;
+                }
+            }));
+        } catch (PartialSearchException e){
+            SearchDeadline.markTruncated();
+            return e.getTerms();
         }
-        return filterDefiningOntology(terms);
     }
 
-    private List<Term> getExactTermsByNameFromParent(String value, String source, String childrenOf){
+    /**
+     * Runs the given search against each source concurrently, adding terms to the results as each source responds.
+     *
+     * @return true if every source responded in time, false if the results are incomplete
+     */
+    private boolean searchConcurrently(final TermSearch search, Collection<String> sources, List<Term> results) {
+        final BlockingQueue<CompletableFuture<List<Term>>> completed = new LinkedBlockingQueue<>();
+        List<CompletableFuture<List<Term>>> futures = new ArrayList<>();
+        for (String source : sources) {
+            final CompletableFuture<List<Term>> future = search.search(source);
+            futures.add(future);
+            future.whenComplete(new BiConsumer<List<Term>, Throwable>() {
+                @Override public void accept(List<Term> terms, Throwable throwable) {
+                    completed.add(future);
+                }
+            });
+        }
+
+        boolean complete = true;
+        long timeout = SearchDeadline.remaining(searchTimeout);
+        long deadline = System.currentTimeMillis() + timeout;
         try {
-            specificSearchParams(0, 20);
-            return olsClient.getExactTermsByNameFromParent(value, source, childrenOf);
-        } catch (RestClientException e){
-            return new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                CompletableFuture<List<Term>> future = remaining > 0
+                        ? completed.poll(remaining, TimeUnit.MILLISECONDS)
+                        : completed.poll();
+                if (future == null) {
+                    getLog().warn("Searching " + sources + " in OLS took longer than " + timeout + "ms, " +
+                                          "returning results from " + i + " of " + futures.size() + " ontologies");
+                    complete = false;
+                    break;
+                }
+                try {
+                    addTerms(results, future.get());
+                } catch (ExecutionException e){
+                    getLog().debug("Searching OLS failed for one of " + sources, e.getCause());
+                    complete = false;
+                }
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            complete = false;
+        } finally {
+            for (CompletableFuture<List<Term>> future : futures) {
+                future.cancel(true);
+            }
         }
+        return complete;
     }
 
-    private List<Term> getTermsByNameFromParent(String value, String source, String childrenOf){
-        try {
-            specificSearchParams(0, 2);
-            return olsClient.getTermsByNameFromParent(value, source, false, childrenOf);
-        } catch (RestClientException e){
-            return new ArrayList<>();
+    private void addTerms(List<Term> results, List<Term> terms) {
+        if (terms != null) {
+            results.addAll(terms);
         }
     }
 
-    public String getExactLabelByIri(String iri){
+    public String getExactLabelByIri(final String iri){
         try {
-            defaultSearchParams();
-            List<Term> terms = olsClient.getExactTermsByIriString(iri);
-
-            for (Term term : terms){
-                if (term.isDefinedOntology()){
-                    return term.getLabel();
+            return labelCache.get(iri, new ExpiringCache.Loader<String, String>() {
+                @Override public String load(String iri) {
+                    List<Term> terms = olsClient.getExactTermsByIriString(iri, defaultSearchOptions);
+
+                    for (Term term : terms){
+                        if (term.isDefinedOntology()){
+                            return term.getLabel();
+                        }
+                    }
+                    return URIUtils.extractFragment(URI.create(iri));
                 }
-            }
+            });
         } catch (RestClientException e){
             return  URIUtils.extractFragment(URI.create(iri));
         }
-
-        return  URIUtils.extractFragment(URI.create(iri));
     }
 
 
     public boolean isReplaceable(URI semanticTag){
-        Boolean replaceable = replaceableCache.get(semanticTag);
-
-        if (replaceable == null) {
-            URI replacement = this.tryToReplaceSemanticTag(semanticTag);
-            if (replacement != null){
-                replaceableCache.put(semanticTag, true);
-                originalToReplacementCache.put(semanticTag, replacement);
-            } else {
-                replaceableCache.put(semanticTag, false);
-            }
-        }
-
-        return replaceableCache.get(semanticTag);
+        return findReplacement(semanticTag) != null;
     }
 
     public URI replaceSemanticTag(URI semanticTag){
-        if (isReplaceable(semanticTag)){
-            return originalToReplacementCache.get(semanticTag);
+        URI replacement = findReplacement(semanticTag);
+        if (replacement != null){
+            return replacement;
         } else {
             throw new IllegalArgumentException("Term is either not obsolete, or doesn't have a replacement.");
         }
     }
 
+    private URI findReplacement(URI semanticTag){
+        return replacementCache.get(semanticTag, new ExpiringCache.Loader<URI, URI>() {
+            @Override public URI load(URI semanticTag) {
+                return tryToReplaceSemanticTag(semanticTag);
+            }
+        });
+    }
+
     private URI tryToReplaceSemanticTag(URI semanticTag){
-        defaultSearchParams();
         Term replaceBy = null;
         try {
             replaceBy = olsClient.getReplacedBy(semanticTag.toString());
@@ -224,6 +426,64 @@ public class OLSSearchService extends Initializable {
         return null;
     }
 
+    /**
+     * Warms up the label and replacement caches from the snapshot file, if one is configured and exists
+     */
+    private void loadCacheSnapshot() {
+        String snapshot = this.configuration.getProperty("ols.cache.snapshot");
+        if (snapshot == null || !Files.exists(Paths.get(snapshot))) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(snapshot), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 3) {
+                    continue;
+                }
+                if (fields[0].equals("label")) {
+                    labelCache.put(fields[1], fields[2]);
+                } else if (fields[0].equals("replacement")) {
+                    replacementCache.put(URI.create(fields[1]), fields[2].isEmpty() ? null : URI.create(fields[2]));
+                }
+            }
+            getLog().info("Loaded " + labelCache.size() + " labels and " + replacementCache.size() + " replacements " +
+                                  "from OLS cache snapshot " + snapshot);
+        } catch (IOException | IllegalArgumentException e){
+            getLog().warn("Failed to load OLS cache snapshot " + snapshot + ", caches will start empty", e);
+        }
+    }
+
+    /**
+     * Saves the label and replacement caches to the snapshot file, if one is configured
+     */
+    private void saveCacheSnapshot() {
+        String snapshot = this.configuration.getProperty("ols.cache.snapshot");
+        if (snapshot == null) {
+            return;
+        }
+        Path path = Paths.get(snapshot);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> label : labelCache.snapshot().entrySet()) {
+                if (isSafeForSnapshot(label.getKey()) && isSafeForSnapshot(label.getValue())) {
+                    writer.write("label\t" + label.getKey() + "\t" + label.getValue());
+                    writer.newLine();
+                }
+            }
+            for (Map.Entry<URI, URI> replacement : replacementCache.snapshot().entrySet()) {
+                writer.write("replacement\t" + replacement.getKey() + "\t" +
+                                     (replacement.getValue() == null ? "" : replacement.getValue().toString()));
+                writer.newLine();
+            }
+        } catch (IOException e){
+            getLog().warn("Failed to save OLS cache snapshot " + snapshot, e);
+        }
+    }
+
+    private boolean isSafeForSnapshot(String value) {
+        return value != null && value.indexOf('\t') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1;
+    }
+
     /*
      * If at least one result has "is_defining_ontology = true" then return only those ones.
      * If no terms have "is_defining_ontology = true", then return them all.
@@ -260,7 +520,6 @@ public class OLSSearchService extends Initializable {
 
     public List<Ontology> getAllOntologies(){
         try {
-            defaultSearchParams();
             if (this.ontologyMappings != null && !this.ontologyMappings.isEmpty()) {
                 return (new ArrayList<>(ontologyMappings.values()));
             }
@@ -283,9 +542,8 @@ public class OLSSearchService extends Initializable {
             }
         }
         try {
-            defaultSearchParams();
             Ontology ontology = olsClient.getOntology(name);
-            ontologyMappings.put(ontology.getId(), ontology);
+            addOntologyMapping(ontology);
             return ontology;
         } catch (RestClientException e ){
             return null;
@@ -299,10 +557,9 @@ public class OLSSearchService extends Initializable {
         }
 
         try {
-            defaultSearchParams();
             Ontology ontology = olsClient.getOntologyFromId(URI.create(uri));
             if (ontology != null){
-                ontologyMappings.put(ontology.getId(), ontology);
+                addOntologyMapping(ontology);
                 return ontology.getConfig().getNamespace();
             }
         } catch (RestClientException e){
@@ -311,9 +568,14 @@ public class OLSSearchService extends Initializable {
         return null;
     }
 
+    private void addOntologyMapping(Ontology ontology) {
+        if (ontology != null && ontology.getId() != null) {
+            ontologyMappings.put(ontology.getId(), ontology);
+        }
+    }
+
     public boolean inOLS(URI uri) {
-        defaultSearchParams();
-         List<Term> terms = olsClient.getExactTermsByIriString(uri.toString());
+         List<Term> terms = olsClient.getExactTermsByIriString(uri.toString(), defaultSearchOptions);
          if (terms.isEmpty()){
              return false;
          }
@@ -321,20 +583,24 @@ public class OLSSearchService extends Initializable {
     }
 
     /**
-     * Restrics OLS client search to a page number and a page size
-     * @param pageNum
-     * @param pageSize
+     * An asynchronous search for terms in a single ontology (or all ontologies, if the source is empty)
      */
-    private void specificSearchParams(int pageNum, int pageSize){
-        this.olsClient.setSearchPageNum(pageNum);
-        this.olsClient.setSearchPageSize(pageSize);
+    private interface TermSearch {
+        CompletableFuture<List<Term>> search(String source);
     }
 
     /**
-     * Sets OLS client search page number and search page size to the defaults it had when initialized
+     * Thrown when a term search failed for some sources, to return the terms found without caching them
      */
-    private void defaultSearchParams(){
-        this.olsClient.setSearchPageNum(this.defaultPageNum);
-        this.olsClient.setSearchPageSize(this.defaultPageSize);
+    private static class PartialSearchException extends RuntimeException {
+        private final List<Term> terms;
+
+        private PartialSearchException(List<Term> terms) {
+            this.terms = terms;
+        }
+
+        private List<Term> getTerms() {
+            return terms;
+        }
     }
 }
@@ -0,0 +1,197 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal stand-in for the OLS REST API, serving ontologies and search results from memory over HTTP on a local
+ * port.  Search results are paged according to the "start" and "rows" parameters.  Responses from each ontology can
+ * be delayed, and the number of requests handled at once is recorded, so that clients can be tested for concurrency
+ * and timeouts.
+ */
+public class StubOLSServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final Map<String, List<String[]>> termsByOntology = new LinkedHashMap<>();
+    private final Map<String, Long> delaysByOntology = new HashMap<>();
+
+    private final AtomicInteger ontologyRequestCount = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private final Set<InetSocketAddress> clientAddresses = Collections.synchronizedSet(new HashSet<InetSocketAddress>());
+
+    public StubOLSServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/ols/api/ontologies", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                ontologyRequestCount.incrementAndGet();
+                respond(exchange, ontologiesJson());
+            }
+        });
+        server.createContext("/ols/api/search", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                int active = activeRequests.incrementAndGet();
+                try {
+                    requestCount.incrementAndGet();
+                    clientAddresses.add(exchange.getRemoteAddress());
+                    int max;
+                    while (active > (max = maxActiveRequests.get())) {
+                        maxActiveRequests.compareAndSet(max, active);
+                    }
+                    Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                    String ontology = params.get("ontology");
+                    Long delay = ontology == null ? null : delaysByOntology.get(ontology);
+                    if (delay != null) {
+                        Thread.sleep(delay);
+                    }
+                    respond(exchange, searchJson(params.get("q"), ontology,
+                                                 parseInt(params.get("start"), 0),
+                                                 parseInt(params.get("rows"), Integer.MAX_VALUE)));
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finally {
+                    activeRequests.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the host name and path of this server, in the form expected by the "ols.server" property
+     */
+    public String getServer() {
+        return "localhost:" + server.getAddress().getPort() + "/ols";
+    }
+
+    public synchronized void addTerm(String ontology, String label, String iri) {
+        if (!termsByOntology.containsKey(ontology)) {
+            termsByOntology.put(ontology, new ArrayList<String[]>());
+        }
+        termsByOntology.get(ontology).add(new String[]{label, iri});
+    }
+
+    public synchronized void setDelay(String ontology, long delayMillis) {
+        delaysByOntology.put(ontology, delayMillis);
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getMaxActiveRequests() {
+        return maxActiveRequests.get();
+    }
+
+    public int getOntologyRequestCount() {
+        return ontologyRequestCount.get();
+    }
+
+    /**
+     * Returns the number of distinct client connections that search requests arrived on
+     */
+    public int getConnectionCount() {
+        return clientAddresses.size();
+    }
+
+    private synchronized String ontologiesJson() {
+        StringBuilder ontologies = new StringBuilder();
+        for (String ontology : termsByOntology.keySet()) {
+            if (ontologies.length() > 0) {
+                ontologies.append(",");
+            }
+            ontologies.append("{\"config\":{\"id\":\"").append(ontology)
+                    .append("\",\"namespace\":\"").append(ontology).append("\"}}");
+        }
+        int count = termsByOntology.size();
+        return "{\"_embedded\":{\"ontologies\":[" + ontologies + "]}," +
+                "\"page\":{\"size\":" + Math.max(1, count) + ",\"totalElements\":" + count + "," +
+                "\"totalPages\":1,\"number\":0}}";
+    }
+
+    private synchronized String searchJson(String query, String ontology, int start, int rows) {
+        StringBuilder docs = new StringBuilder();
+        int found = 0;
+        int returned = 0;
+        for (Map.Entry<String, List<String[]>> terms : termsByOntology.entrySet()) {
+            if (ontology != null && !ontology.isEmpty() && !ontology.equals(terms.getKey())) {
+                continue;
+            }
+            for (String[] term : terms.getValue()) {
+                if (query == null || term[0].toLowerCase().contains(query.toLowerCase())) {
+                    if (found++ < start || returned == rows) {
+                        continue;
+                    }
+                    if (returned++ > 0) {
+                        docs.append(",");
+                    }
+                    docs.append("{\"iri\":\"").append(term[1])
+                            .append("\",\"label\":\"").append(term[0])
+                            .append("\",\"ontology_name\":\"").append(terms.getKey())
+                            .append("\",\"score\":\"1.0\",\"is_defining_ontology\":true}");
+                }
+            }
+        }
+        return "{\"response\":{\"numFound\":" + found + ",\"start\":" + start + ",\"docs\":[" + docs + "]}}";
+    }
+
+    private int parseInt(String value, int defaultValue) {
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int split = param.indexOf('=');
+                if (split > 0) {
+                    params.put(URLDecoder.decode(param.substring(0, split), "UTF-8"),
+                               URLDecoder.decode(param.substring(split + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    private void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
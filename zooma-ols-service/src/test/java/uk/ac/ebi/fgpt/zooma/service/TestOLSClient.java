@@ -0,0 +1,134 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClientException;
+import uk.ac.ebi.pride.utilities.ols.web.service.client.OLSClient;
+import uk.ac.ebi.pride.utilities.ols.web.service.config.OLSWsConfig;
+import uk.ac.ebi.pride.utilities.ols.web.service.model.SearchOptions;
+import uk.ac.ebi.pride.utilities.ols.web.service.model.Term;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestOLSClient {
+    private static final String[] ONTOLOGIES = {"efo", "uberon", "cl", "bto"};
+    private static final SearchOptions OPTIONS =
+            new SearchOptions.SearchOptionsBuilder().setPageNum(0).setPageSize(20).build();
+
+    private StubOLSServer ols;
+    private OLSClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ols = new StubOLSServer();
+        for (String ontology : ONTOLOGIES) {
+            ols.addTerm(ontology, "liver", "http://purl.obolibrary.org/obo/" + ontology.toUpperCase() + "_liver");
+        }
+        ols.start();
+        client = new OLSClient(new OLSWsConfig("http", ols.getServer()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.shutdown();
+        ols.stop();
+    }
+
+    @Test
+    public void testOntologiesAreCached() {
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(client.getOntologyFromId(URI.create("efo")));
+        }
+        assertEquals(1, ols.getOntologyRequestCount(), "Ontologies should only be loaded once");
+
+        client.setOntologyRefreshInterval(0);
+        client.getOntologies();
+        assertEquals(2, ols.getOntologyRequestCount(), "Ontologies should be reloaded once expired");
+    }
+
+    @Test
+    public void testAsyncSearchesRunConcurrently() throws Exception {
+        for (String ontology : ONTOLOGIES) {
+            ols.setDelay(ontology, 300);
+        }
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<List<Term>>> futures = new ArrayList<>();
+        for (String ontology : ONTOLOGIES) {
+            futures.add(client.getExactTermsByNameAsync("liver", ontology, OPTIONS));
+        }
+        for (CompletableFuture<List<Term>> future : futures) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS).size());
+        }
+        long time = System.currentTimeMillis() - start;
+        assertTrue(time < 300 * ONTOLOGIES.length, "Searches took " + time + "ms, too long to be concurrent");
+    }
+
+    @Test
+    public void testReadTimeout() {
+        OLSWsConfig config = new OLSWsConfig("http", ols.getServer());
+        config.setReadTimeout(200);
+        OLSClient timeoutClient = new OLSClient(config);
+        ols.setDelay("efo", 2000);
+        long start = System.currentTimeMillis();
+        try {
+            timeoutClient.getExactTermsByName("liver", "efo", OPTIONS);
+            fail("Search should have timed out");
+        }
+        catch (RestClientException e) {
+            long time = System.currentTimeMillis() - start;
+            assertTrue(time < 2000, "Search took " + time + "ms, but should have timed out after 200ms");
+        }
+        finally {
+            timeoutClient.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentSearchesAreBoundedByConnectionPool() throws Exception {
+        OLSWsConfig config = new OLSWsConfig("http", ols.getServer());
+        config.setMaxConnections(2);
+        OLSClient pooledClient = new OLSClient(config);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        pooledClient.setAsyncExecutor(executor);
+        for (String ontology : ONTOLOGIES) {
+            ols.setDelay(ontology, 50);
+        }
+        try {
+            List<CompletableFuture<List<Term>>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(pooledClient.getExactTermsByNameAsync("liver", ONTOLOGIES[i % ONTOLOGIES.length], OPTIONS));
+            }
+            for (CompletableFuture<List<Term>> future : futures) {
+                assertEquals(1, future.get(10, TimeUnit.SECONDS).size());
+            }
+            assertTrue(ols.getConnectionCount() <= 2,
+                       "Searches used " + ols.getConnectionCount() + " connections, more than the pool allows");
+        }
+        finally {
+            pooledClient.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialSearchesReuseConnections() {
+        int searches = 200;
+        for (int i = 0; i < searches; i++) {
+            assertEquals(1, client.getExactTermsByName("liver", ONTOLOGIES[i % ONTOLOGIES.length], OPTIONS).size());
+        }
+        assertTrue(ols.getConnectionCount() < searches / 10,
+                   "Searches used " + ols.getConnectionCount() + " connections, persistent connections not reused");
+    }
+}
@@ -0,0 +1,180 @@
+package uk.ac.ebi.fgpt.zooma.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.fgpt.zooma.concurrent.SearchDeadline;
+import uk.ac.ebi.pride.utilities.ols.web.service.model.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestOLSSearchService {
+    private static final List<String> ONTOLOGIES = Arrays.asList("efo", "uberon", "cl", "bto");
+
+    private StubOLSServer ols;
+    private OLSSearchService searchService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ols = new StubOLSServer();
+        for (String ontology : ONTOLOGIES) {
+            ols.addTerm(ontology, "liver", "http://purl.obolibrary.org/obo/" + ontology.toUpperCase() + "_liver");
+            ols.setDelay(ontology, 300);
+        }
+        ols.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (searchService != null) {
+            searchService.doTermination();
+        }
+        ols.stop();
+    }
+
+    @Test
+    public void testSearchesOntologiesConcurrently() throws Exception {
+        searchService = createSearchService(2, 5000, 100);
+        long start = System.currentTimeMillis();
+        List<Term> terms = searchService.getExactTermsByName("liver", new ArrayList<>(ONTOLOGIES));
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(ONTOLOGIES.size(), terms.size());
+        assertEquals(2, ols.getMaxActiveRequests(), "Ontologies should be searched two at a time");
+        assertTrue(time < 300 * ONTOLOGIES.size(), "Search took " + time + "ms, too long to be concurrent");
+    }
+
+    @Test
+    public void testReturnsPartialResultsAfterTimeout() throws Exception {
+        ols.setDelay("bto", 3000);
+        searchService = createSearchService(4, 1000, 100);
+        long start = System.currentTimeMillis();
+        List<Term> terms = searchService.getExactTermsByName("liver", new ArrayList<>(ONTOLOGIES));
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(ONTOLOGIES.size() - 1, terms.size(), "Terms from ontologies that responded should be returned");
+        assertTrue(time < 2000, "Search took " + time + "ms, but should have timed out after 1000ms");
+
+        // partial results are not cached, so the slow ontology is searched again
+        int requests = ols.getRequestCount();
+        ols.setDelay("bto", 0);
+        terms = searchService.getExactTermsByName("liver", new ArrayList<>(ONTOLOGIES));
+        assertEquals(ONTOLOGIES.size(), terms.size());
+        assertEquals(requests + ONTOLOGIES.size(), ols.getRequestCount());
+    }
+
+    @Test
+    public void testSingleOntologySearchIsBoundedByDeadline() throws Exception {
+        ols.setDelay("efo", 3000);
+        searchService = createSearchService(4, 5000, 100);
+        ArrayList<String> sources = new ArrayList<>(Collections.singletonList("efo"));
+
+        SearchDeadline deadline = SearchDeadline.after(300);
+        SearchDeadline previous = deadline.attach();
+        long start = System.currentTimeMillis();
+        List<Term> terms;
+        try {
+            terms = searchService.getExactTermsByName("liver", sources);
+        }
+        finally {
+            SearchDeadline.restore(previous);
+        }
+        long time = System.currentTimeMillis() - start;
+
+        assertTrue(terms.isEmpty());
+        assertTrue(time < 2000, "Search took " + time + "ms, but should have stopped at the 300ms deadline");
+        assertTrue(deadline.isTruncated(), "Results returned at the deadline should be marked truncated");
+
+        // the partial result was not cached
+        ols.setDelay("efo", 0);
+        assertEquals(1, searchService.getExactTermsByName("liver", sources).size());
+    }
+
+    @Test
+    public void testCachedSearchesDependOnlyOnTheSetOfSources() throws Exception {
+        searchService = createSearchService(4, 5000, 100);
+
+        // searching no ontologies finds nothing, but must not be served to searches of every ontology
+        assertTrue(searchService.getExactTermsByName("liver", new ArrayList<String>()).isEmpty());
+        assertEquals(ONTOLOGIES.size(), searchService.getExactTermsByName("liver").size());
+        assertEquals(ONTOLOGIES.size(),
+                     searchService.getExactTermsByName("liver", new ArrayList<>(Collections.singletonList(""))).size());
+
+        // the same ontologies in a different order are served from the cache
+        searchService.getExactTermsByName("liver", new ArrayList<>(ONTOLOGIES));
+        int requests = ols.getRequestCount();
+        List<String> reversed = new ArrayList<>(ONTOLOGIES);
+        Collections.reverse(reversed);
+        reversed.add(reversed.get(0));
+        assertEquals(ONTOLOGIES.size(), searchService.getExactTermsByName("liver", new ArrayList<>(reversed)).size());
+        assertEquals(requests, ols.getRequestCount());
+    }
+
+    @Test
+    public void testConcurrentSearchesKeepTheirOwnPageSizes() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            ols.addTerm("ma", "liver " + i, "http://purl.obolibrary.org/obo/MA_liver_" + i);
+        }
+        // disable caching, so every search goes to OLS
+        searchService = createSearchService(4, 5000, 0);
+        final ArrayList<String> sources = new ArrayList<>(Collections.singletonList("ma"));
+
+        int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final boolean exact = t % 2 == 0;
+                results.add(executor.submit(new Callable<List<Integer>>() {
+                    @Override public List<Integer> call() throws Exception {
+                        start.await();
+                        List<Integer> sizes = new ArrayList<>();
+                        for (int i = 0; i < 25; i++) {
+                            sizes.add(exact
+                                              ? searchService.getExactTermsByName("liver", sources).size()
+                                              : searchService.getTermsByName("liver", sources).size());
+                        }
+                        return sizes;
+                    }
+                }));
+            }
+            start.countDown();
+            for (int t = 0; t < threads; t++) {
+                int expected = t % 2 == 0 ? 20 : 2;
+                for (int size : results.get(t).get(60, TimeUnit.SECONDS)) {
+                    assertEquals(expected, size, "Search returned a page size requested by another thread");
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private OLSSearchService createSearchService(int concurrency, long timeout, int cacheSize) throws Exception {
+        Properties configuration = new Properties();
+        configuration.setProperty("ols.cache.size", Integer.toString(cacheSize));
+        configuration.setProperty("ols.server", ols.getServer());
+        configuration.setProperty("ols.protocol", "http");
+        configuration.setProperty("ols.search.concurrency", Integer.toString(concurrency));
+        configuration.setProperty("ols.search.timeout.ms", Long.toString(timeout));
+        OLSSearchService searchService = new OLSSearchService();
+        searchService.setConfiguration(configuration);
+        searchService.doInitialization();
+        return searchService;
+    }
+}
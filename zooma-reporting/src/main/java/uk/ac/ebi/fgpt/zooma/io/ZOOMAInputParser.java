@@ -31,6 +31,8 @@ import java.util.List;
  */
 public class ZOOMAInputParser {
     private InputStream in;
+    private BufferedReader reader;
+    private int lineNumber;
 
     private Logger log = LoggerFactory.getLogger(getClass());
 
@@ -60,34 +62,61 @@ public class ZOOMAInputParser {
      * @return a list of properties read from the input source
      */
     public List<Property> parse() throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
         List<Property> results = new ArrayList<>();
+        Property property;
+        while ((property = next()) != null) {
+            results.add(property);
+        }
+        getLog().info("Read " + results.size() + " properties from " + lineNumber + " lines");
+        return results;
+    }
+
+    /**
+     * Parses the next property from the supplied input, skipping any empty or unreadable lines.  Use this method to
+     * read large inputs one property at a time, rather than reading every property into memory with {@link
+     * #parse()}.
+     *
+     * @return the next property read from the input source, or null if there are no more properties
+     */
+    public Property next() throws IOException {
+        if (reader == null) {
+            reader = new BufferedReader(new InputStreamReader(in));
+        }
 
         String line;
-        int lineNumber = 0;
         while ((line = reader.readLine()) != null) {
             lineNumber++;
 
+            // splitting a blank line yields a single empty cell, so skip these first
+            if (line.trim().isEmpty()) {
+                getLog().debug("Empty line in input file detected, skipping");
+                continue;
+            }
+
             // tokenise this line
             String[] elements = splitLine(line);
 
             // handle elements
             switch (elements.length) {
                 case 1:
-                    results.add(new SimpleUntypedProperty(elements[0]));
-                    break;
+                    return new SimpleUntypedProperty(elements[0]);
                 case 2:
-                    results.add(new SimpleTypedProperty(elements[1], elements[0]));
-                    break;
-                case 0:
-                    getLog().debug("Empty line in input file detected, skipping");
-                    break;
+                    return new SimpleTypedProperty(elements[1], elements[0]);
                 default:
                     getLog().error("Line " + lineNumber + " could not be read - too many elements [" + line + "]");
             }
         }
-        getLog().info("Read " + results.size() + " properties from " + lineNumber + " lines");
-        return results;
+        return null;
+    }
+
+    /**
+     * Returns the number of lines read so far.  After a call to {@link #next()}, this is the line number of the
+     * property that was returned.
+     *
+     * @return the number of the last line read
+     */
+    public int getLineNumber() {
+        return lineNumber;
     }
 
     /**
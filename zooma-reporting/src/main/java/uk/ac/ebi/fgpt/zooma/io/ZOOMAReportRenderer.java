@@ -46,6 +46,10 @@ public class ZOOMAReportRenderer {
     private OutputStream out;
     private OutputStream err;
 
+    // writers for annotation reports, created on first use
+    private PrintWriter writer;
+    private PrintWriter errorWriter;
+
     // time of execution start
     private Map<URI, String> labelCache;
     private Map<URI, Collection<String>> synonymCache;
@@ -84,73 +88,98 @@ public class ZOOMAReportRenderer {
                                   Map<Property, List<String>> propertyContextMap,
                                   Map<Property, List<AnnotationPrediction>> annotationPredictionMap) {
         // first, write the report header
-        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)));
-        writeReportHeader(writer);
-
-        // if error report stream is different, write the error header too
-        PrintWriter errorWriter;
-        if (out == err) {
-            errorWriter = writer;
-        }
-        else {
-            errorWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(err)));
-            writeReportHeader(errorWriter);
-        }
+        startReport();
 
         // now iterate over properties and write all annotations found for each one
         getLog().debug("Writing report of property mappings...");
         for (Property property : properties) {
-            try {
-                if (annotationPredictionMap.containsKey(property) && annotationPredictionMap.get(property).size() > 0) {
-                    List<AnnotationPrediction> annotationPredictions = annotationPredictionMap.get(property);
-                    getLog().debug(
-                            "There are " + annotationPredictions.size() + " annotations for property '" + property +
-                                    "'");
-
-                    for (AnnotationPrediction annotationPrediction : annotationPredictions) {
-                        // render one line per experiment, if known
-                        if (propertyContextMap.containsKey(property)) {
-                            for (String expt : propertyContextMap.get(property)) {
-                                writeReportLine(writer,
-                                                property,
-                                                annotationPrediction.getAnnotatedProperty().getPropertyValue(),
-                                                expt,
-                                                annotationPrediction.getDerivedFrom().getProvenance().getSource().getURI().toString(),
-                                                annotationPrediction.getSemanticTags(),
-                                                annotationPrediction.getConfidence());
-                            }
-                        }
-                        else {
+            renderAnnotations(property, propertyContextMap.get(property), annotationPredictionMap.get(property));
+        }
+
+        // flush the writer
+        flush();
+    }
+
+    /**
+     * Writes the report header (and the header of the error report, if this is separate).  Use this method before
+     * rendering annotations one property at a time with {@link #renderAnnotations(Property, List, List)}, so that a
+     * report can be written as results arrive without holding every result in memory.  Don't call this method when
+     * appending to a partially written report.
+     */
+    public void startReport() {
+        writeReportHeader(getWriter());
+
+        // if error report stream is different, write the error header too
+        if (out != err) {
+            writeReportHeader(getErrorWriter());
+        }
+    }
+
+    /**
+     * Writes all annotations found for a single property, or an unmapped line to the error report if there are none.
+     *
+     * @param property              the property that was searched for
+     * @param propertyContexts      the studies this property was used in, or null if they are not known
+     * @param annotationPredictions the annotations predicted for this property, or null if there are none
+     */
+    public void renderAnnotations(Property property,
+                                  List<String> propertyContexts,
+                                  List<AnnotationPrediction> annotationPredictions) {
+        PrintWriter writer = getWriter();
+        PrintWriter errorWriter = getErrorWriter();
+        try {
+            if (annotationPredictions != null && annotationPredictions.size() > 0) {
+                getLog().debug(
+                        "There are " + annotationPredictions.size() + " annotations for property '" + property +
+                                "'");
+
+                for (AnnotationPrediction annotationPrediction : annotationPredictions) {
+                    // render one line per experiment, if known
+                    if (propertyContexts != null) {
+                        for (String expt : propertyContexts) {
                             writeReportLine(writer,
                                             property,
                                             annotationPrediction.getAnnotatedProperty().getPropertyValue(),
-                                            "[UNKNOWN EXPERIMENTS]",
+                                            expt,
                                             annotationPrediction.getDerivedFrom().getProvenance().getSource().getURI().toString(),
                                             annotationPrediction.getSemanticTags(),
                                             annotationPrediction.getConfidence());
                         }
                     }
-                }
-                else {
-                    if (propertyContextMap.containsKey(property)) {
-                        for (String expt : propertyContextMap.get(property)) {
-                            writeUnmappedReportLine(errorWriter, property, expt);
-                        }
-                    }
                     else {
-                        writeUnmappedReportLine(errorWriter, property, "[UNKNOWN EXPERIMENTS]");
+                        writeReportLine(writer,
+                                        property,
+                                        annotationPrediction.getAnnotatedProperty().getPropertyValue(),
+                                        "[UNKNOWN EXPERIMENTS]",
+                                        annotationPrediction.getDerivedFrom().getProvenance().getSource().getURI().toString(),
+                                        annotationPrediction.getSemanticTags(),
+                                        annotationPrediction.getConfidence());
                     }
                 }
             }
-            catch (Exception e) {
-                getLog().error("Failed to write report line for property " + property + ".  Error was:", e);
-                writeUnmappedReportLine(errorWriter, property, "[UNKNOWN EXPERIMENTS]");
+            else {
+                if (propertyContexts != null) {
+                    for (String expt : propertyContexts) {
+                        writeUnmappedReportLine(errorWriter, property, expt);
+                    }
+                }
+                else {
+                    writeUnmappedReportLine(errorWriter, property, "[UNKNOWN EXPERIMENTS]");
+                }
             }
         }
+        catch (Exception e) {
+            getLog().error("Failed to write report line for property " + property + ".  Error was:", e);
+            writeUnmappedReportLine(errorWriter, property, "[UNKNOWN EXPERIMENTS]");
+        }
+    }
 
-        // flush the writer
-        writer.flush();
-        errorWriter.flush();
+    /**
+     * Flushes any report lines written so far to the underlying output streams.
+     */
+    public void flush() {
+        getWriter().flush();
+        getErrorWriter().flush();
     }
 
     public void renderAnnotationSummaries(List<Property> properties,
@@ -249,10 +278,28 @@ public class ZOOMAReportRenderer {
     }
 
     public void close() throws IOException {
+        flush();
         out.close();
         err.close();
     }
 
+    protected synchronized PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)));
+        }
+        return writer;
+    }
+
+    protected synchronized PrintWriter getErrorWriter() {
+        if (out == err) {
+            return getWriter();
+        }
+        if (errorWriter == null) {
+            errorWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(err)));
+        }
+        return errorWriter;
+    }
+
     protected void writeReportLine(PrintWriter writer,
                                    Property property,
                                    String matchedPropertyValue,
@@ -0,0 +1,63 @@
+package uk.ac.ebi.fgpt.zooma.io;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.model.TypedProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestZOOMAInputParser {
+    private static final String INPUT = "liver\n" +
+            "\n" +
+            "heart\torganism part\n" +
+            "   \n" +
+            "too\tmany\tcells\n" +
+            "kidney\n";
+
+    @Test
+    public void testNextReadsOnePropertyAtATime() throws IOException {
+        ZOOMAInputParser parser = createParser(INPUT);
+
+        Property liver = parser.next();
+        assertEquals("liver", liver.getPropertyValue());
+        assertFalse(liver instanceof TypedProperty, "Property without a type should be untyped");
+        assertEquals(1, parser.getLineNumber());
+
+        Property heart = parser.next();
+        assertEquals("heart", heart.getPropertyValue());
+        assertTrue(heart instanceof TypedProperty, "Property with a type should be typed");
+        assertEquals("organism part", ((TypedProperty) heart).getPropertyType());
+        assertEquals(3, parser.getLineNumber());
+
+        // blank and unreadable lines are skipped, but still counted
+        Property kidney = parser.next();
+        assertEquals("kidney", kidney.getPropertyValue());
+        assertEquals(6, parser.getLineNumber());
+
+        assertNull(parser.next());
+        assertNull(parser.next());
+        assertEquals(6, parser.getLineNumber());
+        parser.close();
+    }
+
+    @Test
+    public void testParseReadsEveryProperty() throws IOException {
+        List<Property> properties = createParser(INPUT).parse();
+        assertEquals(3, properties.size());
+        assertEquals("liver", properties.get(0).getPropertyValue());
+        assertEquals("heart", properties.get(1).getPropertyValue());
+        assertEquals("kidney", properties.get(2).getPropertyValue());
+    }
+
+    private ZOOMAInputParser createParser(String input) {
+        return new ZOOMAInputParser(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -83,20 +83,25 @@ public class ZOOMA2PropertyExcluder {
     public void removeExcludedTypes(Collection<Property> properties) {
         Iterator<Property> propertyIterator = properties.iterator();
         while (propertyIterator.hasNext()) {
-            Property property = propertyIterator.next();
-            if (property instanceof TypedProperty) {
-                String type = ((TypedProperty) property).getPropertyType();
-                String normalizedType = ZoomaUtils.normalizePropertyTypeString(type);
+            if (isExcludedType(propertyIterator.next())) {
+                propertyIterator.remove();
+            }
+        }
+    }
 
-                // excluded type?
-                for (String excludedType : excludedTypes) {
-                    if (normalizedType.equals(ZoomaUtils.normalizePropertyTypeString(excludedType))) {
-                        propertyIterator.remove();
-                        break;
-                    }
+    public boolean isExcludedType(Property property) {
+        if (property instanceof TypedProperty) {
+            String type = ((TypedProperty) property).getPropertyType();
+            String normalizedType = ZoomaUtils.normalizePropertyTypeString(type);
+
+            // excluded type?
+            for (String excludedType : excludedTypes) {
+                if (normalizedType.equals(ZoomaUtils.normalizePropertyTypeString(excludedType))) {
+                    return true;
                 }
             }
         }
+        return false;
     }
 
     private void excludeIneligibleProperties(List<Property> properties) {
@@ -16,6 +16,8 @@ import uk.ac.ebi.fgpt.zooma.io.ZOOMAInputParser;
 import uk.ac.ebi.fgpt.zooma.io.ZOOMAReportRenderer;
 import uk.ac.ebi.fgpt.zooma.model.AnnotationPrediction;
 import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.model.TypedProperty;
+import uk.ac.ebi.fgpt.zooma.search.AnnotationBatchListener;
 import uk.ac.ebi.fgpt.zooma.search.ZOOMASearchClient;
 import uk.ac.ebi.fgpt.zooma.search.ZOOMASearchTimer;
 import uk.ac.ebi.fgpt.zooma.util.OntologyLabelMapper;
@@ -34,21 +36,20 @@ import java.net.URL;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParsePosition;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A command line client for ZOOMA 2 that takes a list of properties (values, constrained by an optional type) and
@@ -59,8 +60,9 @@ import java.util.concurrent.TimeUnit;
  */
 public class ZOOMA2SearchDriver {
     private static File _inputFile;
-    private static OutputStream _out;
-    private static OutputStream _err;
+    private static File _outputFile;
+    private static File _errorFile;
+    private static boolean _resume;
     private static URL _zoomaLocation;
     private static float _score;
     private static float _cutoffPercentage;
@@ -76,13 +78,10 @@ public class ZOOMA2SearchDriver {
                                                   _cutoffPercentage,
                                                   _concurrency,
                                                   _inputFile,
-                                                  _out,
-                                                  _err);
+                                                  _outputFile,
+                                                  _errorFile,
+                                                  _resume);
                 System.out.println("ZOOMA completed successfully.");
-
-                if (_out != System.out) {
-                    _out.close();
-                }
             }
             else {
                 System.exit(statusCode);
@@ -138,11 +137,11 @@ public class ZOOMA2SearchDriver {
                 }
                 if (cl.hasOption("o")) {
                     String outOpt = cl.getOptionValue("o");
-                    File outFile = new File(outOpt);
-                    File errFile = new File(outFile.getAbsoluteFile().getParentFile(), "zooma_unmapped_report.txt");
-                    _out = new BufferedOutputStream(new FileOutputStream(outFile));
-                    _err = new BufferedOutputStream(new FileOutputStream(errFile));
+                    _outputFile = new File(outOpt);
+                    _errorFile = new File(_outputFile.getAbsoluteFile().getParentFile(),
+                                          "zooma_unmapped_report.txt");
                 }
+                _resume = cl.hasOption("r");
 
                 // optional arguments, if not supplied use defaults
                 if (cl.hasOption("n")) {
@@ -275,9 +274,30 @@ public class ZOOMA2SearchDriver {
         zoomaOption.setRequired(false);
         options.addOption(zoomaOption);
 
+        Option resumeOption = new Option(
+                "r",
+                "resume",
+                false,
+                "Resume - continue an interrupted search from its last checkpoint, " +
+                        "appending to the existing output files");
+        resumeOption.setRequired(false);
+        options.addOption(resumeOption);
+
         return options;
     }
 
+    // number of properties sent to ZOOMA in each batch annotation request
+    private static final int BATCH_SIZE = 100;
+
+    // number of distinct properties whose results are kept, so that repeated properties are only searched once
+    private static final int RESULT_CACHE_SIZE = 100000;
+
+    // number of input lines written between checkpoints
+    private static final int CHECKPOINT_INTERVAL = 1000;
+
+    // maximum number of recent completions used to estimate the time remaining
+    private static final int MAX_TIMER_SAMPLE_SIZE = 10000;
+
     private Logger log = LoggerFactory.getLogger(getClass());
 
     protected Logger getLog() {
@@ -298,19 +318,7 @@ public class ZOOMA2SearchDriver {
                                            OutputStream err) throws IOException {
         try {
             getLog().info("Reading properties from input file '" + inputFile.getAbsolutePath() + "'");
-
-            // create input parser and parse supplied properties
-            System.out.print("Reading properties from input file '" + inputFile.getAbsolutePath() + "'...");
-            ZOOMAInputParser parser = new ZOOMAInputParser(inputFile);
-            List<Property> properties = parser.parse();
-            parser.close();
-            System.out.println("done.");
-
-            // exclude any ineligible properties
-            excludeIneligibleProperties(properties);
-
-            // and search
-            searchZOOMA(zoomaLocation, score, cutoffPercentage, concurrency, properties, out, err);
+            searchZOOMA(zoomaLocation, score, cutoffPercentage, concurrency, inputFile, 0, out, err, null);
         }
         catch (RuntimeException e) {
             getLog().error("Caught unexpected runtime exception", e);
@@ -318,43 +326,84 @@ public class ZOOMA2SearchDriver {
         }
     }
 
-    private void excludeIneligibleProperties(List<Property> properties) {
-        excludeIneligibleProperties(properties, new HashMap<Property, List<String>>());
+    /**
+     * Searches ZOOMA for every property in the input file and writes a report of the results, saving checkpoints as
+     * results are written.  If resume is true and a checkpoint from an earlier, interrupted search of the same input
+     * exists, the search continues from this checkpoint and results are appended to the existing reports.
+     * <p/>
+     * Checkpoints never advance past a property whose search failed, and the checkpoint is only removed if every search
+     * succeeded, so resuming a search that reported failures searches again for the properties that failed.
+     *
+     * @param zoomaLocation    the location of the ZOOMA service to search
+     * @param score            the score that should be achieved to provide a ZOOMA result
+     * @param cutoffPercentage the fraction of the best score below which hits are discarded
+     * @param concurrency      the number of requests to send to ZOOMA in parallel
+     * @param inputFile        the file to read properties from
+     * @param outputFile       the file to write the annotation report to
+     * @param errorFile        the file to write unmapped properties to
+     * @param resume           whether to resume from the last checkpoint, if there is one
+     * @throws IOException if the input could not be read or the reports could not be written
+     */
+    public void findOptimalTextAnnotations(URL zoomaLocation,
+                                           float score,
+                                           float cutoffPercentage,
+                                           int concurrency,
+                                           File inputFile,
+                                           File outputFile,
+                                           File errorFile,
+                                           boolean resume) throws IOException {
+        try {
+            ZOOMASearchCheckpoint checkpoint = new ZOOMASearchCheckpoint(
+                    new File(outputFile.getAbsolutePath() + ".checkpoint"), inputFile, outputFile, errorFile);
+            int resumeFromLine = 0;
+            if (resume && checkpoint.exists()) {
+                resumeFromLine = checkpoint.restore();
+                System.out.println("Resuming search from line " + resumeFromLine + " of " +
+                                           "'" + inputFile.getAbsolutePath() + "'");
+            }
+            else if (resume) {
+                System.out.println("No checkpoint found, starting a new search");
+            }
+
+            getLog().info("Reading properties from input file '" + inputFile.getAbsolutePath() + "'");
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile, resumeFromLine > 0));
+            OutputStream err = errorFile.equals(outputFile)
+                    ? out
+                    : new BufferedOutputStream(new FileOutputStream(errorFile, resumeFromLine > 0));
+            searchZOOMA(zoomaLocation, score, cutoffPercentage, concurrency, inputFile, resumeFromLine, out, err,
+                        checkpoint);
+        }
+        catch (RuntimeException e) {
+            getLog().error("Caught unexpected runtime exception", e);
+            throw e;
+        }
     }
 
-    private void excludeIneligibleProperties(List<Property> properties, Map<Property, List<String>> propertyContexts) {
-        // firstly, remove any excluded types
-        ZOOMA2PropertyExcluder excluder = new ZOOMA2PropertyExcluder();
-        excluder.removeExcludedTypes(properties);
+    private boolean isEligible(ZOOMA2PropertyExcluder excluder, Property property) {
+        // firstly, check for excluded types
+        if (excluder.isExcludedType(property)) {
+            return false;
+        }
 
         // now, check for strings of a bad length and numeric values
-        Iterator<Property> propertyIterator = properties.iterator();
-        while (propertyIterator.hasNext()) {
-            Property property = propertyIterator.next();
-            String propertyValue = property.getPropertyValue();
-
-            // if property value is 3 characters or less, or 500 characters or more in length, exclude
-            if (propertyValue.length() <= 3 || propertyValue.length() >= 500) {
-                getLog().debug("Property value '" + propertyValue + "' has a length " +
-                                       "(" + propertyValue.length() + " characters) " +
-                                       "that makes it ineligible for ZOOMA search");
-                propertyIterator.remove();
-                if (propertyContexts.containsKey(property)) {
-                    propertyContexts.remove(property);
-                }
-            }
-            else {
-                // if property value is numeric, exclude
-                if (isNumeric(property.getPropertyValue())) {
-                    getLog().debug("Property value '" + propertyValue + "' is a numeric value. " +
-                                           "This makes it ineligible for ZOOMA search");
-                    propertyIterator.remove();
-                    if (propertyContexts.containsKey(property)) {
-                        propertyContexts.remove(property);
-                    }
-                }
+        String propertyValue = property.getPropertyValue();
+
+        // if property value is 3 characters or less, or 500 characters or more in length, exclude
+        if (propertyValue.length() <= 3 || propertyValue.length() >= 500) {
+            getLog().debug("Property value '" + propertyValue + "' has a length " +
+                                   "(" + propertyValue.length() + " characters) " +
+                                   "that makes it ineligible for ZOOMA search");
+            return false;
+        }
+        else {
+            // if property value is numeric, exclude
+            if (isNumeric(property.getPropertyValue())) {
+                getLog().debug("Property value '" + propertyValue + "' is a numeric value. " +
+                                       "This makes it ineligible for ZOOMA search");
+                return false;
             }
         }
+        return true;
     }
 
     private boolean isNumeric(String inputData) {
@@ -363,118 +412,366 @@ public class ZOOMA2SearchDriver {
         return inputData.length() == pos.getIndex();
     }
 
-    private void searchZOOMA(URL zoomaLocation,
-                             float score,
-                             float cutoffPercentage,
-                             int concurrency,
-                             List<Property> properties,
-                             OutputStream out,
-                             OutputStream err) throws IOException {
-        searchZOOMA(zoomaLocation,
-                    score,
-                    cutoffPercentage,
-                    concurrency,
-                    properties,
-                    new HashMap<Property, List<String>>(),
-                    out,
-                    err);
-    }
-
+    /**
+     * Searches ZOOMA for properties as they are read from the input file, and writes results to the report in input
+     * order as they arrive.  Only a bounded window of properties is held in memory at once: reading stops whilst the
+     * oldest property in the window is still being searched for.  Properties with the same type and value are only
+     * searched for once, whilst they remain in a cache of recent results.
+     */
     private void searchZOOMA(final URL zoomaLocation,
                              final float score,
                              final float cutoffPercentage,
                              final int concurrency,
-                             final List<Property> properties,
-                             final Map<Property, List<String>> propertyContexts,
+                             final File inputFile,
+                             final int resumeFromLine,
                              final OutputStream out,
-                             final OutputStream err) throws IOException {
+                             final OutputStream err,
+                             final ZOOMASearchCheckpoint checkpoint) throws IOException {
         getLog().info("Searching ZOOMA [" + zoomaLocation + "] for mappings");
         System.out.println("Starting ZOOMA search using ZOOMA at: " + zoomaLocation);
 
+        // count remaining properties to estimate progress, without holding the input in memory
+        int totalCount = countProperties(inputFile, resumeFromLine);
+
         // create a timer to time search tasks
-        final ZOOMASearchTimer timer = new ZOOMASearchTimer(properties.size()).start();
-        final ZOOMASearchClient zoomaClient = new ZOOMASearchClient(zoomaLocation);
-        final Map<Property, List<AnnotationPrediction>> annotationPredictions =
-                Collections.synchronizedMap(new HashMap<Property, List<AnnotationPrediction>>());
+        final ZOOMASearchTimer timer =
+                new ZOOMASearchTimer(totalCount, Math.min(totalCount / 10, MAX_TIMER_SAMPLE_SIZE)).start();
+        final ZOOMASearchClient zoomaClient = createSearchClient(zoomaLocation);
+        final ZOOMAReportRenderer renderer =
+                new ZOOMAReportRenderer(new ZOOMALabelMapper(zoomaClient), out, err);
+        if (resumeFromLine == 0) {
+            renderer.startReport();
+        }
 
-        // start searching - use 'concurrent' parallel threads
-        Deque<Future<Integer>> jobQueue = new ConcurrentLinkedDeque<>();
-        ExecutorService service = Executors.newFixedThreadPool(concurrency);
-        for (final Property property : properties) {
-            // simple unit of work to perform the zooma search and update annotations with results
-            jobQueue.add(service.submit(new Callable<Integer>() {
-                @Override public Integer call() throws Exception {
-                    // first, grab annotation summaries
-                    List<AnnotationPrediction> predictions = zoomaClient.annotate(property);
-                    if (!predictions.isEmpty()) {
-                        // and add predictions to the annotations map
-                        synchronized (annotationPredictions) {
-                            annotationPredictions.put(property, predictions);
-                        }
+        // searches in progress, and recent results, keyed by property type and value - guarded by the window
+        final Deque<SearchRecord> window = new ArrayDeque<>();
+        final Map<String, List<SearchRecord>> pendingSearches = new HashMap<>();
+        final Map<String, List<AnnotationPrediction>> resultCache =
+                new LinkedHashMap<String, List<AnnotationPrediction>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, List<AnnotationPrediction>> eldest) {
+                        return size() > RESULT_CACHE_SIZE;
+                    }
+                };
+        final AtomicInteger failedSearches = new AtomicInteger();
+        final AnnotationBatchListener listener = new AnnotationBatchListener() {
+            @Override public void annotated(Property property, List<AnnotationPrediction> predictions) {
+                synchronized (window) {
+                    resultCache.put(createKey(property), predictions);
+                    completeSearch(property, predictions, false);
+                }
+            }
+
+            @Override public void failed(Property property, String message) {
+                int failed = failedSearches.incrementAndGet();
+                getLog().error("Search for '" + property.getPropertyValue() + "' failed - " +
+                                       "there are " + failed + " fails now.  Error was: " + message);
+                synchronized (window) {
+                    completeSearch(property, Collections.<AnnotationPrediction>emptyList(), true);
+                }
+            }
+
+            private void completeSearch(Property property, List<AnnotationPrediction> predictions, boolean failed) {
+                List<SearchRecord> records = pendingSearches.remove(createKey(property));
+                if (records != null) {
+                    for (SearchRecord record : records) {
+                        record.complete(predictions, failed);
                     }
+                    window.notifyAll();
+                }
+            }
+        };
 
-                    // update timing stats
+        // start searching - send properties in batches, using 'concurrent' parallel requests
+        ExecutorService service = Executors.newFixedThreadPool(concurrency);
+        Semaphore requestPermits = new Semaphore(concurrency);
+        int windowSize = concurrency * BATCH_SIZE * 2;
+        ZOOMA2PropertyExcluder excluder = new ZOOMA2PropertyExcluder();
+        ZOOMAInputParser parser = new ZOOMAInputParser(inputFile);
+        ReportProgress progress = new ReportProgress(resumeFromLine);
+        try {
+            List<Property> batch = new ArrayList<>();
+            Property property;
+            while ((property = parser.next()) != null) {
+                if (parser.getLineNumber() <= resumeFromLine) {
+                    continue;
+                }
+                if (!isEligible(excluder, property)) {
                     timer.completedNext();
-                    float estimatedTime = ((float) timer.getCurrentEstimate()) / 1000;
-                    boolean showInMins = false;
-                    if (estimatedTime > 60) {
-                        showInMins = true;
-                        estimatedTime = estimatedTime / 60;
+                    continue;
+                }
+
+                SearchRecord record = new SearchRecord(parser.getLineNumber(), property);
+                String key = createKey(property);
+                synchronized (window) {
+                    window.add(record);
+                    List<AnnotationPrediction> cached = resultCache.get(key);
+                    if (cached != null) {
+                        record.complete(cached, false);
+                    }
+                    else if (pendingSearches.containsKey(key)) {
+                        pendingSearches.get(key).add(record);
+                    }
+                    else {
+                        List<SearchRecord> records = new ArrayList<>();
+                        records.add(record);
+                        pendingSearches.put(key, records);
+                        batch.add(property);
                     }
-                    String estimate = new DecimalFormat("#,###").format(estimatedTime);
-                    System.out.print("Checked " + timer.getCompletedCount() + "/" +
-                                             timer.getTotalCount() + " property values.  " +
-                                             "Estimated time remaining : " +
-                                             estimate + (showInMins ? " mins." : " s.") + "     \r");
-                    return timer.getCompletedCount();
                 }
-            }));
-        }
 
-        // pop elements from the jobQueue, make sure they're done, then discard
-        Future<Integer> f = jobQueue.poll();
-        int failedCount = 0;
-        while (f != null) {
-            try {
-                int total = f.get();
-                getLog().trace("There are " + total + " searches are now complete");
+                if (batch.size() == BATCH_SIZE || (batch.size() > 0 && window.size() >= windowSize)) {
+                    submitBatch(service, requestPermits, zoomaClient, batch, listener);
+                    batch = new ArrayList<>();
+                }
+                writeResults(window, windowSize - 1, renderer, timer, checkpoint, progress);
             }
-            catch (InterruptedException e) {
-                failedCount++;
-                getLog().error("Job " + f + " was interrupted whilst waiting for completion - " +
-                                       "there are " + failedCount + " fails now");
+            if (!batch.isEmpty()) {
+                submitBatch(service, requestPermits, zoomaClient, batch, listener);
             }
-            catch (ExecutionException e) {
-                failedCount++;
-                getLog().error("A job failed to execute - there are " + failedCount + " fails now.  Error was:\n",
-                               e.getCause());
+            writeResults(window, 0, renderer, timer, checkpoint, progress);
+        }
+        catch (InterruptedException e) {
+            getLog().error("Interrupted whilst waiting for ZOOMA searches to complete", e);
+            throw new RuntimeException("ZOOMA search was interrupted", e);
+        }
+        finally {
+            parser.close();
+            getLog().debug("Shutting down executor service...");
+            service.shutdownNow();
+        }
+
+        getLog().info("Search complete. Writing out results...");
+        System.out.print("\n\nSearch complete.  Writing results...");
+        renderer.close();
+        if (checkpoint != null) {
+            if (failedSearches.get() == 0) {
+                checkpoint.delete();
+            }
+            else {
+                System.out.println("\nSome searches failed - resume this search to search again from " +
+                                           "line " + (progress.getCheckpointLine() + 1) + " of the input.");
             }
-            f = jobQueue.poll();
         }
+        System.out.println("done.");
+        getLog().info("ZOOMA report complete");
 
-        getLog().debug("Shutting down executor service...");
-        service.shutdown();
+        if (failedSearches.get() > 0) {
+            throw new RuntimeException("There were " + failedSearches.get() + " ZOOMA searches that encountered problems");
+        }
+    }
+
+    private void submitBatch(ExecutorService service,
+                             final Semaphore requestPermits,
+                             final ZOOMASearchClient zoomaClient,
+                             final List<Property> batch,
+                             final AnnotationBatchListener listener) throws InterruptedException {
+        requestPermits.acquire();
         try {
-            service.awaitTermination(2, TimeUnit.MINUTES);
-            getLog().debug("Executor service shutdown gracefully.");
+            service.submit(new Runnable() {
+                @Override public void run() {
+                    try {
+                        zoomaClient.annotate(batch, listener);
+                    }
+                    catch (RuntimeException e) {
+                        // make sure every property is completed, so nobody waits on them forever
+                        getLog().error("A batch of searches failed to execute.  Error was:\n", e);
+                        for (Property property : batch) {
+                            listener.failed(property, e.getMessage());
+                        }
+                    }
+                    finally {
+                        requestPermits.release();
+                    }
+                }
+            });
         }
-        catch (InterruptedException e) {
-            getLog().error("Executor service failed to shutdown cleanly", e);
-            throw new RuntimeException("Unable to cleanly shutdown ZOOMA.", e);
+        catch (RuntimeException e) {
+            requestPermits.release();
+            throw e;
         }
-        finally {
-            getLog().info("Search complete. Writing out results...");
-            System.out.print("\n\nSearch complete.  Writing results...");
-            ZOOMAReportRenderer renderer = new ZOOMAReportRenderer(new ZOOMALabelMapper(zoomaClient), out, err);
-            renderer.renderAnnotations(properties, propertyContexts, annotationPredictions);
-            renderer.close();
-            System.out.println("done.");
-            getLog().info("ZOOMA report complete");
-
-            if (failedCount > 0) {
-                //noinspection ThrowFromFinallyBlock
-                throw new RuntimeException("There were " + failedCount + " ZOOMA searches that encountered problems");
+    }
+
+    /**
+     * Creates the client used to search ZOOMA.  Subclasses may override this to search with a different client.
+     *
+     * @param zoomaLocation the location of the ZOOMA service to search
+     * @return a client for the ZOOMA service at this location
+     */
+    protected ZOOMASearchClient createSearchClient(URL zoomaLocation) {
+        return new ZOOMASearchClient(zoomaLocation);
+    }
+
+    /**
+     * Writes completed results from the head of the window to the report, in input order, and then waits until the
+     * window holds no more than maxSize properties.  A checkpoint is saved every {@link #CHECKPOINT_INTERVAL} lines, and
+     * immediately before the results of the first failed search are written; no checkpoints are saved after that.
+     */
+    private void writeResults(Deque<SearchRecord> window,
+                              int maxSize,
+                              ZOOMAReportRenderer renderer,
+                              ZOOMASearchTimer timer,
+                              ZOOMASearchCheckpoint checkpoint,
+                              ReportProgress progress) throws InterruptedException, IOException {
+        while (true) {
+            SearchRecord next;
+            synchronized (window) {
+                next = window.peek();
+                if (next == null) {
+                    break;
+                }
+                if (!next.isComplete()) {
+                    if (window.size() <= maxSize) {
+                        break;
+                    }
+                    window.wait();
+                    continue;
+                }
+                window.poll();
+            }
+
+            if (next.isFailed() && !progress.isFailureWritten()) {
+                // this property must be searched for again on resuming, so checkpoint before writing it
+                saveCheckpoint(renderer, checkpoint, progress);
+                progress.failureWritten();
             }
+            renderer.renderAnnotations(next.getProperty(), null, next.getPredictions());
+            progress.written(next.getLineNumber());
+            if (!progress.isFailureWritten() &&
+                    progress.getLastLine() - progress.getCheckpointLine() >= CHECKPOINT_INTERVAL) {
+                saveCheckpoint(renderer, checkpoint, progress);
+            }
+            updateProgress(timer);
+        }
+    }
+
+    private void saveCheckpoint(ZOOMAReportRenderer renderer,
+                                ZOOMASearchCheckpoint checkpoint,
+                                ReportProgress progress) throws IOException {
+        if (checkpoint != null) {
+            renderer.flush();
+            checkpoint.save(progress.getLastLine());
+        }
+        progress.checkpointed();
+    }
+
+    private void updateProgress(ZOOMASearchTimer timer) {
+        // update timing stats
+        timer.completedNext();
+        float estimatedTime = ((float) timer.getCurrentEstimate()) / 1000;
+        boolean showInMins = false;
+        if (estimatedTime > 60) {
+            showInMins = true;
+            estimatedTime = estimatedTime / 60;
+        }
+        String estimate = new DecimalFormat("#,###").format(estimatedTime);
+        System.out.print("Checked " + timer.getCompletedCount() + "/" +
+                                 timer.getTotalCount() + " property values.  " +
+                                 "Estimated time remaining : " +
+                                 estimate + (showInMins ? " mins." : " s.") + "     \r");
+    }
+
+    /**
+     * Counts the properties that will be read from the input after the given line, reading the input the same way as
+     * the search does so that progress is estimated from the same count that is searched for.
+     */
+    private int countProperties(File inputFile, int afterLine) throws IOException {
+        int count = 0;
+        ZOOMAInputParser parser = new ZOOMAInputParser(inputFile);
+        try {
+            while (parser.next() != null) {
+                if (parser.getLineNumber() > afterLine) {
+                    count++;
+                }
+            }
+        }
+        finally {
+            parser.close();
+        }
+        return count;
+    }
+
+    private static String createKey(Property property) {
+        return property instanceof TypedProperty
+                ? ((TypedProperty) property).getPropertyType() + "\t" + property.getPropertyValue()
+                : "\t" + property.getPropertyValue();
+    }
+
+    /**
+     * A property read from the input, waiting for its results to be written
+     */
+    private static class SearchRecord {
+        private final int lineNumber;
+        private final Property property;
+        private List<AnnotationPrediction> predictions;
+        private boolean failed;
+
+        private SearchRecord(int lineNumber, Property property) {
+            this.lineNumber = lineNumber;
+            this.property = property;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public Property getProperty() {
+            return property;
+        }
+
+        public List<AnnotationPrediction> getPredictions() {
+            return predictions;
+        }
+
+        public boolean isComplete() {
+            return predictions != null;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public void complete(List<AnnotationPrediction> predictions, boolean failed) {
+            this.predictions = predictions;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * The last input line whose results were written to the report, and the last line that was checkpointed
+     */
+    private static class ReportProgress {
+        private int lastLine;
+        private int checkpointLine;
+        private boolean failureWritten;
+
+        private ReportProgress(int resumeFromLine) {
+            this.lastLine = resumeFromLine;
+            this.checkpointLine = resumeFromLine;
+        }
+
+        public int getLastLine() {
+            return lastLine;
+        }
+
+        public int getCheckpointLine() {
+            return checkpointLine;
+        }
+
+        public boolean isFailureWritten() {
+            return failureWritten;
+        }
+
+        public void written(int lineNumber) {
+            this.lastLine = lineNumber;
+        }
+
+        public void checkpointed() {
+            this.checkpointLine = lastLine;
+        }
+
+        public void failureWritten() {
+            this.failureWritten = true;
         }
     }
 
@@ -0,0 +1,136 @@
+package uk.ac.ebi.fgpt.zooma;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Records how far a search of an input file has progressed, so that a search that was interrupted can be resumed
+ * without repeating the searches whose results have already been written.
+ * <p/>
+ * A checkpoint holds the last input line whose results were written, along with the length of the report and the
+ * unmapped report at that point.  On resuming, both reports are truncated back to these lengths, so any results
+ * written after the last checkpoint are written once only.  The size and modification time of the input are also
+ * recorded, so that a checkpoint is never used to resume a search of an input that has changed since it was saved.
+ *
+ * @date 18/10/26
+ */
+public class ZOOMASearchCheckpoint {
+    private final File checkpointFile;
+    private final File inputFile;
+    private final File outputFile;
+    private final File errorFile;
+
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    protected Logger getLog() {
+        return log;
+    }
+
+    public ZOOMASearchCheckpoint(File checkpointFile, File inputFile, File outputFile, File errorFile) {
+        this.checkpointFile = checkpointFile;
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.errorFile = errorFile;
+    }
+
+    public boolean exists() {
+        return checkpointFile.exists();
+    }
+
+    /**
+     * Reads this checkpoint and truncates both reports to the lengths they had when it was saved.
+     *
+     * @return the last input line whose results were written to the reports
+     * @throws IOException if the checkpoint could not be read, or was saved during a search of a different input or
+     *                     of this input before it was modified
+     */
+    public int restore() throws IOException {
+        Properties checkpoint = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        }
+
+        String input = checkpoint.getProperty("input");
+        if (input == null || !input.equals(inputFile.getAbsolutePath())) {
+            throw new IOException("Checkpoint '" + checkpointFile.getAbsolutePath() + "' was saved " +
+                                          "during a search of '" + input + "', not '" +
+                                          inputFile.getAbsolutePath() + "'");
+        }
+        try {
+            long inputLength = Long.parseLong(checkpoint.getProperty("input.length"));
+            long inputModified = Long.parseLong(checkpoint.getProperty("input.modified"));
+            if (inputLength != inputFile.length() || inputModified != inputFile.lastModified()) {
+                throw new IOException("'" + inputFile.getAbsolutePath() + "' has changed since checkpoint " +
+                                              "'" + checkpointFile.getAbsolutePath() + "' was saved");
+            }
+
+            int inputLine = Integer.parseInt(checkpoint.getProperty("input.line"));
+            truncate(outputFile, Long.parseLong(checkpoint.getProperty("output.length")));
+            if (!errorFile.equals(outputFile)) {
+                truncate(errorFile, Long.parseLong(checkpoint.getProperty("errors.length")));
+            }
+            getLog().info("Restored checkpoint at line " + inputLine + " of '" + input + "'");
+            return inputLine;
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Checkpoint '" + checkpointFile.getAbsolutePath() + "' is corrupt", e);
+        }
+    }
+
+    /**
+     * Saves a checkpoint recording that results for every line up to the given line have been written.  The reports
+     * must have been flushed before this method is called.  The checkpoint is replaced atomically, so a crash whilst
+     * saving leaves the previous checkpoint intact.
+     *
+     * @param inputLine the last input line whose results have been written to the reports
+     * @throws IOException if the checkpoint could not be written
+     */
+    public void save(int inputLine) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("input", inputFile.getAbsolutePath());
+        checkpoint.setProperty("input.length", Long.toString(inputFile.length()));
+        checkpoint.setProperty("input.modified", Long.toString(inputFile.lastModified()));
+        checkpoint.setProperty("input.line", Integer.toString(inputLine));
+        checkpoint.setProperty("output.length", Long.toString(outputFile.length()));
+        checkpoint.setProperty("errors.length", Long.toString(errorFile.length()));
+
+        File tempFile = new File(checkpointFile.getAbsolutePath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            checkpoint.store(out, "ZOOMA search checkpoint");
+        }
+        Files.move(tempFile.toPath(),
+                   checkpointFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        getLog().debug("Saved checkpoint at line " + inputLine + " of '" + inputFile.getAbsolutePath() + "'");
+    }
+
+    /**
+     * Removes this checkpoint, once a search has completed
+     */
+    public void delete() {
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            getLog().warn("Failed to delete checkpoint '" + checkpointFile.getAbsolutePath() + "'");
+        }
+    }
+
+    private void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < length) {
+                throw new IOException("'" + file.getAbsolutePath() + "' is shorter than when the checkpoint was saved");
+            }
+            raf.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package uk.ac.ebi.fgpt.zooma;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.ac.ebi.fgpt.zooma.model.AnnotationPrediction;
+import uk.ac.ebi.fgpt.zooma.model.Property;
+import uk.ac.ebi.fgpt.zooma.search.AnnotationBatchListener;
+import uk.ac.ebi.fgpt.zooma.search.ZOOMASearchClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestZOOMA2SearchDriver {
+    private String zoomaHome;
+    private File directory;
+    private File inputFile;
+    private File outputFile;
+    private File errorFile;
+    private File checkpointFile;
+    private URL zoomaLocation;
+
+    // the values of every property in the input, in input order
+    private List<String> expectedValues;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("zooma-search").toFile();
+        zoomaHome = System.getProperty("zooma.home");
+        File home = new File(directory, "zooma-home");
+        new File(home, "config").mkdirs();
+        new File(home, "loaders").mkdirs();
+        System.setProperty("zooma.home", home.getAbsolutePath());
+
+        // 200 distinct properties, a blank line, and then 50 properties repeated from the start of the input
+        expectedValues = new ArrayList<>();
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            if (i == 100) {
+                input.append("\n");
+            }
+            String value = "sample " + (i < 200 ? i : i - 200);
+            expectedValues.add(value);
+            input.append(value).append("\n");
+        }
+        inputFile = new File(directory, "input.txt");
+        Files.write(inputFile.toPath(), input.toString().getBytes(StandardCharsets.UTF_8));
+        outputFile = new File(directory, "output.txt");
+        errorFile = new File(directory, "unmapped.txt");
+        checkpointFile = new File(directory, "output.txt.checkpoint");
+
+        // there is no ZOOMA here, so the search client falls back to default prefix mappings
+        zoomaLocation = directory.toURI().toURL();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (zoomaHome != null) {
+            System.setProperty("zooma.home", zoomaHome);
+        }
+        else {
+            System.clearProperty("zooma.home");
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void testResultsAreWrittenInInputOrder() throws IOException {
+        BatchSearchClient client = new BatchSearchClient(zoomaLocation);
+        search(client, false);
+
+        // batches complete out of order, and each batch completes in reverse, but results are written in input order
+        assertEquals(expectedValues, readUnmappedValues());
+        assertFalse(checkpointFile.exists(), "Checkpoint should be removed once every search succeeds");
+    }
+
+    @Test
+    public void testRepeatedPropertiesAreSearchedOnce() throws IOException {
+        BatchSearchClient client = new BatchSearchClient(zoomaLocation);
+        search(client, false);
+
+        assertEquals(200, client.getSearchedValues().size());
+        assertEquals(200, new HashSet<>(client.getSearchedValues()).size(), "A property was searched more than once");
+    }
+
+    @Test
+    public void testFailedSearchesAreSearchedAgainOnResume() throws IOException {
+        final BatchSearchClient failingClient = new BatchSearchClient(zoomaLocation, "sample 150");
+        assertThrows(RuntimeException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                search(failingClient, false);
+            }
+        });
+        assertTrue(checkpointFile.exists(), "Checkpoint should be kept when searches fail");
+
+        BatchSearchClient client = new BatchSearchClient(zoomaLocation);
+        search(client, true);
+
+        // the search resumes at the failed property, and results written after the checkpoint are replaced
+        assertEquals(expectedValues, readUnmappedValues());
+        assertTrue(client.getSearchedValues().contains("sample 150"));
+        assertFalse(client.getSearchedValues().contains("sample 149"));
+        assertEquals(100, client.getSearchedValues().size());
+        assertFalse(checkpointFile.exists());
+    }
+
+    private void search(final ZOOMASearchClient client, boolean resume) throws IOException {
+        ZOOMA2SearchDriver driver = new ZOOMA2SearchDriver() {
+            @Override protected ZOOMASearchClient createSearchClient(URL zoomaLocation) {
+                return client;
+            }
+        };
+        driver.findOptimalTextAnnotations(zoomaLocation, 80f, 0.1f, 4, inputFile, outputFile, errorFile, resume);
+    }
+
+    private List<String> readUnmappedValues() throws IOException {
+        List<String> values = new ArrayList<>();
+        for (String line : Files.readAllLines(errorFile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("[NO TYPE]\t")) {
+                values.add(line.split("\t")[1]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * A search client that finds no annotations for any property.  Results for each batch are reported in reverse
+     * order, and the batch starting with the first property in the input is delayed so that it completes last.
+     */
+    private static class BatchSearchClient extends ZOOMASearchClient {
+        private final Set<String> failingValues;
+        private final List<String> searchedValues = Collections.synchronizedList(new ArrayList<String>());
+
+        private BatchSearchClient(URL zoomaLocation, String... failingValues) {
+            super(zoomaLocation);
+            this.failingValues = new HashSet<>(Arrays.asList(failingValues));
+        }
+
+        public List<String> getSearchedValues() {
+            return searchedValues;
+        }
+
+        @Override public void annotate(List<Property> properties, AnnotationBatchListener listener) {
+            for (Property property : properties) {
+                searchedValues.add(property.getPropertyValue());
+            }
+            if (properties.get(0).getPropertyValue().equals("sample 0")) {
+                try {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (int i = properties.size() - 1; i >= 0; i--) {
+                Property property = properties.get(i);
+                if (failingValues.contains(property.getPropertyValue())) {
+                    listener.failed(property, "Search failed");
+                }
+                else {
+                    listener.annotated(property, Collections.<AnnotationPrediction>emptyList());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package uk.ac.ebi.fgpt.zooma;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestZOOMASearchCheckpoint {
+    private File directory;
+    private File inputFile;
+    private File outputFile;
+    private File errorFile;
+    private ZOOMASearchCheckpoint checkpoint;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("zooma-checkpoint").toFile();
+        inputFile = new File(directory, "input.txt");
+        outputFile = new File(directory, "output.txt");
+        errorFile = new File(directory, "unmapped.txt");
+        write(inputFile, "liver\nheart\nkidney\n");
+        checkpoint = new ZOOMASearchCheckpoint(new File(directory, "output.txt.checkpoint"),
+                                               inputFile,
+                                               outputFile,
+                                               errorFile);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testRestoreTruncatesReportsToCheckpoint() throws IOException {
+        write(outputFile, "header\nliver\n");
+        write(errorFile, "header\n");
+        checkpoint.save(1);
+        assertTrue(checkpoint.exists());
+
+        // results written after the checkpoint are discarded on restore
+        append(outputFile, "heart\n");
+        append(errorFile, "kidney\n");
+        assertEquals(1, checkpoint.restore());
+        assertEquals("header\nliver\n", read(outputFile));
+        assertEquals("header\n", read(errorFile));
+
+        checkpoint.delete();
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void testRestoreRejectsChangedInput() throws IOException {
+        write(outputFile, "header\n");
+        write(errorFile, "header\n");
+        checkpoint.save(2);
+
+        append(inputFile, "brain\n");
+        assertThrows(IOException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                checkpoint.restore();
+            }
+        });
+        assertEquals("header\n", read(outputFile), "Reports should not be truncated for a changed input");
+    }
+
+    @Test
+    public void testRestoreRejectsTruncatedReport() throws IOException {
+        write(outputFile, "header\nliver\n");
+        write(errorFile, "header\n");
+        checkpoint.save(1);
+
+        write(outputFile, "header\n");
+        assertThrows(IOException.class, new Executable() {
+            @Override public void execute() throws Throwable {
+                checkpoint.restore();
+            }
+        });
+    }
+
+    private void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void append(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package uk.ac.ebi.fgpt.zooma.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import uk.ac.ebi.fgpt.zooma.service.ZoomaLuceneSearchService;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A simple controller that reports the metrics of the shared lucene searcher behind each lucene search service, keyed
+ * by the name of the search service bean.  These include the number of searchers currently in use, and the delay
+ * between an index being committed and the commit becoming visible to searches.
+ *
+ * @date 18/10/26
+ */
+@Controller
+@RequestMapping("/services/check-status/lucene-searchers")
+public class LuceneSearcherStatusController {
+    private Map<String, ZoomaLuceneSearchService> luceneSearchServices = Collections.emptyMap();
+
+    public Map<String, ZoomaLuceneSearchService> getLuceneSearchServices() {
+        return luceneSearchServices;
+    }
+
+    @Autowired(required = false)
+    public void setLuceneSearchServices(Map<String, ZoomaLuceneSearchService> luceneSearchServices) {
+        this.luceneSearchServices = luceneSearchServices;
+    }
+
+    @RequestMapping(method = RequestMethod.GET)
+    public @ResponseBody Map<String, Map<String, Object>> getSearcherStatistics() {
+        Map<String, Map<String, Object>> statistics = new TreeMap<>();
+        for (Map.Entry<String, ZoomaLuceneSearchService> entry : getLuceneSearchServices().entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().getSearcherStatistics());
+        }
+        return statistics;
+    }
+}